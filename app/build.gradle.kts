@@ -87,6 +87,18 @@ tasks.named<Test>("test") {
     // Usage: ./gradlew :app:test -Dtest.id=1.1
     System.getProperty("test.id")?.let { systemProperty("test.id", it) }
     
+    // Forward benchmark switch (benchmarks are skipped unless set)
+    // Usage: ./gradlew :app:test --tests "org.example.IndexBuildBenchmark" -Dtest.benchmark=true
+    System.getProperty("test.benchmark")?.let { systemProperty("test.benchmark", it) }
+    
+    // Forward LLM response cache directory (responses are reused across runs)
+    // Usage: ./gradlew :app:test -Dtest.llm.cache=build/llm-cache
+    System.getProperty("test.llm.cache")?.let { systemProperty("test.llm.cache", it) }
+    
+    // Forward LLM backend switch (stub = offline StubLLMClient, no API key needed)
+    // Usage: ./gradlew :app:test -Dtest.llm=stub
+    System.getProperty("test.llm")?.let { systemProperty("test.llm", it) }
+    
     // Legacy filters (for backward compatibility during transition)
     System.getProperty("test.id.en")?.let { systemProperty("test.id.en", it) }
     System.getProperty("test.id.it")?.let { systemProperty("test.id.it", it) }
@@ -4,12 +4,18 @@
 package org.example;
 
 import org.example.agent.CoordinatorAgent;
+import org.example.llm.CachingLLMClient;
 import org.example.llm.GeminiClient;
 import org.example.llm.LLMClient;
+import org.example.llm.RateLimitedLLMClient;
+import org.example.llm.RateLimits;
+import org.example.llm.ResilientLLMClient;
+import org.example.llm.StreamListener;
 import org.example.model.ConversationContext;
 
 import io.github.cdimascio.dotenv.Dotenv;
 
+import java.nio.file.Path;
 import java.util.Scanner;
 
 /**
@@ -58,14 +64,32 @@ public class App {
             System.exit(1);
         }
 
-        // Initialize components
-        LLMClient llmClient = new GeminiClient(apiKey);
-        CoordinatorAgent coordinator = new CoordinatorAgent(llmClient);
+        // Initialize components; calls are kept within the API quota (LLM_RPM,
+        // LLM_TPM), transient API errors are retried, slow routing calls
+        // hedged, and repeated requests answered from a cache, persisted
+        // across runs if LLM_CACHE_DIR is set. Retries and hedges run below
+        // the rate limiter, within the slot of the call they belong to: the
+        // hedge delay then measures the API latency only, not the time spent
+        // queued for the quota. Each retry and hedge is still charged to the
+        // quota through the limiter
+        RateLimits limits = RateLimits.defaults();
+        String rpm = setting(dotenv, "LLM_RPM");
+        String tpm = setting(dotenv, "LLM_TPM");
+        if (rpm != null || tpm != null) {
+            limits = limits.withQuota(rpm != null ? Integer.parseInt(rpm) : limits.requestsPerMinute(),
+                    tpm != null ? Long.parseLong(tpm) : limits.tokensPerMinute());
+        }
+        String cacheDir = setting(dotenv, "LLM_CACHE_DIR");
+        ResilientLLMClient resilient = new ResilientLLMClient(new GeminiClient(apiKey));
+        RateLimitedLLMClient rateLimited = new RateLimitedLLMClient(resilient, limits);
+        resilient.setAttemptQuota(rateLimited);
+        LLMClient llmClient = new CachingLLMClient(rateLimited, 1000, cacheDir != null ? Path.of(cacheDir) : null);
         ConversationContext context = new ConversationContext();
 
         System.out.println(WELCOME_MESSAGE);
 
-        try (Scanner scanner = new Scanner(System.in)) {
+        try (CoordinatorAgent coordinator = new CoordinatorAgent(llmClient);
+                Scanner scanner = new Scanner(System.in)) {
             while (true) {
                 System.out.print("\n👤 You: ");
                 String userInput = scanner.nextLine().trim();
@@ -88,12 +112,18 @@ public class App {
                 try {
                     System.out.println("⏳ Processing your request...");
                     long startTime = System.currentTimeMillis();
-                    String response = coordinator.process(userInput, context);
+                    ConsoleStream stream = new ConsoleStream();
+                    coordinator.process(userInput, context, stream);
                     long endTime = System.currentTimeMillis();
                     double durationSeconds = (endTime - startTime) / 1000.0;
 
-                    System.out.println(response);
-                    System.out.printf("\n(⏱️ Response time: %.2fs)%n", durationSeconds);
+                    System.out.println();
+                    if (stream.firstTokenTime > 0) {
+                        System.out.printf("\n(⏱️ Response time: %.2fs, first token: %.2fs)%n", durationSeconds,
+                                (stream.firstTokenTime - startTime) / 1000.0);
+                    } else {
+                        System.out.printf("\n(⏱️ Response time: %.2fs)%n", durationSeconds);
+                    }
                 } catch (Exception e) {
                     System.err.println("\n❌ Error processing your request: " + e.getMessage());
                     System.err.println("Please try again or type 'clear' to start over.");
@@ -101,4 +131,39 @@ public class App {
             }
         }
     }
+
+    /**
+     * Get a setting from .env or the system environment.
+     *
+     * @return The value, or null if unset or empty
+     */
+    private static String setting(Dotenv dotenv, String name) {
+        String value = dotenv.get(name);
+        if (value == null || value.isEmpty()) {
+            value = System.getenv(name);
+        }
+        return value != null && !value.isEmpty() ? value : null;
+    }
+
+    /**
+     * Prints the response as it is generated and records when the first
+     * token arrived.
+     */
+    private static class ConsoleStream implements StreamListener {
+        private long firstTokenTime = 0;
+
+        @Override
+        public void onAgentSelected(String agentLabel) {
+            System.out.println("\n[" + agentLabel + "]");
+        }
+
+        @Override
+        public void onText(String delta) {
+            if (firstTokenTime == 0) {
+                firstTokenTime = System.currentTimeMillis();
+            }
+            System.out.print(delta);
+            System.out.flush();
+        }
+    }
 }
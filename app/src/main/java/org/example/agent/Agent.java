@@ -1,11 +1,15 @@
 package org.example.agent;
 
+import org.example.llm.AsyncCalls;
+import org.example.llm.StreamListener;
 import org.example.model.ConversationContext;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Base interface for all agents.
  */
-public interface Agent {
+public interface Agent extends AutoCloseable {
     /**
      * Process a user message and return a response.
      * 
@@ -15,6 +19,32 @@ public interface Agent {
      */
     String process(String userMessage, ConversationContext context);
 
+    /**
+     * Process a user message, delivering the response as it is generated.
+     * Agents without streaming deliver the whole response at once.
+     *
+     * @param listener Receives the response text, or null to only return it
+     * @return The agent's complete response
+     */
+    default String process(String userMessage, ConversationContext context, StreamListener listener) {
+        String response = process(userMessage, context);
+        if (listener != null) {
+            listener.onText(response);
+        }
+        return response;
+    }
+
+    /**
+     * Process a user message without blocking the caller; agents without
+     * their own implementation run {@link #process} on a virtual thread.
+     * Cancelling the result interrupts the turn.
+     *
+     * @return The agent's response, once complete
+     */
+    default CompletableFuture<String> processAsync(String userMessage, ConversationContext context) {
+        return AsyncCalls.supplyAsync("agent-turn", () -> process(userMessage, context));
+    }
+
     /**
      * Get the agent type.
      */
@@ -24,4 +54,11 @@ public interface Agent {
      * Get the agent's name for display.
      */
     String getName();
+
+    /**
+     * Release the resources of the agent and its tools.
+     */
+    @Override
+    default void close() {
+    }
 }
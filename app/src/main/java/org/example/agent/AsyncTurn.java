@@ -0,0 +1,57 @@
+package org.example.agent;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+
+/**
+ * One asynchronous agent turn made of chained LLM calls and tool runs.
+ *
+ * Cancelling a future built with thenCompose does not reach the call that
+ * is actually running, so the turn tracks its current step and cancels that
+ * one when its result is cancelled; steps started afterwards are cancelled
+ * right away.
+ */
+final class AsyncTurn {
+
+    private final CompletableFuture<String> result = new CompletableFuture<>();
+    private volatile Future<?> step;
+
+    AsyncTurn() {
+        result.whenComplete((response, error) -> {
+            Future<?> current = step;
+            if (result.isCancelled() && current != null) {
+                current.cancel(true);
+            }
+        });
+    }
+
+    /**
+     * Record the step now running.
+     */
+    <T> CompletableFuture<T> track(CompletableFuture<T> next) {
+        step = next;
+        if (result.isCancelled()) {
+            next.cancel(true);
+        }
+        return next;
+    }
+
+    /**
+     * Complete the turn with the outcome of its chain of steps.
+     *
+     * @return The turn's result, which can be cancelled
+     */
+    CompletableFuture<String> finish(CompletableFuture<String> chain) {
+        chain.whenComplete((response, error) -> {
+            if (error != null) {
+                result.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause()
+                        : error);
+            } else {
+                result.complete(response);
+            }
+        });
+        return result;
+    }
+}
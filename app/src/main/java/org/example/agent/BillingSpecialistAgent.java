@@ -2,12 +2,14 @@ package org.example.agent;
 
 import org.example.llm.LLMClient;
 import org.example.llm.LLMResponse;
+import org.example.llm.StreamListener;
 import org.example.model.ConversationContext;
 import org.example.model.ConversationMessage;
 import org.example.tools.*;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Billing Specialist agent that handles billing, refunds, and account
@@ -37,6 +39,8 @@ public class BillingSpecialistAgent implements Agent {
       - Do NOT use the general policy list to pretend to have a specific answer.
       """;
 
+  private static final int MAX_TOOL_ROUNDS = 3;
+
   private final LLMClient llmClient;
   private final List<Tool> tools;
 
@@ -50,34 +54,90 @@ public class BillingSpecialistAgent implements Agent {
 
   @Override
   public String process(String userMessage, ConversationContext context) {
+    return process(userMessage, context, null);
+  }
+
+  /**
+   * Process a user message, streaming the model output to the listener (or
+   * blocking until the whole response is ready if the listener is null).
+   */
+  @Override
+  public String process(String userMessage, ConversationContext context, StreamListener listener) {
     List<ConversationMessage> messages = new ArrayList<>(context.getMessages());
     messages.add(ConversationMessage.user(userMessage));
 
     // First call - may result in tool calls
-    LLMResponse response = llmClient.chatWithTools(SYSTEM_PROMPT, messages, tools);
+    LLMResponse response = call(messages, listener, false);
 
     // Handle tool calls (possibly multiple)
-    int maxIterations = 3;
+    int maxIterations = MAX_TOOL_ROUNDS;
     while (response.hasToolCalls() && maxIterations-- > 0) {
-      StringBuilder toolResults = new StringBuilder();
-      for (LLMResponse.ToolCall toolCall : response.toolCalls()) {
-        for (Tool tool : tools) {
-          if (tool.getName().equals(toolCall.name())) {
-            String result = tool.execute(toolCall.arguments());
-            toolResults.append("Tool '").append(toolCall.name()).append("' result:\n");
-            toolResults.append(result).append("\n\n");
-          }
+      addToolResults(messages, response);
+      response = call(messages, listener, maxIterations == 0);
+    }
+
+    return response.text();
+  }
+
+  /**
+   * Process a user message without blocking: each model call runs on a
+   * virtual thread, and tools run on the thread that received the model's
+   * request for them. Cancelling the result cancels the call in progress.
+   */
+  @Override
+  public CompletableFuture<String> processAsync(String userMessage, ConversationContext context) {
+    List<ConversationMessage> messages = new ArrayList<>(context.getMessages());
+    messages.add(ConversationMessage.user(userMessage));
+
+    AsyncTurn turn = new AsyncTurn();
+    return turn.finish(turn.track(llmClient.chatWithToolsAsync(SYSTEM_PROMPT, messages, tools))
+        .thenCompose(response -> continueAsync(turn, messages, response, MAX_TOOL_ROUNDS)));
+  }
+
+  private CompletableFuture<String> continueAsync(AsyncTurn turn, List<ConversationMessage> messages,
+      LLMResponse response, int remainingRounds) {
+    if (!response.hasToolCalls() || remainingRounds == 0)
+      return CompletableFuture.completedFuture(response.text());
+
+    addToolResults(messages, response);
+    return turn.track(llmClient.chatWithToolsAsync(SYSTEM_PROMPT, messages, tools))
+        .thenCompose(next -> continueAsync(turn, messages, next, remainingRounds - 1));
+  }
+
+  /**
+   * Run the requested tools and add their results to the conversation.
+   */
+  private void addToolResults(List<ConversationMessage> messages, LLMResponse response) {
+    StringBuilder toolResults = new StringBuilder();
+    for (LLMResponse.ToolCall toolCall : response.toolCalls()) {
+      for (Tool tool : tools) {
+        if (tool.getName().equals(toolCall.name())) {
+          String result = tool.execute(toolCall.arguments());
+          toolResults.append("Tool '").append(toolCall.name()).append("' result:\n");
+          toolResults.append(result).append("\n\n");
         }
       }
+    }
 
-      // Add tool results and continue
-      messages.add(ConversationMessage.assistant("Processing your request...", "BILLING"));
-      messages.add(ConversationMessage.user("Tool results:\n" + toolResults));
+    // Add tool results and continue
+    messages.add(ConversationMessage.assistant("Processing your request...", "BILLING"));
+    messages.add(ConversationMessage.user("Tool results:\n" + toolResults));
+  }
 
-      response = llmClient.chatWithTools(SYSTEM_PROMPT, messages, tools);
-    }
+  /**
+   * @param lastRound True if the response is returned whether or not it calls
+   *                  tools, so its text can be streamed as it comes
+   */
+  private LLMResponse call(List<ConversationMessage> messages, StreamListener listener, boolean lastRound) {
+    if (listener == null)
+      return llmClient.chatWithTools(SYSTEM_PROMPT, messages, tools);
+    if (lastRound)
+      return llmClient.chatWithToolsStream(SYSTEM_PROMPT, messages, tools, listener);
 
-    return response.text();
+    ToolRoundStream round = new ToolRoundStream(listener);
+    LLMResponse response = llmClient.chatWithToolsStream(SYSTEM_PROMPT, messages, tools, round);
+    round.finish(response);
+    return response;
   }
 
   @Override
@@ -89,4 +149,9 @@ public class BillingSpecialistAgent implements Agent {
   public String getName() {
     return "Billing Specialist";
   }
+
+  @Override
+  public void close() {
+    tools.forEach(Tool::close);
+  }
 }
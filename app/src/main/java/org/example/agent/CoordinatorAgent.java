@@ -1,10 +1,12 @@
 package org.example.agent;
 
 import org.example.llm.LLMClient;
+import org.example.llm.StreamListener;
 import org.example.model.ConversationContext;
 import org.example.model.ConversationMessage;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Coordinator agent that routes messages to appropriate specialist agents.
@@ -55,30 +57,71 @@ public class CoordinatorAgent implements Agent {
 
     @Override
     public String process(String userMessage, ConversationContext context) {
+        return process(userMessage, context, null);
+    }
+
+    /**
+     * Route and answer a user message. With a listener, the label of the
+     * chosen agent and then its answer are streamed as they are generated
+     * (the routing decision itself is not streamed).
+     *
+     * @param listener Receives the response, or null to block until it is complete
+     */
+    @Override
+    public String process(String userMessage, ConversationContext context, StreamListener listener) {
         // Direct routing without translation - allowing the agents to handle
         // multilingual input naturally
         AgentType targetAgent = routeMessage(userMessage, context);
 
-        String response;
-        String respondingAgent;
+        String respondingAgent = respondingAgent(targetAgent);
+        if (listener != null) {
+            listener.onAgentSelected(agentLabel(respondingAgent));
+        }
 
-        switch (targetAgent) {
-            case TECHNICAL -> {
-                response = technicalAgent.process(userMessage, context);
-                respondingAgent = "TECHNICAL";
-            }
-            case BILLING -> {
-                response = billingAgent.process(userMessage, context);
-                respondingAgent = "BILLING";
-            }
+        String response = switch (targetAgent) {
+            case TECHNICAL -> technicalAgent.process(userMessage, context, listener);
+            case BILLING -> billingAgent.process(userMessage, context, listener);
             default -> {
                 // Use LLM to generate response in user's language
-                response = llmClient.chat(UNKNOWN_PROMPT,
-                        List.of(ConversationMessage.user(userMessage)));
-                respondingAgent = "COORDINATOR";
+                List<ConversationMessage> messages = List.of(ConversationMessage.user(userMessage));
+                yield listener != null
+                        ? llmClient.chatStream(UNKNOWN_PROMPT, messages, listener)
+                        : llmClient.chat(UNKNOWN_PROMPT, messages);
             }
-        }
+        };
+
+        return completeTurn(userMessage, context, response, respondingAgent);
+    }
+
+    /**
+     * Route and answer a user message without blocking: the routing call and
+     * the specialist's calls run on virtual threads, so a waiting
+     * conversation holds no OS thread. Cancelling the result cancels the
+     * call in progress.
+     */
+    @Override
+    public CompletableFuture<String> processAsync(String userMessage, ConversationContext context) {
+        AsyncTurn turn = new AsyncTurn();
+        CompletableFuture<AgentType> routing = turn.track(
+                llmClient.chatAsync(ROUTING_PROMPT, routingMessages(userMessage, context)))
+                .thenApply(this::parseDecision);
+
+        return turn.finish(routing.thenCompose(targetAgent -> {
+            CompletableFuture<String> answer = switch (targetAgent) {
+                case TECHNICAL -> technicalAgent.processAsync(userMessage, context);
+                case BILLING -> billingAgent.processAsync(userMessage, context);
+                default -> llmClient.chatAsync(UNKNOWN_PROMPT, List.of(ConversationMessage.user(userMessage)));
+            };
+            return turn.track(answer).thenApply(
+                    response -> completeTurn(userMessage, context, response, respondingAgent(targetAgent)));
+        }));
+    }
 
+    /**
+     * Record the interaction in the context and format the response.
+     */
+    private String completeTurn(String userMessage, ConversationContext context, String response,
+            String respondingAgent) {
         // Update context with the interaction
         context.addMessage(ConversationMessage.user(userMessage));
         context.addMessage(ConversationMessage.assistant(response, respondingAgent));
@@ -87,7 +130,19 @@ public class CoordinatorAgent implements Agent {
         return formatResponse(response, respondingAgent);
     }
 
+    private static String respondingAgent(AgentType targetAgent) {
+        return switch (targetAgent) {
+            case TECHNICAL -> "TECHNICAL";
+            case BILLING -> "BILLING";
+            default -> "COORDINATOR";
+        };
+    }
+
     private AgentType routeMessage(String userMessage, ConversationContext context) {
+        return parseDecision(llmClient.chat(ROUTING_PROMPT, routingMessages(userMessage, context)));
+    }
+
+    private List<ConversationMessage> routingMessages(String userMessage, ConversationContext context) {
         // Build context for routing decision
         StringBuilder routingContext = new StringBuilder();
 
@@ -103,9 +158,10 @@ public class CoordinatorAgent implements Agent {
 
         routingContext.append("New message to route: ").append(userMessage);
 
-        String decision = llmClient.chat(ROUTING_PROMPT,
-                List.of(ConversationMessage.user(routingContext.toString())));
+        return List.of(ConversationMessage.user(routingContext.toString()));
+    }
 
+    private AgentType parseDecision(String decision) {
         decision = decision.trim().toUpperCase();
 
         // Parse the decision
@@ -119,13 +175,15 @@ public class CoordinatorAgent implements Agent {
     }
 
     private String formatResponse(String response, String agentType) {
-        String agentLabel = switch (agentType) {
+        return "\n[" + agentLabel(agentType) + "]\n" + response;
+    }
+
+    private static String agentLabel(String agentType) {
+        return switch (agentType) {
             case "TECHNICAL" -> "🔧 Technical Specialist";
             case "BILLING" -> "💳 Billing Specialist";
             default -> "🤖 Support";
         };
-
-        return "\n[" + agentLabel + "]\n" + response;
     }
 
     @Override
@@ -137,4 +195,10 @@ public class CoordinatorAgent implements Agent {
     public String getName() {
         return "Coordinator";
     }
+
+    @Override
+    public void close() {
+        technicalAgent.close();
+        billingAgent.close();
+    }
 }
@@ -2,6 +2,7 @@ package org.example.agent;
 
 import org.example.llm.LLMClient;
 import org.example.llm.LLMResponse;
+import org.example.llm.StreamListener;
 import org.example.model.ConversationContext;
 import org.example.model.ConversationMessage;
 import org.example.tools.DocumentRetrievalTool;
@@ -9,6 +10,7 @@ import org.example.tools.Tool;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Technical Specialist agent that answers questions using documentation.
@@ -45,33 +47,83 @@ public class TechnicalSpecialistAgent implements Agent {
 
     @Override
     public String process(String userMessage, ConversationContext context) {
+        return process(userMessage, context, null);
+    }
+
+    /**
+     * Process a user message, streaming the model output to the listener (or
+     * blocking until the whole response is ready if the listener is null).
+     */
+    @Override
+    public String process(String userMessage, ConversationContext context, StreamListener listener) {
         List<ConversationMessage> messages = new ArrayList<>(context.getMessages());
         messages.add(ConversationMessage.user(userMessage));
 
         // First call - may result in tool call
-        LLMResponse response = llmClient.chatWithTools(SYSTEM_PROMPT, messages, tools);
+        LLMResponse response = call(messages, tools, listener);
 
         // Handle tool calls
         if (response.hasToolCalls()) {
-            StringBuilder toolResults = new StringBuilder();
-            for (LLMResponse.ToolCall toolCall : response.toolCalls()) {
-                for (Tool tool : tools) {
-                    if (tool.getName().equals(toolCall.name())) {
-                        String result = tool.execute(toolCall.arguments());
-                        toolResults.append("Tool '").append(toolCall.name()).append("' result:\n");
-                        toolResults.append(result).append("\n\n");
-                    }
+            addToolResults(messages, response);
+            response = call(messages, List.of(), listener);
+        }
+
+        return response.text();
+    }
+
+    /**
+     * Process a user message without blocking: each model call runs on a
+     * virtual thread, and the documentation search runs on the thread that
+     * received the model's request for it. Cancelling the result cancels the
+     * call in progress.
+     */
+    @Override
+    public CompletableFuture<String> processAsync(String userMessage, ConversationContext context) {
+        List<ConversationMessage> messages = new ArrayList<>(context.getMessages());
+        messages.add(ConversationMessage.user(userMessage));
+
+        AsyncTurn turn = new AsyncTurn();
+        return turn.finish(turn.track(llmClient.chatWithToolsAsync(SYSTEM_PROMPT, messages, tools))
+                .thenCompose(response -> {
+                    if (!response.hasToolCalls())
+                        return CompletableFuture.completedFuture(response.text());
+                    addToolResults(messages, response);
+                    return turn.track(llmClient.chatWithToolsAsync(SYSTEM_PROMPT, messages, List.of()))
+                            .thenApply(LLMResponse::text);
+                }));
+    }
+
+    /**
+     * Run the requested tools and add their results to the conversation.
+     */
+    private void addToolResults(List<ConversationMessage> messages, LLMResponse response) {
+        StringBuilder toolResults = new StringBuilder();
+        for (LLMResponse.ToolCall toolCall : response.toolCalls()) {
+            for (Tool tool : tools) {
+                if (tool.getName().equals(toolCall.name())) {
+                    String result = tool.execute(toolCall.arguments());
+                    toolResults.append("Tool '").append(toolCall.name()).append("' result:\n");
+                    toolResults.append(result).append("\n\n");
                 }
             }
+        }
 
-            // Add tool results and get final response
-            messages.add(ConversationMessage.assistant("I'm searching the documentation...", "TECHNICAL"));
-            messages.add(ConversationMessage.user("Tool results:\n" + toolResults));
+        // Add tool results and get final response
+        messages.add(ConversationMessage.assistant("I'm searching the documentation...", "TECHNICAL"));
+        messages.add(ConversationMessage.user("Tool results:\n" + toolResults));
+    }
 
-            response = llmClient.chatWithTools(SYSTEM_PROMPT, messages, List.of());
-        }
+    private LLMResponse call(List<ConversationMessage> messages, List<Tool> tools, StreamListener listener) {
+        if (listener == null)
+            return llmClient.chatWithTools(SYSTEM_PROMPT, messages, tools);
+        // Without tools the round is the answer, so its text streams as it comes
+        if (tools.isEmpty())
+            return llmClient.chatWithToolsStream(SYSTEM_PROMPT, messages, tools, listener);
 
-        return response.text();
+        ToolRoundStream round = new ToolRoundStream(listener);
+        LLMResponse response = llmClient.chatWithToolsStream(SYSTEM_PROMPT, messages, tools, round);
+        round.finish(response);
+        return response;
     }
 
     @Override
@@ -83,4 +135,9 @@ public class TechnicalSpecialistAgent implements Agent {
     public String getName() {
         return "Technical Specialist";
     }
+
+    @Override
+    public void close() {
+        tools.forEach(Tool::close);
+    }
 }
@@ -0,0 +1,47 @@
+package org.example.agent;
+
+import org.example.llm.LLMResponse;
+import org.example.llm.StreamListener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams one model round that may end in tool calls. The text of such a
+ * round is not part of the answer the agent returns, so it is held back and
+ * only passed on once the round ended without calling a tool.
+ */
+final class ToolRoundStream implements StreamListener {
+
+    private final StreamListener target;
+    private final List<String> deltas = new ArrayList<>();
+
+    ToolRoundStream(StreamListener target) {
+        this.target = target;
+    }
+
+    @Override
+    public void onAgentSelected(String agentLabel) {
+        target.onAgentSelected(agentLabel);
+    }
+
+    @Override
+    public synchronized void onText(String delta) {
+        deltas.add(delta);
+    }
+
+    @Override
+    public void onToolCall(LLMResponse.ToolCall toolCall) {
+        target.onToolCall(toolCall);
+    }
+
+    /**
+     * Pass on the held-back text if the round is the answer.
+     */
+    synchronized void finish(LLMResponse response) {
+        if (!response.hasToolCalls()) {
+            deltas.forEach(target::onText);
+        }
+        deltas.clear();
+    }
+}
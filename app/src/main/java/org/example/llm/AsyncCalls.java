@@ -0,0 +1,54 @@
+package org.example.llm;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Runs blocking calls (LLM round-trips, agent turns) on virtual threads, so
+ * that many of them can wait on the network at once without holding an OS
+ * thread each.
+ */
+public final class AsyncCalls {
+
+    private AsyncCalls() {
+    }
+
+    /**
+     * Run a blocking call on a new virtual thread.
+     *
+     * @param name Name of the thread (for thread dumps)
+     * @return A future completed with the call's result; cancelling it
+     *         interrupts the call (stages derived from it are not
+     *         interruptible)
+     */
+    public static <T> CompletableFuture<T> supplyAsync(String name, Supplier<T> call) {
+        InterruptibleFuture<T> future = new InterruptibleFuture<>();
+        // Set before the call starts, so a call that fails at once (or is cancelled) always finds it
+        future.thread = Thread.ofVirtual().name(name).unstarted(() -> {
+            try {
+                future.complete(call.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        future.thread.start();
+        return future;
+    }
+
+    /**
+     * Future whose cancellation interrupts the thread computing it.
+     */
+    private static class InterruptibleFuture<T> extends CompletableFuture<T> {
+        private volatile Thread thread;
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            Thread running = thread;
+            if (cancelled && running != null) {
+                running.interrupt();
+            }
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package org.example.llm;
+
+import org.example.model.ConversationMessage;
+import org.example.tools.Tool;
+
+import java.util.List;
+
+/**
+ * Quota charged for the requests a call sends beyond the one it was admitted
+ * with: its retries and hedges. Implemented by {@link RateLimitedLLMClient}
+ * and used by {@link ResilientLLMClient} placed below it.
+ */
+public interface AttemptQuota {
+
+    /**
+     * Wait until the quota allows one more request of an admitted call.
+     *
+     * @throws LLMCallException (429, not retryable) if it does not within the
+     *                          maximum wait
+     */
+    void acquire(String systemPrompt, List<ConversationMessage> messages, List<Tool> tools);
+
+    /**
+     * Take the quota of one more request of an admitted call if it is
+     * available right now and no other call is waiting for it.
+     *
+     * @return false if the request should not be sent
+     */
+    boolean tryAcquire(String systemPrompt, List<ConversationMessage> messages, List<Tool> tools);
+}
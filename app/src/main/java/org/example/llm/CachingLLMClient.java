@@ -0,0 +1,267 @@
+package org.example.llm;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import org.example.model.ConversationMessage;
+import org.example.tools.Tool;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LLM client decorator answering repeated requests from a cache.
+ *
+ * Requests are content-addressed: the key is a SHA-256 hash of the model,
+ * temperature, system prompt, messages and tool schemas, so any change to
+ * the prompt or the conversation is a different entry. Entries live in a
+ * bounded in-memory tier and, optionally, in a directory (one JSON file per
+ * entry) that survives restarts and test re-runs.
+ *
+ * Responses asking for a non-idempotent tool (see {@link Tool#isIdempotent()},
+ * e.g., opening a refund case) are never cached: whether to take an action
+ * is always decided by the model.
+ */
+public class CachingLLMClient implements LLMClient {
+
+    private static final long DEFAULT_MAX_ENTRIES = 1000;
+    // Bumped when the key layout changes, so old disk entries are never hit
+    private static final String KEY_VERSION = "1";
+    private static final Gson GSON = new Gson();
+
+    private final LLMClient delegate;
+    private final Path directory;
+    private final Cache<String, LLMResponse> memory;
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong uncacheable = new AtomicLong();
+
+    /**
+     * Create an in-memory cache only.
+     */
+    public CachingLLMClient(LLMClient delegate) {
+        this(delegate, DEFAULT_MAX_ENTRIES, null);
+    }
+
+    /**
+     * @param maxEntries Maximum number of responses kept in memory
+     * @param directory  Directory of the persistent tier (created if missing),
+     *                   or null for memory only
+     */
+    public CachingLLMClient(LLMClient delegate, long maxEntries, Path directory) {
+        this.delegate = delegate;
+        this.directory = directory;
+        this.memory = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .build();
+        if (directory != null) {
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to create LLM cache directory " + directory, e);
+            }
+        }
+    }
+
+    @Override
+    public String chat(String systemPrompt, List<ConversationMessage> messages) {
+        return chatWithTools(systemPrompt, messages, List.of()).text();
+    }
+
+    @Override
+    public LLMResponse chatWithTools(String systemPrompt, List<ConversationMessage> messages, List<Tool> tools) {
+        String key = key(systemPrompt, messages, tools);
+        LLMResponse cached = lookup(key);
+        if (cached != null)
+            return cached;
+
+        LLMResponse response = delegate.chatWithTools(systemPrompt, messages, tools);
+        store(key, response, tools);
+        return response;
+    }
+
+    /**
+     * A cached response is delivered at once; a miss is streamed by the
+     * underlying client and cached when complete.
+     */
+    @Override
+    public LLMResponse chatWithToolsStream(String systemPrompt, List<ConversationMessage> messages,
+            List<Tool> tools, StreamListener listener) {
+        String key = key(systemPrompt, messages, tools);
+        LLMResponse cached = lookup(key);
+        if (cached != null) {
+            if (cached.hasToolCalls()) {
+                cached.toolCalls().forEach(listener::onToolCall);
+            } else if (cached.text() != null && !cached.text().isEmpty()) {
+                listener.onText(cached.text());
+            }
+            return cached;
+        }
+
+        LLMResponse response = delegate.chatWithToolsStream(systemPrompt, messages, tools, listener);
+        store(key, response, tools);
+        return response;
+    }
+
+    @Override
+    public String getModelName() {
+        return delegate.getModelName();
+    }
+
+    @Override
+    public double getTemperature() {
+        return delegate.getTemperature();
+    }
+
+    private LLMResponse lookup(String key) {
+        LLMResponse response = memory.getIfPresent(key);
+        if (response != null) {
+            memoryHits.incrementAndGet();
+            return response;
+        }
+
+        if (directory != null) {
+            Path file = directory.resolve(key + ".json");
+            if (Files.exists(file)) {
+                try {
+                    response = GSON.fromJson(Files.readString(file, StandardCharsets.UTF_8), LLMResponse.class);
+                } catch (IOException | JsonSyntaxException e) {
+                    System.err.println("[CachingLLMClient] Warning: Could not read " + file + ": " + e.getMessage());
+                }
+                if (response != null) {
+                    diskHits.incrementAndGet();
+                    memory.put(key, response);
+                    return response;
+                }
+            }
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    private void store(String key, LLMResponse response, List<Tool> tools) {
+        if (!isCacheable(response, tools)) {
+            uncacheable.incrementAndGet();
+            return;
+        }
+        memory.put(key, response);
+
+        if (directory != null) {
+            // Write then rename, so a concurrent reader never sees a partial file
+            Path file = directory.resolve(key + ".json");
+            try {
+                Path temp = Files.createTempFile(directory, key, ".tmp");
+                Files.writeString(temp, GSON.toJson(response), StandardCharsets.UTF_8);
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                System.err.println("[CachingLLMClient] Warning: Could not write " + file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private static boolean isCacheable(LLMResponse response, List<Tool> tools) {
+        if (!response.hasToolCalls())
+            return true;
+        for (LLMResponse.ToolCall call : response.toolCalls()) {
+            for (Tool tool : tools) {
+                if (tool.getName().equals(call.name()) && !tool.isIdempotent())
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hash everything that determines the response. Each field is
+     * length-prefixed so that no two requests share a byte sequence, and tool
+     * schemas are serialized with sorted keys so their map order does not
+     * matter.
+     */
+    private String key(String systemPrompt, List<ConversationMessage> messages, List<Tool> tools) {
+        return requestKey(delegate.getModelName(), delegate.getTemperature(), systemPrompt, messages, tools);
+    }
+
+    /**
+     * Get the cache key of a request, which is also the name (without
+     * ".json") of its entry in a cache directory.
+     */
+    static String requestKey(String modelName, double temperature, String systemPrompt,
+            List<ConversationMessage> messages, List<Tool> tools) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not available", e);
+        }
+        update(digest, KEY_VERSION);
+        update(digest, modelName);
+        update(digest, Double.toString(temperature));
+        update(digest, systemPrompt);
+        update(digest, Integer.toString(messages.size()));
+        for (ConversationMessage message : messages) {
+            update(digest, message.role());
+            update(digest, message.content());
+        }
+        update(digest, Integer.toString(tools.size()));
+        for (Tool tool : tools) {
+            update(digest, tool.getName());
+            update(digest, tool.getDescription());
+            update(digest, GSON.toJson(sorted(tool.getParametersSchema())));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, String field) {
+        byte[] bytes = (field != null ? field : "").getBytes(StandardCharsets.UTF_8);
+        digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) ':');
+        digest.update(bytes);
+    }
+
+    private static Object sorted(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            Map<String, Object> sortedMap = new TreeMap<>();
+            map.forEach((k, v) -> sortedMap.put(String.valueOf(k), sorted(v)));
+            return sortedMap;
+        }
+        if (value instanceof List<?> list) {
+            return list.stream().map(CachingLLMClient::sorted).toList();
+        }
+        return value;
+    }
+
+    /**
+     * Get the fraction of requests answered from the cache.
+     */
+    public double getHitRate() {
+        long hits = memoryHits.get() + diskHits.get();
+        long total = hits + misses.get();
+        return total > 0 ? (double) hits / total : 0;
+    }
+
+    /**
+     * Get cache statistics for debugging.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("memory_size", memory.size());
+        stats.put("memory_hits", memoryHits.get());
+        stats.put("disk_hits", diskHits.get());
+        stats.put("misses", misses.get());
+        stats.put("uncacheable", uncacheable.get());
+        stats.put("hit_rate", getHitRate());
+        stats.put("persistent", directory != null);
+        return stats;
+    }
+}
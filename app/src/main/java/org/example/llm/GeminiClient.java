@@ -2,21 +2,32 @@ package org.example.llm;
 
 import io.github.cdimascio.dotenv.Dotenv;
 import com.google.genai.Client;
+import com.google.genai.ResponseStream;
+import com.google.genai.errors.ApiException;
 import com.google.genai.types.*;
 import org.example.model.ConversationMessage;
 import org.example.tools.Tool;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
  * Gemini API client implementation using the official Google Gen AI SDK.
  */
 public class GeminiClient implements LLMClient {
+    public static final String DEFAULT_MODEL = "gemini-2.0-flash";
+    public static final float TEMPERATURE = 0.3f;
+    // Delay in a 429 body: "retryDelay": "37s" or "Please retry in 37.5s"
+    private static final Pattern RETRY_DELAY = Pattern.compile("retry(?:Delay\"?\\s*:\\s*\"|\\s+in\\s+)(\\d+(?:\\.\\d+)?)s");
+
     private final String modelName;
     private final Client client;
 
@@ -35,7 +46,17 @@ public class GeminiClient implements LLMClient {
             envModel = parentDotenv.get("GEMINI_MODEL");
         }
 
-        this.modelName = (envModel != null && !envModel.isEmpty()) ? envModel : "gemini-2.0-flash";
+        this.modelName = (envModel != null && !envModel.isEmpty()) ? envModel : DEFAULT_MODEL;
+    }
+
+    @Override
+    public String getModelName() {
+        return modelName;
+    }
+
+    @Override
+    public double getTemperature() {
+        return TEMPERATURE;
     }
 
     @Override
@@ -45,62 +66,113 @@ public class GeminiClient implements LLMClient {
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public LLMResponse chatWithTools(String systemPrompt, List<ConversationMessage> messages, List<Tool> tools) {
         try {
-            // Build conversation history
-            List<Content> history = messages.stream()
-                    .map(msg -> Content.builder()
-                            .role(msg.role().equals("assistant") ? "model" : "user")
-                            .parts(List.of(Part.builder().text(msg.content()).build()))
-                            .build())
-                    .collect(Collectors.toList());
-
-            // Configure tools
-            List<com.google.genai.types.Tool> sdkTools = new ArrayList<>();
-            if (!tools.isEmpty()) {
-                List<FunctionDeclaration> functionDeclarations = new ArrayList<>();
-                for (Tool tool : tools) {
-                    functionDeclarations.add(FunctionDeclaration.builder()
-                            .name(tool.getName())
-                            .description(tool.getDescription())
-                            .parameters(Schema.builder()
-                                    .type("OBJECT")
-                                    .properties(mapProperties(tool.getParametersSchema()))
-                                    .required((List<String>) tool.getParametersSchema().get("required"))
-                                    .build())
-                            .build());
-                }
+            // Execute request
+            GenerateContentResponse response = client.models.generateContent(
+                    modelName,
+                    buildHistory(messages),
+                    buildConfig(systemPrompt, tools));
 
-                sdkTools.add(com.google.genai.types.Tool.builder()
-                        .functionDeclarations(functionDeclarations)
-                        .build());
+            return parseResponse(response);
+
+        } catch (Exception e) {
+            // Retrying or falling back is up to the caller (see ResilientLLMClient)
+            throw callFailure("Failed to call Gemini API via SDK", e);
+        }
+    }
+
+    /**
+     * Stream the response with the SDK's streaming generate. Each chunk
+     * carries the text generated since the previous one; function calls
+     * arrive whole.
+     */
+    @Override
+    public LLMResponse chatWithToolsStream(String systemPrompt, List<ConversationMessage> messages,
+            List<Tool> tools, StreamListener listener) {
+        List<LLMResponse.ToolCall> toolCalls = new ArrayList<>();
+        StringBuilder textBuilder = new StringBuilder();
+
+        try (ResponseStream<GenerateContentResponse> stream = client.models.generateContentStream(
+                modelName,
+                buildHistory(messages),
+                buildConfig(systemPrompt, tools))) {
+            for (GenerateContentResponse chunk : stream) {
+                List<Candidate> candidates = chunk.candidates().orElse(Collections.emptyList());
+                if (candidates.isEmpty() || candidates.get(0).content().isEmpty())
+                    continue;
+                Content content = candidates.get(0).content().get();
+                if (content.parts().isEmpty())
+                    continue;
+
+                for (Part part : content.parts().get()) {
+                    if (part.text().isPresent() && !part.text().get().isEmpty()) {
+                        textBuilder.append(part.text().get());
+                        listener.onText(part.text().get());
+                    }
+                    if (part.functionCall().isPresent()) {
+                        LLMResponse.ToolCall toolCall = toToolCall(part.functionCall().get());
+                        toolCalls.add(toolCall);
+                        listener.onToolCall(toolCall);
+                    }
+                }
             }
+        } catch (Exception e) {
+            throw callFailure("Failed to stream from Gemini API via SDK", e);
+        }
 
-            // Configure generation config
-            GenerateContentConfig.Builder configBuilder = GenerateContentConfig.builder()
-                    .temperature(0.3f)
-                    .systemInstruction(Content.builder()
-                            .parts(List.of(Part.builder().text(systemPrompt).build()))
-                            .build());
+        if (!toolCalls.isEmpty()) {
+            return LLMResponse.withToolCalls(toolCalls);
+        }
+        if (textBuilder.isEmpty()) {
+            return LLMResponse.textOnly("No response generated.");
+        }
+        return LLMResponse.textOnly(textBuilder.toString());
+    }
 
-            if (!sdkTools.isEmpty()) {
-                configBuilder.tools(sdkTools);
+    private List<Content> buildHistory(List<ConversationMessage> messages) {
+        return messages.stream()
+                .map(msg -> Content.builder()
+                        .role(msg.role().equals("assistant") ? "model" : "user")
+                        .parts(List.of(Part.builder().text(msg.content()).build()))
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private GenerateContentConfig buildConfig(String systemPrompt, List<Tool> tools) {
+        // Configure tools
+        List<com.google.genai.types.Tool> sdkTools = new ArrayList<>();
+        if (!tools.isEmpty()) {
+            List<FunctionDeclaration> functionDeclarations = new ArrayList<>();
+            for (Tool tool : tools) {
+                functionDeclarations.add(FunctionDeclaration.builder()
+                        .name(tool.getName())
+                        .description(tool.getDescription())
+                        .parameters(Schema.builder()
+                                .type("OBJECT")
+                                .properties(mapProperties(tool.getParametersSchema()))
+                                .required((List<String>) tool.getParametersSchema().get("required"))
+                                .build())
+                        .build());
             }
 
-            // Execute request
-            GenerateContentResponse response = client.models.generateContent(
-                    modelName,
-                    history,
-                    configBuilder.build());
+            sdkTools.add(com.google.genai.types.Tool.builder()
+                    .functionDeclarations(functionDeclarations)
+                    .build());
+        }
 
-            return parseResponse(response);
+        // Configure generation config
+        GenerateContentConfig.Builder configBuilder = GenerateContentConfig.builder()
+                .temperature(TEMPERATURE)
+                .systemInstruction(Content.builder()
+                        .parts(List.of(Part.builder().text(systemPrompt).build()))
+                        .build());
 
-        } catch (Exception e) {
-            e.printStackTrace();
-            // If the default model fails, maybe try another fallback or just report error
-            throw new RuntimeException("Failed to call Gemini API via SDK (" + modelName + ")", e);
+        if (!sdkTools.isEmpty()) {
+            configBuilder.tools(sdkTools);
         }
+        return configBuilder.build();
     }
 
     @SuppressWarnings("unchecked")
@@ -120,6 +192,36 @@ public class GeminiClient implements LLMClient {
         return properties;
     }
 
+    /**
+     * Describe a failed call: HTTP status and retry hint of API errors,
+     * retryable for network errors.
+     */
+    private LLMCallException callFailure(String action, Exception e) {
+        if (e instanceof ApiException api) {
+            String message = action + " (" + modelName + "): " + api.code() + " " + api.status() + " "
+                    + api.message();
+            System.err.println("[GeminiClient] " + message);
+            return new LLMCallException(message, api.code(), retryDelay(api.message()), e);
+        }
+
+        boolean network = false;
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            network |= cause instanceof IOException;
+        }
+        String message = action + " (" + modelName + "): " + e;
+        System.err.println("[GeminiClient] " + message);
+        return new LLMCallException(message, LLMCallException.UNKNOWN_STATUS, network, null, e);
+    }
+
+    private static Duration retryDelay(String message) {
+        if (message == null)
+            return null;
+        Matcher matcher = RETRY_DELAY.matcher(message);
+        if (!matcher.find())
+            return null;
+        return Duration.ofMillis((long) (Double.parseDouble(matcher.group(1)) * 1000));
+    }
+
     private LLMResponse parseResponse(GenerateContentResponse response) {
         List<Candidate> candidates = response.candidates().orElse(Collections.emptyList());
         if (candidates.isEmpty()) {
@@ -139,13 +241,7 @@ public class GeminiClient implements LLMClient {
                 }
 
                 if (part.functionCall().isPresent()) {
-                    FunctionCall call = part.functionCall().get();
-                    Map<String, Object> args = call.args().orElse(Collections.emptyMap());
-                    Map<String, String> stringArgs = new HashMap<>();
-                    if (args != null) {
-                        args.forEach((k, v) -> stringArgs.put(k, String.valueOf(v)));
-                    }
-                    toolCalls.add(new LLMResponse.ToolCall(call.name().orElse("unknown_tool"), stringArgs));
+                    toolCalls.add(toToolCall(part.functionCall().get()));
                 }
             }
         }
@@ -156,4 +252,13 @@ public class GeminiClient implements LLMClient {
 
         return LLMResponse.textOnly(textBuilder.toString());
     }
+
+    private LLMResponse.ToolCall toToolCall(FunctionCall call) {
+        Map<String, Object> args = call.args().orElse(Collections.emptyMap());
+        Map<String, String> stringArgs = new HashMap<>();
+        if (args != null) {
+            args.forEach((k, v) -> stringArgs.put(k, String.valueOf(v)));
+        }
+        return new LLMResponse.ToolCall(call.name().orElse("unknown_tool"), stringArgs);
+    }
 }
@@ -0,0 +1,60 @@
+package org.example.llm;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Failure of an LLM call, with what a caller needs to decide whether to
+ * retry it.
+ */
+public class LLMCallException extends RuntimeException {
+
+    /** Status of failures that got no HTTP response (network errors...) */
+    public static final int UNKNOWN_STATUS = -1;
+
+    private final int statusCode;
+    private final boolean retryable;
+    private final Duration retryAfter;
+
+    /**
+     * Create an exception that is retryable for timeouts (408), rate limits
+     * (429), server errors (5xx), and I/O errors without a status.
+     *
+     * @param retryAfter Delay the server asked to wait before retrying, or null
+     */
+    public LLMCallException(String message, int statusCode, Duration retryAfter, Throwable cause) {
+        this(message, statusCode,
+                statusCode == 408 || statusCode == 429 || statusCode >= 500
+                        || (statusCode == UNKNOWN_STATUS && cause instanceof IOException),
+                retryAfter, cause);
+    }
+
+    public LLMCallException(String message, int statusCode, boolean retryable, Duration retryAfter,
+            Throwable cause) {
+        super(message, cause);
+        this.statusCode = statusCode;
+        this.retryable = retryable;
+        this.retryAfter = retryAfter;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * Check whether the same call may succeed if sent again (transient
+     * failure).
+     */
+    public boolean isRetryable() {
+        return retryable;
+    }
+
+    /**
+     * Get the delay the server asked to wait before retrying.
+     *
+     * @return The delay, or null if the server gave none
+     */
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -3,6 +3,7 @@ package org.example.llm;
 import org.example.model.ConversationMessage;
 import org.example.tools.Tool;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Interface for LLM client implementations.
@@ -26,4 +27,66 @@ public interface LLMClient {
      * @return The LLM response, potentially with tool calls
      */
     LLMResponse chatWithTools(String systemPrompt, List<ConversationMessage> messages, List<Tool> tools);
+
+    /**
+     * Generate a response without blocking the caller. The request runs on a
+     * virtual thread; cancelling the future interrupts it.
+     */
+    default CompletableFuture<String> chatAsync(String systemPrompt, List<ConversationMessage> messages) {
+        return AsyncCalls.supplyAsync("llm-chat", () -> chat(systemPrompt, messages));
+    }
+
+    /**
+     * Generate a response with tool calling support without blocking the
+     * caller. The request runs on a virtual thread; cancelling the future
+     * interrupts it.
+     */
+    default CompletableFuture<LLMResponse> chatWithToolsAsync(String systemPrompt,
+            List<ConversationMessage> messages, List<Tool> tools) {
+        return AsyncCalls.supplyAsync("llm-chat", () -> chatWithTools(systemPrompt, messages, tools));
+    }
+
+    /**
+     * Get the name of the model answering requests (part of the response
+     * cache key, see {@link CachingLLMClient}).
+     */
+    default String getModelName() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * Get the sampling temperature used for requests.
+     */
+    default double getTemperature() {
+        return 0;
+    }
+
+    /**
+     * Generate a response, delivering the text as it is generated.
+     *
+     * @param listener Receives the text deltas
+     * @return The complete response text
+     */
+    default String chatStream(String systemPrompt, List<ConversationMessage> messages, StreamListener listener) {
+        return chatWithToolsStream(systemPrompt, messages, List.of(), listener).text();
+    }
+
+    /**
+     * Generate a response with tool calling support, delivering text deltas
+     * and completed tool calls as they are generated. Clients without
+     * streaming deliver the whole response at once.
+     *
+     * @param listener Receives the text deltas and tool calls
+     * @return The complete LLM response
+     */
+    default LLMResponse chatWithToolsStream(String systemPrompt, List<ConversationMessage> messages,
+            List<Tool> tools, StreamListener listener) {
+        LLMResponse response = chatWithTools(systemPrompt, messages, tools);
+        if (response.hasToolCalls()) {
+            response.toolCalls().forEach(listener::onToolCall);
+        } else if (response.text() != null && !response.text().isEmpty()) {
+            listener.onText(response.text());
+        }
+        return response;
+    }
 }
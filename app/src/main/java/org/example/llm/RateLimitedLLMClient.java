@@ -0,0 +1,442 @@
+package org.example.llm;
+
+import org.example.model.ConversationMessage;
+import org.example.tools.Tool;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * LLM client decorator keeping calls within the provider's quotas.
+ *
+ * A call is admitted when a request (RPM bucket), its estimated tokens (TPM
+ * bucket) and a concurrency slot are all available; otherwise it waits in
+ * its session's queue. Sessions are served round-robin, so one busy
+ * conversation cannot starve the others, and calls are admitted in order
+ * (a large call is not overtaken forever by small ones). A call that cannot
+ * be admitted within the maximum wait fails with a non-retryable
+ * {@link LLMCallException} (429).
+ *
+ * Tokens are estimated from the prompt length plus an expected output; the
+ * estimate is corrected from the response once the call completes.
+ *
+ * Calls made on this client belong to a default session; use
+ * {@link #forSession(String)} to get the view of a given session.
+ *
+ * Place a {@link ResilientLLMClient} below this client, not above, and give
+ * it this client as its {@link AttemptQuota}: its retries and hedges then
+ * run within the concurrency slot of the admitted call, time spent in the
+ * queue is not mistaken for a slow backend to hedge, and every request sent
+ * to the provider is still charged to the quotas. Retries wait for quota
+ * ahead of queued calls; a hedge is sent only if quota is available at once
+ * and no call is queued.
+ */
+public class RateLimitedLLMClient implements LLMClient, AttemptQuota {
+
+    public static final String DEFAULT_SESSION = "default";
+
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int WAIT_WINDOW = 1000;
+
+    private final LLMClient delegate;
+    private final RateLimits limits;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // Signalled whenever a call may have become admissible
+    private final Condition changed = lock.newCondition();
+
+    // Everything below is guarded by lock
+    private final TokenBucket requests;
+    private final TokenBucket tokens;
+    private final Map<String, ArrayDeque<Waiter>> queues = new HashMap<>();
+    private final ArrayDeque<String> sessionOrder = new ArrayDeque<>();
+    private int queued = 0;
+    private int retriesWaiting = 0;
+    private int maxQueued = 0;
+    private int inFlight = 0;
+    private long admitted = 0;
+    private long rejected = 0;
+    private long extraAttempts = 0;
+    private long hedgesDenied = 0;
+    private long totalWaitNanos = 0;
+    private final long[] waits = new long[WAIT_WINDOW];
+    private int waitCount = 0;
+    private int waitNext = 0;
+
+    public RateLimitedLLMClient(LLMClient delegate) {
+        this(delegate, RateLimits.defaults());
+    }
+
+    public RateLimitedLLMClient(LLMClient delegate, RateLimits limits) {
+        this.delegate = delegate;
+        this.limits = limits;
+        long now = System.nanoTime();
+        this.requests = new TokenBucket(limits.requestsPerMinute(), now);
+        this.tokens = new TokenBucket(limits.tokensPerMinute(), now);
+    }
+
+    /**
+     * Get a client whose calls are queued as those of the given session,
+     * sharing this client's quotas.
+     */
+    public LLMClient forSession(String sessionId) {
+        return new SessionClient(sessionId);
+    }
+
+    @Override
+    public String chat(String systemPrompt, List<ConversationMessage> messages) {
+        return chatWithTools(systemPrompt, messages, List.of()).text();
+    }
+
+    @Override
+    public LLMResponse chatWithTools(String systemPrompt, List<ConversationMessage> messages, List<Tool> tools) {
+        return call(DEFAULT_SESSION, estimateTokens(systemPrompt, messages, tools),
+                () -> delegate.chatWithTools(systemPrompt, messages, tools));
+    }
+
+    @Override
+    public LLMResponse chatWithToolsStream(String systemPrompt, List<ConversationMessage> messages,
+            List<Tool> tools, StreamListener listener) {
+        return call(DEFAULT_SESSION, estimateTokens(systemPrompt, messages, tools),
+                () -> delegate.chatWithToolsStream(systemPrompt, messages, tools, listener));
+    }
+
+    @Override
+    public String getModelName() {
+        return delegate.getModelName();
+    }
+
+    @Override
+    public double getTemperature() {
+        return delegate.getTemperature();
+    }
+
+    private LLMResponse call(String session, long estimate, Supplier<LLMResponse> call) {
+        acquire(session, estimate);
+        LLMResponse response = null;
+        try {
+            response = call.get();
+            return response;
+        } finally {
+            release(estimate, response);
+        }
+    }
+
+    @Override
+    public void acquire(String systemPrompt, List<ConversationMessage> messages, List<Tool> tools) {
+        long estimate = estimateTokens(systemPrompt, messages, tools);
+        long deadline = System.nanoTime() + limits.maxWait().toNanos();
+        lock.lock();
+        try {
+            // Admitted calls' retries go before the calls still queued
+            retriesWaiting++;
+            try {
+                while (true) {
+                    long now = System.nanoTime();
+                    long wait = Math.max(requests.nanosUntil(1, now), tokens.nanosUntil(estimate, now));
+                    if (wait == 0) {
+                        requests.take(1, now);
+                        tokens.take(estimate, now);
+                        extraAttempts++;
+                        return;
+                    }
+                    long remaining = deadline - now;
+                    if (remaining <= 0) {
+                        rejected++;
+                        throw new LLMCallException("Rate limit: retry not admitted within "
+                                + limits.maxWait().toMillis() + "ms", 429, false, null, null);
+                    }
+                    changed.awaitNanos(Math.min(remaining, wait));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LLMCallException("Interrupted while waiting for the rate limiter",
+                        LLMCallException.UNKNOWN_STATUS, false, null, e);
+            } finally {
+                retriesWaiting--;
+                // Queued calls held back meanwhile wait for a signal to time the refill
+                dispatch(System.nanoTime());
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public boolean tryAcquire(String systemPrompt, List<ConversationMessage> messages, List<Tool> tools) {
+        long estimate = estimateTokens(systemPrompt, messages, tools);
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            if (queued > 0 || retriesWaiting > 0 || requests.nanosUntil(1, now) > 0
+                    || tokens.nanosUntil(estimate, now) > 0) {
+                hedgesDenied++;
+                return false;
+            }
+            requests.take(1, now);
+            tokens.take(estimate, now);
+            extraAttempts++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until the call is admitted, or fail once the maximum wait is over.
+     */
+    private void acquire(String session, long estimate) {
+        long start = System.nanoTime();
+        long deadline = start + limits.maxWait().toNanos();
+        lock.lock();
+        try {
+            Waiter waiter = new Waiter(estimate);
+            queues.computeIfAbsent(session, s -> {
+                sessionOrder.addLast(s);
+                return new ArrayDeque<>();
+            }).addLast(waiter);
+            queued++;
+            maxQueued = Math.max(maxQueued, queued);
+
+            while (true) {
+                long now = System.nanoTime();
+                long refillNanos = dispatch(now);
+                if (waiter.admitted) {
+                    recordWait(now - start);
+                    return;
+                }
+                long remaining = deadline - now;
+                if (remaining <= 0) {
+                    remove(session, waiter);
+                    rejected++;
+                    throw new LLMCallException("Rate limit: call not admitted within "
+                            + limits.maxWait().toMillis() + "ms (" + queued + " calls queued)", 429, false, null,
+                            null);
+                }
+                try {
+                    changed.awaitNanos(Math.min(remaining, refillNanos));
+                } catch (InterruptedException e) {
+                    if (waiter.admitted) {
+                        inFlight--;
+                        tokens.adjust(estimate);
+                        dispatch(System.nanoTime());
+                        changed.signalAll();
+                    } else {
+                        remove(session, waiter);
+                    }
+                    Thread.currentThread().interrupt();
+                    throw new LLMCallException("Interrupted while waiting for the rate limiter",
+                            LLMCallException.UNKNOWN_STATUS, false, null, e);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Admit the calls at the head of the round-robin while quotas allow.
+     *
+     * @return Time until the next call can be admitted by the buckets
+     *         refilling, or Long.MAX_VALUE if it waits for a call to finish
+     */
+    private long dispatch(long now) {
+        boolean admittedAny = false;
+        long refillNanos = Long.MAX_VALUE;
+        while (!sessionOrder.isEmpty() && retriesWaiting == 0) {
+            if (limits.maxConcurrent() > 0 && inFlight >= limits.maxConcurrent())
+                break;
+            String session = sessionOrder.peekFirst();
+            ArrayDeque<Waiter> queue = queues.get(session);
+            Waiter head = queue.peekFirst();
+            long wait = Math.max(requests.nanosUntil(1, now), tokens.nanosUntil(head.estimate, now));
+            if (wait > 0) {
+                refillNanos = wait;
+                break;
+            }
+
+            requests.take(1, now);
+            tokens.take(head.estimate, now);
+            queue.removeFirst();
+            queued--;
+            inFlight++;
+            admitted++;
+            head.admitted = true;
+            admittedAny = true;
+
+            // Next session's turn
+            sessionOrder.removeFirst();
+            if (queue.isEmpty()) {
+                queues.remove(session);
+            } else {
+                sessionOrder.addLast(session);
+            }
+        }
+        if (admittedAny)
+            changed.signalAll();
+        return refillNanos;
+    }
+
+    private void remove(String session, Waiter waiter) {
+        ArrayDeque<Waiter> queue = queues.get(session);
+        if (queue != null && queue.remove(waiter)) {
+            queued--;
+            if (queue.isEmpty()) {
+                queues.remove(session);
+                sessionOrder.remove(session);
+            }
+        }
+        // The next call may fit where this one did not
+        dispatch(System.nanoTime());
+        changed.signalAll();
+    }
+
+    /**
+     * Free the concurrency slot and correct the token estimate.
+     */
+    private void release(long estimate, LLMResponse response) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (response != null) {
+                tokens.adjust(estimate - (inputTokens(estimate) + outputTokens(response)));
+            }
+            // Wake every waiter, to admit them or let them time the refill
+            dispatch(System.nanoTime());
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long estimateTokens(String systemPrompt, List<ConversationMessage> messages, List<Tool> tools) {
+        long chars = systemPrompt != null ? systemPrompt.length() : 0;
+        for (ConversationMessage message : messages) {
+            chars += message.content() != null ? message.content().length() : 0;
+        }
+        for (Tool tool : tools) {
+            chars += tool.getName().length() + tool.getDescription().length()
+                    + String.valueOf(tool.getParametersSchema()).length();
+        }
+        return chars / CHARS_PER_TOKEN + limits.expectedOutputTokens();
+    }
+
+    private long inputTokens(long estimate) {
+        return estimate - limits.expectedOutputTokens();
+    }
+
+    private static long outputTokens(LLMResponse response) {
+        long chars = response.text() != null ? response.text().length() : 0;
+        for (LLMResponse.ToolCall toolCall : response.toolCalls()) {
+            chars += toolCall.name().length() + String.valueOf(toolCall.arguments()).length();
+        }
+        return chars / CHARS_PER_TOKEN;
+    }
+
+    private void recordWait(long nanos) {
+        totalWaitNanos += nanos;
+        waits[waitNext] = nanos;
+        waitNext = (waitNext + 1) % WAIT_WINDOW;
+        waitCount = Math.min(WAIT_WINDOW, waitCount + 1);
+    }
+
+    /**
+     * Get rate limiting statistics for capacity planning: queue depth, calls
+     * in flight, admissions, rejections, retries and hedges charged, and
+     * queue wait times.
+     */
+    public Map<String, Object> getStats() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("queue_depth", queued);
+            stats.put("max_queue_depth", maxQueued);
+            stats.put("in_flight", inFlight);
+            stats.put("admitted", admitted);
+            stats.put("rejected", rejected);
+            stats.put("extra_attempts", extraAttempts);
+            stats.put("hedges_denied", hedgesDenied);
+            stats.put("avg_wait_ms", admitted > 0 ? totalWaitNanos / 1e6 / admitted : 0.0);
+            long[] sorted = Arrays.copyOf(waits, waitCount);
+            Arrays.sort(sorted);
+            stats.put("p50_wait_ms", percentile(sorted, 0.50));
+            stats.put("p99_wait_ms", percentile(sorted, 0.99));
+            stats.put("requests_available", requests.available(now));
+            stats.put("tokens_available", tokens.available(now));
+            Map<String, Integer> sessionDepths = new LinkedHashMap<>();
+            sessionOrder.forEach(s -> sessionDepths.put(s, queues.get(s).size()));
+            stats.put("session_queue_depths", sessionDepths);
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0)
+            return 0;
+        return TimeUnit.NANOSECONDS.toMicros(sorted[(int) Math.ceil(p * sorted.length) - 1]) / 1000.0;
+    }
+
+    /**
+     * A call waiting to be admitted.
+     */
+    private static class Waiter {
+        final long estimate;
+        boolean admitted = false;
+
+        Waiter(long estimate) {
+            this.estimate = estimate;
+        }
+    }
+
+    /**
+     * View of the client whose calls are queued under a session.
+     */
+    private class SessionClient implements LLMClient {
+        private final String sessionId;
+
+        SessionClient(String sessionId) {
+            this.sessionId = sessionId;
+        }
+
+        @Override
+        public String chat(String systemPrompt, List<ConversationMessage> messages) {
+            return chatWithTools(systemPrompt, messages, List.of()).text();
+        }
+
+        @Override
+        public LLMResponse chatWithTools(String systemPrompt, List<ConversationMessage> messages,
+                List<Tool> tools) {
+            return call(sessionId, estimateTokens(systemPrompt, messages, tools),
+                    () -> delegate.chatWithTools(systemPrompt, messages, tools));
+        }
+
+        @Override
+        public LLMResponse chatWithToolsStream(String systemPrompt, List<ConversationMessage> messages,
+                List<Tool> tools, StreamListener listener) {
+            return call(sessionId, estimateTokens(systemPrompt, messages, tools),
+                    () -> delegate.chatWithToolsStream(systemPrompt, messages, tools, listener));
+        }
+
+        @Override
+        public String getModelName() {
+            return delegate.getModelName();
+        }
+
+        @Override
+        public double getTemperature() {
+            return delegate.getTemperature();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package org.example.llm;
+
+import java.time.Duration;
+
+/**
+ * Settings of {@link RateLimitedLLMClient}. A limit of 0 or less disables it.
+ *
+ * @param requestsPerMinute    Requests admitted per minute (RPM quota)
+ * @param tokensPerMinute      Estimated input + output tokens admitted per minute (TPM quota)
+ * @param maxConcurrent        Calls in flight at once
+ * @param maxWait              Longest a call waits in the queue before failing
+ * @param expectedOutputTokens Output tokens reserved per call until its response is known
+ */
+public record RateLimits(int requestsPerMinute, long tokensPerMinute, int maxConcurrent, Duration maxWait,
+        int expectedOutputTokens) {
+
+    /**
+     * The free-tier quota of gemini-2.0-flash (15 RPM, 1M TPM), 4 calls in
+     * flight, 30s maximum wait.
+     */
+    public static RateLimits defaults() {
+        return new RateLimits(15, 1_000_000, 4, Duration.ofSeconds(30), 500);
+    }
+
+    public RateLimits withQuota(int requestsPerMinute, long tokensPerMinute) {
+        return new RateLimits(requestsPerMinute, tokensPerMinute, maxConcurrent, maxWait, expectedOutputTokens);
+    }
+
+    public RateLimits withConcurrency(int maxConcurrent, Duration maxWait) {
+        return new RateLimits(requestsPerMinute, tokensPerMinute, maxConcurrent, maxWait, expectedOutputTokens);
+    }
+}
@@ -0,0 +1,44 @@
+package org.example.llm;
+
+import java.time.Duration;
+
+/**
+ * Settings of {@link ResilientLLMClient}.
+ *
+ * @param maxAttempts       Attempts per call, first one included
+ * @param baseBackoff       Backoff ceiling after the first failure, doubled after each
+ * @param maxBackoff        Highest backoff; a server asking to wait longer is not retried
+ * @param hedgePercentile   Latency percentile (0-1) after which an idempotent
+ *                          call is duplicated, or 0 to never hedge
+ * @param initialHedgeDelay Hedge delay until enough latencies are observed
+ * @param failureThreshold  Consecutive failures that open the circuit
+ * @param openDuration      How long the circuit stays open before a trial call
+ */
+public record ResiliencePolicy(int maxAttempts, Duration baseBackoff, Duration maxBackoff, double hedgePercentile,
+        Duration initialHedgeDelay, int failureThreshold, Duration openDuration) {
+
+    /**
+     * The default policy: 4 attempts from 200ms backoff up to 10s, hedging
+     * at p95 (3s before enough samples), circuit opened for 30s after 5
+     * consecutive failures.
+     */
+    public static ResiliencePolicy defaults() {
+        return new ResiliencePolicy(4, Duration.ofMillis(200), Duration.ofSeconds(10), 0.95,
+                Duration.ofSeconds(3), 5, Duration.ofSeconds(30));
+    }
+
+    public ResiliencePolicy withRetries(int maxAttempts, Duration baseBackoff, Duration maxBackoff) {
+        return new ResiliencePolicy(maxAttempts, baseBackoff, maxBackoff, hedgePercentile, initialHedgeDelay,
+                failureThreshold, openDuration);
+    }
+
+    public ResiliencePolicy withHedging(double percentile, Duration initialDelay) {
+        return new ResiliencePolicy(maxAttempts, baseBackoff, maxBackoff, percentile, initialDelay,
+                failureThreshold, openDuration);
+    }
+
+    public ResiliencePolicy withCircuitBreaker(int failureThreshold, Duration openDuration) {
+        return new ResiliencePolicy(maxAttempts, baseBackoff, maxBackoff, hedgePercentile, initialHedgeDelay,
+                failureThreshold, openDuration);
+    }
+}
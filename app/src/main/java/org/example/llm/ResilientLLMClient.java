@@ -0,0 +1,394 @@
+package org.example.llm;
+
+import org.example.model.ConversationMessage;
+import org.example.tools.Tool;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * LLM client decorator handling transient failures and slow outliers.
+ *
+ * - Retry: a retryable {@link LLMCallException} (429, 5xx, network error) is
+ * retried with full-jitter exponential backoff, waiting at least the delay
+ * the server asked for. A server asking to wait longer than the maximum
+ * backoff is not retried.
+ * - Hedging: if a call has not answered after the configured percentile of
+ * recent latencies, a duplicate is sent and the first answer wins; the other
+ * one is cancelled. Only calls whose tools are all idempotent (e.g., routing)
+ * are hedged. Calls without tools and tool rounds take different times, so
+ * each kind has its own window of recent latencies.
+ * - Circuit breaking: after consecutive retryable failures, calls fail fast
+ * for a while, then a single trial call decides whether to close the circuit
+ * again. Client errors (4xx) do not count, the backend is not at fault.
+ *
+ * A streamed call is retried only if nothing was delivered to the listener
+ * yet, and is never hedged.
+ *
+ * Below a {@link RateLimitedLLMClient}, set it as the
+ * {@link #setAttemptQuota attempt quota} so that retries and hedges are
+ * charged to the provider's quota like the first request of a call.
+ */
+public class ResilientLLMClient implements LLMClient {
+
+    public enum CircuitState {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final int LATENCY_WINDOW = 200;
+    // Latencies observed before the hedge delay follows the percentile
+    private static final int MIN_LATENCY_SAMPLES = 20;
+
+    private final LLMClient delegate;
+    private final ResiliencePolicy policy;
+    private volatile AttemptQuota attemptQuota;
+
+    // Recent latencies of hedgeable calls, by kind; streamed calls are never hedged and not recorded
+    private final LatencyWindow plainLatencies = new LatencyWindow();
+    private final LatencyWindow toolLatencies = new LatencyWindow();
+
+    // Circuit breaker, guarded by this
+    private CircuitState state = CircuitState.CLOSED;
+    private int consecutiveFailures = 0;
+    private long openedAtNanos;
+    private boolean trialInFlight = false;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong hedges = new AtomicLong();
+    private final AtomicLong hedgeWins = new AtomicLong();
+    private final AtomicLong hedgesSkipped = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong circuitOpenings = new AtomicLong();
+
+    public ResilientLLMClient(LLMClient delegate) {
+        this(delegate, ResiliencePolicy.defaults());
+    }
+
+    public ResilientLLMClient(LLMClient delegate, ResiliencePolicy policy) {
+        this.delegate = delegate;
+        this.policy = policy;
+    }
+
+    /**
+     * Charge retries and hedges to a quota (e.g., the rate limiter above this
+     * client); null sends them freely.
+     */
+    public void setAttemptQuota(AttemptQuota attemptQuota) {
+        this.attemptQuota = attemptQuota;
+    }
+
+    @Override
+    public String chat(String systemPrompt, List<ConversationMessage> messages) {
+        return chatWithTools(systemPrompt, messages, List.of()).text();
+    }
+
+    @Override
+    public LLMResponse chatWithTools(String systemPrompt, List<ConversationMessage> messages, List<Tool> tools) {
+        boolean hedged = policy.hedgePercentile() > 0 && tools.stream().allMatch(Tool::isIdempotent);
+        LatencyWindow window = !hedged ? null : tools.isEmpty() ? plainLatencies : toolLatencies;
+        return execute(() -> delegate.chatWithTools(systemPrompt, messages, tools), window, () -> true,
+                new Request(systemPrompt, messages, tools));
+    }
+
+    @Override
+    public LLMResponse chatWithToolsStream(String systemPrompt, List<ConversationMessage> messages,
+            List<Tool> tools, StreamListener listener) {
+        AtomicInteger delivered = new AtomicInteger();
+        StreamListener counting = new StreamListener() {
+            @Override
+            public void onText(String delta) {
+                delivered.incrementAndGet();
+                listener.onText(delta);
+            }
+
+            @Override
+            public void onToolCall(LLMResponse.ToolCall toolCall) {
+                delivered.incrementAndGet();
+                listener.onToolCall(toolCall);
+            }
+        };
+        // The listener cannot take back what it already received
+        return execute(() -> delegate.chatWithToolsStream(systemPrompt, messages, tools, counting), null,
+                () -> delivered.get() == 0, new Request(systemPrompt, messages, tools));
+    }
+
+    @Override
+    public String getModelName() {
+        return delegate.getModelName();
+    }
+
+    @Override
+    public double getTemperature() {
+        return delegate.getTemperature();
+    }
+
+    /**
+     * @param window    Latencies of the call's kind, or null if it is not hedged
+     * @param retryable Whether the call may still be sent again after a failure
+     * @param request   The call's arguments, to charge retries and hedges to the quota
+     */
+    private LLMResponse execute(Supplier<LLMResponse> call, LatencyWindow window, Supplier<Boolean> retryable,
+            Request request) {
+        calls.incrementAndGet();
+        for (int attempt = 1;; attempt++) {
+            AttemptQuota quota = attemptQuota;
+            if (attempt > 1 && quota != null) {
+                quota.acquire(request.systemPrompt(), request.messages(), request.tools());
+            }
+            acquirePermit();
+            LLMCallException failure;
+            try {
+                TimedResponse timed = window != null ? callHedged(call, window, request) : timed(call).get();
+                recordSuccess(window, timed.nanos());
+                return timed.response();
+            } catch (LLMCallException e) {
+                recordFailure(e.isRetryable());
+                failure = e;
+            } catch (RuntimeException e) {
+                // Not an API failure (e.g., a bug in the caller): never retried
+                recordFailure(false);
+                throw e;
+            }
+
+            failures.incrementAndGet();
+            Duration retryAfter = failure.getRetryAfter();
+            if (!failure.isRetryable() || attempt >= policy.maxAttempts() || !retryable.get()
+                    || (retryAfter != null && retryAfter.compareTo(policy.maxBackoff()) > 0))
+                throw failure;
+
+            Duration backoff = backoff(attempt, retryAfter);
+            System.err.println("[ResilientLLMClient] Attempt " + attempt + " failed (" + failure.getStatusCode()
+                    + "), retrying in " + backoff.toMillis() + "ms");
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new LLMCallException("Interrupted while waiting to retry", failure.getStatusCode(), false,
+                        null, failure);
+            }
+            retries.incrementAndGet();
+        }
+    }
+
+    /**
+     * Send the call, and a duplicate if it is slower than the hedge delay;
+     * return the first answer, timed from the start of the request that gave
+     * it. Fails only if both fail.
+     */
+    private TimedResponse callHedged(Supplier<LLMResponse> call, LatencyWindow window, Request request) {
+        CompletableFuture<TimedResponse> primary = AsyncCalls.supplyAsync("llm-call", timed(call));
+        CompletableFuture<TimedResponse> hedge = null;
+        try {
+            try {
+                return primary.get(hedgeDelay(window).toNanos(), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // Slow outlier: race a duplicate against it, if the quota allows one more request
+            }
+            AttemptQuota quota = attemptQuota;
+            if (quota != null && !quota.tryAcquire(request.systemPrompt(), request.messages(), request.tools())) {
+                hedgesSkipped.incrementAndGet();
+                return primary.get();
+            }
+            hedges.incrementAndGet();
+            hedge = AsyncCalls.supplyAsync("llm-hedge", timed(call));
+
+            CompletableFuture<TimedResponse> first = new CompletableFuture<>();
+            AtomicBoolean answered = new AtomicBoolean();
+            AtomicInteger failed = new AtomicInteger();
+            CompletableFuture<TimedResponse> duplicate = hedge;
+            primary.whenComplete((response, error) -> settle(first, response, error, answered, failed, false));
+            duplicate.whenComplete((response, error) -> settle(first, response, error, answered, failed, true));
+            return first.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause)
+                throw cause;
+            throw new LLMCallException("LLM call failed", LLMCallException.UNKNOWN_STATUS, false, null, e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LLMCallException("Interrupted", LLMCallException.UNKNOWN_STATUS, false, null, e);
+        } finally {
+            // Cancel whichever is still running
+            primary.cancel(true);
+            if (hedge != null)
+                hedge.cancel(true);
+        }
+    }
+
+    private void settle(CompletableFuture<TimedResponse> first, TimedResponse response, Throwable error,
+            AtomicBoolean answered, AtomicInteger failed, boolean isHedge) {
+        if (error instanceof CancellationException)
+            return;
+        if (error == null) {
+            // Counted before completing, so the caller sees the count once it has the answer
+            if (answered.compareAndSet(false, true)) {
+                if (isHedge)
+                    hedgeWins.incrementAndGet();
+                first.complete(response);
+            }
+        } else if (failed.incrementAndGet() == 2) {
+            first.completeExceptionally(error);
+        }
+    }
+
+    private static Supplier<TimedResponse> timed(Supplier<LLMResponse> call) {
+        return () -> {
+            long start = System.nanoTime();
+            LLMResponse response = call.get();
+            return new TimedResponse(response, System.nanoTime() - start);
+        };
+    }
+
+    /**
+     * Delay after which a call is hedged: the policy percentile of recent
+     * latencies of its kind, or the initial delay until enough are observed.
+     */
+    private Duration hedgeDelay(LatencyWindow window) {
+        long[] sorted = window.snapshot();
+        if (sorted.length < MIN_LATENCY_SAMPLES)
+            return policy.initialHedgeDelay();
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(policy.hedgePercentile() * sorted.length) - 1;
+        return Duration.ofNanos(sorted[Math.max(0, Math.min(sorted.length - 1, index))]);
+    }
+
+    /**
+     * Full jitter: uniform in [0, min(max, base * 2^(attempt - 1))], but never
+     * less than the server's retry-after hint.
+     */
+    private Duration backoff(int attempt, Duration retryAfter) {
+        long ceiling = policy.baseBackoff().toMillis() << Math.min(attempt - 1, 20);
+        ceiling = Math.min(policy.maxBackoff().toMillis(), ceiling);
+        long millis = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        if (retryAfter != null) {
+            millis = Math.max(millis, retryAfter.toMillis());
+        }
+        return Duration.ofMillis(millis);
+    }
+
+    /**
+     * Let a call through, or fail fast while the circuit is open.
+     */
+    private synchronized void acquirePermit() {
+        if (state == CircuitState.OPEN) {
+            long remaining = policy.openDuration().toNanos() - (System.nanoTime() - openedAtNanos);
+            if (remaining > 0) {
+                rejected.incrementAndGet();
+                throw new LLMCallException("Circuit open: LLM backend unhealthy, retry in "
+                        + TimeUnit.NANOSECONDS.toMillis(remaining) + "ms", 503, false, Duration.ofNanos(remaining),
+                        null);
+            }
+            state = CircuitState.HALF_OPEN;
+        }
+        if (state == CircuitState.HALF_OPEN) {
+            if (trialInFlight) {
+                rejected.incrementAndGet();
+                throw new LLMCallException("Circuit half-open: waiting for the trial call", 503, false, null, null);
+            }
+            trialInFlight = true;
+        }
+    }
+
+    /**
+     * @param window Latencies of the call's kind, or null to not record it
+     */
+    private void recordSuccess(LatencyWindow window, long nanos) {
+        if (window != null) {
+            window.record(nanos);
+        }
+        synchronized (this) {
+            if (state != CircuitState.CLOSED) {
+                System.err.println("[ResilientLLMClient] Circuit closed");
+            }
+            state = CircuitState.CLOSED;
+            consecutiveFailures = 0;
+            trialInFlight = false;
+        }
+    }
+
+    /**
+     * @param backendFault Whether the failure says the backend is unhealthy
+     */
+    private synchronized void recordFailure(boolean backendFault) {
+        boolean trial = state == CircuitState.HALF_OPEN;
+        trialInFlight = false;
+        if (!backendFault)
+            return;
+        consecutiveFailures++;
+        if (trial || (state == CircuitState.CLOSED && consecutiveFailures >= policy.failureThreshold())) {
+            state = CircuitState.OPEN;
+            openedAtNanos = System.nanoTime();
+            circuitOpenings.incrementAndGet();
+            System.err.println("[ResilientLLMClient] Circuit opened after " + consecutiveFailures
+                    + " consecutive failures, failing fast for " + policy.openDuration().toMillis() + "ms");
+        }
+    }
+
+    public synchronized CircuitState getCircuitState() {
+        return state;
+    }
+
+    /**
+     * Get resilience statistics for debugging.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("calls", calls.get());
+        stats.put("failed_attempts", failures.get());
+        stats.put("retries", retries.get());
+        stats.put("hedges", hedges.get());
+        stats.put("hedge_wins", hedgeWins.get());
+        stats.put("hedges_skipped", hedgesSkipped.get());
+        stats.put("rejected", rejected.get());
+        stats.put("circuit_openings", circuitOpenings.get());
+        stats.put("circuit_state", getCircuitState().name());
+        stats.put("hedge_delay_ms", hedgeDelay(plainLatencies).toMillis());
+        stats.put("tool_hedge_delay_ms", hedgeDelay(toolLatencies).toMillis());
+        return stats;
+    }
+
+    /**
+     * Ring buffer of recent successful latencies of one kind of call.
+     */
+    private static final class LatencyWindow {
+        private final long[] latencies = new long[LATENCY_WINDOW];
+        private int count = 0;
+        private int next = 0;
+
+        synchronized void record(long nanos) {
+            latencies[next] = nanos;
+            next = (next + 1) % LATENCY_WINDOW;
+            count = Math.min(LATENCY_WINDOW, count + 1);
+        }
+
+        synchronized long[] snapshot() {
+            return Arrays.copyOf(latencies, count);
+        }
+    }
+
+    /**
+     * Arguments of a call.
+     */
+    private record Request(String systemPrompt, List<ConversationMessage> messages, List<Tool> tools) {
+    }
+
+    /**
+     * Response of a single request and its own latency.
+     */
+    private record TimedResponse(LLMResponse response, long nanos) {
+    }
+}
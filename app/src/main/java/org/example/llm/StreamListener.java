@@ -0,0 +1,27 @@
+package org.example.llm;
+
+/**
+ * Receives a response while it is being generated.
+ */
+public interface StreamListener {
+
+    /**
+     * Called when the agent that will answer has been chosen, before its
+     * first token.
+     *
+     * @param agentLabel Display label of the agent (e.g., "💳 Billing Specialist")
+     */
+    default void onAgentSelected(String agentLabel) {
+    }
+
+    /**
+     * Called for each piece of generated text, in order.
+     */
+    void onText(String delta);
+
+    /**
+     * Called for each tool call once it is complete.
+     */
+    default void onToolCall(LLMResponse.ToolCall toolCall) {
+    }
+}
@@ -0,0 +1,355 @@
+package org.example.llm;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import org.example.model.ConversationMessage;
+import org.example.tools.Tool;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Local, scriptable LLM client for offline load and latency testing: the
+ * agents and the retrieval stack run for real, only the model is simulated.
+ *
+ * A response comes from, in order:
+ * 1. Recorded fixtures: a directory written by {@link CachingLLMClient}
+ * (e.g., a test run with -Dtest.llm.cache) against the real model, see
+ * {@link #replaying(Path, String, double)}.
+ * 2. Rules added with {@link #on(Predicate, Function)}, the latest added
+ * first.
+ * 3. Built-in support desk rules: routing by keywords (English, Italian,
+ * Polish), one documentation or policy search when tools are offered, then
+ * an answer quoting the tool results.
+ *
+ * Timing follows a {@link Profile}: a log-normal time to first token, then
+ * output tokens at a fixed rate (streamed as they are "generated"), and
+ * injected errors at a given rate. Random draws come from a seeded
+ * generator, so a single-threaded run is reproducible.
+ */
+public class StubLLMClient implements LLMClient {
+
+    /** Start of the message the specialists use to hand back tool results */
+    public static final String TOOL_RESULTS_PREFIX = "Tool results:";
+
+    private static final int CHARS_PER_TOKEN = 4;
+    private static final int QUOTE_CHARS = 400;
+    private static final Gson GSON = new Gson();
+
+    private static final List<String> BILLING_KEYWORDS = List.of("refund", "payment", "invoice", "charge",
+            "billing", "plan", "subscription", "price", "pricing", "cancel", "enterprise", "rimborso", "pagamento",
+            "fattura", "abbonamento", "piano", "prezzo", "zwrot", "płatność", "faktur", "subskrypcj", "cena");
+    private static final List<String> TECHNICAL_KEYWORDS = List.of("error", "api", "install", "sdk", "webhook",
+            "integration", "bug", "configure", "browser", "password", "export", "oauth", "firewall", "errore",
+            "installa", "integrazione", "configura", "błąd", "instal", "integracj", "konfigur", "hasło");
+
+    /**
+     * A request as seen by the rules.
+     */
+    public record Request(String systemPrompt, List<ConversationMessage> messages, List<Tool> tools) {
+
+        /**
+         * Get the content of the last user message, or "" if there is none.
+         */
+        public String lastUserMessage() {
+            for (int i = messages.size() - 1; i >= 0; i--) {
+                if ("user".equals(messages.get(i).role()))
+                    return messages.get(i).content() != null ? messages.get(i).content() : "";
+            }
+            return "";
+        }
+
+        /**
+         * Check whether the last user message carries tool results.
+         */
+        public boolean hasToolResults() {
+            return lastUserMessage().startsWith(TOOL_RESULTS_PREFIX);
+        }
+    }
+
+    /**
+     * Simulated timing and failures.
+     *
+     * @param medianLatency   Median time to first token
+     * @param latencySpread   Sigma of the log-normal time to first token (0 = fixed)
+     * @param tokensPerSecond Output rate after the first token, or 0 for instant output
+     * @param errorRate       Fraction of calls failing (0-1), after their time to first token
+     * @param errorStatus     HTTP status of the injected failures
+     */
+    public record Profile(Duration medianLatency, double latencySpread, double tokensPerSecond, double errorRate,
+            int errorStatus) {
+
+        /**
+         * No latency, no errors: measures the cost of the local stack alone.
+         */
+        public static Profile instant() {
+            return new Profile(Duration.ZERO, 0, 0, 0, 503);
+        }
+
+        /**
+         * Roughly a hosted flash model: 500ms median to first token with a
+         * long tail, 150 tokens/s, no errors.
+         */
+        public static Profile hosted() {
+            return new Profile(Duration.ofMillis(500), 0.5, 150, 0, 503);
+        }
+
+        public Profile withLatency(Duration medianLatency, double latencySpread) {
+            return new Profile(medianLatency, latencySpread, tokensPerSecond, errorRate, errorStatus);
+        }
+
+        public Profile withTokenRate(double tokensPerSecond) {
+            return new Profile(medianLatency, latencySpread, tokensPerSecond, errorRate, errorStatus);
+        }
+
+        public Profile withErrors(double errorRate, int errorStatus) {
+            return new Profile(medianLatency, latencySpread, tokensPerSecond, errorRate, errorStatus);
+        }
+    }
+
+    private record Rule(Predicate<Request> matches, Function<Request, LLMResponse> respond) {
+    }
+
+    private final Profile profile;
+    // Guarded by itself
+    private final SplittableRandom random;
+    private final List<Rule> rules = new CopyOnWriteArrayList<>();
+
+    private volatile Path fixtures;
+    private volatile String modelName = "stub";
+    private volatile double temperature = 0;
+
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong fixtureHits = new AtomicLong();
+    private final AtomicLong ruleHits = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+
+    /**
+     * Create an instant stub with the built-in rules only.
+     */
+    public StubLLMClient() {
+        this(Profile.instant(), 42);
+    }
+
+    /**
+     * @param seed Seed of the latency and error draws
+     */
+    public StubLLMClient(Profile profile, long seed) {
+        this.profile = profile;
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Answer the requests matching a predicate, ahead of the built-in rules
+     * and of the rules added before.
+     */
+    public StubLLMClient on(Predicate<Request> matches, Function<Request, LLMResponse> respond) {
+        rules.add(new Rule(matches, respond));
+        return this;
+    }
+
+    /**
+     * Answer the requests recorded in a {@link CachingLLMClient} directory
+     * with their recorded response. Requests are matched by the same key,
+     * so the stub reports the recorded model name and temperature.
+     */
+    public StubLLMClient replaying(Path directory, String modelName, double temperature) {
+        this.fixtures = directory;
+        this.modelName = modelName;
+        this.temperature = temperature;
+        return this;
+    }
+
+    @Override
+    public String chat(String systemPrompt, List<ConversationMessage> messages) {
+        return chatWithTools(systemPrompt, messages, List.of()).text();
+    }
+
+    @Override
+    public LLMResponse chatWithTools(String systemPrompt, List<ConversationMessage> messages, List<Tool> tools) {
+        LLMResponse response = respond(new Request(systemPrompt, messages, tools));
+        firstToken();
+        pause(generationNanos(outputTokens(response)));
+        return response;
+    }
+
+    /**
+     * Stream the text in word-sized pieces at the profile's token rate;
+     * tool calls arrive whole.
+     */
+    @Override
+    public LLMResponse chatWithToolsStream(String systemPrompt, List<ConversationMessage> messages,
+            List<Tool> tools, StreamListener listener) {
+        LLMResponse response = respond(new Request(systemPrompt, messages, tools));
+        firstToken();
+        if (response.hasToolCalls()) {
+            pause(generationNanos(outputTokens(response)));
+            response.toolCalls().forEach(listener::onToolCall);
+        } else if (response.text() != null) {
+            for (String piece : response.text().split("(?<=\\s)")) {
+                pause(generationNanos(Math.max(1, piece.length() / CHARS_PER_TOKEN)));
+                listener.onText(piece);
+            }
+        }
+        return response;
+    }
+
+    @Override
+    public String getModelName() {
+        return modelName;
+    }
+
+    @Override
+    public double getTemperature() {
+        return temperature;
+    }
+
+    private LLMResponse respond(Request request) {
+        calls.incrementAndGet();
+        LLMResponse recorded = recorded(request);
+        if (recorded != null) {
+            fixtureHits.incrementAndGet();
+            return recorded;
+        }
+        for (int i = rules.size() - 1; i >= 0; i--) {
+            Rule rule = rules.get(i);
+            if (rule.matches().test(request)) {
+                ruleHits.incrementAndGet();
+                return rule.respond().apply(request);
+            }
+        }
+        return builtIn(request);
+    }
+
+    private LLMResponse recorded(Request request) {
+        Path directory = fixtures;
+        if (directory == null)
+            return null;
+        Path file = directory.resolve(CachingLLMClient.requestKey(modelName, temperature, request.systemPrompt(),
+                request.messages(), request.tools()) + ".json");
+        if (!Files.exists(file))
+            return null;
+        try {
+            return GSON.fromJson(Files.readString(file, StandardCharsets.UTF_8), LLMResponse.class);
+        } catch (IOException | JsonSyntaxException e) {
+            System.err.println("[StubLLMClient] Warning: Could not read " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Support desk behaviour: route, search once, answer from the results.
+     */
+    private static LLMResponse builtIn(Request request) {
+        String message = request.lastUserMessage();
+        if (request.systemPrompt().contains("routing coordinator"))
+            return LLMResponse.textOnly(route(message));
+
+        if (!request.tools().isEmpty() && !request.hasToolResults()) {
+            for (Tool tool : request.tools()) {
+                Object required = tool.getParametersSchema().get("required");
+                if (required instanceof List<?> names && names.equals(List.of("query"))) {
+                    return LLMResponse.withToolCalls(
+                            List.of(new LLMResponse.ToolCall(tool.getName(), Map.of("query", message))));
+                }
+            }
+        }
+
+        if (request.hasToolResults()) {
+            String results = message.substring(TOOL_RESULTS_PREFIX.length()).strip();
+            return LLMResponse.textOnly("Here is what I found:\n"
+                    + results.substring(0, Math.min(QUOTE_CHARS, results.length())));
+        }
+        return LLMResponse.textOnly("I can help with technical and billing questions. You asked: " + message);
+    }
+
+    /**
+     * Route on keywords of the new message, then on the current agent.
+     */
+    private static String route(String routingMessage) {
+        String marker = "New message to route:";
+        int start = routingMessage.lastIndexOf(marker);
+        String message = (start >= 0 ? routingMessage.substring(start + marker.length()) : routingMessage)
+                .toLowerCase(Locale.ROOT);
+        if (BILLING_KEYWORDS.stream().anyMatch(message::contains))
+            return "BILLING";
+        if (TECHNICAL_KEYWORDS.stream().anyMatch(message::contains))
+            return "TECHNICAL";
+        if (routingMessage.contains("Current agent: BILLING"))
+            return "BILLING";
+        if (routingMessage.contains("Current agent: TECHNICAL"))
+            return "TECHNICAL";
+        return "UNKNOWN";
+    }
+
+    /**
+     * Wait for the time to first token, then fail if an error is drawn.
+     */
+    private void firstToken() {
+        double gaussian;
+        boolean fail;
+        synchronized (random) {
+            gaussian = nextGaussian();
+            fail = random.nextDouble() < profile.errorRate();
+        }
+        pause((long) (profile.medianLatency().toNanos() * Math.exp(profile.latencySpread() * gaussian)));
+        if (fail) {
+            injectedErrors.incrementAndGet();
+            throw new LLMCallException("Injected error " + profile.errorStatus(), profile.errorStatus(), null, null);
+        }
+    }
+
+    /**
+     * Standard normal draw (Box-Muller); the caller holds the lock.
+     */
+    private double nextGaussian() {
+        return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    private long generationNanos(long tokens) {
+        return profile.tokensPerSecond() > 0 ? (long) (tokens / profile.tokensPerSecond() * 1e9) : 0;
+    }
+
+    private static long outputTokens(LLMResponse response) {
+        long chars = response.text() != null ? response.text().length() : 0;
+        for (LLMResponse.ToolCall toolCall : response.toolCalls()) {
+            chars += toolCall.name().length() + String.valueOf(toolCall.arguments()).length();
+        }
+        return chars / CHARS_PER_TOKEN;
+    }
+
+    private static void pause(long nanos) {
+        if (nanos <= 0)
+            return;
+        try {
+            Thread.sleep(Duration.ofNanos(nanos));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new LLMCallException("Interrupted", LLMCallException.UNKNOWN_STATUS, false, null, e);
+        }
+    }
+
+    /**
+     * Get stub statistics for debugging.
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("calls", calls.get());
+        stats.put("fixture_hits", fixtureHits.get());
+        stats.put("rule_hits", ruleHits.get());
+        stats.put("injected_errors", injectedErrors.get());
+        return stats;
+    }
+}
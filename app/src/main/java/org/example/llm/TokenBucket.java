@@ -0,0 +1,68 @@
+package org.example.llm;
+
+/**
+ * Token bucket refilled continuously at a per-minute rate, holding at most
+ * one minute of tokens. The balance may go negative when a debit exceeds
+ * it, delaying later takers. Not thread-safe: callers synchronize.
+ */
+final class TokenBucket {
+
+    private final double capacity;
+    private final double perNano;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param perMinute Refill rate, or 0 or less for an unlimited bucket
+     */
+    TokenBucket(long perMinute, long nowNanos) {
+        this.capacity = Math.max(0, perMinute);
+        this.perNano = capacity / 60e9;
+        this.tokens = capacity;
+        this.lastRefill = nowNanos;
+    }
+
+    boolean isUnlimited() {
+        return capacity == 0;
+    }
+
+    /**
+     * Get the time until {@code amount} tokens are available (amounts above
+     * the capacity wait for a full bucket).
+     */
+    long nanosUntil(long amount, long nowNanos) {
+        if (isUnlimited())
+            return 0;
+        refill(nowNanos);
+        double missing = Math.min(amount, capacity) - tokens;
+        return missing <= 0 ? 0 : (long) Math.ceil(missing / perNano);
+    }
+
+    void take(long amount, long nowNanos) {
+        if (isUnlimited())
+            return;
+        refill(nowNanos);
+        tokens -= Math.min(amount, capacity);
+    }
+
+    /**
+     * Give back (positive) or take more (negative) tokens once the actual
+     * cost of a call is known.
+     */
+    void adjust(long delta) {
+        if (!isUnlimited())
+            tokens = Math.min(capacity, tokens + delta);
+    }
+
+    double available(long nowNanos) {
+        if (isUnlimited())
+            return Double.POSITIVE_INFINITY;
+        refill(nowNanos);
+        return tokens;
+    }
+
+    private void refill(long nowNanos) {
+        tokens = Math.min(capacity, tokens + (nowNanos - lastRefill) * perNano);
+        lastRefill = nowNanos;
+    }
+}
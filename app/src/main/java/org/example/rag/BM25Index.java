@@ -3,10 +3,12 @@ package org.example.rag;
 import org.apache.lucene.analysis.standard.StandardAnalyzer;
 import org.apache.lucene.document.*;
 import org.apache.lucene.index.*;
+import org.apache.lucene.queryparser.classic.ParseException;
 import org.apache.lucene.queryparser.classic.QueryParser;
 import org.apache.lucene.search.*;
 import org.apache.lucene.store.ByteBuffersDirectory;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
 
 import java.io.IOException;
 import java.util.*;
@@ -18,18 +20,29 @@ import java.util.*;
 public class BM25Index {
 
     private final Directory directory;
+    private final ChunkTable chunkTable;
     private final StandardAnalyzer analyzer;
     private IndexWriter writer;
-    private DirectoryReader reader;
-    private IndexSearcher searcher;
+    private SearcherManager searcherManager;
 
     public BM25Index() {
+        this(new ChunkTable());
+    }
+
+    /**
+     * @param chunkTable Table holding the chunk text, shared with the vector store
+     */
+    public BM25Index(ChunkTable chunkTable) {
+        this.chunkTable = chunkTable;
         this.directory = new ByteBuffersDirectory();
         this.analyzer = new StandardAnalyzer();
 
         try {
             IndexWriterConfig config = new IndexWriterConfig(analyzer);
             this.writer = new IndexWriter(directory, config);
+            // Near-real-time searchers: each search holds its own reader, so the
+            // index can be updated while queries are running
+            this.searcherManager = new SearcherManager(writer, null);
         } catch (IOException e) {
             throw new RuntimeException("Failed to create Lucene index", e);
         }
@@ -40,10 +53,13 @@ public class BM25Index {
      */
     public void addDocument(String id, String content, String source) {
         try {
+            // Searches only read the ordinal (a doc value), the text lives in the chunk table
+            int ordinal = chunkTable.register(id, content, source);
             Document doc = new Document();
-            doc.add(new StringField("id", id, Field.Store.YES));
-            doc.add(new TextField("content", content, Field.Store.YES));
-            doc.add(new StringField("source", source, Field.Store.YES));
+            doc.add(new StringField("id", id, Field.Store.NO));
+            doc.add(new TextField("content", content, Field.Store.NO));
+            doc.add(new StringField("source", source, Field.Store.NO));
+            doc.add(new NumericDocValuesField("ordinal", ordinal));
             writer.addDocument(doc);
         } catch (IOException e) {
             throw new RuntimeException("Failed to add document to index", e);
@@ -61,26 +77,31 @@ public class BM25Index {
     }
 
     /**
-     * Commit changes and refresh searcher.
+     * Delete the chunks with the given ids.
+     * Changes become visible to searches on the next {@link #commit()}.
      */
-    public void commit() {
+    public void deleteDocuments(Collection<String> ids) {
+        if (ids.isEmpty())
+            return;
         try {
-            writer.commit();
-            refreshSearcher();
+            Term[] terms = ids.stream().map(id -> new Term("id", id)).toArray(Term[]::new);
+            writer.deleteDocuments(terms);
         } catch (IOException e) {
-            throw new RuntimeException("Failed to commit index", e);
+            throw new RuntimeException("Failed to delete documents from index", e);
         }
+        ids.forEach(chunkTable::release);
     }
 
     /**
-     * Refresh the searcher after index updates.
+     * Commit changes and refresh searcher.
      */
-    private void refreshSearcher() throws IOException {
-        if (reader != null) {
-            reader.close();
+    public void commit() {
+        try {
+            writer.commit();
+            searcherManager.maybeRefreshBlocking();
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to commit index", e);
         }
-        reader = DirectoryReader.open(directory);
-        searcher = new IndexSearcher(reader);
     }
 
     /**
@@ -91,79 +112,106 @@ public class BM25Index {
      * @return List of scored chunks
      */
     public List<ScoredChunk> search(String queryText, int topK) {
-        if (searcher == null) {
-            try {
-                refreshSearcher();
-            } catch (IOException e) {
-                return Collections.emptyList();
-            }
-        }
-
-        try {
-            // Escape special Lucene characters and parse query
-            String escapedQuery = QueryParser.escape(queryText);
-            QueryParser parser = new QueryParser("content", analyzer);
-            Query query = parser.parse(escapedQuery);
-
-            TopDocs topDocs = searcher.search(query, topK);
-            List<ScoredChunk> results = new ArrayList<>();
+        return chunkTable.resolve(searchOrdinals(queryText, topK));
+    }
 
-            for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
-                Document doc = searcher.storedFields().document(scoreDoc.doc);
-                results.add(new ScoredChunk(
-                        doc.get("id"),
-                        doc.get("content"),
-                        doc.get("source"),
-                        scoreDoc.score));
-            }
+    /**
+     * Search with source filter.
+     */
+    public List<ScoredChunk> search(String queryText, int topK, String sourceFilter) {
+        return search(queryText, topK, sourceFilter, Set.of());
+    }
 
-            return results;
+    /**
+     * Search with source filter, also accepting the given chunk ids
+     * (canonical chunks that stand for duplicates from the filtered source).
+     */
+    public List<ScoredChunk> search(String queryText, int topK, String sourceFilter, Collection<String> alsoIds) {
+        return chunkTable.resolve(searchOrdinals(queryText, topK, sourceFilter, alsoIds));
+    }
 
-        } catch (Exception e) {
+    /**
+     * Search for documents matching the query, returning chunk ordinals
+     * (no stored fields are loaded).
+     */
+    public ScoredOrdinals searchOrdinals(String queryText, int topK) {
+        try {
+            return collectOrdinals(parse(queryText), topK);
+        } catch (ParseException e) {
             System.err.println("Search failed: " + e.getMessage());
-            return Collections.emptyList();
+            return ScoredOrdinals.EMPTY;
         }
     }
 
     /**
-     * Search with source filter.
+     * Search with source filter, returning chunk ordinals.
+     *
+     * @param alsoIds Ids accepted despite the filter
      */
-    public List<ScoredChunk> search(String queryText, int topK, String sourceFilter) {
-        if (searcher == null) {
-            try {
-                refreshSearcher();
-            } catch (IOException e) {
-                return Collections.emptyList();
+    public ScoredOrdinals searchOrdinals(String queryText, int topK, String sourceFilter, Collection<String> alsoIds) {
+        try {
+            // Add source filter
+            BooleanQuery.Builder builder = new BooleanQuery.Builder();
+            builder.add(parse(queryText), BooleanClause.Occur.MUST);
+            Query sourceQuery = new TermQuery(new Term("source", sourceFilter));
+            if (!alsoIds.isEmpty()) {
+                List<BytesRef> ids = alsoIds.stream().map(BytesRef::new).toList();
+                sourceQuery = new BooleanQuery.Builder()
+                        .add(sourceQuery, BooleanClause.Occur.SHOULD)
+                        .add(new TermInSetQuery("id", ids), BooleanClause.Occur.SHOULD)
+                        .build();
             }
+            builder.add(sourceQuery, BooleanClause.Occur.FILTER);
+            return collectOrdinals(builder.build(), topK);
+        } catch (ParseException e) {
+            System.err.println("Search failed: " + e.getMessage());
+            return ScoredOrdinals.EMPTY;
         }
+    }
 
-        try {
-            String escapedQuery = QueryParser.escape(queryText);
-            QueryParser parser = new QueryParser("content", analyzer);
-            Query contentQuery = parser.parse(escapedQuery);
+    private Query parse(String queryText) throws ParseException {
+        // Escape special Lucene characters and parse query
+        String escapedQuery = QueryParser.escape(queryText);
+        QueryParser parser = new QueryParser("content", analyzer);
+        return parser.parse(escapedQuery);
+    }
 
-            // Add source filter
-            BooleanQuery.Builder builder = new BooleanQuery.Builder();
-            builder.add(contentQuery, BooleanClause.Occur.MUST);
-            builder.add(new TermQuery(new Term("source", sourceFilter)), BooleanClause.Occur.MUST);
+    private ScoredOrdinals collectOrdinals(Query query, int topK) {
+        IndexSearcher searcher;
+        try {
+            searcher = searcherManager.acquire();
+        } catch (IOException e) {
+            return ScoredOrdinals.EMPTY;
+        }
 
-            TopDocs topDocs = searcher.search(builder.build(), topK);
-            List<ScoredChunk> results = new ArrayList<>();
+        try {
+            TopDocs topDocs = searcher.search(query, topK);
+            List<LeafReaderContext> leaves = searcher.getIndexReader().leaves();
+            ScoredOrdinals hits = new ScoredOrdinals(topDocs.scoreDocs.length);
 
             for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
-                Document doc = searcher.storedFields().document(scoreDoc.doc);
-                results.add(new ScoredChunk(
-                        doc.get("id"),
-                        doc.get("content"),
-                        doc.get("source"),
-                        scoreDoc.score));
+                LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(scoreDoc.doc, leaves));
+                NumericDocValues ordinals = DocValues.getNumeric(leaf.reader(), "ordinal");
+                if (ordinals.advanceExact(scoreDoc.doc - leaf.docBase)) {
+                    hits.add((int) ordinals.longValue(), scoreDoc.score);
+                }
             }
 
-            return results;
+            return hits;
 
         } catch (Exception e) {
             System.err.println("Search failed: " + e.getMessage());
-            return Collections.emptyList();
+            return ScoredOrdinals.EMPTY;
+        } finally {
+            release(searcher);
+        }
+    }
+
+    private void release(IndexSearcher searcher) {
+        try {
+            searcherManager.release(searcher);
+        } catch (IOException e) {
+            // Ignore release errors
         }
     }
 
@@ -172,10 +220,12 @@ public class BM25Index {
      */
     public int getDocumentCount() {
         try {
-            if (reader == null) {
-                refreshSearcher();
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                return searcher.getIndexReader().numDocs();
+            } finally {
+                release(searcher);
             }
-            return reader.numDocs();
         } catch (IOException e) {
             return 0;
         }
@@ -186,8 +236,8 @@ public class BM25Index {
      */
     public void close() {
         try {
-            if (reader != null)
-                reader.close();
+            if (searcherManager != null)
+                searcherManager.close();
             if (writer != null)
                 writer.close();
         } catch (IOException e) {
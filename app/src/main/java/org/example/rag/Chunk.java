@@ -1,11 +1,46 @@
 package org.example.rag;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
 /**
  * Represents a document chunk for indexing.
+ *
+ * @param tokenCount Length in embedding-model tokens, or -1 if not measured
  */
 public record Chunk(
         String id,
         String content,
         String source,
-        String header) {
+        String header,
+        int tokenCount) {
+
+    /**
+     * Create a chunk whose token count was not measured.
+     */
+    public Chunk(String id, String content, String source, String header) {
+        this(id, content, source, header, -1);
+    }
+
+    /**
+     * Hash of the chunk content (SHA-256, hex), used to detect which chunks
+     * actually changed when a document is re-indexed.
+     */
+    public String contentHash() {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Create a copy with a different id.
+     */
+    public Chunk withId(String newId) {
+        return new Chunk(newId, content, source, header, tokenCount);
+    }
 }
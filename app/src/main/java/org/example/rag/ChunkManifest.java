@@ -0,0 +1,141 @@
+package org.example.rag;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks which chunks are indexed for each source, keyed by content hash.
+ *
+ * When a document changes, comparing its new chunks against the manifest
+ * tells which chunks are new and which are gone, so only those need to be
+ * embedded or deleted. Unchanged chunks keep their ids, and new chunks get
+ * ids that were never used for that source, so ids stay stable across edits.
+ */
+public class ChunkManifest {
+
+    private final Map<String, SourceEntry> sources = new ConcurrentHashMap<>();
+
+    /**
+     * Record a chunk that has been indexed.
+     */
+    public void record(Chunk chunk) {
+        SourceEntry entry = sources.computeIfAbsent(chunk.source(), s -> new SourceEntry());
+        synchronized (entry) {
+            entry.add(chunk.contentHash(), chunk.id());
+        }
+    }
+
+    /**
+     * Replace the recorded chunks of a source with a new chunking of it.
+     *
+     * @param source    The source whose content changed
+     * @param newChunks The chunks of the new content
+     * @return Chunks to index (with fresh ids) and ids to delete
+     */
+    public Diff update(String source, List<Chunk> newChunks) {
+        SourceEntry entry = sources.computeIfAbsent(source, s -> new SourceEntry());
+        synchronized (entry) {
+            // Remaining old ids by hash; whatever is left at the end was removed
+            Map<String, Deque<String>> remaining = new HashMap<>();
+            entry.idsByHash.forEach((hash, ids) -> remaining.put(hash, new ArrayDeque<>(ids)));
+
+            SourceEntry updated = new SourceEntry();
+            updated.nextIndex = entry.nextIndex;
+            List<Chunk> added = new ArrayList<>();
+            int unchanged = 0;
+
+            for (Chunk chunk : newChunks) {
+                String hash = chunk.contentHash();
+                Deque<String> oldIds = remaining.get(hash);
+                if (oldIds != null && !oldIds.isEmpty()) {
+                    updated.add(hash, oldIds.poll());
+                    unchanged++;
+                } else {
+                    Chunk renamed = chunk.withId(source + ":" + updated.nextIndex);
+                    updated.add(hash, renamed.id());
+                    added.add(renamed);
+                }
+            }
+
+            List<String> removedIds = new ArrayList<>();
+            remaining.values().forEach(removedIds::addAll);
+
+            entry.idsByHash = updated.idsByHash;
+            entry.nextIndex = updated.nextIndex;
+            if (entry.idsByHash.isEmpty()) {
+                sources.remove(source);
+            }
+            return new Diff(added, removedIds, unchanged);
+        }
+    }
+
+    /**
+     * Forget a source entirely.
+     *
+     * @return Ids of all chunks that were recorded for it
+     */
+    public List<String> remove(String source) {
+        SourceEntry entry = sources.remove(source);
+        if (entry == null)
+            return List.of();
+
+        synchronized (entry) {
+            List<String> ids = new ArrayList<>();
+            entry.idsByHash.values().forEach(ids::addAll);
+            return ids;
+        }
+    }
+
+    /**
+     * Get the names of all recorded sources.
+     */
+    public Set<String> sources() {
+        return Set.copyOf(sources.keySet());
+    }
+
+    /**
+     * Get the total number of recorded chunks.
+     */
+    public int size() {
+        int total = 0;
+        for (SourceEntry entry : sources.values()) {
+            synchronized (entry) {
+                for (List<String> ids : entry.idsByHash.values()) {
+                    total += ids.size();
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Result of re-chunking a source.
+     */
+    public record Diff(List<Chunk> added, List<String> removedIds, int unchanged) {
+        public boolean isEmpty() {
+            return added.isEmpty() && removedIds.isEmpty();
+        }
+    }
+
+    /**
+     * Per-source state: chunk ids by content hash, and the next free chunk index.
+     */
+    private static class SourceEntry {
+        Map<String, List<String>> idsByHash = new HashMap<>();
+        int nextIndex = 0;
+
+        void add(String hash, String id) {
+            idsByHash.computeIfAbsent(hash, h -> new ArrayList<>()).add(id);
+
+            // Keep new ids clear of every index used so far ("source:idx")
+            int separator = id.lastIndexOf(':');
+            if (separator >= 0) {
+                try {
+                    nextIndex = Math.max(nextIndex, Integer.parseInt(id.substring(separator + 1)) + 1);
+                } catch (NumberFormatException e) {
+                    // Non-numeric suffix, nothing to reserve
+                }
+            }
+        }
+    }
+}
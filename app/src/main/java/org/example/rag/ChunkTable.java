@@ -0,0 +1,171 @@
+package org.example.rag;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Shared table of indexed chunks, addressed by int ordinal.
+ *
+ * The BM25 index and the vector store of a generation register their chunks
+ * here and return ordinals from searches; chunk text is only looked up for
+ * the final results. A chunk stays in the table while at least one index
+ * holds it. Ordinals are never reused, so an ordinal from a search that raced
+ * with a removal resolves to nothing rather than to another chunk.
+ */
+public class ChunkTable {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final Map<String, Integer> ordinalsById = new HashMap<>();
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private String[] contents = new String[INITIAL_CAPACITY];
+    private String[] sources = new String[INITIAL_CAPACITY];
+    private int[] references = new int[INITIAL_CAPACITY];
+    private int next = 0;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Register a chunk for one index. Registering an id again (from the other
+     * index, or after an update) returns the same ordinal and replaces the
+     * content.
+     *
+     * @return The chunk's ordinal
+     */
+    public int register(String id, String content, String source) {
+        lock.writeLock().lock();
+        try {
+            Integer existing = ordinalsById.get(id);
+            int ordinal;
+            if (existing != null) {
+                ordinal = existing;
+            } else {
+                ordinal = next++;
+                if (ordinal == ids.length) {
+                    grow();
+                }
+                ordinalsById.put(id, ordinal);
+                ids[ordinal] = id;
+            }
+            contents[ordinal] = content;
+            sources[ordinal] = source;
+            references[ordinal]++;
+            return ordinal;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drop one index's reference to a chunk; the last one removes it.
+     */
+    public void release(String id) {
+        lock.writeLock().lock();
+        try {
+            Integer ordinal = ordinalsById.get(id);
+            if (ordinal == null || --references[ordinal] > 0)
+                return;
+            ordinalsById.remove(id);
+            ids[ordinal] = null;
+            contents[ordinal] = null;
+            sources[ordinal] = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Get the content of a chunk.
+     *
+     * @return The content, or null if the chunk was removed
+     */
+    public String content(int ordinal) {
+        lock.readLock().lock();
+        try {
+            return ordinal < next ? contents[ordinal] : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the source of a chunk.
+     *
+     * @return The source, or null if the chunk was removed
+     */
+    public String source(int ordinal) {
+        lock.readLock().lock();
+        try {
+            return ordinal < next ? sources[ordinal] : null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Turn ranked ordinals into chunks, skipping removed ones.
+     */
+    public List<ScoredChunk> resolve(ScoredOrdinals hits) {
+        return resolve(hits, hits.size());
+    }
+
+    /**
+     * Turn the first ranked ordinals into chunks, skipping removed ones.
+     *
+     * @param limit Maximum number of chunks to return
+     */
+    public List<ScoredChunk> resolve(ScoredOrdinals hits, int limit) {
+        List<ScoredChunk> chunks = new ArrayList<>(Math.min(limit, hits.size()));
+        lock.readLock().lock();
+        try {
+            for (int rank = 0; rank < hits.size() && chunks.size() < limit; rank++) {
+                int ordinal = hits.ordinal(rank);
+                if (ordinal < next && ids[ordinal] != null) {
+                    chunks.add(new ScoredChunk(ids[ordinal], contents[ordinal], sources[ordinal], hits.score(rank)));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return chunks;
+    }
+
+    /**
+     * Get all chunks currently held (with a score of 0), in ordinal order.
+     */
+    public List<ScoredChunk> chunks() {
+        lock.readLock().lock();
+        try {
+            List<ScoredChunk> chunks = new ArrayList<>(ordinalsById.size());
+            for (int ordinal = 0; ordinal < next; ordinal++) {
+                if (ids[ordinal] != null) {
+                    chunks.add(new ScoredChunk(ids[ordinal], contents[ordinal], sources[ordinal], 0));
+                }
+            }
+            return chunks;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the number of chunks currently held.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ordinalsById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void grow() {
+        int capacity = ids.length * 2;
+        ids = Arrays.copyOf(ids, capacity);
+        contents = Arrays.copyOf(contents, capacity);
+        sources = Arrays.copyOf(sources, capacity);
+        references = Arrays.copyOf(references, capacity);
+    }
+}
@@ -0,0 +1,57 @@
+package org.example.rag;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Corpus source reading a fixed list of markdown files from the classpath.
+ */
+public class ClasspathCorpusSource implements CorpusSource {
+
+    private static final List<String> DEFAULT_DOCS = List.of(
+            "/docs/troubleshooting.md",
+            "/docs/integration_guide.md",
+            "/docs/faq.md",
+            "/docs/system_requirements.md",
+            "/docs/installation.md",
+            "/docs/billing_policy.md");
+
+    private final List<String> resourcePaths;
+
+    public ClasspathCorpusSource(List<String> resourcePaths) {
+        this.resourcePaths = List.copyOf(resourcePaths);
+    }
+
+    /**
+     * Source for the bundled product documentation.
+     */
+    public static ClasspathCorpusSource defaultDocs() {
+        return new ClasspathCorpusSource(DEFAULT_DOCS);
+    }
+
+    @Override
+    public void read(DocumentSink sink) throws InterruptedException {
+        for (String docPath : resourcePaths) {
+            String content;
+            try (InputStream is = getClass().getResourceAsStream(docPath)) {
+                if (is == null) {
+                    continue;
+                }
+                content = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                System.err.println("Warning: Could not load " + docPath);
+                continue;
+            }
+
+            String source = docPath.substring(docPath.lastIndexOf('/') + 1);
+            sink.accept(new SourceDocument(source, content));
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "classpath:" + resourcePaths.size() + " files";
+    }
+}
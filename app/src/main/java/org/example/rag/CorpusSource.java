@@ -0,0 +1,34 @@
+package org.example.rag;
+
+import java.io.IOException;
+
+/**
+ * A source of documents to be chunked and indexed.
+ *
+ * Implementations push documents one at a time to a sink instead of returning
+ * the whole corpus, so that very large corpora can be ingested without holding
+ * every document in memory.
+ */
+public interface CorpusSource {
+
+    /**
+     * Read every document of the corpus and hand it to the sink.
+     * The sink may block (e.g., when a downstream queue is full).
+     *
+     * @param sink Receiver for each document, in read order
+     */
+    void read(DocumentSink sink) throws IOException, InterruptedException;
+
+    /**
+     * Get a short human-readable description of the source (for logs and stats).
+     */
+    String getName();
+
+    /**
+     * Receiver of documents produced by a corpus source.
+     */
+    @FunctionalInterface
+    interface DocumentSink {
+        void accept(SourceDocument document) throws InterruptedException;
+    }
+}
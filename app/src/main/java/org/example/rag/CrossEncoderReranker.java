@@ -0,0 +1,373 @@
+package org.example.rag;
+
+import ai.djl.huggingface.tokenizers.Encoding;
+import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
+import ai.djl.inference.Predictor;
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.ndarray.types.Shape;
+import ai.djl.repository.zoo.Criteria;
+import ai.djl.repository.zoo.ZooModel;
+import ai.djl.translate.Batchifier;
+import ai.djl.translate.Translator;
+import ai.djl.translate.TranslatorContext;
+import ai.djl.util.PairList;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reranker scoring (query, chunk) pairs with a cross-encoder running locally
+ * through DJL (ms-marco-MiniLM-L-6-v2 by default; bge-reranker models work
+ * too).
+ *
+ * - All candidates that need scoring go through the model in one padded
+ *   batch.
+ * - Scores are cached by (query hash, chunk id, content hash), so repeated
+ *   and paraphrase-cached queries, and candidates shared by consecutive
+ *   queries of a conversation, are not scored again.
+ * - With a latency budget, only the prefix of the candidates (in fused
+ *   order) that the model is expected to score in time is scored; the rest
+ *   follows unscored, in fused order. The cost per pair is tracked as a
+ *   moving average of the observed batches.
+ *
+ * Returned chunks keep their fused (RRF) score: confidence thresholds
+ * downstream are calibrated on that scale, not on cross-encoder logits.
+ *
+ * If the model cannot be loaded, candidates are passed through unchanged.
+ */
+public class CrossEncoderReranker implements Reranker {
+
+    /** ms-marco-MiniLM-L-6-v2 (English, 22M parameters) */
+    public static final String DEFAULT_MODEL_URL =
+            "djl://ai.djl.huggingface.pytorch/cross-encoder/ms-marco-MiniLM-L-6-v2";
+
+    private static final int MAX_SEQUENCE_LENGTH = 512;
+    private static final long MAX_CACHED_SCORES = 10_000;
+    private static final double EWMA_ALPHA = 0.2;
+
+    private final String modelUrl;
+    private final Duration latencyBudget;
+    private final int maxPredictors;
+    private final PassThroughReranker passThrough = new PassThroughReranker();
+    private final Cache<ScoreKey, Float> scoreCache = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_SCORES)
+            .build();
+
+    private ZooModel<PairBatch, float[]> model;
+    private volatile boolean initialized = false;
+    private volatile boolean useFallback = false;
+    private boolean closed = false;
+
+    // DJL predictors are not thread-safe, so concurrent callers each borrow one
+    private final BlockingQueue<Predictor<PairBatch, float[]>> idlePredictors = new LinkedBlockingQueue<>();
+    private final List<Predictor<PairBatch, float[]>> allPredictors = new CopyOnWriteArrayList<>();
+
+    // Moving average of the model time per pair, 0 until the first batch
+    private volatile double nanosPerPair = 0;
+
+    private final AtomicLong scoredPairs = new AtomicLong();
+    private final AtomicLong cachedPairs = new AtomicLong();
+    private final AtomicLong unscoredPairs = new AtomicLong();
+
+    /**
+     * Create a reranker with the default model and no latency budget.
+     */
+    public CrossEncoderReranker() {
+        this(DEFAULT_MODEL_URL, null);
+    }
+
+    /**
+     * @param modelUrl      DJL model URL of a cross-encoder
+     * @param latencyBudget Maximum model time per call, or null to always
+     *                      score every candidate
+     */
+    public CrossEncoderReranker(String modelUrl, Duration latencyBudget) {
+        this.modelUrl = modelUrl;
+        this.latencyBudget = latencyBudget;
+        this.maxPredictors = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Load the model. This is done lazily on first use.
+     *
+     * @throws IllegalStateException if the reranker was closed
+     */
+    public synchronized void initialize() {
+        if (closed)
+            throw new IllegalStateException("Reranker is closed");
+        if (initialized)
+            return;
+
+        try {
+            PyTorchThreads.configure();
+            Criteria<PairBatch, float[]> criteria = Criteria.builder()
+                    .setTypes(PairBatch.class, float[].class)
+                    .optEngine("PyTorch")
+                    .optModelUrls(modelUrl)
+                    .optTranslator(new CrossEncoderTranslator())
+                    .build();
+            model = criteria.loadModel();
+        } catch (Exception e) {
+            System.err.println("[CrossEncoderReranker] Warning: Model failed to load (" + e.getMessage()
+                    + "), passing candidates through");
+            useFallback = true;
+        }
+        initialized = true;
+    }
+
+    @Override
+    public List<ScoredChunk> rerank(String query, List<ScoredChunk> candidates, int topK) {
+        return rerank(query, candidates, topK, latencyBudget);
+    }
+
+    /**
+     * Rerank with an explicit latency budget for this call.
+     *
+     * @param latencyBudget Maximum model time, or null to score every candidate
+     */
+    public List<ScoredChunk> rerank(String query, List<ScoredChunk> candidates, int topK, Duration latencyBudget) {
+        if (!initialized)
+            initialize();
+        if (candidates.isEmpty() || useFallback)
+            return passThrough.rerank(query, candidates, topK);
+
+        long queryHash = Hashing.murmur3_128().hashString(query, StandardCharsets.UTF_8).asLong();
+        int affordable = latencyBudget == null || nanosPerPair == 0
+                ? Integer.MAX_VALUE
+                : (int) (latencyBudget.toNanos() / nanosPerPair);
+
+        // Longest prefix whose scores are cached or fit in the budget
+        float[] scores = new float[candidates.size()];
+        List<Integer> toScore = new ArrayList<>();
+        int prefix = 0;
+        for (; prefix < candidates.size(); prefix++) {
+            ScoredChunk candidate = candidates.get(prefix);
+            Float cached = scoreCache.getIfPresent(ScoreKey.of(queryHash, candidate));
+            if (cached != null) {
+                scores[prefix] = cached;
+            } else if (toScore.size() < affordable) {
+                toScore.add(prefix);
+            } else {
+                break;
+            }
+        }
+        cachedPairs.addAndGet(prefix - toScore.size());
+        unscoredPairs.addAndGet(candidates.size() - prefix);
+
+        if (!toScore.isEmpty()) {
+            List<String> passages = toScore.stream().map(index -> candidates.get(index).content()).toList();
+            float[] batchScores;
+            try {
+                batchScores = predict(new PairBatch(query, passages));
+            } catch (Exception e) {
+                System.err.println("[CrossEncoderReranker] Scoring failed: " + e.getMessage());
+                return passThrough.rerank(query, candidates, topK);
+            }
+            for (int j = 0; j < toScore.size(); j++) {
+                int index = toScore.get(j);
+                scores[index] = batchScores[j];
+                scoreCache.put(ScoreKey.of(queryHash, candidates.get(index)), batchScores[j]);
+            }
+            scoredPairs.addAndGet(toScore.size());
+        }
+
+        List<Integer> order = new ArrayList<>(candidates.size());
+        for (int i = 0; i < prefix; i++) {
+            order.add(i);
+        }
+        // Stable: equal scores keep their fused order
+        order.sort(Comparator.comparingDouble((Integer i) -> scores[i]).reversed());
+
+        List<ScoredChunk> reranked = new ArrayList<>(Math.min(topK, candidates.size()));
+        for (int i = 0; i < order.size() && reranked.size() < topK; i++) {
+            reranked.add(candidates.get(order.get(i)));
+        }
+        for (int i = prefix; i < candidates.size() && reranked.size() < topK; i++) {
+            reranked.add(candidates.get(i));
+        }
+        return reranked;
+    }
+
+    /**
+     * Borrow a predictor, creating one if all existing ones are busy and the
+     * pool is not full yet.
+     */
+    private Predictor<PairBatch, float[]> borrowPredictor() throws InterruptedException {
+        Predictor<PairBatch, float[]> predictor = idlePredictors.poll();
+        if (predictor != null)
+            return predictor;
+
+        synchronized (allPredictors) {
+            if (allPredictors.size() < maxPredictors) {
+                predictor = model.newPredictor();
+                allPredictors.add(predictor);
+                return predictor;
+            }
+        }
+        return idlePredictors.take();
+    }
+
+    /**
+     * Score a batch in a single padded forward pass and update the cost per
+     * pair.
+     */
+    private float[] predict(PairBatch batch) throws Exception {
+        Predictor<PairBatch, float[]> predictor = borrowPredictor();
+        try {
+            long start = System.nanoTime();
+            float[] scores = predictor.predict(batch);
+            double perPair = (double) (System.nanoTime() - start) / batch.passages().size();
+            double previous = nanosPerPair;
+            nanosPerPair = previous == 0 ? perPair : EWMA_ALPHA * perPair + (1 - EWMA_ALPHA) * previous;
+            return scores;
+        } finally {
+            idlePredictors.offer(predictor);
+        }
+    }
+
+    /**
+     * Check whether the model failed to load and candidates are passed through.
+     */
+    public boolean isFallback() {
+        if (!initialized)
+            initialize();
+        return useFallback;
+    }
+
+    public long getScoredPairs() {
+        return scoredPairs.get();
+    }
+
+    public long getCachedPairs() {
+        return cachedPairs.get();
+    }
+
+    /**
+     * Get the number of candidates left unscored because of the latency budget.
+     */
+    public long getUnscoredPairs() {
+        return unscoredPairs.get();
+    }
+
+    /**
+     * Get the estimated model time per (query, chunk) pair.
+     */
+    public double getMillisPerPair() {
+        return nanosPerPair / 1e6;
+    }
+
+    @Override
+    public synchronized void close() {
+        allPredictors.forEach(Predictor::close);
+        allPredictors.clear();
+        idlePredictors.clear();
+        if (model != null)
+            model.close();
+        model = null;
+        initialized = false;
+        useFallback = false;
+        closed = true;
+        scoreCache.invalidateAll();
+    }
+
+    /**
+     * Cache key of a score. The content hash keeps an updated chunk (same id,
+     * new text) from reusing the score of its old text.
+     */
+    private record ScoreKey(long queryHash, String chunkId, int contentHash) {
+        static ScoreKey of(long queryHash, ScoredChunk chunk) {
+            return new ScoreKey(queryHash, chunk.id(), chunk.content().hashCode());
+        }
+    }
+
+    /**
+     * One query with the passages to score against it.
+     */
+    private record PairBatch(String query, List<String> passages) {
+    }
+
+    /**
+     * Translator scoring a batch of (query, passage) pairs in one forward pass.
+     * Pairs are encoded as "[CLS] query [SEP] passage [SEP]", passages are
+     * truncated to the model's maximum length, and sequences are right-padded
+     * to the longest one. The output is one relevance logit per pair.
+     */
+    private static class CrossEncoderTranslator implements Translator<PairBatch, float[]> {
+
+        private HuggingFaceTokenizer tokenizer;
+
+        @Override
+        public void prepare(TranslatorContext ctx) throws Exception {
+            Path modelPath = ctx.getModel().getModelPath();
+            tokenizer = HuggingFaceTokenizer.builder()
+                    .optTokenizerPath(modelPath.resolve("tokenizer.json"))
+                    .optTruncateSecondOnly()
+                    .optMaxLength(MAX_SEQUENCE_LENGTH)
+                    .optPadding(false)
+                    .build();
+        }
+
+        @Override
+        public NDList processInput(TranslatorContext ctx, PairBatch input) {
+            PairList<String, String> pairs = new PairList<>(input.passages().size());
+            for (String passage : input.passages()) {
+                pairs.add(input.query(), passage);
+            }
+            Encoding[] encodings = tokenizer.batchEncode(pairs);
+
+            int maxLength = 0;
+            for (Encoding encoding : encodings) {
+                maxLength = Math.max(maxLength, encoding.getIds().length);
+            }
+
+            long[] ids = new long[encodings.length * maxLength];
+            long[] attentionMask = new long[encodings.length * maxLength];
+            long[] typeIds = new long[encodings.length * maxLength];
+            for (int i = 0; i < encodings.length; i++) {
+                long[] encodingIds = encodings[i].getIds();
+                System.arraycopy(encodingIds, 0, ids, i * maxLength, encodingIds.length);
+                System.arraycopy(encodings[i].getAttentionMask(), 0, attentionMask, i * maxLength,
+                        encodingIds.length);
+                System.arraycopy(encodings[i].getTypeIds(), 0, typeIds, i * maxLength, encodingIds.length);
+            }
+
+            NDManager manager = ctx.getNDManager();
+            Shape shape = new Shape(encodings.length, maxLength);
+            return new NDList(manager.create(ids, shape), manager.create(attentionMask, shape),
+                    manager.create(typeIds, shape));
+        }
+
+        @Override
+        public float[] processOutput(TranslatorContext ctx, NDList list) {
+            // (batch, labels): single-label models give the relevance logit,
+            // two-label ones give (not relevant, relevant)
+            NDArray logits = list.get(0);
+            int batchSize = (int) logits.getShape().get(0);
+            int labels = logits.getShape().dimension() > 1 ? (int) logits.getShape().get(1) : 1;
+            float[] flat = logits.toFloatArray();
+            float[] scores = new float[batchSize];
+            for (int i = 0; i < batchSize; i++) {
+                scores[i] = flat[i * labels + labels - 1];
+            }
+            return scores;
+        }
+
+        @Override
+        public Batchifier getBatchifier() {
+            return null;
+        }
+    }
+}
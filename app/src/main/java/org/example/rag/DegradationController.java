@@ -0,0 +1,201 @@
+package org.example.rag;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Picks the {@link DegradationLevel} of each retrieval from the current load,
+ * so that overload sheds work instead of turning into timeouts.
+ *
+ * Load is measured as the highest of three pressures, each 1.0 at its limit:
+ * - queries in flight vs. the concurrency limit
+ * - smoothed (EWMA) query latency vs. the target latency
+ * - process CPU load vs. the CPU limit, weighted by the queries in flight per
+ *   core (can at most drop the reranker): the pipeline's own inference keeps
+ *   the CPU busy even at low load, which is only overload once queries queue
+ *
+ * With hysteresis: the level gets heavier as soon as the pressure crosses the
+ * next threshold, but gets lighter one step at a time, only once the pressure
+ * is well below the current level's threshold and the level has been held for
+ * a while.
+ *
+ * A query may also carry a latency budget; if the latency observed at the
+ * current level exceeds it, that query runs at a cheaper level. Levels no
+ * query ran at for a while are re-tested with one query, as their latency may
+ * have dropped since.
+ */
+public class DegradationController {
+
+    // Pressure at which each level is entered, by ordinal
+    private static final double[] ENTER_PRESSURE = { 0, 1.0, 1.5, 2.5 };
+    // A level is left once the pressure falls below this fraction of its entry pressure
+    private static final double EXIT_RATIO = 0.7;
+    private static final long MIN_DWELL_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final double EWMA_ALPHA = 0.2;
+    private static final long CPU_SAMPLE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+    private static final long LATENCY_RETEST_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final int maxInFlight;
+    private final long targetLatencyNanos;
+    private final double maxCpuLoad;
+    private final int cores = Runtime.getRuntime().availableProcessors();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile DegradationLevel override;
+
+    // Guarded by this
+    private DegradationLevel level = DegradationLevel.FULL;
+    private long levelSince = System.nanoTime();
+    private long levelChanges = 0;
+    private double latencyNanos = 0;
+    private final double[] levelLatencyNanos = new double[DegradationLevel.values().length];
+    private final long[] completed = new long[DegradationLevel.values().length];
+    // When each level's latency was last measured (or a query was sent to re-measure it)
+    private final long[] levelLatencyAt = new long[DegradationLevel.values().length];
+    private double cpuLoad = 0;
+    private long cpuSampledAt = 0;
+
+    /**
+     * Create a controller allowing two queries in flight per core, a 2s
+     * target latency and 95% CPU.
+     */
+    public DegradationController() {
+        this(2 * Runtime.getRuntime().availableProcessors(), Duration.ofSeconds(2), 0.95);
+    }
+
+    /**
+     * @param maxInFlight   Queries in flight at which the pipeline starts degrading
+     * @param targetLatency Smoothed latency at which the pipeline starts degrading
+     * @param maxCpuLoad    Process CPU load (0-1) at which reranking is dropped
+     */
+    public DegradationController(int maxInFlight, Duration targetLatency, double maxCpuLoad) {
+        this.maxInFlight = maxInFlight;
+        this.targetLatencyNanos = targetLatency.toNanos();
+        this.maxCpuLoad = maxCpuLoad;
+    }
+
+    /**
+     * Choose the level of a new query and count it as in flight. Every call
+     * must be paired with {@link #complete}.
+     *
+     * @param latencyBudget Maximum acceptable latency of this query, or null
+     */
+    public DegradationLevel begin(Duration latencyBudget) {
+        int running = inFlight.incrementAndGet();
+        DegradationLevel forced = override;
+        if (forced != null)
+            return forced;
+
+        synchronized (this) {
+            update(running);
+            DegradationLevel chosen = level;
+            if (latencyBudget != null) {
+                long budget = latencyBudget.toNanos();
+                long now = System.nanoTime();
+                while (chosen != DegradationLevel.CACHE_ONLY && levelLatencyNanos[chosen.ordinal()] > budget
+                        && !retest(chosen, now)) {
+                    chosen = chosen.heavier();
+                }
+            }
+            return chosen;
+        }
+    }
+
+    /**
+     * Record the end of a query started with {@link #begin}.
+     */
+    public void complete(DegradationLevel level, long elapsedNanos) {
+        inFlight.decrementAndGet();
+        synchronized (this) {
+            int index = level.ordinal();
+            levelLatencyNanos[index] = completed[index] == 0
+                    ? elapsedNanos
+                    : EWMA_ALPHA * elapsedNanos + (1 - EWMA_ALPHA) * levelLatencyNanos[index];
+            latencyNanos = EWMA_ALPHA * elapsedNanos + (1 - EWMA_ALPHA) * latencyNanos;
+            levelLatencyAt[index] = System.nanoTime();
+            completed[index]++;
+        }
+    }
+
+    /**
+     * Pin the level (e.g., for tests or an operator switch); null restores
+     * automatic selection.
+     */
+    public void setOverride(DegradationLevel level) {
+        this.override = level;
+    }
+
+    public synchronized DegradationLevel getLevel() {
+        DegradationLevel forced = override;
+        return forced != null ? forced : level;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public synchronized long getLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis((long) latencyNanos);
+    }
+
+    public synchronized long getCompleted(DegradationLevel level) {
+        return completed[level.ordinal()];
+    }
+
+    /**
+     * Get the number of automatic level changes so far.
+     */
+    public synchronized long getLevelChanges() {
+        return levelChanges;
+    }
+
+    private void update(int running) {
+        double pressure = Math.max((double) running / maxInFlight, latencyNanos / targetLatencyNanos);
+        double queueing = Math.min(1.0, (double) running / cores);
+        pressure = Math.max(pressure, Math.min(cpuLoad(), maxCpuLoad) / maxCpuLoad * queueing);
+
+        DegradationLevel next = level;
+        while (next != DegradationLevel.CACHE_ONLY && pressure >= ENTER_PRESSURE[next.ordinal() + 1]) {
+            next = next.heavier();
+        }
+
+        long now = System.nanoTime();
+        if (next != level) {
+            changeLevel(next, now);
+        } else if (level != DegradationLevel.FULL && now - levelSince >= MIN_DWELL_NANOS
+                && pressure < EXIT_RATIO * ENTER_PRESSURE[level.ordinal()]) {
+            changeLevel(level.lighter(), now);
+        }
+    }
+
+    private void changeLevel(DegradationLevel next, long now) {
+        levelChanges++;
+        level = next;
+        levelSince = now;
+    }
+
+    /**
+     * Check whether a query should run at a level despite its budget, to
+     * measure its latency again; at most one per level and interval does.
+     */
+    private boolean retest(DegradationLevel candidate, long now) {
+        int index = candidate.ordinal();
+        if (now - levelLatencyAt[index] < LATENCY_RETEST_NANOS)
+            return false;
+        levelLatencyAt[index] = now;
+        return true;
+    }
+
+    private double cpuLoad() {
+        long now = System.nanoTime();
+        if (now - cpuSampledAt >= CPU_SAMPLE_INTERVAL_NANOS) {
+            cpuSampledAt = now;
+            if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+                cpuLoad = Math.max(0, os.getProcessCpuLoad());
+            }
+        }
+        return cpuLoad;
+    }
+}
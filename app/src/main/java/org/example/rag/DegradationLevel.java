@@ -0,0 +1,43 @@
+package org.example.rag;
+
+/**
+ * How much of the retrieval pipeline runs, from the full pipeline down to
+ * answering from cache only. Each level drops the most expensive remaining
+ * stage of the previous one.
+ */
+public enum DegradationLevel {
+    /** BM25 + embedding + vector search + RRF + rerank. */
+    FULL("full hybrid search"),
+    /** Full search, fused results are returned without reranking. */
+    NO_RERANK("hybrid search without reranking"),
+    /** Keyword search only: no embedding call, no vector search. */
+    BM25_ONLY("keyword search only"),
+    /** Only previously cached results are returned. */
+    CACHE_ONLY("cached results only");
+
+    private final String description;
+
+    DegradationLevel(String description) {
+        this.description = description;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    boolean usesVectors() {
+        return this == FULL || this == NO_RERANK;
+    }
+
+    boolean reranks() {
+        return this == FULL;
+    }
+
+    DegradationLevel lighter() {
+        return this == FULL ? FULL : values()[ordinal() - 1];
+    }
+
+    DegradationLevel heavier() {
+        return this == CACHE_ONLY ? CACHE_ONLY : values()[ordinal() + 1];
+    }
+}
@@ -0,0 +1,96 @@
+package org.example.rag;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Corpus source walking a directory tree and reading every file whose path
+ * (relative to the root) matches a glob pattern.
+ *
+ * The source name of each document is its relative path with '/' separators,
+ * so top-level files keep their plain file name (e.g., "billing_policy.md").
+ */
+public class DirectoryCorpusSource implements CorpusSource {
+
+    private static final String DEFAULT_PATTERN = "**.md";
+
+    private final Path root;
+    private final String pattern;
+    private final PathMatcher matcher;
+
+    /**
+     * Read all markdown files under the given directory, at any depth.
+     */
+    public DirectoryCorpusSource(Path root) {
+        this(root, DEFAULT_PATTERN);
+    }
+
+    /**
+     * Read files under the given directory matching a glob pattern.
+     *
+     * @param root    The directory to walk
+     * @param pattern Glob relative to the root (e.g., "**.md", "guides/*.md")
+     */
+    public DirectoryCorpusSource(Path root, String pattern) {
+        this.root = root.toAbsolutePath().normalize();
+        this.pattern = pattern;
+        this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+    }
+
+    @Override
+    public void read(DocumentSink sink) throws IOException, InterruptedException {
+        // Files.walk is lazy, so only one path is materialized at a time
+        try (Stream<Path> paths = Files.walk(root)) {
+            Iterator<Path> it = paths
+                    .filter(Files::isRegularFile)
+                    .filter(this::matches)
+                    .iterator();
+
+            while (it.hasNext()) {
+                Path file = it.next();
+                String content;
+                try {
+                    content = Files.readString(file, StandardCharsets.UTF_8);
+                } catch (IOException e) {
+                    System.err.println("Warning: Could not load " + file);
+                    continue;
+                }
+                sink.accept(new SourceDocument(sourceName(file), content));
+            }
+        }
+    }
+
+    /**
+     * Check whether a file belongs to this source.
+     */
+    public boolean matches(Path file) {
+        Path absolute = root.resolve(file).normalize();
+        return absolute.startsWith(root) && matcher.matches(root.relativize(absolute));
+    }
+
+    /**
+     * Source name used for a file of this corpus.
+     */
+    public String sourceName(Path file) {
+        Path absolute = root.resolve(file).normalize();
+        return root.relativize(absolute).toString().replace('\\', '/');
+    }
+
+    /**
+     * Get the root directory of this source.
+     */
+    public Path getRoot() {
+        return root;
+    }
+
+    @Override
+    public String getName() {
+        return "dir:" + root + " (" + pattern + ")";
+    }
+}
@@ -0,0 +1,197 @@
+package org.example.rag;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches a documentation directory and re-indexes documents as they change.
+ *
+ * File system events are debounced (editors often write a file in several
+ * steps), then each touched file is handed to
+ * {@link HybridRetriever#reindexDocument}, which only re-embeds the chunks
+ * that actually changed. Deleted files are removed from the indexes.
+ */
+public class DocsDirectoryWatcher implements AutoCloseable {
+
+    private static final long DEBOUNCE_MS = 300;
+
+    private final HybridRetriever retriever;
+    private final DirectoryCorpusSource source;
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirs = new ConcurrentHashMap<>();
+    private final Thread thread;
+    private volatile boolean running = false;
+
+    /**
+     * @param retriever Retriever built over the same directory source
+     * @param source    The watched directory and file pattern
+     */
+    public DocsDirectoryWatcher(HybridRetriever retriever, DirectoryCorpusSource source) throws IOException {
+        this.retriever = retriever;
+        this.source = source;
+        this.watchService = source.getRoot().getFileSystem().newWatchService();
+        this.thread = new Thread(this::watchLoop, "docs-watcher");
+        this.thread.setDaemon(true);
+        registerTree(source.getRoot());
+    }
+
+    /**
+     * Start watching in a background daemon thread.
+     */
+    public synchronized void start() {
+        if (running)
+            return;
+        running = true;
+        thread.start();
+    }
+
+    private void registerTree(Path dir) throws IOException {
+        try (Stream<Path> dirs = Files.walk(dir)) {
+            for (Path d : (Iterable<Path>) dirs.filter(Files::isDirectory)::iterator) {
+                WatchKey key = d.register(watchService, ENTRY_CREATE, ENTRY_MODIFY, ENTRY_DELETE);
+                watchedDirs.put(key, d);
+            }
+        }
+    }
+
+    private void watchLoop() {
+        while (running) {
+            try {
+                WatchKey key = watchService.take();
+                Set<Path> changed = new LinkedHashSet<>();
+                boolean overflow = collect(key, changed);
+
+                // Debounce: keep collecting until the directory has been quiet for a moment
+                WatchKey next;
+                while ((next = watchService.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS)) != null) {
+                    overflow |= collect(next, changed);
+                }
+
+                if (overflow) {
+                    resync();
+                } else {
+                    changed.forEach(this::apply);
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("[DocsDirectoryWatcher] Update failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Drain the events of a key into the set of changed paths.
+     *
+     * @return true if events were lost and a full resync is needed
+     */
+    private boolean collect(WatchKey key, Set<Path> changed) {
+        Path dir = watchedDirs.get(key);
+        boolean overflow = false;
+
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == OVERFLOW || dir == null) {
+                overflow = true;
+                continue;
+            }
+
+            Path child = dir.resolve((Path) event.context());
+            if (event.kind() == ENTRY_CREATE && Files.isDirectory(child)) {
+                // A new directory may have been moved in with files already inside
+                try {
+                    registerTree(child);
+                    try (Stream<Path> files = Files.walk(child)) {
+                        files.filter(Files::isRegularFile).forEach(changed::add);
+                    }
+                } catch (IOException e) {
+                    overflow = true;
+                }
+            } else {
+                changed.add(child);
+            }
+        }
+
+        if (!key.reset()) {
+            watchedDirs.remove(key);
+        }
+        return overflow;
+    }
+
+    /**
+     * Re-index or remove a single changed path.
+     */
+    private void apply(Path path) {
+        if (Files.isDirectory(path))
+            return;
+
+        String name = source.sourceName(path);
+        if (Files.exists(path)) {
+            if (!source.matches(path))
+                return;
+            try {
+                String content = Files.readString(path, StandardCharsets.UTF_8);
+                report(retriever.reindexDocument(name, content));
+            } catch (IOException e) {
+                System.err.println("[DocsDirectoryWatcher] Could not read " + path + ": " + e.getMessage());
+            }
+        } else {
+            // Either a deleted file or a deleted directory with indexed files under it
+            for (String indexed : retriever.getIndexedSources()) {
+                if (indexed.equals(name) || indexed.startsWith(name + "/")) {
+                    report(retriever.removeDocument(indexed));
+                }
+            }
+        }
+    }
+
+    /**
+     * Bring the indexes in line with the directory, as done after lost
+     * events (or e.g. after a period without watching). Unchanged documents
+     * cost only a re-chunk and a hash comparison.
+     */
+    public void resync() {
+        Set<String> seen = new HashSet<>();
+        try {
+            source.read(document -> {
+                seen.add(document.source());
+                report(retriever.reindexDocument(document.source(), document.content()));
+            });
+        } catch (IOException e) {
+            System.err.println("[DocsDirectoryWatcher] Resync failed: " + e.getMessage());
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        for (String indexed : retriever.getIndexedSources()) {
+            if (!seen.contains(indexed)) {
+                report(retriever.removeDocument(indexed));
+            }
+        }
+    }
+
+    private void report(IncrementalIndexer.Result result) {
+        if (result.changed()) {
+            System.err.println("[DocsDirectoryWatcher] Reindexed " + result);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            // Ignore close errors
+        }
+        thread.interrupt();
+    }
+}
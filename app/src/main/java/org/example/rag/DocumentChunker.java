@@ -1,21 +1,78 @@
 package org.example.rag;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Splits markdown documents into semantic chunks based on headers.
+ *
+ * Two sizing modes are available:
+ * - CHARACTERS: sections are split at a fixed character size (default)
+ * - TOKENS: sections are packed up to a token budget measured with the
+ * embedding model's tokenizer, so chunks fit the model's sequence limit
+ * without being truncated and without wasting forward passes on tiny chunks
  */
 public class DocumentChunker {
 
     private static final int MAX_CHUNK_SIZE = 1000; // characters
     private static final int OVERLAP_SIZE = 100; // characters overlap between chunks
 
+    // MiniLM's 128-token sequence limit minus the two special tokens
+    public static final int DEFAULT_MAX_TOKENS = 126;
+    public static final int DEFAULT_OVERLAP_TOKENS = 16;
+
+    /**
+     * How chunk size is measured.
+     */
+    public enum Mode {
+        CHARACTERS,
+        TOKENS
+    }
+
+    private final Mode mode;
+    private final TokenCounter tokenCounter;
+    private final int maxTokens;
+    private final int overlapTokens;
+
+    /**
+     * Create a character-based chunker.
+     */
+    public DocumentChunker() {
+        this(Mode.CHARACTERS, null);
+    }
+
+    /**
+     * Create a chunker with the default token budget.
+     *
+     * @param mode         How chunk size is measured
+     * @param tokenCounter Tokenizer used for TOKENS mode and to record token
+     *                     counts on chunks; may be null in CHARACTERS mode
+     */
+    public DocumentChunker(Mode mode, TokenCounter tokenCounter) {
+        this(mode, tokenCounter, DEFAULT_MAX_TOKENS, DEFAULT_OVERLAP_TOKENS);
+    }
+
+    /**
+     * Create a chunker with an explicit token budget.
+     *
+     * @param maxTokens     Maximum tokens per chunk (TOKENS mode)
+     * @param overlapTokens Tokens repeated from the end of the previous chunk
+     */
+    public DocumentChunker(Mode mode, TokenCounter tokenCounter, int maxTokens, int overlapTokens) {
+        if (mode == Mode.TOKENS && tokenCounter == null) {
+            throw new IllegalArgumentException("Token-based chunking requires a token counter");
+        }
+        this.mode = mode;
+        this.tokenCounter = tokenCounter;
+        this.maxTokens = maxTokens;
+        this.overlapTokens = overlapTokens;
+    }
+
     /**
      * Chunk a markdown document by ## headers.
      * 
@@ -24,6 +81,10 @@ public class DocumentChunker {
      * @return List of chunks
      */
     public List<Chunk> chunkDocument(String content, String source) {
+        if (mode == Mode.TOKENS) {
+            return chunkByTokens(content, source);
+        }
+
         List<Chunk> chunks = new ArrayList<>();
 
         // Split by ## headers (level 2), preserving ### sub-headers within
@@ -45,7 +106,7 @@ public class DocumentChunker {
                 chunkIndex += subChunks.size();
             } else {
                 String id = source + ":" + chunkIndex;
-                chunks.add(new Chunk(id, section.trim(), source, header));
+                chunks.add(newChunk(id, section.trim(), source, header));
                 chunkIndex++;
             }
         }
@@ -76,7 +137,7 @@ public class DocumentChunker {
                 }
 
                 String id = source + ":" + idx;
-                chunks.add(new Chunk(id, subSection.trim(), source, subHeader));
+                chunks.add(newChunk(id, subSection.trim(), source, subHeader));
                 idx++;
             }
         } else {
@@ -103,7 +164,7 @@ public class DocumentChunker {
             if (currentChunk.length() + para.length() > MAX_CHUNK_SIZE && currentChunk.length() > 0) {
                 // Save current chunk
                 String id = source + ":" + idx;
-                chunks.add(new Chunk(id, currentChunk.toString().trim(), source, header));
+                chunks.add(newChunk(id, currentChunk.toString().trim(), source, header));
                 idx++;
 
                 // Start new chunk with overlap from end of previous
@@ -120,7 +181,7 @@ public class DocumentChunker {
         // Don't forget the last chunk
         if (currentChunk.length() > 0) {
             String id = source + ":" + idx;
-            chunks.add(new Chunk(id, currentChunk.toString().trim(), source, header));
+            chunks.add(newChunk(id, currentChunk.toString().trim(), source, header));
         }
 
         return chunks;
@@ -136,32 +197,215 @@ public class DocumentChunker {
         return content.substring(content.length() - OVERLAP_SIZE);
     }
 
+    /**
+     * Create a chunk, recording its token count when a tokenizer is available.
+     */
+    private Chunk newChunk(String id, String content, String source, String header) {
+        int tokens = tokenCounter != null ? tokenCounter.countTokens(content) : -1;
+        return new Chunk(id, content, source, header, tokens);
+    }
+
+    /**
+     * Chunk a document by ## headers, packing each section up to the token budget.
+     */
+    private List<Chunk> chunkByTokens(String content, String source) {
+        List<Chunk> chunks = new ArrayList<>();
+        String[] sections = content.split("(?=(?m)^## )");
+
+        for (String section : sections) {
+            if (section.trim().isEmpty())
+                continue;
+
+            String header = section.split("\n", 2)[0].replaceAll("^##\\s*", "").trim();
+            String text = section.trim();
+            int tokens = tokenCounter.countTokens(text);
+            if (tokens <= maxTokens) {
+                chunks.add(new Chunk(source + ":" + chunks.size(), text, source, header, tokens));
+                continue;
+            }
+
+            // Keep ### sub-sections apart so a chunk never mixes two of them
+            for (String subSection : section.split("(?=(?m)^### )")) {
+                if (subSection.trim().isEmpty())
+                    continue;
+
+                String subHeader = header;
+                String firstLine = subSection.split("\n", 2)[0];
+                if (firstLine.startsWith("###")) {
+                    subHeader = header + " > " + firstLine.replaceAll("^###\\s*", "").trim();
+                }
+
+                List<TextUnit> units = new ArrayList<>();
+                splitIntoUnits(subSection.trim(), "", units);
+                for (String packed : packUnits(units)) {
+                    chunks.add(new Chunk(source + ":" + chunks.size(), packed, source, subHeader,
+                            tokenCounter.countTokens(packed)));
+                }
+            }
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Break text into units that each fit the token budget, preferring the
+     * coarsest boundary: paragraphs, then lines, then sentences, then words.
+     */
+    private void splitIntoUnits(String text, String separator, List<TextUnit> units) {
+        int tokens = tokenCounter.countTokens(text);
+        if (tokens <= maxTokens) {
+            units.add(new TextUnit(text, tokens, separator));
+            return;
+        }
+
+        String[] paragraphs = text.split("\n\n+");
+        if (paragraphs.length > 1) {
+            for (int i = 0; i < paragraphs.length; i++) {
+                splitIntoUnits(paragraphs[i], i == 0 ? separator : "\n\n", units);
+            }
+            return;
+        }
+
+        String[] lines = text.split("\n");
+        if (lines.length > 1) {
+            for (int i = 0; i < lines.length; i++) {
+                splitIntoUnits(lines[i], i == 0 ? separator : "\n", units);
+            }
+            return;
+        }
+
+        String[] sentences = text.split("(?<=[.!?])\\s+");
+        if (sentences.length > 1) {
+            for (int i = 0; i < sentences.length; i++) {
+                splitIntoUnits(sentences[i], i == 0 ? separator : " ", units);
+            }
+            return;
+        }
+
+        String[] words = text.strip().split("\\s+");
+        if (words.length > 1) {
+            for (int i = 0; i < words.length; i++) {
+                splitIntoUnits(words[i], i == 0 ? separator : " ", units);
+            }
+            return;
+        }
+
+        // A single word over the budget (e.g., a long URL): cut it in halves
+        int length = text.codePointCount(0, text.length());
+        if (length < 2) {
+            units.add(new TextUnit(text, tokens, separator));
+            return;
+        }
+        int middle = text.offsetByCodePoints(0, length / 2);
+        splitIntoUnits(text.substring(0, middle), separator, units);
+        splitIntoUnits(text.substring(middle), "", units);
+    }
+
+    /**
+     * Greedily pack units into chunks of at most maxTokens, starting each new
+     * chunk with the trailing units of the previous one (up to overlapTokens).
+     */
+    private List<String> packUnits(List<TextUnit> units) {
+        List<String> packed = new ArrayList<>();
+        Deque<TextUnit> pending = new ArrayDeque<>(units);
+        List<TextUnit> current = new ArrayList<>();
+        int currentTokens = 0;
+        int carried = 0; // Overlap units at the start of current
+
+        while (!pending.isEmpty() || !current.isEmpty()) {
+            TextUnit unit = pending.peekFirst();
+            if (unit == null || (currentTokens + unit.tokens() > maxTokens && !current.isEmpty())) {
+                packed.add(joinWithinBudget(current, carried, pending));
+                unit = pending.peekFirst();
+                if (unit == null)
+                    break;
+
+                // Carry over whole trailing units as overlap
+                List<TextUnit> overlap = new ArrayList<>();
+                int overlapTotal = 0;
+                for (int i = current.size() - 1; i > 0; i--) {
+                    TextUnit previous = current.get(i);
+                    if (overlapTotal + previous.tokens() > overlapTokens)
+                        break;
+                    overlap.add(0, previous);
+                    overlapTotal += previous.tokens();
+                }
+                if (overlapTotal + unit.tokens() > maxTokens) {
+                    overlap.clear();
+                    overlapTotal = 0;
+                }
+                current = overlap;
+                currentTokens = overlapTotal;
+                carried = overlap.size();
+            }
+
+            current.add(pending.pollFirst());
+            currentTokens += unit.tokens();
+        }
+        return packed;
+    }
+
+    /**
+     * Join units into a chunk. Unit counts do not add up exactly (separators
+     * and word pieces merging across boundaries cost tokens too), so trailing
+     * units are moved back to the pending ones until the joined text fits.
+     * Once only one new unit is left, the overlap is dropped instead.
+     *
+     * @param carried Number of overlap units at the start of current
+     */
+    private String joinWithinBudget(List<TextUnit> current, int carried, Deque<TextUnit> pending) {
+        String text = join(current);
+        while (current.size() > 1 && tokenCounter.countTokens(text) > maxTokens) {
+            if (current.size() > carried + 1) {
+                pending.addFirst(current.remove(current.size() - 1));
+            } else {
+                current.remove(0);
+                carried--;
+            }
+            text = join(current);
+        }
+        return text;
+    }
+
+    private String join(List<TextUnit> units) {
+        StringBuilder text = new StringBuilder();
+        for (TextUnit unit : units) {
+            if (text.length() > 0) {
+                text.append(unit.separator());
+            }
+            text.append(unit.text());
+        }
+        return text.toString().trim();
+    }
+
+    /**
+     * A piece of text that fits the token budget, with the separator that
+     * preceded it in the original document.
+     */
+    private record TextUnit(String text, int tokens, String separator) {
+    }
+
     /**
      * Load and chunk all documents from resources.
      */
     public Map<String, List<Chunk>> loadAndChunkAll() {
+        return loadAndChunkAll(ClasspathCorpusSource.defaultDocs());
+    }
+
+    /**
+     * Load and chunk all documents of a corpus source.
+     * Holds the whole corpus in memory; use {@link IngestionPipeline} for large corpora.
+     */
+    public Map<String, List<Chunk>> loadAndChunkAll(CorpusSource source) {
         Map<String, List<Chunk>> allChunks = new HashMap<>();
 
-        String[] docFiles = {
-                "/docs/troubleshooting.md",
-                "/docs/integration_guide.md",
-                "/docs/faq.md",
-                "/docs/system_requirements.md",
-                "/docs/installation.md",
-                "/docs/billing_policy.md"
-        };
-
-        for (String docPath : docFiles) {
-            try (InputStream is = getClass().getResourceAsStream(docPath)) {
-                if (is != null) {
-                    String content = new String(is.readAllBytes(), StandardCharsets.UTF_8);
-                    String source = docPath.substring(docPath.lastIndexOf('/') + 1);
-                    List<Chunk> chunks = chunkDocument(content, source);
-                    allChunks.put(source, chunks);
-                }
-            } catch (IOException e) {
-                System.err.println("Warning: Could not load " + docPath);
-            }
+        try {
+            source.read(document -> allChunks.put(document.source(),
+                    chunkDocument(document.content(), document.source())));
+        } catch (IOException e) {
+            System.err.println("Warning: Could not load " + source.getName());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
 
         return allChunks;
@@ -7,6 +7,8 @@ import ai.djl.inference.Predictor;
 import ai.djl.ndarray.NDArray;
 import ai.djl.ndarray.NDList;
 import ai.djl.ndarray.NDManager;
+import ai.djl.ndarray.types.DataType;
+import ai.djl.ndarray.types.Shape;
 
 import ai.djl.repository.zoo.Criteria;
 import ai.djl.repository.zoo.ModelNotFoundException;
@@ -21,6 +23,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * Embedding service using DJL for nomic-embed-text-v2-moe or fallback models.
@@ -34,9 +39,15 @@ public class EmbeddingService implements AutoCloseable {
     private static final String QUERY_PREFIX = "";
     private static final String DOCUMENT_PREFIX = "";
 
+    /** paraphrase-multilingual-MiniLM-L12-v2 (Multilingual, 384d) */
+    public static final String DEFAULT_MODEL_URL =
+            "djl://ai.djl.huggingface.pytorch/sentence-transformers/paraphrase-multilingual-MiniLM-L12-v2";
+
+    private final String modelUrl;
     private final int embeddingDimension;
+    private final int maxPredictors;
     private ZooModel<String, float[]> model;
-    private Predictor<String, float[]> predictor;
+    private HuggingFaceTokenizer tokenizer;
     private boolean initialized = false;
     private boolean useFallback = false;
 
@@ -51,9 +62,26 @@ public class EmbeddingService implements AutoCloseable {
      * Create embedding service with specified dimensions (for Matryoshka).
      */
     public EmbeddingService(int dimension) {
+        this(DEFAULT_MODEL_URL, dimension);
+    }
+
+    /**
+     * Create embedding service for a specific model.
+     *
+     * @param modelUrl  DJL model URL (e.g., "djl://ai.djl.huggingface.pytorch/...")
+     * @param dimension Embedding dimension to keep
+     */
+    public EmbeddingService(String modelUrl, int dimension) {
+        this.modelUrl = modelUrl;
         this.embeddingDimension = dimension;
+        // One single-threaded predictor per core (see PyTorchThreads)
+        this.maxPredictors = Runtime.getRuntime().availableProcessors();
     }
 
+    // DJL predictors are not thread-safe, so concurrent callers each borrow one
+    private final BlockingQueue<Predictor<List<String>, float[][]>> idlePredictors = new LinkedBlockingQueue<>();
+    private final List<Predictor<List<String>, float[][]>> allPredictors = new CopyOnWriteArrayList<>();
+
     /**
      * Initialize the embedding model.
      * This is done lazily on first use.
@@ -90,18 +118,55 @@ public class EmbeddingService implements AutoCloseable {
      * Load the primary embedding model.
      */
     private void loadPrimaryModel() throws ModelNotFoundException, MalformedModelException, IOException {
-        // Use paraphrase-multilingual-MiniLM-L12-v2 (Multilingual, 384d)
+        PyTorchThreads.configure();
         Criteria<String, float[]> criteria = Criteria.builder()
                 .setTypes(String.class, float[].class)
                 .optApplication(Application.NLP.TEXT_EMBEDDING)
                 .optEngine("PyTorch")
-                .optModelUrls(
-                        "djl://ai.djl.huggingface.pytorch/sentence-transformers/paraphrase-multilingual-MiniLM-L12-v2")
+                .optModelUrls(modelUrl)
                 .optTranslator(new EmbeddingTranslator())
                 .build();
 
         model = criteria.loadModel();
-        predictor = model.newPredictor();
+        tokenizer = HuggingFaceTokenizer.newInstance(model.getModelPath().resolve("tokenizer.json"));
+    }
+
+    /**
+     * Borrow a batch predictor, creating one if all existing ones are busy and
+     * the pool is not full yet.
+     */
+    private Predictor<List<String>, float[][]> borrowPredictor() throws InterruptedException {
+        Predictor<List<String>, float[][]> predictor = idlePredictors.poll();
+        if (predictor != null)
+            return predictor;
+
+        synchronized (allPredictors) {
+            if (allPredictors.size() < maxPredictors) {
+                predictor = model.newPredictor(new BatchEmbeddingTranslator(tokenizer));
+                allPredictors.add(predictor);
+                return predictor;
+            }
+        }
+        return idlePredictors.take();
+    }
+
+    /**
+     * Run the model on a batch of texts in a single padded forward pass.
+     */
+    private float[][] predictBatch(List<String> texts) throws Exception {
+        Predictor<List<String>, float[][]> predictor = borrowPredictor();
+        try {
+            float[][] embeddings = predictor.predict(texts);
+            // Truncate to requested dimension if using Matryoshka
+            for (int i = 0; i < embeddings.length; i++) {
+                if (embeddings[i].length > embeddingDimension) {
+                    embeddings[i] = Arrays.copyOf(embeddings[i], embeddingDimension);
+                }
+            }
+            return embeddings;
+        } finally {
+            idlePredictors.offer(predictor);
+        }
     }
 
     private final Map<String, float[]> embeddingCache = new java.util.concurrent.ConcurrentHashMap<>();
@@ -126,17 +191,13 @@ public class EmbeddingService implements AutoCloseable {
 
         if (useFallback) {
             float[] result = fallbackEmbed(prefixedText);
-            embeddingCache.put(prefixedText, result);
+            cacheIfQuery(prefixedText, result, isQuery);
             return result;
         }
 
         try {
-            float[] embedding = predictor.predict(prefixedText);
-            // Truncate to requested dimension if using Matryoshka
-            if (embedding.length > embeddingDimension) {
-                embedding = Arrays.copyOf(embedding, embeddingDimension);
-            }
-            embeddingCache.put(prefixedText, embedding);
+            float[] embedding = predictBatch(List.of(prefixedText))[0];
+            cacheIfQuery(prefixedText, embedding, isQuery);
             return embedding;
         } catch (Exception e) {
             System.err.println("[EmbeddingService] Embedding failed: " + e.getMessage());
@@ -146,15 +207,91 @@ public class EmbeddingService implements AutoCloseable {
         }
     }
 
+    /**
+     * Count the tokens of a text with the model's tokenizer, excluding special
+     * tokens. Falls back to a rough estimate (~4 characters per token) when the
+     * model could not be loaded.
+     */
+    public int countTokens(String text) {
+        if (!initialized)
+            initialize();
+
+        if (tokenizer == null) {
+            return (text.length() + 3) / 4;
+        }
+        return tokenizer.encode(text, false, false).getIds().length;
+    }
+
+    /**
+     * Check whether the model failed to load and embeddings are computed with
+     * the (not semantically meaningful) fallback.
+     */
+    public boolean isFallback() {
+        if (!initialized)
+            initialize();
+        return useFallback;
+    }
+
+    /**
+     * Get the DJL URL of the embedding model.
+     */
+    public String getModelUrl() {
+        return modelUrl;
+    }
+
+    /**
+     * Only query embeddings are cached: documents are embedded once at ingest,
+     * and caching them would make memory grow with corpus size.
+     */
+    private void cacheIfQuery(String prefixedText, float[] embedding, boolean isQuery) {
+        if (isQuery) {
+            embeddingCache.put(prefixedText, embedding);
+        }
+    }
+
     /**
      * Embed multiple texts in batch.
+     * Cache misses are embedded together in one padded forward pass, which is
+     * much cheaper than one pass per text. Safe to call from multiple threads.
      */
     public List<float[]> embedBatch(List<String> texts, boolean isQuery) {
-        List<float[]> results = new ArrayList<>();
-        for (String text : texts) {
-            results.add(embed(text, isQuery));
+        if (!initialized)
+            initialize();
+
+        String prefix = isQuery ? QUERY_PREFIX : DOCUMENT_PREFIX;
+        float[][] results = new float[texts.size()][];
+        List<String> missing = new ArrayList<>();
+        List<Integer> missingIndexes = new ArrayList<>();
+
+        for (int i = 0; i < texts.size(); i++) {
+            String prefixedText = prefix + texts.get(i);
+            float[] cached = embeddingCache.get(prefixedText);
+            if (cached != null) {
+                results[i] = cached;
+            } else {
+                missing.add(prefixedText);
+                missingIndexes.add(i);
+            }
+        }
+
+        if (!missing.isEmpty()) {
+            float[][] embedded = null;
+            if (!useFallback) {
+                try {
+                    embedded = predictBatch(missing);
+                } catch (Exception e) {
+                    System.err.println("[EmbeddingService] Batch embedding failed: " + e.getMessage());
+                }
+            }
+
+            for (int j = 0; j < missing.size(); j++) {
+                float[] embedding = embedded != null ? embedded[j] : fallbackEmbed(missing.get(j));
+                results[missingIndexes.get(j)] = embedding;
+                cacheIfQuery(missing.get(j), embedding, isQuery);
+            }
         }
-        return results;
+
+        return Arrays.asList(results);
     }
 
     /**
@@ -197,8 +334,11 @@ public class EmbeddingService implements AutoCloseable {
 
     @Override
     public void close() {
-        if (predictor != null)
-            predictor.close();
+        allPredictors.forEach(Predictor::close);
+        allPredictors.clear();
+        idlePredictors.clear();
+        if (tokenizer != null)
+            tokenizer.close();
         if (model != null)
             model.close();
 
@@ -206,6 +346,80 @@ public class EmbeddingService implements AutoCloseable {
         embeddingCache.clear();
     }
 
+    /**
+     * Translator embedding a batch of texts in one forward pass.
+     * Sequences are right-padded to the longest one and mean pooling is
+     * restricted to real tokens via the attention mask.
+     */
+    private static class BatchEmbeddingTranslator implements Translator<List<String>, float[][]> {
+
+        private final HuggingFaceTokenizer tokenizer;
+
+        BatchEmbeddingTranslator(HuggingFaceTokenizer tokenizer) {
+            this.tokenizer = tokenizer;
+        }
+
+        @Override
+        public NDList processInput(TranslatorContext ctx, List<String> inputs) {
+            ai.djl.huggingface.tokenizers.Encoding[] encodings = tokenizer.batchEncode(inputs);
+
+            int maxLength = 0;
+            for (ai.djl.huggingface.tokenizers.Encoding encoding : encodings) {
+                maxLength = Math.max(maxLength, encoding.getIds().length);
+            }
+
+            long[] ids = new long[encodings.length * maxLength];
+            long[] attentionMask = new long[encodings.length * maxLength];
+            for (int i = 0; i < encodings.length; i++) {
+                long[] encodingIds = encodings[i].getIds();
+                long[] encodingMask = encodings[i].getAttentionMask();
+                System.arraycopy(encodingIds, 0, ids, i * maxLength, encodingIds.length);
+                System.arraycopy(encodingMask, 0, attentionMask, i * maxLength, encodingMask.length);
+            }
+
+            NDManager manager = ctx.getNDManager();
+            Shape shape = new Shape(encodings.length, maxLength);
+            NDArray inputIdArray = manager.create(ids, shape);
+            NDArray attentionArray = manager.create(attentionMask, shape);
+            ctx.setAttachment("attentionMask", attentionArray);
+
+            return new NDList(inputIdArray, attentionArray);
+        }
+
+        @Override
+        public float[][] processOutput(TranslatorContext ctx, NDList list) {
+            NDArray embedding = list.get(0);
+
+            // (batch, seq, hidden): masked mean pool across the sequence dimension
+            if (embedding.getShape().dimension() > 2) {
+                NDArray mask = ((NDArray) ctx.getAttachment("attentionMask"))
+                        .toType(DataType.FLOAT32, false)
+                        .expandDims(2);
+                NDArray summed = embedding.mul(mask).sum(new int[] { 1 });
+                NDArray counts = mask.sum(new int[] { 1 }).clip(1e-9f, Float.MAX_VALUE);
+                embedding = summed.div(counts);
+            }
+
+            // Normalize
+            NDArray norm = embedding.pow(2).sum(new int[] { 1 }, true).sqrt();
+            embedding = embedding.div(norm);
+
+            int batchSize = (int) embedding.getShape().get(0);
+            int hidden = (int) embedding.getShape().get(1);
+            float[] flat = embedding.toFloatArray();
+            float[][] results = new float[batchSize][];
+            for (int i = 0; i < batchSize; i++) {
+                results[i] = Arrays.copyOfRange(flat, i * hidden, (i + 1) * hidden);
+            }
+            return results;
+        }
+
+        @Override
+        public Batchifier getBatchifier() {
+            return null;
+        }
+    }
+
     /**
      * Custom translator for sentence embeddings.
      */
@@ -1,74 +1,363 @@
 package org.example.rag;
 
+import com.google.common.cache.CacheStats;
+
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
 
 /**
  * Hybrid retriever that orchestrates the full RAG pipeline:
  * 1. BM25 search (lexical)
- * 2. Vector search (semantic)
+ * 2. Vector search (semantic), concurrently with 1
  * 3. RRF fusion
  * 4. Reranking
+ *
+ * Indexes live in an {@link IndexGeneration}. {@link #rebuild(IndexConfig)}
+ * builds a new generation (e.g., with another embedding model or chunking
+ * mode) in the background while the current one keeps serving, then swaps it
+ * in atomically; queries already running finish on the old generation.
+ *
+ * Under load, stages are shed (reranking, then the embedding and vector
+ * search) rather than letting queries time out; see
+ * {@link #retrieveWithStatus(String, int, String, Duration)}.
  */
 public class HybridRetriever {
 
-    private final DocumentChunker chunker;
-    private final BM25Index bm25Index;
-    private final VectorStore vectorStore;
-    private final EmbeddingService embeddingService;
+    private final CorpusSource corpusSource;
     private final RRFMerger rrfMerger;
-    private final Reranker reranker;
+    private final AtomicReference<SharedReranker> reranker = new AtomicReference<>(
+            new SharedReranker(new PassThroughReranker()));
+
+    private final AtomicReference<IndexGeneration> current = new AtomicReference<>();
+    private final AtomicLong generationCounter = new AtomicLong();
+    private IndexConfig config;
+    private volatile Double semanticCacheThreshold;
+    private volatile boolean closed = false;
 
-    private boolean initialized = false;
+    // Updates applied while a rebuild runs, replayed on the new generation before
+    // the swap (source -> new content, or null for a removal); null when idle
+    private Map<String, String> pendingUpdates;
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "index-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
 
     // Configuration
     private static final int BM25_TOP_K = 50;
     private static final int VECTOR_TOP_K = 50;
     private static final int RRF_TOP_K = 20;
     private static final int FINAL_TOP_K = 5;
+    // Budget for the lexical and semantic branches together; a late branch is cancelled
+    private static final long BRANCH_TIMEOUT_MS = 5000;
+
+    // The branches mostly wait (model inference, index locks), so a virtual thread each is enough
+    private final ExecutorService branchExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Adaptive mode (see setAdaptive)
+    private static final int ADAPTIVE_DEPTH_PER_RESULT = 4;
+    private static final int ADAPTIVE_MIN_DEPTH = 10;
+    // A BM25 branch whose last fetched score is this close to its best one is cut too early
+    private static final double FLAT_TAIL_RATIO = 0.9;
+    // BM25 top score at least this many times the runner-up, with every query term present
+    private static final double BM25_DECISIVE_MARGIN = 2.0;
+    // Share of the top results both branches must have in common (with the same best one) to skip reranking
+    private static final double RERANK_AGREEMENT = 0.6;
+
+    private volatile boolean adaptive = false;
+    private final AtomicLong adaptiveQueries = new AtomicLong();
+    private final AtomicLong depthWidenings = new AtomicLong();
+    private final AtomicLong vectorSkips = new AtomicLong();
+    private final AtomicLong rerankSkips = new AtomicLong();
+
+    // Load shedding (see retrieveWithStatus)
+    private final DegradationController degradation = new DegradationController();
+
+    // Candidate configuration under evaluation on live traffic, or null
+    private volatile ShadowEvaluator shadow;
 
     /**
-     * Create a new hybrid retriever with all components.
+     * Create a new hybrid retriever over the bundled documentation.
      */
     public HybridRetriever() {
-        this.chunker = new DocumentChunker();
-        this.bm25Index = new BM25Index();
-        this.vectorStore = new VectorStore();
-        this.embeddingService = new EmbeddingService();
+        this(ClasspathCorpusSource.defaultDocs());
+    }
+
+    /**
+     * Create a new hybrid retriever with all components over a corpus source.
+     */
+    public HybridRetriever(CorpusSource corpusSource) {
+        this(corpusSource, IndexConfig.defaults());
+    }
+
+    /**
+     * Create a new hybrid retriever with an explicit chunk sizing mode.
+     * Chunks always record their token count, measured with the embedding
+     * model's tokenizer.
+     */
+    public HybridRetriever(CorpusSource corpusSource, DocumentChunker.Mode chunkingMode) {
+        this(corpusSource, IndexConfig.defaults().withChunkingMode(chunkingMode));
+    }
+
+    /**
+     * Create a new hybrid retriever with an explicit index configuration.
+     */
+    public HybridRetriever(CorpusSource corpusSource, IndexConfig config) {
+        this.corpusSource = corpusSource;
+        this.config = config;
         this.rrfMerger = new RRFMerger();
-        this.reranker = new Reranker();
     }
 
     /**
      * Initialize the retriever by loading and indexing all documents.
      */
     public synchronized void initialize() {
-        if (initialized)
+        if (closed)
+            throw new IllegalStateException("Retriever is closed");
+        if (current.get() != null)
             return;
 
-        // System.out.println("[HybridRetriever] Initializing...");
-        // long startTime = System.currentTimeMillis();
+        // Stream documents through chunking, embedding and indexing
+        IndexGeneration generation = new IndexGeneration(generationCounter.incrementAndGet(), config);
+        generation.build(corpusSource, Runtime.getRuntime().availableProcessors());
+        applySettings(generation);
+        indexReranker(generation);
+        current.set(generation);
+    }
 
-        // Load and chunk all documents
-        List<Chunk> chunks = chunker.loadAllChunks();
-        // System.out.println("[HybridRetriever] Loaded " + chunks.size() + " chunks");
+    /**
+     * Build a new index generation in the background and swap it in once it
+     * has been validated. The current generation keeps serving queries
+     * meanwhile; document updates made during the build are replayed on the
+     * new generation before the swap.
+     *
+     * @param newConfig Configuration of the new generation (e.g., another embedding model)
+     * @return Completes with the new generation once it serves queries, or
+     *         exceptionally if the build or validation failed (the current
+     *         generation then stays in place)
+     */
+    public synchronized CompletableFuture<IndexGeneration> rebuild(IndexConfig newConfig) {
+        initialize();
+        if (pendingUpdates != null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("A rebuild is already in progress"));
+        }
+        pendingUpdates = new LinkedHashMap<>();
+
+        IndexGeneration next = new IndexGeneration(generationCounter.incrementAndGet(), newConfig);
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                // Leave half of the cores to the generation that is serving queries
+                next.build(corpusSource, Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+                // Held so that a concurrent close cannot free it while it is compared
+                IndexGeneration previous = acquireGeneration();
+                try {
+                    next.validate(previous);
+                } finally {
+                    previous.release();
+                }
+                swap(next);
+                return next;
+            } catch (RuntimeException e) {
+                System.err.println("[HybridRetriever] Rebuild of generation " + next.getNumber() + " failed: "
+                        + e.getMessage());
+                synchronized (this) {
+                    pendingUpdates = null;
+                }
+                next.release();
+                throw e;
+            }
+        }, rebuildExecutor);
+    }
 
-        // Index in BM25
-        bm25Index.addChunks(chunks);
-        // System.out.println("[HybridRetriever] BM25 index: " +
-        // bm25Index.getDocumentCount() + " docs");
+    private synchronized void swap(IndexGeneration next) {
+        if (closed)
+            throw new IllegalStateException("Retriever closed during the rebuild");
+        pendingUpdates.forEach((source, content) -> {
+            if (content != null) {
+                next.incrementalIndexer().reindexDocument(source, content);
+            } else {
+                next.incrementalIndexer().removeDocument(source);
+            }
+        });
+        pendingUpdates = null;
 
-        // Create embeddings and add to vector store
-        embeddingService.initialize();
-        for (Chunk chunk : chunks) {
-            float[] embedding = embeddingService.embed(chunk.content(), false);
-            vectorStore.addChunk(chunk, embedding);
+        applySettings(next);
+        indexReranker(next);
+        IndexGeneration previous = current.getAndSet(next);
+        config = next.getConfig();
+        if (previous != null) {
+            // Freed once the queries still running on it are done
+            previous.release();
         }
-        // System.out.println("[HybridRetriever] Vector store: " + vectorStore.size() +
-        // " vectors");
+    }
 
-        initialized = true;
-        // long duration = System.currentTimeMillis() - startTime;
-        // System.out.println("[HybridRetriever] Ready (took " + duration + "ms)");
+    /**
+     * Set the minimum cosine similarity for a query to be answered from the
+     * result of an earlier, similar query (a value above 1 disables the
+     * semantic cache). Applies to the current and future generations.
+     *
+     * The semantic cache is disabled by default: a near-paraphrase can need
+     * different chunks, so only enable it with a threshold whose answers
+     * were checked against uncached retrieval on the target corpus.
+     */
+    public synchronized void setSemanticCacheThreshold(double threshold) {
+        semanticCacheThreshold = threshold;
+        IndexGeneration generation = current.get();
+        if (generation != null) {
+            applySettings(generation);
+        }
+    }
+
+    /**
+     * Enable or disable adaptive retrieval. In adaptive mode:
+     * - BM25 fetches a depth proportional to the requested topK, going back to
+     *   the full depth when its scores are still flat at the cut (the vector
+     *   search scans every vector whatever the depth, so it keeps the full one);
+     * - the vector branch is skipped (and its embedding cancelled) when BM25
+     *   has a high-margin match containing every query term;
+     * - reranking is skipped when BM25 and vector search agree on the best
+     *   result and on most of the top ones.
+     *
+     * Toggling the mode clears the result caches.
+     */
+    public void setAdaptive(boolean adaptive) {
+        this.adaptive = adaptive;
+        IndexGeneration generation = current.get();
+        if (generation != null) {
+            generation.retrievalCache().clear();
+            generation.semanticCache().clear();
+        }
+    }
+
+    private void applySettings(IndexGeneration generation) {
+        if (semanticCacheThreshold != null) {
+            generation.semanticCache().setThreshold(semanticCacheThreshold);
+        }
+    }
+
+    /**
+     * Get the current generation, holding a reference to it until
+     * {@link IndexGeneration#release()} is called.
+     */
+    private IndexGeneration acquireGeneration() {
+        while (true) {
+            IndexGeneration generation = current.get();
+            if (generation == null) {
+                initialize();
+            } else if (generation.tryAcquire()) {
+                return generation;
+            }
+            // Otherwise it was retired in the meantime; the next read sees its successor
+        }
+    }
+
+    /**
+     * Get the current reranker, holding a reference to it until
+     * {@link SharedReranker#release()} is called.
+     */
+    private SharedReranker acquireReranker() {
+        while (true) {
+            SharedReranker shared = reranker.get();
+            if (shared.tryAcquire())
+                return shared;
+            // Otherwise it was replaced in the meantime; the next read sees its successor
+        }
+    }
+
+    private void indexReranker(IndexGeneration generation) {
+        SharedReranker shared = acquireReranker();
+        try {
+            shared.reranker().index(generation.chunkTable().chunks());
+        } finally {
+            shared.release();
+        }
+    }
+
+    /**
+     * Re-index a new or changed document without rebuilding the whole index.
+     * Only chunks whose content changed are embedded and indexed.
+     *
+     * @param source  The source name (e.g., "faq.md")
+     * @param content The new document content
+     * @return What changed in the indexes
+     */
+    public synchronized IncrementalIndexer.Result reindexDocument(String source, String content) {
+        IndexGeneration generation = acquireGeneration();
+        try {
+            IncrementalIndexer.Result result = generation.incrementalIndexer().reindexDocument(source, content);
+            if (result.changed()) {
+                generation.invalidateCache(result.affectedSources());
+            }
+            if (pendingUpdates != null) {
+                pendingUpdates.put(source, content);
+            }
+            return result;
+        } finally {
+            generation.release();
+        }
+    }
+
+    /**
+     * Remove a deleted document from the indexes.
+     *
+     * @param source The source name
+     * @return What changed in the indexes
+     */
+    public synchronized IncrementalIndexer.Result removeDocument(String source) {
+        IndexGeneration generation = acquireGeneration();
+        try {
+            IncrementalIndexer.Result result = generation.incrementalIndexer().removeDocument(source);
+            if (result.changed()) {
+                generation.invalidateCache(result.affectedSources());
+            }
+            if (pendingUpdates != null) {
+                pendingUpdates.put(source, null);
+            }
+            return result;
+        } finally {
+            generation.release();
+        }
+    }
+
+    /**
+     * Get the names of all indexed sources.
+     */
+    public Set<String> getIndexedSources() {
+        IndexGeneration generation = acquireGeneration();
+        try {
+            return generation.manifest().sources();
+        } finally {
+            generation.release();
+        }
+    }
+
+    /**
+     * Get the other sources a retrieved chunk stands for, when near-duplicate
+     * copies of it were collapsed at ingest.
+     *
+     * @param chunkId Id of a retrieved chunk
+     * @return Alternate source names, empty if the chunk has no duplicates
+     */
+    public List<String> getAlternateSources(String chunkId) {
+        IndexGeneration generation = acquireGeneration();
+        try {
+            return generation.deduplicator().getAlternateSources(chunkId);
+        } finally {
+            generation.release();
+        }
     }
 
     /**
@@ -82,8 +371,6 @@ public class HybridRetriever {
         return retrieve(query, topK, null);
     }
 
-    private final Map<String, List<ScoredChunk>> retrievalCache = new java.util.concurrent.ConcurrentHashMap<>();
-
     /**
      * Retrieve relevant chunks with optional source filter.
      * 
@@ -93,52 +380,435 @@ public class HybridRetriever {
      * @return List of relevant chunks with scores
      */
     public List<ScoredChunk> retrieve(String query, int topK, String sourceFilter) {
-        if (!initialized)
-            initialize();
+        return retrieveWithStatus(query, topK, sourceFilter, null).chunks();
+    }
+
+    /**
+     * Retrieve relevant chunks, reporting the pipeline level that produced them.
+     */
+    public RetrievalResult retrieveWithStatus(String query, int topK) {
+        return retrieveWithStatus(query, topK, null, null);
+    }
+
+    /**
+     * Retrieve relevant chunks with optional source filter, reporting the
+     * pipeline level that produced them.
+     */
+    public RetrievalResult retrieveWithStatus(String query, int topK, String sourceFilter) {
+        return retrieveWithStatus(query, topK, sourceFilter, null);
+    }
+
+    /**
+     * Retrieve relevant chunks, degrading the pipeline under load.
+     *
+     * Cached results are always served. Otherwise the level is chosen from the
+     * queries in flight, the recent latency and the CPU load (see
+     * {@link DegradationController}), and made cheaper if needed to fit the
+     * latency budget. Degraded results are not cached.
+     *
+     * @param latencyBudget Maximum acceptable latency of this query, or null
+     * @return The chunks and the level that produced them; a cache-only query
+     *         that misses the cache returns no chunks
+     */
+    public RetrievalResult retrieveWithStatus(String query, int topK, String sourceFilter, Duration latencyBudget) {
+        // The whole query runs on one generation, even if a new one is swapped in meanwhile
+        IndexGeneration generation = acquireGeneration();
+        long start = System.nanoTime();
+        RetrievalResult result;
+        try {
+            result = retrieve(generation, query, topK, sourceFilter, latencyBudget);
+        } finally {
+            generation.release();
+        }
+
+        // Cache hits would compare the candidate's latency with a lookup's
+        ShadowEvaluator shadow = this.shadow;
+        if (shadow != null && !result.isDegraded() && !result.cached()) {
+            shadow.mirror(query, topK, sourceFilter, result.chunks(), System.nanoTime() - start);
+        }
+        return result;
+    }
+
+    /**
+     * Start comparing a candidate retriever (e.g., built with another
+     * {@link IndexConfig}) with this one on live traffic. A sample of the
+     * queries is replayed on the candidate in the background; results
+     * returned to callers always come from this retriever. Replaces any
+     * running shadow evaluation.
+     *
+     * @param candidate  Retriever under evaluation; closed when the shadow stops
+     * @param sampleRate Fraction of queries to mirror (0-1)
+     * @return The evaluator, to read its {@link ShadowEvaluator#report()}
+     */
+    public ShadowEvaluator startShadow(HybridRetriever candidate, double sampleRate) {
+        ShadowEvaluator previous = shadow;
+        shadow = new ShadowEvaluator(candidate, sampleRate);
+        if (previous != null) {
+            previous.close();
+        }
+        return shadow;
+    }
+
+    /**
+     * Stop the shadow evaluation and close the candidate.
+     *
+     * @return The final comparison, or null if no shadow was running
+     */
+    public ShadowEvaluator.Report stopShadow() {
+        ShadowEvaluator previous = shadow;
+        shadow = null;
+        if (previous == null)
+            return null;
+        previous.close();
+        return previous.report();
+    }
+
+    /**
+     * Pin the pipeline level (e.g., for an operator switch or tests); null
+     * restores automatic selection.
+     */
+    public void setDegradationOverride(DegradationLevel level) {
+        degradation.setOverride(level);
+    }
+
+    /**
+     * Get the pipeline level currently selected for new queries.
+     */
+    public DegradationLevel getDegradationLevel() {
+        return degradation.getLevel();
+    }
+
+    /**
+     * Retrieve relevant chunks without blocking the caller, e.g., to overlap
+     * retrieval with other work. The query runs on a virtual thread.
+     */
+    public CompletableFuture<List<ScoredChunk>> retrieveAsync(String query, int topK) {
+        return retrieveAsync(query, topK, null);
+    }
+
+    /**
+     * Retrieve relevant chunks with optional source filter without blocking the caller.
+     */
+    public CompletableFuture<List<ScoredChunk>> retrieveAsync(String query, int topK, String sourceFilter) {
+        try {
+            return CompletableFuture.supplyAsync(() -> retrieve(query, topK, sourceFilter), branchExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Retriever is closed", e));
+        }
+    }
+
+    /**
+     * Retrieve for many queries at once, much faster than one call per query:
+     * all query embeddings are computed in one batch, the BM25 searches run
+     * concurrently with it, and a single pass over the vector store scores
+     * every query. Cached results are reused and new ones are cached.
+     * Adaptive mode does not apply to batches; under load, the whole batch
+     * runs at the degradation level chosen when it starts.
+     *
+     * @param requests The queries
+     * @return Results per request, in request order
+     */
+    public List<List<ScoredChunk>> retrieveAll(List<RetrievalRequest> requests) {
+        IndexGeneration generation = acquireGeneration();
+        try {
+            return retrieveAll(generation, requests);
+        } finally {
+            generation.release();
+        }
+    }
+
+    private List<List<ScoredChunk>> retrieveAll(IndexGeneration generation, List<RetrievalRequest> requests) {
+        RetrievalCache cache = generation.retrievalCache();
+        List<List<ScoredChunk>> results = new ArrayList<>(Collections.nCopies(requests.size(), null));
+        List<RetrievalCache.Key> keys = new ArrayList<>(requests.size());
+        List<Integer> misses = new ArrayList<>();
 
-        // Check cache
-        String cacheKey = query + "|" + topK + "|" + (sourceFilter != null ? sourceFilter : "NULL");
-        if (retrievalCache.containsKey(cacheKey)) {
-            // System.out.println("[HybridRetriever] Returning cached result for: " +
-            // query);
-            return retrievalCache.get(cacheKey);
+        for (int i = 0; i < requests.size(); i++) {
+            RetrievalRequest request = requests.get(i);
+            RetrievalCache.Key key = cache.key(request.query(), request.topK(), request.sourceFilter());
+            keys.add(key);
+            List<ScoredChunk> cached = cache.getIfPresent(key);
+            if (cached != null) {
+                results.set(i, cached);
+            } else {
+                misses.add(i);
+            }
         }
+        if (misses.isEmpty())
+            return results;
+
+        // The batch counts as one query in flight, and its latency is recorded
+        // per query, so that a large batch does not read as one slow query
+        DegradationLevel level = degradation.begin(null);
+        long start = System.nanoTime();
+        try {
+            if (level == DegradationLevel.CACHE_ONLY) {
+                misses.forEach(index -> results.set(index, List.of()));
+            } else {
+                retrieveMisses(generation, requests, keys, misses, level, results);
+            }
+            return results;
+        } finally {
+            degradation.complete(level, (System.nanoTime() - start) / misses.size());
+        }
+    }
+
+    /**
+     * Run the batch pipeline for the requests not found in the result cache.
+     *
+     * @param level Stages to run; results are cached only at FULL
+     */
+    private void retrieveMisses(IndexGeneration generation, List<RetrievalRequest> requests,
+            List<RetrievalCache.Key> keys, List<Integer> misses, DegradationLevel level,
+            List<List<ScoredChunk>> results) {
+        RetrievalCache cache = generation.retrievalCache();
+        boolean useVectors = level.usesVectors();
+        SemanticQueryCache semanticCache = !useVectors || generation.embeddingService().isFallback()
+                || !generation.semanticCache().isEnabled()
+                ? null
+                : generation.semanticCache();
+        long semanticVersion = semanticCache != null ? semanticCache.version() : 0;
+
+        // BM25 for the whole set on virtual threads, overlapping the batch embedding
+        List<Set<String>> alternateIds = new ArrayList<>(misses.size());
+        List<Future<ScoredOrdinals>> lexicalBranches = new ArrayList<>(misses.size());
+        try {
+            for (int index : misses) {
+                RetrievalRequest request = requests.get(index);
+                Set<String> alternates = request.sourceFilter() != null
+                        ? generation.deduplicator().getCanonicalIdsFor(request.sourceFilter())
+                        : Set.of();
+                alternateIds.add(alternates);
+                lexicalBranches.add(submitBranch(generation, () -> request.sourceFilter() != null
+                        ? generation.bm25Index().searchOrdinals(request.query(), BM25_TOP_K,
+                                request.sourceFilter(), alternates)
+                        : generation.bm25Index().searchOrdinals(request.query(), BM25_TOP_K)));
+            }
+
+            // One padded forward pass for all query embeddings
+            List<String> queries = misses.stream().map(index -> requests.get(index).query()).toList();
+            List<float[]> embeddings = useVectors ? generation.embeddingService().embedBatch(queries, true) : null;
+
+            // Paraphrases of recent queries need no further work
+            List<Integer> pending = new ArrayList<>();
+            for (int m = 0; m < misses.size(); m++) {
+                RetrievalRequest request = requests.get(misses.get(m));
+                List<ScoredChunk> similar = semanticCache != null
+                        ? semanticCache.lookup(embeddings.get(m), request.topK(), request.sourceFilter())
+                        : null;
+                if (similar != null) {
+                    lexicalBranches.get(m).cancel(true);
+                    results.set(misses.get(m), similar);
+                } else {
+                    pending.add(m);
+                }
+            }
+
+            // One pass over the vector store for all remaining queries
+            List<ScoredOrdinals> vectorResults = useVectors
+                    ? generation.vectorStore().searchBatch(
+                            pending.stream().map(embeddings::get).toList(),
+                            VECTOR_TOP_K,
+                            pending.stream().map(m -> requests.get(misses.get(m)).sourceFilter()).toList(),
+                            pending.stream().map(alternateIds::get).toList())
+                    : Collections.nCopies(pending.size(), ScoredOrdinals.EMPTY);
+
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BRANCH_TIMEOUT_MS);
+            for (int p = 0; p < pending.size(); p++) {
+                int m = pending.get(p);
+                int index = misses.get(m);
+                RetrievalRequest request = requests.get(index);
+
+                ScoredOrdinals bm25Results = joinBranch("BM25", lexicalBranches.get(m), deadline);
+                List<ScoredChunk> reranked = fuseAndRerank(generation, request.query(), request.topK(),
+                        bm25Results != null ? bm25Results : ScoredOrdinals.EMPTY, vectorResults.get(p), RRF_TOP_K,
+                        false, level.reranks());
+                results.set(index, reranked);
+
+                // Partial results (failed BM25 branch) and degraded ones are returned but not cached
+                if (bm25Results != null && level == DegradationLevel.FULL) {
+                    cache.put(keys.get(index), reranked);
+                    if (semanticCache != null) {
+                        semanticCache.put(embeddings.get(m), request.topK(), request.sourceFilter(), reranked,
+                                semanticVersion);
+                    }
+                }
+            }
+        } finally {
+            // Stops the searches left running if the batch failed; no-op for those already joined
+            lexicalBranches.forEach(branch -> branch.cancel(true));
+        }
+    }
+
+    private RetrievalResult retrieve(IndexGeneration generation, String query, int topK, String sourceFilter,
+            Duration latencyBudget) {
+        RetrievalCache cache = generation.retrievalCache();
+        RetrievalCache.Key cacheKey = cache.key(query, topK, sourceFilter);
+        List<ScoredChunk> cached = cache.getIfPresent(cacheKey);
+        if (cached != null)
+            return new RetrievalResult(cached, DegradationLevel.FULL, true);
+
+        DegradationLevel level = degradation.begin(latencyBudget);
+        long start = System.nanoTime();
+        try {
+            if (level == DegradationLevel.CACHE_ONLY)
+                return new RetrievalResult(List.of(), level);
+
+            boolean[] partial = new boolean[1];
+            if (level != DegradationLevel.FULL) {
+                return new RetrievalResult(runPipeline(generation, query, topK, sourceFilter, level, partial), level);
+            }
+
+            // Concurrent identical misses share one pipeline run
+            List<ScoredChunk> results = cache.get(cacheKey,
+                    () -> runPipeline(generation, query, topK, sourceFilter, level, partial));
+            if (partial[0]) {
+                cache.discard(cacheKey, results);
+            }
+            return new RetrievalResult(results, level);
+        } finally {
+            degradation.complete(level, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Run the retrieval pipeline on a cache miss.
+     *
+     * @param level   Stages to run
+     * @param partial Set to true if a branch failed and the result must not be cached
+     */
+    private List<ScoredChunk> runPipeline(IndexGeneration generation, String query, int topK,
+            String sourceFilter, DegradationLevel level, boolean[] partial) {
 
         // System.out.println("\n[HybridRetriever] Processing query: \"" + query + "\"
         // (Filter: " + sourceFilter + ")");
 
-        // 1. BM25 search
-        List<ScoredChunk> bm25Results = sourceFilter != null
-                ? bm25Index.search(query, BM25_TOP_K, sourceFilter)
-                : bm25Index.search(query, BM25_TOP_K);
+        // Canonical chunks standing for collapsed duplicates from the filtered source
+        Set<String> alternateIds = sourceFilter != null
+                ? generation.deduplicator().getCanonicalIdsFor(sourceFilter)
+                : Set.of();
+
+        // Hash-based fallback embeddings carry no meaning, so similar vectors don't mean similar queries
+        SemanticQueryCache semanticCache = generation.embeddingService().isFallback()
+                || !generation.semanticCache().isEnabled()
+                ? null
+                : generation.semanticCache();
+        long semanticVersion = semanticCache != null ? semanticCache.version() : 0;
+
+        boolean adaptive = this.adaptive;
+        int bm25Depth = adaptive ? adaptiveDepth(topK, BM25_TOP_K) : BM25_TOP_K;
+        if (adaptive) {
+            adaptiveQueries.incrementAndGet();
+        }
+
+        // 1. BM25 search and 2. vector search run concurrently: latency is the
+        // slower of the two branches (usually the query embedding), not their sum
+        Future<ScoredOrdinals> lexicalBranch = submitBranch(generation,
+                () -> searchWithDepth(depth -> sourceFilter != null
+                        ? generation.bm25Index().searchOrdinals(query, depth, sourceFilter, alternateIds)
+                        : generation.bm25Index().searchOrdinals(query, depth), bm25Depth, BM25_TOP_K));
+        boolean skipVector = !level.usesVectors();
+        Future<float[]> embeddingBranch = skipVector
+                ? null
+                : submitBranch(generation, () -> generation.embeddingService().embed(query, true));
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(BRANCH_TIMEOUT_MS);
+
+        // BM25 is much faster than the embedding: in adaptive mode, look at it
+        // first and cancel the embedding if it already has a decisive answer
+        ScoredOrdinals bm25Results = null;
+        boolean bm25Joined = false;
+        if (adaptive && !skipVector) {
+            bm25Results = joinBranch("BM25", lexicalBranch, deadline);
+            bm25Joined = true;
+            if (bm25Results != null && isDecisive(query, bm25Results, generation.chunkTable())) {
+                embeddingBranch.cancel(true);
+                vectorSkips.incrementAndGet();
+                skipVector = true;
+            }
+        }
+
+        float[] queryEmbedding = skipVector ? null : joinBranch("Embedding", embeddingBranch, deadline);
+
+        // A paraphrase of a recent query: reuse its result and drop the BM25 search
+        if (queryEmbedding != null && semanticCache != null) {
+            List<ScoredChunk> similar = semanticCache.lookup(queryEmbedding, topK, sourceFilter);
+            if (similar != null) {
+                lexicalBranch.cancel(true);
+                return similar;
+            }
+        }
+
+        ScoredOrdinals vectorResults = null;
+        if (skipVector) {
+            vectorResults = ScoredOrdinals.EMPTY;
+        } else if (queryEmbedding != null) {
+            vectorResults = generation.vectorStore().searchOrdinals(queryEmbedding, VECTOR_TOP_K, sourceFilter,
+                    alternateIds);
+        }
+        if (!bm25Joined) {
+            bm25Results = joinBranch("BM25", lexicalBranch, deadline);
+        }
+        // A missing branch leaves a partial (single-branch) result, which is returned but not cached
+        partial[0] = bm25Results == null || vectorResults == null;
+        if (bm25Results == null)
+            bm25Results = ScoredOrdinals.EMPTY;
+        if (vectorResults == null)
+            vectorResults = ScoredOrdinals.EMPTY;
+
         // System.out.println("[HybridRetriever] BM25 found " + bm25Results.size() + "
         // results");
         // if (!bm25Results.isEmpty()) {
-        // System.out.println(" Top BM25: " + bm25Results.get(0).source() + " (Score: "
-        // + String.format("%.2f", bm25Results.get(0).score()) + ")");
+        // System.out.println(" Top BM25: " + generation.chunkTable().source(bm25Results.ordinal(0)) + " (Score: "
+        // + String.format("%.2f", bm25Results.score(0)) + ")");
         // }
 
-        // 2. Vector search
-        // System.out.println("[HybridRetriever] Generating query embedding...");
-        float[] queryEmbedding = embeddingService.embed(query, true);
-        List<ScoredChunk> vectorResults = sourceFilter != null
-                ? vectorStore.search(queryEmbedding, VECTOR_TOP_K, sourceFilter)
-                : vectorStore.search(queryEmbedding, VECTOR_TOP_K);
         // System.out.println("[HybridRetriever] Vector search found " +
         // vectorResults.size() + " results");
         // if (!vectorResults.isEmpty()) {
-        // System.out.println(" Top Vector: " + vectorResults.get(0).source() + "
+        // System.out.println(" Top Vector: " + generation.chunkTable().source(vectorResults.ordinal(0)) + "
         // (Score: "
-        // + String.format("%.4f", vectorResults.get(0).score()) + ")");
+        // + String.format("%.4f", vectorResults.score(0)) + ")");
         // }
 
+        List<ScoredChunk> reranked = fuseAndRerank(generation, query, topK, bm25Results, vectorResults, RRF_TOP_K,
+                adaptive, level.reranks());
+
+        if (!partial[0] && level == DegradationLevel.FULL && semanticCache != null && queryEmbedding != null) {
+            semanticCache.put(queryEmbedding, topK, sourceFilter, reranked, semanticVersion);
+        }
+        return reranked;
+    }
+
+    /**
+     * 3. RRF fusion and 4. reranking of the branch results. The branches and
+     * the fusion work on chunk ordinals; chunks are resolved from the chunk
+     * table only for the reranker input (or the final results if it is skipped).
+     */
+    private List<ScoredChunk> fuseAndRerank(IndexGeneration generation, String query, int topK,
+            ScoredOrdinals bm25Results, ScoredOrdinals vectorResults, int fusedDepth, boolean adaptive,
+            boolean rerank) {
         // 3. RRF fusion
-        List<ScoredChunk> merged = rrfMerger.merge(bm25Results, vectorResults, RRF_TOP_K);
+        ScoredOrdinals merged = rrfMerger.merge(bm25Results, vectorResults, fusedDepth);
         // System.out.println("[HybridRetriever] RRF Fusion produced " + merged.size() +
         // " candidates");
 
         // 4. Rerank
-        List<ScoredChunk> reranked = reranker.rerank(query, merged, Math.min(topK, FINAL_TOP_K));
+        int finalK = Math.min(topK, FINAL_TOP_K);
+        List<ScoredChunk> reranked;
+        if (!rerank) {
+            reranked = generation.chunkTable().resolve(merged, finalK);
+        } else if (adaptive && branchesAgree(bm25Results, vectorResults, finalK)) {
+            rerankSkips.incrementAndGet();
+            reranked = generation.chunkTable().resolve(merged, finalK);
+        } else {
+            SharedReranker shared = acquireReranker();
+            try {
+                reranked = shared.reranker().rerank(query, generation.chunkTable().resolve(merged), finalK);
+            } finally {
+                shared.release();
+            }
+        }
 
         // System.out.println("[HybridRetriever] Final Top " + reranked.size() + "
         // results:");
@@ -152,30 +822,240 @@ public class HybridRetriever {
         // + ") " + snippet);
         // }
 
-        retrievalCache.put(cacheKey, reranked);
         return reranked;
     }
 
+    /**
+     * Branch depth for adaptive mode: a few candidates per requested result.
+     */
+    private static int adaptiveDepth(int topK, int maxDepth) {
+        return Math.min(maxDepth, Math.max(ADAPTIVE_MIN_DEPTH, topK * ADAPTIVE_DEPTH_PER_RESULT));
+    }
+
+    /**
+     * Search at the given depth, retrying at full depth if the scores are
+     * still flat at the cut (relevant results were probably left out). Only
+     * worth it for searches whose cost grows with the depth, i.e., BM25.
+     */
+    private ScoredOrdinals searchWithDepth(IntFunction<ScoredOrdinals> search, int depth, int maxDepth) {
+        ScoredOrdinals results = search.apply(depth);
+        if (depth < maxDepth && results.size() == depth
+                && results.score(depth - 1) >= FLAT_TAIL_RATIO * results.score(0)) {
+            depthWidenings.incrementAndGet();
+            return search.apply(maxDepth);
+        }
+        return results;
+    }
+
+    /**
+     * Check whether BM25 alone answers the query: its top hit clearly beats the
+     * runner-up and contains every query term.
+     */
+    private static boolean isDecisive(String query, ScoredOrdinals bm25Results, ChunkTable chunkTable) {
+        if (bm25Results.isEmpty())
+            return false;
+
+        double top = bm25Results.score(0);
+        double runnerUp = bm25Results.size() > 1 ? bm25Results.score(1) : 0;
+        if (top < BM25_DECISIVE_MARGIN * runnerUp)
+            return false;
+
+        String content = chunkTable.content(bm25Results.ordinal(0));
+        if (content == null)
+            return false;
+        content = content.toLowerCase(Locale.ROOT);
+        boolean hasTerms = false;
+        for (String term : query.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (term.length() < 3)
+                continue;
+            if (!content.contains(term))
+                return false;
+            hasTerms = true;
+        }
+        return hasTerms;
+    }
+
+    /**
+     * Check whether the lexical and semantic rankings agree: the same best
+     * chunk, and most of their top results in common. Two independent
+     * rankings agreeing this much leave little for the reranker to fix.
+     * (Fused RRF scores cannot tell: 1/(k + rank) is nearly flat.)
+     */
+    private static boolean branchesAgree(ScoredOrdinals bm25Results, ScoredOrdinals vectorResults, int topK) {
+        if (bm25Results.isEmpty() || vectorResults.isEmpty() || bm25Results.ordinal(0) != vectorResults.ordinal(0))
+            return false;
+
+        int count = Math.min(topK, Math.min(bm25Results.size(), vectorResults.size()));
+        Set<Integer> lexicalTop = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            lexicalTop.add(bm25Results.ordinal(i));
+        }
+        int common = 0;
+        for (int i = 0; i < count; i++) {
+            if (lexicalTop.contains(vectorResults.ordinal(i)))
+                common++;
+        }
+        return common >= RERANK_AGREEMENT * topK;
+    }
+
+    /**
+     * Run a retrieval branch on its own virtual thread. The branch holds its
+     * own reference to the generation, so a cancelled branch that is still
+     * unwinding never sees it freed.
+     *
+     * Once the retriever is closing, the executor refuses new branches; the
+     * branches of queries already running then run on the caller's thread.
+     */
+    private <T> Future<T> submitBranch(IndexGeneration generation, Callable<T> branch) {
+        Callable<T> task = () -> {
+            if (!generation.tryAcquire())
+                return null;
+            try {
+                return branch.call();
+            } finally {
+                generation.release();
+            }
+        };
+        try {
+            return branchExecutor.submit(task);
+        } catch (RejectedExecutionException e) {
+            FutureTask<T> inline = new FutureTask<>(task);
+            inline.run();
+            return inline;
+        }
+    }
+
+    /**
+     * Wait for a branch until the shared deadline.
+     *
+     * @return The branch results, or null if it failed or timed out (in which
+     *         case it is cancelled)
+     */
+    private <T> T joinBranch(String name, Future<T> branch, long deadline) {
+        try {
+            return branch.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            branch.cancel(true);
+            System.err.println("[HybridRetriever] " + name + " search timed out after " + BRANCH_TIMEOUT_MS
+                    + "ms, using partial results");
+        } catch (ExecutionException e) {
+            System.err.println("[HybridRetriever] " + name + " search failed: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            branch.cancel(true);
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    /**
+     * Replace the reranker (e.g., with a {@link CrossEncoderReranker}). Queries
+     * already reranking finish with the previous one, which is closed once the
+     * last of them is done. The new reranker indexes the current chunks first,
+     * and the result caches are cleared.
+     */
+    public synchronized void setReranker(Reranker reranker) {
+        IndexGeneration generation = current.get();
+        if (generation != null && generation.tryAcquire()) {
+            try {
+                reranker.index(generation.chunkTable().chunks());
+            } finally {
+                generation.release();
+            }
+        }
+        if (this.reranker.get().reranker() != reranker) {
+            this.reranker.getAndSet(new SharedReranker(reranker)).release();
+        }
+        if (generation != null) {
+            generation.retrievalCache().clear();
+            generation.semanticCache().clear();
+        }
+    }
+
     /**
      * Get retrieval statistics for debugging.
      */
     public Map<String, Object> getStats() {
         Map<String, Object> stats = new HashMap<>();
-        stats.put("bm25_docs", bm25Index.getDocumentCount());
-        stats.put("vector_count", vectorStore.size());
-        stats.put("initialized", initialized);
+        IndexGeneration generation = current.get();
+        stats.put("initialized", generation != null);
+        synchronized (this) {
+            stats.put("rebuilding", pendingUpdates != null);
+        }
+        if (generation == null || !generation.tryAcquire())
+            return stats;
+
+        try {
+            stats.put("generation", generation.getNumber());
+            stats.put("embedding_model", generation.getConfig().embeddingModelUrl());
+            stats.put("chunking_mode", generation.getConfig().chunkingMode());
+            stats.put("bm25_docs", generation.bm25Index().getDocumentCount());
+            stats.put("vector_count", generation.vectorStore().size());
+            stats.put("duplicates_collapsed", generation.deduplicator().getDuplicateCount());
+            CacheStats cacheStats = generation.retrievalCache().stats();
+            stats.put("cache_size", generation.retrievalCache().size());
+            stats.put("cache_hit_rate", cacheStats.hitRate());
+            stats.put("cache_hits", cacheStats.hitCount());
+            stats.put("cache_misses", cacheStats.missCount());
+            stats.put("cache_evictions", cacheStats.evictionCount());
+            stats.put("semantic_cache_size", generation.semanticCache().size());
+            stats.put("semantic_cache_hits", generation.semanticCache().getHits());
+            stats.put("semantic_cache_misses", generation.semanticCache().getMisses());
+            stats.put("adaptive", adaptive);
+            stats.put("adaptive_queries", adaptiveQueries.get());
+            stats.put("adaptive_depth_widened", depthWidenings.get());
+            stats.put("adaptive_vector_skipped", vectorSkips.get());
+            stats.put("adaptive_rerank_skipped", rerankSkips.get());
+            stats.put("degradation_level", degradation.getLevel().name());
+            stats.put("degradation_level_changes", degradation.getLevelChanges());
+            stats.put("queries_in_flight", degradation.getInFlight());
+            stats.put("query_latency_ewma_ms", degradation.getLatencyMillis());
+            for (DegradationLevel level : DegradationLevel.values()) {
+                stats.put("queries_" + level.name().toLowerCase(Locale.ROOT), degradation.getCompleted(level));
+            }
+            IngestionPipeline.Stats ingestionStats = generation.getIngestionStats();
+            if (ingestionStats != null) {
+                stats.put("ingested_documents", ingestionStats.documents());
+                stats.put("ingestion_ms", ingestionStats.elapsedMillis());
+                stats.put("ingestion_chunks_per_sec", ingestionStats.chunksPerSecond());
+            }
+            Reranker reranker = this.reranker.get().reranker();
+            stats.put("reranker", reranker.getClass().getSimpleName());
+            if (reranker instanceof CrossEncoderReranker crossEncoder) {
+                stats.put("rerank_scored_pairs", crossEncoder.getScoredPairs());
+                stats.put("rerank_cached_pairs", crossEncoder.getCachedPairs());
+                stats.put("rerank_unscored_pairs", crossEncoder.getUnscoredPairs());
+                stats.put("rerank_ms_per_pair", crossEncoder.getMillisPerPair());
+            } else if (reranker instanceof LateInteractionReranker lateInteraction) {
+                stats.put("rerank_indexed_chunks", lateInteraction.getIndexedChunks());
+                stats.put("rerank_late_encoded_chunks", lateInteraction.getLateEncodedChunks());
+                stats.put("rerank_offheap_bytes", lateInteraction.getBytesUsed());
+                stats.put("rerank_index_ms", lateInteraction.getIndexMillis());
+            }
+            ShadowEvaluator shadow = this.shadow;
+            if (shadow != null) {
+                stats.put("shadow", shadow.report().toString());
+            }
+        } finally {
+            generation.release();
+        }
         return stats;
     }
 
     /**
-     * Close all resources.
+     * Close all resources; the retriever cannot be used afterwards.
+     * Queries still running finish (their remaining branches run on their own
+     * thread) before the indexes are freed, a rebuild in progress is abandoned.
      */
     public void close() {
-        bm25Index.close();
-        embeddingService.close();
-
-        // Reset state so it can be re-initialized if needed
-        initialized = false;
-        retrievalCache.clear();
+        closed = true;
+        stopShadow();
+        branchExecutor.shutdown();
+        rebuildExecutor.shutdownNow();
+        // Closed once the queries still reranking are done
+        reranker.getAndSet(new SharedReranker(new PassThroughReranker())).release();
+        IndexGeneration generation = current.getAndSet(null);
+        if (generation != null) {
+            generation.release();
+        }
     }
 }
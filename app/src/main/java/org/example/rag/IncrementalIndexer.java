@@ -0,0 +1,163 @@
+package org.example.rag;
+
+import java.util.*;
+
+/**
+ * Applies document edits to already-built indexes.
+ *
+ * A changed document is re-chunked and its chunk hashes are compared with the
+ * {@link ChunkManifest}: only new chunks are embedded and indexed, only
+ * vanished chunks are deleted, and unchanged chunks are left alone.
+ *
+ * With a {@link MinHashDeduplicator}, new chunks that duplicate an indexed
+ * chunk are not indexed, and removing a canonical chunk promotes one of its
+ * duplicates so the other sources keep their content.
+ */
+public class IncrementalIndexer {
+
+    private final DocumentChunker chunker;
+    private final EmbeddingService embeddingService;
+    private final BM25Index bm25Index;
+    private final VectorStore vectorStore;
+    private final ChunkManifest manifest;
+    private final MinHashDeduplicator deduplicator;
+
+    public IncrementalIndexer(DocumentChunker chunker, EmbeddingService embeddingService,
+            BM25Index bm25Index, VectorStore vectorStore, ChunkManifest manifest) {
+        this(chunker, embeddingService, bm25Index, vectorStore, manifest, null);
+    }
+
+    /**
+     * @param deduplicator Near-duplicate detector shared with the ingestion
+     *                     pipeline, or null to index every chunk
+     */
+    public IncrementalIndexer(DocumentChunker chunker, EmbeddingService embeddingService,
+            BM25Index bm25Index, VectorStore vectorStore, ChunkManifest manifest,
+            MinHashDeduplicator deduplicator) {
+        this.chunker = chunker;
+        this.embeddingService = embeddingService;
+        this.bm25Index = bm25Index;
+        this.vectorStore = vectorStore;
+        this.manifest = manifest;
+        this.deduplicator = deduplicator;
+    }
+
+    /**
+     * Re-index a new or changed document.
+     *
+     * @param source  The source name (e.g., "faq.md")
+     * @param content The new document content
+     * @return What changed in the indexes
+     */
+    public Result reindexDocument(String source, String content) {
+        long startTime = System.currentTimeMillis();
+
+        List<Chunk> chunks = chunker.chunkDocument(content, source);
+        ChunkManifest.Diff diff = manifest.update(source, chunks);
+        if (diff.isEmpty()) {
+            return new Result(source, 0, 0, diff.unchanged(), Set.of(source), System.currentTimeMillis() - startTime);
+        }
+
+        // Unregister vanished chunks first, so new chunks are not matched against them
+        Set<String> affectedSources = new LinkedHashSet<>(List.of(source));
+        List<Chunk> toIndex = new ArrayList<>(unregister(diff.removedIds(), affectedSources));
+        for (Chunk chunk : diff.added()) {
+            if (deduplicator == null || !deduplicator.offer(chunk).duplicate()) {
+                toIndex.add(chunk);
+            }
+        }
+
+        // Lexical index: delete vanished chunks, add new ones
+        bm25Index.deleteDocuments(diff.removedIds());
+        for (Chunk chunk : toIndex) {
+            bm25Index.addDocument(chunk.id(), chunk.content(), chunk.source());
+        }
+
+        // Vector store: embed only the new chunks
+        vectorStore.removeAll(diff.removedIds());
+        if (!toIndex.isEmpty()) {
+            List<String> texts = new ArrayList<>(toIndex.size());
+            for (Chunk chunk : toIndex) {
+                texts.add(chunk.content());
+            }
+            List<float[]> embeddings = embeddingService.embedBatch(texts, false);
+            for (int i = 0; i < toIndex.size(); i++) {
+                vectorStore.addChunk(toIndex.get(i), embeddings.get(i));
+            }
+        }
+
+        bm25Index.commit();
+        return new Result(source, diff.added().size(), diff.removedIds().size(), diff.unchanged(), affectedSources,
+                System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Remove a deleted document from the indexes.
+     *
+     * @param source The source name
+     * @return What changed in the indexes
+     */
+    public Result removeDocument(String source) {
+        long startTime = System.currentTimeMillis();
+
+        List<String> removedIds = manifest.remove(source);
+        Set<String> affectedSources = new LinkedHashSet<>(List.of(source));
+        if (!removedIds.isEmpty()) {
+            List<Chunk> promoted = unregister(removedIds, affectedSources);
+            bm25Index.deleteDocuments(removedIds);
+            vectorStore.removeAll(removedIds);
+            if (!promoted.isEmpty()) {
+                List<String> texts = promoted.stream().map(Chunk::content).toList();
+                List<float[]> embeddings = embeddingService.embedBatch(texts, false);
+                for (int i = 0; i < promoted.size(); i++) {
+                    Chunk chunk = promoted.get(i);
+                    bm25Index.addDocument(chunk.id(), chunk.content(), chunk.source());
+                    vectorStore.addChunk(chunk, embeddings.get(i));
+                }
+            }
+            bm25Index.commit();
+        }
+        return new Result(source, 0, removedIds.size(), 0, affectedSources, System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Unregister removed chunks from the deduplicator.
+     *
+     * @param affectedSources Filled with the sources of promoted chunks, whose
+     *                        search results change as well
+     * @return Duplicates promoted to canonical, which must now be indexed
+     */
+    private List<Chunk> unregister(List<String> removedIds, Set<String> affectedSources) {
+        if (deduplicator == null)
+            return List.of();
+
+        Map<String, Chunk> promoted = new LinkedHashMap<>();
+        for (String id : removedIds) {
+            // A promoted chunk may itself be removed later in the same batch
+            promoted.remove(id);
+            Chunk chunk = deduplicator.remove(id);
+            if (chunk != null) {
+                promoted.put(chunk.id(), chunk);
+            }
+        }
+        for (Chunk chunk : promoted.values()) {
+            affectedSources.add(chunk.source());
+        }
+        return new ArrayList<>(promoted.values());
+    }
+
+    /**
+     * Outcome of an incremental update.
+     */
+    public record Result(String source, int added, int removed, int unchanged, Set<String> affectedSources,
+            long elapsedMillis) {
+        public boolean changed() {
+            return added > 0 || removed > 0;
+        }
+
+        @Override
+        public String toString() {
+            return source + ": +" + added + " -" + removed + " =" + unchanged + " chunks in " + elapsedMillis + "ms";
+        }
+    }
+}
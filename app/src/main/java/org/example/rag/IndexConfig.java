@@ -0,0 +1,27 @@
+package org.example.rag;
+
+/**
+ * Settings that determine the content of an index generation. Changing any of
+ * them requires re-chunking and/or re-embedding the whole corpus.
+ *
+ * @param embeddingModelUrl  DJL URL of the embedding model
+ * @param embeddingDimension Embedding dimension to keep
+ * @param chunkingMode       How chunk sizes are measured
+ */
+public record IndexConfig(String embeddingModelUrl, int embeddingDimension, DocumentChunker.Mode chunkingMode) {
+
+    /**
+     * The default configuration: MiniLM embeddings, character-based chunks.
+     */
+    public static IndexConfig defaults() {
+        return new IndexConfig(EmbeddingService.DEFAULT_MODEL_URL, 384, DocumentChunker.Mode.CHARACTERS);
+    }
+
+    public IndexConfig withEmbeddingModel(String modelUrl, int dimension) {
+        return new IndexConfig(modelUrl, dimension, chunkingMode);
+    }
+
+    public IndexConfig withChunkingMode(DocumentChunker.Mode mode) {
+        return new IndexConfig(embeddingModelUrl, embeddingDimension, mode);
+    }
+}
@@ -0,0 +1,183 @@
+package org.example.rag;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One complete, immutable-by-configuration set of indexes: embedding model,
+ * BM25 index, vector store, the chunk table they share, chunk bookkeeping and
+ * the result cache built on top of them.
+ *
+ * Generations are reference counted. The retriever holds one reference while
+ * the generation is current, and every query holds one while it runs. When a
+ * newer generation is swapped in, the old one is retired (the retriever drops
+ * its reference) and its resources are released as soon as the last
+ * in-flight query finishes.
+ */
+public class IndexGeneration {
+
+    // Above 1: the semantic cache stays off unless enabled (see HybridRetriever.setSemanticCacheThreshold)
+    private static final double SEMANTIC_CACHE_THRESHOLD = 2.0;
+    private static final int SEMANTIC_CACHE_MAX_ENTRIES = 500;
+
+    private final long number;
+    private final IndexConfig config;
+    private final EmbeddingService embeddingService;
+    private final DocumentChunker chunker;
+    private final ChunkTable chunkTable;
+    private final BM25Index bm25Index;
+    private final VectorStore vectorStore;
+    private final ChunkManifest manifest;
+    private final MinHashDeduplicator deduplicator;
+    private final IncrementalIndexer incrementalIndexer;
+
+    private final RetrievalCache retrievalCache = new RetrievalCache();
+    private final SemanticQueryCache semanticCache = new SemanticQueryCache(
+            SEMANTIC_CACHE_THRESHOLD, SEMANTIC_CACHE_MAX_ENTRIES);
+
+    // Starts at 1: the reference held by the retriever while this generation is current
+    private final AtomicInteger references = new AtomicInteger(1);
+    private volatile IngestionPipeline.Stats ingestionStats;
+
+    IndexGeneration(long number, IndexConfig config) {
+        this.number = number;
+        this.config = config;
+        this.embeddingService = new EmbeddingService(config.embeddingModelUrl(), config.embeddingDimension());
+        this.chunker = new DocumentChunker(config.chunkingMode(), embeddingService::countTokens);
+        this.chunkTable = new ChunkTable();
+        this.bm25Index = new BM25Index(chunkTable);
+        this.vectorStore = new VectorStore(chunkTable);
+        this.manifest = new ChunkManifest();
+        this.deduplicator = new MinHashDeduplicator();
+        this.incrementalIndexer = new IncrementalIndexer(chunker, embeddingService, bm25Index, vectorStore,
+                manifest, deduplicator);
+    }
+
+    /**
+     * Load the model and index a whole corpus. Blocks until done.
+     *
+     * @param parallelism Number of embedding workers
+     */
+    void build(CorpusSource source, int parallelism) {
+        embeddingService.initialize();
+        IngestionPipeline pipeline = new IngestionPipeline(chunker, embeddingService, bm25Index, vectorStore,
+                manifest, deduplicator, parallelism);
+        ingestionStats = pipeline.run(source);
+    }
+
+    /**
+     * Check that a freshly built generation can serve queries.
+     *
+     * @param previous The generation it is about to replace, or null
+     * @throws IllegalStateException if it is not fit to be swapped in
+     */
+    void validate(IndexGeneration previous) {
+        int vectors = vectorStore.size();
+        int lexical = bm25Index.getDocumentCount();
+        if (vectors == 0) {
+            throw new IllegalStateException("Generation " + number + " is empty");
+        }
+        if (vectors != lexical) {
+            throw new IllegalStateException("Generation " + number + " is inconsistent: " + lexical
+                    + " BM25 documents vs " + vectors + " vectors");
+        }
+        // Don't replace a working model with the hash-based fallback (e.g., a typo in the model URL)
+        if (embeddingService.isFallback() && previous != null && !previous.embeddingService.isFallback()) {
+            throw new IllegalStateException("Embedding model " + config.embeddingModelUrl() + " failed to load");
+        }
+        if (previous != null && vectors < previous.vectorStore.size() / 2) {
+            throw new IllegalStateException("Generation " + number + " has " + vectors
+                    + " vectors, less than half of the current " + previous.vectorStore.size());
+        }
+
+        float[] probe = embeddingService.embed("test", true);
+        if (vectorStore.search(probe, 1).isEmpty()) {
+            throw new IllegalStateException("Generation " + number + " returned no results for a probe query");
+        }
+    }
+
+    /**
+     * Take a reference for the duration of a query.
+     *
+     * @return false if the generation was already released
+     */
+    boolean tryAcquire() {
+        while (true) {
+            int count = references.get();
+            if (count == 0)
+                return false;
+            if (references.compareAndSet(count, count + 1))
+                return true;
+        }
+    }
+
+    /**
+     * Drop a reference; the last one frees the resources.
+     */
+    void release() {
+        if (references.decrementAndGet() == 0) {
+            bm25Index.close();
+            embeddingService.close();
+            vectorStore.clear();
+            retrievalCache.clear();
+            semanticCache.clear();
+        }
+    }
+
+    /**
+     * Drop cached results that an update of the given sources may affect:
+     * unfiltered queries and queries filtered on one of them.
+     */
+    void invalidateCache(Set<String> sources) {
+        retrievalCache.invalidate(sources);
+        semanticCache.invalidate(sources);
+    }
+
+    RetrievalCache retrievalCache() {
+        return retrievalCache;
+    }
+
+    SemanticQueryCache semanticCache() {
+        return semanticCache;
+    }
+
+    public long getNumber() {
+        return number;
+    }
+
+    public IndexConfig getConfig() {
+        return config;
+    }
+
+    public IngestionPipeline.Stats getIngestionStats() {
+        return ingestionStats;
+    }
+
+    EmbeddingService embeddingService() {
+        return embeddingService;
+    }
+
+    ChunkTable chunkTable() {
+        return chunkTable;
+    }
+
+    BM25Index bm25Index() {
+        return bm25Index;
+    }
+
+    VectorStore vectorStore() {
+        return vectorStore;
+    }
+
+    ChunkManifest manifest() {
+        return manifest;
+    }
+
+    MinHashDeduplicator deduplicator() {
+        return deduplicator;
+    }
+
+    IncrementalIndexer incrementalIndexer() {
+        return incrementalIndexer;
+    }
+}
@@ -0,0 +1,376 @@
+package org.example.rag;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Streaming, parallel ingestion pipeline: read → chunk → dedup → (embed ∥ BM25 index).
+ *
+ * Stages hand work to each other through bounded queues. When a downstream
+ * stage falls behind, its queue fills up and the upstream stage blocks
+ * (backpressure), so the number of documents and chunks in flight stays
+ * constant regardless of corpus size.
+ *
+ * Chunking, embedding and BM25 indexing each run on a pool of workers sized
+ * from the configured parallelism. Every chunk is fanned out to both the
+ * embedding workers (which also fill the vector store) and the BM25 workers,
+ * so lexical indexing overlaps with the expensive embedding step.
+ *
+ * Deduplication runs on a single worker that puts the chunked documents back
+ * in reading order first, so the copy that gets indexed does not depend on
+ * which chunker finished first.
+ */
+public class IngestionPipeline {
+
+    private static final int DOCUMENT_QUEUE_CAPACITY = 64;
+    private static final int CHUNK_QUEUE_CAPACITY = 512;
+    private static final int EMBED_BATCH_SIZE = 32;
+    private static final long PROGRESS_INTERVAL_MS = 5000;
+
+    // End-of-stream markers, compared by identity
+    private static final ReadDocument END_OF_DOCUMENTS = new ReadDocument(-1, null);
+    private static final ChunkedDocument END_OF_CHUNKED_DOCUMENTS = new ChunkedDocument(-1, List.of());
+    private static final Chunk END_OF_CHUNKS = new Chunk("", "", "", "");
+
+    private final DocumentChunker chunker;
+    private final EmbeddingService embeddingService;
+    private final BM25Index bm25Index;
+    private final VectorStore vectorStore;
+    private final ChunkManifest manifest;
+    private final MinHashDeduplicator deduplicator;
+
+    private final int chunkWorkers;
+    private final int embedWorkers;
+    private final int indexWorkers;
+
+    private final AtomicLong documentsRead = new AtomicLong();
+    private final AtomicLong chunksIndexed = new AtomicLong();
+    private final AtomicLong duplicatesSkipped = new AtomicLong();
+    private volatile long lastReport;
+
+    /**
+     * Create a pipeline using all available cores.
+     */
+    public IngestionPipeline(DocumentChunker chunker, EmbeddingService embeddingService,
+            BM25Index bm25Index, VectorStore vectorStore) {
+        this(chunker, embeddingService, bm25Index, vectorStore, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a pipeline with an explicit degree of parallelism.
+     *
+     * @param parallelism Number of embedding workers; chunking and BM25 workers
+     *                    are derived from it (1 gives a fully sequential build)
+     */
+    public IngestionPipeline(DocumentChunker chunker, EmbeddingService embeddingService,
+            BM25Index bm25Index, VectorStore vectorStore, int parallelism) {
+        this(chunker, embeddingService, bm25Index, vectorStore, null, parallelism);
+    }
+
+    /**
+     * Create a pipeline that also records every indexed chunk in a manifest,
+     * enabling later incremental updates (see {@link IncrementalIndexer}).
+     *
+     * @param manifest    Manifest to fill, or null to skip tracking
+     * @param parallelism Number of embedding workers
+     */
+    public IngestionPipeline(DocumentChunker chunker, EmbeddingService embeddingService,
+            BM25Index bm25Index, VectorStore vectorStore, ChunkManifest manifest, int parallelism) {
+        this(chunker, embeddingService, bm25Index, vectorStore, manifest, null, parallelism);
+    }
+
+    /**
+     * Create a pipeline that also collapses near-duplicate chunks: only the
+     * first chunk of each group is embedded and indexed, later copies are
+     * registered with the deduplicator as alternates of it.
+     *
+     * @param manifest     Manifest to fill, or null to skip tracking
+     * @param deduplicator Near-duplicate detector, or null to index every chunk
+     * @param parallelism  Number of embedding workers
+     */
+    public IngestionPipeline(DocumentChunker chunker, EmbeddingService embeddingService,
+            BM25Index bm25Index, VectorStore vectorStore, ChunkManifest manifest,
+            MinHashDeduplicator deduplicator, int parallelism) {
+        this.chunker = chunker;
+        this.embeddingService = embeddingService;
+        this.bm25Index = bm25Index;
+        this.vectorStore = vectorStore;
+        this.manifest = manifest;
+        this.deduplicator = deduplicator;
+
+        // Embedding dominates the cost; chunking and lexical indexing need fewer threads.
+        // Each embedding worker runs its forward passes on one native thread (see PyTorchThreads)
+        this.embedWorkers = Math.max(1, parallelism);
+        this.chunkWorkers = Math.max(1, parallelism / 4);
+        this.indexWorkers = Math.max(1, parallelism / 4);
+    }
+
+    /**
+     * Ingest every document of a corpus source into the indexes.
+     * Blocks until the whole corpus has been indexed and committed.
+     *
+     * @param source The corpus to ingest
+     * @return Ingestion statistics
+     */
+    public Stats run(CorpusSource source) {
+        BlockingQueue<ReadDocument> documentQueue = new ArrayBlockingQueue<>(DOCUMENT_QUEUE_CAPACITY);
+        BlockingQueue<ChunkedDocument> dedupQueue = new ArrayBlockingQueue<>(DOCUMENT_QUEUE_CAPACITY);
+        BlockingQueue<Chunk> embedQueue = new ArrayBlockingQueue<>(CHUNK_QUEUE_CAPACITY);
+        BlockingQueue<Chunk> bm25Queue = new ArrayBlockingQueue<>(CHUNK_QUEUE_CAPACITY);
+        AtomicInteger activeChunkers = new AtomicInteger(chunkWorkers);
+
+        documentsRead.set(0);
+        chunksIndexed.set(0);
+        duplicatesSkipped.set(0);
+        long startTime = System.currentTimeMillis();
+        lastReport = startTime;
+
+        List<Callable<Void>> stages = new ArrayList<>();
+        stages.add(() -> readStage(source, documentQueue));
+        for (int i = 0; i < chunkWorkers; i++) {
+            stages.add(() -> chunkStage(documentQueue, dedupQueue, embedQueue, bm25Queue, activeChunkers));
+        }
+        if (deduplicator != null) {
+            stages.add(() -> dedupStage(dedupQueue, embedQueue, bm25Queue));
+        }
+        for (int i = 0; i < embedWorkers; i++) {
+            stages.add(() -> embedStage(embedQueue, startTime));
+        }
+        for (int i = 0; i < indexWorkers; i++) {
+            stages.add(() -> bm25Stage(bm25Queue));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(stages.size());
+        try {
+            CompletionService<Void> completion = new ExecutorCompletionService<>(executor);
+            stages.forEach(completion::submit);
+
+            // Fail fast: the first failing stage cancels the others, which would
+            // otherwise block forever on their queues
+            for (int i = 0; i < stages.size(); i++) {
+                completion.take().get();
+            }
+            bm25Index.commit();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Ingestion failed for " + source.getName(), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Ingestion interrupted for " + source.getName(), e);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long duration = System.currentTimeMillis() - startTime;
+        Stats stats = new Stats(source.getName(), documentsRead.get(), chunksIndexed.get(),
+                duplicatesSkipped.get(), duration);
+        if (duration >= PROGRESS_INTERVAL_MS) {
+            System.err.println("[IngestionPipeline] Done: " + stats);
+        }
+        return stats;
+    }
+
+    private Void readStage(CorpusSource source, BlockingQueue<ReadDocument> out) throws Exception {
+        source.read(document -> {
+            // Only this stage counts, so the count is the document's position
+            out.put(new ReadDocument(documentsRead.get(), document));
+            documentsRead.incrementAndGet();
+        });
+        for (int i = 0; i < chunkWorkers; i++) {
+            out.put(END_OF_DOCUMENTS);
+        }
+        return null;
+    }
+
+    private Void chunkStage(BlockingQueue<ReadDocument> in, BlockingQueue<ChunkedDocument> dedupOut,
+            BlockingQueue<Chunk> embedOut, BlockingQueue<Chunk> bm25Out, AtomicInteger activeChunkers)
+            throws InterruptedException {
+        while (true) {
+            ReadDocument document = in.take();
+            if (document == END_OF_DOCUMENTS) {
+                // The last chunker to finish closes the downstream streams
+                if (activeChunkers.decrementAndGet() == 0) {
+                    if (deduplicator != null) {
+                        dedupOut.put(END_OF_CHUNKED_DOCUMENTS);
+                    } else {
+                        closeChunkStreams(embedOut, bm25Out);
+                    }
+                }
+                return null;
+            }
+
+            List<Chunk> chunks = chunker.chunkDocument(document.document().content(), document.document().source());
+            // The manifest tracks every chunk of the source, duplicates included,
+            // so incremental updates can find them again
+            if (manifest != null) {
+                chunks.forEach(manifest::record);
+            }
+            if (deduplicator != null) {
+                dedupOut.put(new ChunkedDocument(document.position(), chunks));
+                continue;
+            }
+            for (Chunk chunk : chunks) {
+                embedOut.put(chunk);
+                bm25Out.put(chunk);
+            }
+        }
+    }
+
+    private Void dedupStage(BlockingQueue<ChunkedDocument> in, BlockingQueue<Chunk> embedOut,
+            BlockingQueue<Chunk> bm25Out) throws InterruptedException {
+        // Documents chunked ahead of their turn wait here
+        Map<Long, List<Chunk>> pending = new HashMap<>();
+        long next = 0;
+        while (true) {
+            ChunkedDocument document = in.take();
+            if (document == END_OF_CHUNKED_DOCUMENTS) {
+                closeChunkStreams(embedOut, bm25Out);
+                return null;
+            }
+
+            pending.put(document.position(), document.chunks());
+            for (List<Chunk> chunks = pending.remove(next); chunks != null; chunks = pending.remove(++next)) {
+                for (Chunk chunk : chunks) {
+                    if (deduplicator.offer(chunk).duplicate()) {
+                        duplicatesSkipped.incrementAndGet();
+                        continue;
+                    }
+                    embedOut.put(chunk);
+                    bm25Out.put(chunk);
+                }
+            }
+        }
+    }
+
+    private void closeChunkStreams(BlockingQueue<Chunk> embedOut, BlockingQueue<Chunk> bm25Out)
+            throws InterruptedException {
+        for (int i = 0; i < embedWorkers; i++) {
+            embedOut.put(END_OF_CHUNKS);
+        }
+        for (int i = 0; i < indexWorkers; i++) {
+            bm25Out.put(END_OF_CHUNKS);
+        }
+    }
+
+    private Void embedStage(BlockingQueue<Chunk> in, long startTime) throws InterruptedException {
+        List<Chunk> batch = new ArrayList<>(EMBED_BATCH_SIZE);
+        Chunk chunk = in.take();
+        while (true) {
+            if (chunk == END_OF_CHUNKS) {
+                embedAndStore(batch, startTime);
+                return null;
+            }
+
+            batch.add(chunk);
+            if (batch.size() >= EMBED_BATCH_SIZE) {
+                embedAndStore(batch, startTime);
+            }
+
+            // Keep filling the batch while work is queued, but don't wait for a
+            // full batch when the queue runs dry
+            chunk = in.poll();
+            if (chunk == null) {
+                embedAndStore(batch, startTime);
+                chunk = in.take();
+            }
+        }
+    }
+
+    private void embedAndStore(List<Chunk> batch, long startTime) {
+        if (batch.isEmpty())
+            return;
+
+        List<String> texts = new ArrayList<>(batch.size());
+        for (Chunk chunk : batch) {
+            texts.add(chunk.content());
+        }
+
+        List<float[]> embeddings = embeddingService.embedBatch(texts, false);
+        for (int i = 0; i < batch.size(); i++) {
+            vectorStore.addChunk(batch.get(i), embeddings.get(i));
+        }
+        long indexed = chunksIndexed.addAndGet(batch.size());
+        batch.clear();
+
+        reportProgress(indexed, startTime);
+    }
+
+    private Void bm25Stage(BlockingQueue<Chunk> in) throws InterruptedException {
+        while (true) {
+            Chunk chunk = in.take();
+            if (chunk == END_OF_CHUNKS) {
+                return null;
+            }
+            // IndexWriter is thread-safe, so the BM25 workers share it
+            bm25Index.addDocument(chunk.id(), chunk.content(), chunk.source());
+        }
+    }
+
+    private void reportProgress(long indexed, long startTime) {
+        long now = System.currentTimeMillis();
+        if (now - lastReport < PROGRESS_INTERVAL_MS)
+            return;
+
+        synchronized (this) {
+            if (now - lastReport < PROGRESS_INTERVAL_MS)
+                return;
+            lastReport = now;
+        }
+        System.err.println("[IngestionPipeline] Progress: " + documentsRead.get() + " docs read, "
+                + indexed + " chunks indexed ("
+                + String.format("%.1f", indexed * 1000.0 / (now - startTime)) + " chunks/s)");
+    }
+
+    /**
+     * Get the number of documents read so far (for progress monitoring).
+     */
+    public long getDocumentsRead() {
+        return documentsRead.get();
+    }
+
+    /**
+     * Get the number of chunks indexed so far (for progress monitoring).
+     */
+    public long getChunksIndexed() {
+        return chunksIndexed.get();
+    }
+
+    /**
+     * A document and its position in reading order.
+     */
+    private record ReadDocument(long position, SourceDocument document) {
+    }
+
+    /**
+     * The chunks of the document at the given position in reading order.
+     */
+    private record ChunkedDocument(long position, List<Chunk> chunks) {
+    }
+
+    /**
+     * Summary of a completed ingestion run.
+     */
+    public record Stats(String source, long documents, long chunks, long duplicates, long elapsedMillis) {
+
+        public double chunksPerSecond() {
+            return elapsedMillis > 0 ? chunks * 1000.0 / elapsedMillis : chunks;
+        }
+
+        @Override
+        public String toString() {
+            return documents + " docs, " + chunks + " chunks (" + duplicates + " duplicates skipped) from " + source
+                    + " in " + elapsedMillis + "ms (" + String.format("%.1f", chunksPerSecond()) + " chunks/s)";
+        }
+    }
+}
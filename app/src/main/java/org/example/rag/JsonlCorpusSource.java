@@ -0,0 +1,83 @@
+package org.example.rag;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Corpus source reading a JSONL bundle: one JSON object per line with a
+ * "source" and a "content" field, e.g.
+ *
+ * <pre>
+ * {"source": "faq.md", "content": "## General Questions\n..."}
+ * </pre>
+ *
+ * The file is read line by line, so bundle size is not limited by memory.
+ */
+public class JsonlCorpusSource implements CorpusSource {
+
+    private final Path file;
+
+    public JsonlCorpusSource(Path file) {
+        this.file = file;
+    }
+
+    @Override
+    public void read(DocumentSink sink) throws IOException, InterruptedException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            readLines(reader, file.getFileName().toString(), sink);
+        }
+    }
+
+    /**
+     * Parse JSONL documents from a reader. Malformed lines are skipped with a
+     * warning.
+     *
+     * @param reader     The reader, positioned at the first line
+     * @param bundleName Name used in warnings
+     * @param sink       Receiver for each parsed document
+     */
+    static void readLines(BufferedReader reader, String bundleName, DocumentSink sink)
+            throws IOException, InterruptedException {
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank())
+                continue;
+
+            SourceDocument document = parseLine(line);
+            if (document == null) {
+                System.err.println("Warning: Skipping malformed line " + lineNumber + " in " + bundleName);
+                continue;
+            }
+            sink.accept(document);
+        }
+    }
+
+    private static SourceDocument parseLine(String line) {
+        try {
+            JsonObject json = JsonParser.parseString(line).getAsJsonObject();
+            JsonElement source = json.get("source");
+            JsonElement content = json.get("content");
+            if (source == null || content == null || source.isJsonNull() || content.isJsonNull()) {
+                return null;
+            }
+            return new SourceDocument(source.getAsString(), content.getAsString());
+        } catch (JsonParseException | IllegalStateException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "jsonl:" + file;
+    }
+}
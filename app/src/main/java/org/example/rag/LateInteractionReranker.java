@@ -0,0 +1,362 @@
+package org.example.rag;
+
+import ai.djl.huggingface.tokenizers.Encoding;
+import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
+import ai.djl.inference.Predictor;
+import ai.djl.ndarray.NDArray;
+import ai.djl.ndarray.NDList;
+import ai.djl.ndarray.NDManager;
+import ai.djl.ndarray.types.Shape;
+import ai.djl.repository.zoo.Criteria;
+import ai.djl.repository.zoo.ZooModel;
+import ai.djl.translate.Batchifier;
+import ai.djl.translate.Translator;
+import ai.djl.translate.TranslatorContext;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Late-interaction (ColBERT-style) reranker.
+ *
+ * Chunks are encoded once into one vector per token, at index time (see
+ * {@link #index(List)}), and kept quantized off-heap in a
+ * {@link TokenEmbeddingStore}. At query time only the query is encoded; each
+ * candidate is scored by MaxSim (for each query token, its best match among
+ * the chunk tokens, summed). Per query this costs one short forward pass
+ * instead of one per (query, chunk) pair with a cross-encoder.
+ *
+ * Candidates indexed after the last {@link #index(List)} call (incremental
+ * updates) are encoded on first use, all in one batch.
+ *
+ * Returned chunks keep their fused (RRF) score, as with
+ * {@link CrossEncoderReranker}. If the model cannot be loaded, candidates are
+ * passed through unchanged.
+ */
+public class LateInteractionReranker implements Reranker {
+
+    /** Token vectors of the multilingual MiniLM model used for embeddings */
+    public static final String DEFAULT_MODEL_URL = EmbeddingService.DEFAULT_MODEL_URL;
+
+    private static final int MAX_TOKENS = 256;
+    private static final int BATCH_SIZE = 32;
+
+    private final String modelUrl;
+    private final int maxPredictors;
+    private final PassThroughReranker passThrough = new PassThroughReranker();
+
+    private ZooModel<List<String>, float[][][]> model;
+    private volatile boolean initialized = false;
+    private volatile boolean useFallback = false;
+    private boolean closed = false;
+
+    // Replaced as a whole by index(), so queries never see a half-built store
+    private volatile TokenEmbeddingStore store;
+
+    // DJL predictors are not thread-safe, so concurrent callers each borrow one
+    private final BlockingQueue<Predictor<List<String>, float[][][]>> idlePredictors = new LinkedBlockingQueue<>();
+    private final List<Predictor<List<String>, float[][][]>> allPredictors = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong lateEncodedChunks = new AtomicLong();
+    private volatile long indexMillis = 0;
+
+    /**
+     * Create a reranker with the token vectors of the default embedding model.
+     */
+    public LateInteractionReranker() {
+        this(DEFAULT_MODEL_URL);
+    }
+
+    /**
+     * @param modelUrl DJL model URL of a model returning per-token vectors
+     *                 (e.g., a ColBERT or sentence-transformers model)
+     */
+    public LateInteractionReranker(String modelUrl) {
+        this.modelUrl = modelUrl;
+        this.maxPredictors = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * Load the model. This is done lazily on first use.
+     *
+     * @throws IllegalStateException if the reranker was closed
+     */
+    public synchronized void initialize() {
+        if (closed)
+            throw new IllegalStateException("Reranker is closed");
+        if (initialized)
+            return;
+
+        try {
+            PyTorchThreads.configure();
+            @SuppressWarnings("unchecked")
+            Class<List<String>> inputType = (Class<List<String>>) (Class<?>) List.class;
+            Criteria<List<String>, float[][][]> criteria = Criteria.builder()
+                    .setTypes(inputType, float[][][].class)
+                    .optEngine("PyTorch")
+                    .optModelUrls(modelUrl)
+                    .optTranslator(new TokenEmbeddingTranslator())
+                    .build();
+            model = criteria.loadModel();
+        } catch (Exception e) {
+            System.err.println("[LateInteractionReranker] Warning: Model failed to load (" + e.getMessage()
+                    + "), passing candidates through");
+            useFallback = true;
+        }
+        initialized = true;
+    }
+
+    /**
+     * Encode the token vectors of all chunks of a newly built index. The
+     * previous vectors keep serving until the new store is complete.
+     */
+    @Override
+    public void index(List<ScoredChunk> chunks) {
+        if (!initialized)
+            initialize();
+        if (useFallback)
+            return;
+
+        long start = System.currentTimeMillis();
+        TokenEmbeddingStore next = null;
+        try {
+            for (int from = 0; from < chunks.size(); from += BATCH_SIZE) {
+                List<ScoredChunk> batch = chunks.subList(from, Math.min(chunks.size(), from + BATCH_SIZE));
+                next = encodeInto(next, batch);
+            }
+        } catch (Exception e) {
+            System.err.println("[LateInteractionReranker] Indexing failed: " + e.getMessage());
+            return;
+        }
+        if (next == null)
+            return;
+        store = next;
+        indexMillis = System.currentTimeMillis() - start;
+    }
+
+    @Override
+    public List<ScoredChunk> rerank(String query, List<ScoredChunk> candidates, int topK) {
+        if (!initialized)
+            initialize();
+        if (candidates.isEmpty() || useFallback)
+            return passThrough.rerank(query, candidates, topK);
+
+        float[][] queryTokens;
+        TokenEmbeddingStore current = store;
+        try {
+            // Chunks not seen by index() yet are encoded together
+            List<ScoredChunk> missing = new ArrayList<>();
+            for (ScoredChunk candidate : candidates) {
+                if (current == null || !current.contains(candidate.id(), candidate.content().hashCode())) {
+                    missing.add(candidate);
+                }
+            }
+            if (!missing.isEmpty()) {
+                TokenEmbeddingStore updated = encodeInto(current, missing);
+                if (current == null) {
+                    store = updated;
+                }
+                current = updated;
+                lateEncodedChunks.addAndGet(missing.size());
+            }
+            queryTokens = predict(List.of(query))[0];
+        } catch (Exception e) {
+            System.err.println("[LateInteractionReranker] Scoring failed: " + e.getMessage());
+            return passThrough.rerank(query, candidates, topK);
+        }
+
+        float[] scores = new float[candidates.size()];
+        List<Integer> order = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            ScoredChunk candidate = candidates.get(i);
+            float score = current.maxSim(candidate.id(), candidate.content().hashCode(), queryTokens);
+            // Replaced concurrently by index(): rank it last rather than fail
+            scores[i] = Float.isNaN(score) ? Float.NEGATIVE_INFINITY : score;
+            order.add(i);
+        }
+        // Stable: equal scores keep their fused order
+        order.sort(Comparator.comparingDouble((Integer i) -> scores[i]).reversed());
+
+        List<ScoredChunk> reranked = new ArrayList<>(Math.min(topK, candidates.size()));
+        for (int i = 0; i < order.size() && reranked.size() < topK; i++) {
+            reranked.add(candidates.get(order.get(i)));
+        }
+        return reranked;
+    }
+
+    /**
+     * Encode chunks and store their token vectors.
+     *
+     * @param target Store to add to, or null to create one of the model's dimension
+     * @return The store the vectors were added to
+     */
+    private TokenEmbeddingStore encodeInto(TokenEmbeddingStore target, List<ScoredChunk> chunks) throws Exception {
+        float[][][] tokens = predict(chunks.stream().map(ScoredChunk::content).toList());
+        for (int i = 0; i < chunks.size(); i++) {
+            if (target == null) {
+                target = new TokenEmbeddingStore(tokens[i][0].length);
+            }
+            target.put(chunks.get(i).id(), chunks.get(i).content().hashCode(), tokens[i]);
+        }
+        return target;
+    }
+
+    /**
+     * Borrow a predictor, creating one if all existing ones are busy and the
+     * pool is not full yet.
+     */
+    private Predictor<List<String>, float[][][]> borrowPredictor() throws InterruptedException {
+        Predictor<List<String>, float[][][]> predictor = idlePredictors.poll();
+        if (predictor != null)
+            return predictor;
+
+        synchronized (allPredictors) {
+            if (allPredictors.size() < maxPredictors) {
+                predictor = model.newPredictor();
+                allPredictors.add(predictor);
+                return predictor;
+            }
+        }
+        return idlePredictors.take();
+    }
+
+    private float[][][] predict(List<String> texts) throws Exception {
+        Predictor<List<String>, float[][][]> predictor = borrowPredictor();
+        try {
+            return predictor.predict(texts);
+        } finally {
+            idlePredictors.offer(predictor);
+        }
+    }
+
+    /**
+     * Check whether the model failed to load and candidates are passed through.
+     */
+    public boolean isFallback() {
+        if (!initialized)
+            initialize();
+        return useFallback;
+    }
+
+    /**
+     * Get the number of chunks stored.
+     */
+    public int getIndexedChunks() {
+        TokenEmbeddingStore current = store;
+        return current != null ? current.size() : 0;
+    }
+
+    /**
+     * Get the number of chunks encoded at query time because they were not
+     * indexed yet.
+     */
+    public long getLateEncodedChunks() {
+        return lateEncodedChunks.get();
+    }
+
+    /**
+     * Get the time the last index() took to encode all chunks.
+     */
+    public long getIndexMillis() {
+        return indexMillis;
+    }
+
+    /**
+     * Get the off-heap bytes used by the token vectors.
+     */
+    public long getBytesUsed() {
+        TokenEmbeddingStore current = store;
+        return current != null ? current.getBytesUsed() : 0;
+    }
+
+    @Override
+    public synchronized void close() {
+        allPredictors.forEach(Predictor::close);
+        allPredictors.clear();
+        idlePredictors.clear();
+        if (model != null)
+            model.close();
+        model = null;
+        store = null;
+        initialized = false;
+        useFallback = false;
+        closed = true;
+    }
+
+    /**
+     * Translator returning the L2-normalized vector of every real (non-padding)
+     * token of a batch of texts, in one padded forward pass.
+     */
+    private static class TokenEmbeddingTranslator implements Translator<List<String>, float[][][]> {
+
+        private HuggingFaceTokenizer tokenizer;
+
+        @Override
+        public void prepare(TranslatorContext ctx) throws Exception {
+            Path modelPath = ctx.getModel().getModelPath();
+            tokenizer = HuggingFaceTokenizer.builder()
+                    .optTokenizerPath(modelPath.resolve("tokenizer.json"))
+                    .optTruncation(true)
+                    .optMaxLength(MAX_TOKENS)
+                    .optPadding(false)
+                    .build();
+        }
+
+        @Override
+        public NDList processInput(TranslatorContext ctx, List<String> inputs) {
+            Encoding[] encodings = tokenizer.batchEncode(inputs);
+
+            int maxLength = 0;
+            int[] lengths = new int[encodings.length];
+            for (int i = 0; i < encodings.length; i++) {
+                lengths[i] = encodings[i].getIds().length;
+                maxLength = Math.max(maxLength, lengths[i]);
+            }
+
+            long[] ids = new long[encodings.length * maxLength];
+            long[] attentionMask = new long[encodings.length * maxLength];
+            for (int i = 0; i < encodings.length; i++) {
+                System.arraycopy(encodings[i].getIds(), 0, ids, i * maxLength, lengths[i]);
+                System.arraycopy(encodings[i].getAttentionMask(), 0, attentionMask, i * maxLength, lengths[i]);
+            }
+            ctx.setAttachment("lengths", lengths);
+
+            NDManager manager = ctx.getNDManager();
+            Shape shape = new Shape(encodings.length, maxLength);
+            return new NDList(manager.create(ids, shape), manager.create(attentionMask, shape));
+        }
+
+        @Override
+        public float[][][] processOutput(TranslatorContext ctx, NDList list) {
+            // (batch, seq, hidden), each token normalized for cosine MaxSim
+            NDArray tokens = list.get(0);
+            tokens = tokens.div(tokens.pow(2).sum(new int[] { 2 }, true).sqrt().clip(1e-9f, Float.MAX_VALUE));
+
+            int[] lengths = (int[]) ctx.getAttachment("lengths");
+            int sequence = (int) tokens.getShape().get(1);
+            int hidden = (int) tokens.getShape().get(2);
+            float[] flat = tokens.toFloatArray();
+            float[][][] results = new float[lengths.length][][];
+            for (int i = 0; i < lengths.length; i++) {
+                results[i] = new float[lengths[i]][];
+                for (int t = 0; t < lengths[i]; t++) {
+                    int start = (i * sequence + t) * hidden;
+                    results[i][t] = Arrays.copyOfRange(flat, start, start + hidden);
+                }
+            }
+            return results;
+        }
+
+        @Override
+        public Batchifier getBatchifier() {
+            return null;
+        }
+    }
+}
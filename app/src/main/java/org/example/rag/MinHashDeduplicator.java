@@ -0,0 +1,304 @@
+package org.example.rag;
+
+import java.util.*;
+
+/**
+ * Near-duplicate chunk detection using MinHash signatures and LSH banding.
+ *
+ * Each chunk is reduced to a set of word 3-gram shingles and summarized by a
+ * MinHash signature; the fraction of equal signature values estimates the
+ * Jaccard similarity of two chunks. Signatures are split into bands, and only
+ * chunks sharing at least one band bucket are compared, so lookups stay cheap
+ * as the corpus grows.
+ *
+ * The first chunk of a group of near-duplicates becomes the canonical chunk
+ * and is indexed; later copies are only recorded as duplicates, so their
+ * sources remain reachable (e.g., through source filters) without being
+ * embedded or indexed again. Which chunk is first is up to the caller: the
+ * ingestion pipeline offers chunks in reading order from a single thread.
+ */
+public class MinHashDeduplicator {
+
+    private static final int NUM_HASHES = 120;
+    // 20 bands of 6 rows: pairs with Jaccard 0.8 collide in some band >99% of the time
+    private static final int BANDS = 20;
+    private static final int ROWS = NUM_HASHES / BANDS;
+    private static final int SHINGLE_SIZE = 3;
+    private static final double DEFAULT_THRESHOLD = 0.8;
+
+    private final double threshold;
+    private final long[] seeds = new long[NUM_HASHES];
+
+    private final Map<Long, List<String>> buckets = new HashMap<>();
+    private final Map<String, Canonical> canonicals = new HashMap<>();
+    private final Map<String, String> canonicalOfDuplicate = new HashMap<>();
+    private final Map<String, Set<String>> canonicalIdsByAlternateSource = new HashMap<>();
+
+    public MinHashDeduplicator() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * @param threshold Minimum estimated Jaccard similarity to treat two chunks
+     *                  as duplicates (0..1)
+     */
+    public MinHashDeduplicator(double threshold) {
+        this.threshold = threshold;
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < NUM_HASHES; i++) {
+            seeds[i] = random.nextLong();
+        }
+    }
+
+    /**
+     * Register a chunk, deciding whether it duplicates an already registered one.
+     *
+     * @param chunk The chunk about to be indexed
+     * @return The decision; duplicates should not be indexed
+     */
+    public Decision offer(Chunk chunk) {
+        int[] signature = signature(chunk.content());
+        if (signature == null) {
+            return new Decision(false, chunk.id());
+        }
+        long[] bandKeys = bandKeys(signature);
+
+        synchronized (this) {
+            String match = findMatch(signature, bandKeys, chunk.id());
+            if (match != null) {
+                Canonical canonical = canonicals.get(match);
+                canonical.duplicates.add(chunk);
+                canonicalOfDuplicate.put(chunk.id(), match);
+                if (!chunk.source().equals(canonical.chunk.source())) {
+                    canonicalIdsByAlternateSource.computeIfAbsent(chunk.source(), s -> new HashSet<>()).add(match);
+                }
+                return new Decision(true, match);
+            }
+
+            register(new Canonical(chunk, signature, bandKeys));
+            return new Decision(false, chunk.id());
+        }
+    }
+
+    /**
+     * Unregister a chunk that is being removed from the index.
+     *
+     * If it was a canonical chunk with duplicates, its first duplicate is
+     * promoted to canonical and returned: the caller must index it so that
+     * the remaining sources keep their content.
+     *
+     * @param id The chunk id
+     * @return The promoted chunk to index, or null
+     */
+    public synchronized Chunk remove(String id) {
+        String canonicalId = canonicalOfDuplicate.remove(id);
+        if (canonicalId != null) {
+            Canonical canonical = canonicals.get(canonicalId);
+            canonical.duplicates.removeIf(d -> d.id().equals(id));
+            rebuildAlternateSources(canonical);
+            return null;
+        }
+
+        Canonical canonical = canonicals.remove(id);
+        if (canonical == null)
+            return null;
+
+        unregister(canonical);
+        if (canonical.duplicates.isEmpty())
+            return null;
+
+        Chunk promoted = canonical.duplicates.remove(0);
+        canonicalOfDuplicate.remove(promoted.id());
+        int[] signature = signature(promoted.content());
+        Canonical replacement = new Canonical(promoted, signature, bandKeys(signature));
+        for (Chunk duplicate : canonical.duplicates) {
+            replacement.duplicates.add(duplicate);
+            canonicalOfDuplicate.put(duplicate.id(), promoted.id());
+        }
+        register(replacement);
+        return promoted;
+    }
+
+    /**
+     * Get the ids of canonical chunks that also stand for content of the given
+     * source (i.e., that have a duplicate from it). Source-filtered searches
+     * must include these.
+     */
+    public synchronized Set<String> getCanonicalIdsFor(String source) {
+        Set<String> ids = canonicalIdsByAlternateSource.get(source);
+        return ids != null ? Set.copyOf(ids) : Set.of();
+    }
+
+    /**
+     * Get the other sources whose content a canonical chunk stands for.
+     */
+    public synchronized List<String> getAlternateSources(String canonicalId) {
+        Canonical canonical = canonicals.get(canonicalId);
+        if (canonical == null)
+            return List.of();
+        return canonical.alternateSources();
+    }
+
+    /**
+     * Get the number of chunks collapsed into a canonical chunk.
+     */
+    public synchronized int getDuplicateCount() {
+        return canonicalOfDuplicate.size();
+    }
+
+    private String findMatch(int[] signature, long[] bandKeys, String selfId) {
+        Set<String> seen = new HashSet<>();
+        String best = null;
+        double bestSimilarity = threshold;
+
+        for (long key : bandKeys) {
+            List<String> bucket = buckets.get(key);
+            if (bucket == null)
+                continue;
+            for (String candidateId : bucket) {
+                if (candidateId.equals(selfId) || !seen.add(candidateId))
+                    continue;
+                double similarity = estimateJaccard(signature, canonicals.get(candidateId).signature);
+                if (similarity >= bestSimilarity) {
+                    best = candidateId;
+                    bestSimilarity = similarity;
+                }
+            }
+        }
+        return best;
+    }
+
+    private void register(Canonical canonical) {
+        canonicals.put(canonical.chunk.id(), canonical);
+        for (long key : canonical.bandKeys) {
+            buckets.computeIfAbsent(key, k -> new ArrayList<>()).add(canonical.chunk.id());
+        }
+        rebuildAlternateSources(canonical);
+    }
+
+    private void unregister(Canonical canonical) {
+        String id = canonical.chunk.id();
+        for (long key : canonical.bandKeys) {
+            List<String> bucket = buckets.get(key);
+            if (bucket != null) {
+                bucket.remove(id);
+                if (bucket.isEmpty())
+                    buckets.remove(key);
+            }
+        }
+        for (Set<String> ids : canonicalIdsByAlternateSource.values()) {
+            ids.remove(id);
+        }
+    }
+
+    private void rebuildAlternateSources(Canonical canonical) {
+        String id = canonical.chunk.id();
+        for (Set<String> ids : canonicalIdsByAlternateSource.values()) {
+            ids.remove(id);
+        }
+        for (String source : canonical.alternateSources()) {
+            canonicalIdsByAlternateSource.computeIfAbsent(source, s -> new HashSet<>()).add(id);
+        }
+    }
+
+    /**
+     * Compute the MinHash signature of a text, or null if it has no words.
+     */
+    private int[] signature(String text) {
+        String[] tokens = text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+");
+        List<String> words = new ArrayList<>(tokens.length);
+        for (String token : tokens) {
+            if (!token.isEmpty())
+                words.add(token);
+        }
+        if (words.isEmpty())
+            return null;
+
+        long[] minimums = new long[NUM_HASHES];
+        Arrays.fill(minimums, Long.MAX_VALUE);
+
+        int shingles = Math.max(1, words.size() - SHINGLE_SIZE + 1);
+        for (int i = 0; i < shingles; i++) {
+            long shingleHash = 0;
+            for (int j = i; j < Math.min(i + SHINGLE_SIZE, words.size()); j++) {
+                shingleHash = shingleHash * 0x9E3779B97F4A7C15L + words.get(j).hashCode();
+            }
+            for (int h = 0; h < NUM_HASHES; h++) {
+                long value = mix64(shingleHash ^ seeds[h]);
+                if (value < minimums[h])
+                    minimums[h] = value;
+            }
+        }
+
+        int[] signature = new int[NUM_HASHES];
+        for (int h = 0; h < NUM_HASHES; h++) {
+            signature[h] = (int) (minimums[h] >>> 32);
+        }
+        return signature;
+    }
+
+    private long[] bandKeys(int[] signature) {
+        long[] keys = new long[BANDS];
+        for (int b = 0; b < BANDS; b++) {
+            long key = b + 1;
+            for (int r = 0; r < ROWS; r++) {
+                key = mix64(key * 31 + signature[b * ROWS + r]);
+            }
+            keys[b] = key;
+        }
+        return keys;
+    }
+
+    private static double estimateJaccard(int[] a, int[] b) {
+        int equal = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i])
+                equal++;
+        }
+        return (double) equal / a.length;
+    }
+
+    /**
+     * SplitMix64 finalizer, used as a family of hash functions via seeds.
+     */
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Outcome of offering a chunk.
+     *
+     * @param duplicate   True if the chunk duplicates an indexed chunk
+     * @param canonicalId Id of the chunk to index for this content
+     */
+    public record Decision(boolean duplicate, String canonicalId) {
+    }
+
+    /**
+     * An indexed chunk and the near-duplicates collapsed into it.
+     */
+    private static class Canonical {
+        final Chunk chunk;
+        final int[] signature;
+        final long[] bandKeys;
+        final List<Chunk> duplicates = new ArrayList<>();
+
+        Canonical(Chunk chunk, int[] signature, long[] bandKeys) {
+            this.chunk = chunk;
+            this.signature = signature;
+            this.bandKeys = bandKeys;
+        }
+
+        List<String> alternateSources() {
+            List<String> sources = new ArrayList<>();
+            for (Chunk duplicate : duplicates) {
+                if (!duplicate.source().equals(chunk.source()) && !sources.contains(duplicate.source())) {
+                    sources.add(duplicate.source());
+                }
+            }
+            return sources;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package org.example.rag;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Reranker keeping the order of the previous stage (RRF fusion).
+ *
+ * Lexical reranking fails for multilingual queries (term mismatch), so without
+ * a cross-encoder the fused order is the best one available.
+ */
+public class PassThroughReranker implements Reranker {
+
+    @Override
+    public List<ScoredChunk> rerank(String query, List<ScoredChunk> candidates, int topK) {
+        if (candidates.isEmpty())
+            return candidates;
+
+        return candidates.stream()
+                .limit(topK)
+                .collect(Collectors.toList());
+    }
+}
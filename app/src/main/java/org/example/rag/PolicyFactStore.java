@@ -0,0 +1,298 @@
+package org.example.rag;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Structured facts parsed from a policy markdown document, for exact lookups
+ * that need no retrieval pipeline (plan prices, refund timelines, payment
+ * method processing times...).
+ *
+ * Parsing rules:
+ * - A header "### Basic Plan - $9.99/month" is a plan: its price and the
+ *   bullets below it (features).
+ * - A table is a category named after its first column ("Refund Type"
+ *   becomes refund_type); each row is keyed by its first cell, with one
+ *   attribute per other column.
+ * - A "- Key: value" bullet (key optionally bold) is a fact in the category
+ *   named after the enclosing header ("By Plan Type" becomes by_plan_type).
+ * - Every header is also a section whose text can be returned verbatim.
+ *
+ * Keys are matched case-insensitively, ignoring punctuation and parenthetical
+ * notes ("Bank Transfer (Enterprise only)" is found as "bank transfer").
+ */
+public class PolicyFactStore {
+
+    private static final String BILLING_POLICY_PATH = "/docs/billing_policy.md";
+
+    private static final Pattern HEADER = Pattern.compile("^(#{1,6})\\s+(.+?)\\s*$");
+    private static final Pattern PLAN_HEADER = Pattern.compile("^(.+?) Plan\\s+-\\s+(\\S+)$");
+    private static final Pattern KEY_VALUE_BULLET = Pattern.compile("^[-*]\\s+(?:\\*\\*)?([^:*.]{1,40}?)(?:\\*\\*)?:\\s+(.+)$");
+    private static final Pattern BULLET = Pattern.compile("^[-*]\\s+(.+)$");
+    private static final Pattern PARENTHETICAL = Pattern.compile("\\([^)]*\\)");
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    /** Category of the plans parsed from plan headers. */
+    public static final String PLANS = "plan";
+
+    // category -> key -> attribute -> value, in document order
+    private final Map<String, Map<String, Map<String, String>>> facts = new LinkedHashMap<>();
+    // normalized title -> section text (header line included)
+    private final Map<String, String> sections = new LinkedHashMap<>();
+
+    private PolicyFactStore() {
+    }
+
+    /**
+     * Get the facts of the bundled billing policy, parsed on first use.
+     */
+    public static PolicyFactStore billingPolicy() {
+        return BillingPolicyHolder.INSTANCE;
+    }
+
+    private static class BillingPolicyHolder {
+        static final PolicyFactStore INSTANCE = load(BILLING_POLICY_PATH);
+    }
+
+    /**
+     * Parse a markdown document from the classpath.
+     *
+     * @return The facts, empty if the document could not be read
+     */
+    public static PolicyFactStore load(String resourcePath) {
+        try (InputStream is = PolicyFactStore.class.getResourceAsStream(resourcePath)) {
+            if (is == null) {
+                System.err.println("[PolicyFactStore] Warning: " + resourcePath + " not found");
+                return new PolicyFactStore();
+            }
+            return parse(new String(is.readAllBytes(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.err.println("[PolicyFactStore] Warning: Could not load " + resourcePath);
+            return new PolicyFactStore();
+        }
+    }
+
+    /**
+     * Parse a markdown document.
+     */
+    public static PolicyFactStore parse(String markdown) {
+        PolicyFactStore store = new PolicyFactStore();
+
+        // Sections still open at the current line, with their header level
+        List<StringBuilder> openSections = new ArrayList<>();
+        List<Integer> openLevels = new ArrayList<>();
+        List<String> openTitles = new ArrayList<>();
+
+        String category = null;
+        String plan = null;
+        List<String> tableHeader = null;
+
+        for (String line : markdown.split("\n")) {
+            String trimmed = line.strip();
+
+            Matcher header = HEADER.matcher(trimmed);
+            if (header.matches()) {
+                int level = header.group(1).length();
+                String title = header.group(2);
+                while (!openLevels.isEmpty() && openLevels.get(openLevels.size() - 1) >= level) {
+                    int last = openLevels.size() - 1;
+                    store.addSection(openTitles.remove(last), openSections.remove(last));
+                    openLevels.remove(last);
+                }
+                for (StringBuilder section : openSections) {
+                    section.append(line).append('\n');
+                }
+                openSections.add(new StringBuilder(line).append('\n'));
+                openLevels.add(level);
+                openTitles.add(title);
+
+                category = slug(title);
+                tableHeader = null;
+                Matcher planHeader = PLAN_HEADER.matcher(title);
+                plan = planHeader.matches() ? planHeader.group(1) : null;
+                if (plan != null) {
+                    store.put(PLANS, plan, "name", plan);
+                    store.put(PLANS, plan, "price", planHeader.group(2));
+                }
+                continue;
+            }
+
+            for (StringBuilder section : openSections) {
+                section.append(line).append('\n');
+            }
+
+            if (trimmed.startsWith("|")) {
+                List<String> cells = splitRow(trimmed);
+                if (tableHeader == null) {
+                    tableHeader = cells;
+                } else if (!cells.isEmpty() && !cells.get(0).matches("-+")) {
+                    String tableCategory = slug(tableHeader.get(0));
+                    store.put(tableCategory, cells.get(0), "name", cells.get(0));
+                    for (int i = 1; i < Math.min(cells.size(), tableHeader.size()); i++) {
+                        store.put(tableCategory, cells.get(0), slug(tableHeader.get(i)), cells.get(i));
+                    }
+                }
+                continue;
+            }
+            tableHeader = null;
+
+            if (plan != null) {
+                Matcher bullet = BULLET.matcher(trimmed);
+                if (bullet.matches()) {
+                    store.append(PLANS, plan, "features", bullet.group(1));
+                }
+            } else if (category != null) {
+                Matcher keyValue = KEY_VALUE_BULLET.matcher(trimmed);
+                if (keyValue.matches()) {
+                    store.put(category, keyValue.group(1), "name", keyValue.group(1).strip());
+                    store.put(category, keyValue.group(1), "value", keyValue.group(2).strip());
+                }
+            }
+        }
+
+        for (int i = openSections.size() - 1; i >= 0; i--) {
+            store.addSection(openTitles.get(i), openSections.get(i));
+        }
+        return store;
+    }
+
+    /**
+     * Get the attributes of a fact.
+     *
+     * @param key Exact key, or words all found in one key (e.g., "basic"
+     *            matches "Basic/Professional")
+     * @return The attributes, empty if not found
+     */
+    public Map<String, String> fact(String category, String key) {
+        Map<String, Map<String, String>> entries = facts.get(category);
+        if (entries == null)
+            return Map.of();
+
+        String normalized = normalizeKey(key);
+        Map<String, String> exact = entries.get(normalized);
+        if (exact != null)
+            return exact;
+
+        List<String> words = List.of(normalized.split(" "));
+        for (Map.Entry<String, Map<String, String>> entry : entries.entrySet()) {
+            if (List.of(entry.getKey().split(" ")).containsAll(words))
+                return entry.getValue();
+        }
+        return Map.of();
+    }
+
+    /**
+     * Get one attribute of a fact.
+     *
+     * @return The value, or null if not found
+     */
+    public String value(String category, String key, String attribute) {
+        return fact(category, key).get(attribute);
+    }
+
+    /**
+     * Get all facts of a category, in document order.
+     */
+    public Collection<Map<String, String>> category(String category) {
+        return facts.getOrDefault(category, Map.of()).values();
+    }
+
+    /**
+     * Get the text of a section by title (for a plan, the name alone works).
+     */
+    public Optional<String> section(String title) {
+        return Optional.ofNullable(sections.get(normalizeKey(title)));
+    }
+
+    /**
+     * Answer a query that names a section, plan, or table row exactly
+     * (e.g., "cancellation", "enterprise plan", "paypal"). Free-text
+     * questions are left to retrieval.
+     *
+     * @return The answer, or empty if the query is not an exact lookup
+     */
+    public Optional<String> answer(String query) {
+        Optional<String> section = section(query);
+        if (section.isPresent())
+            return section;
+
+        String key = normalizeKey(query);
+        for (Map.Entry<String, Map<String, Map<String, String>>> category : facts.entrySet()) {
+            Map<String, String> attributes = category.getValue().get(key);
+            if (attributes != null) {
+                StringBuilder answer = new StringBuilder("**").append(attributes.get("name")).append("**\n");
+                attributes.forEach((attribute, value) -> {
+                    if (!attribute.equals("name")) {
+                        answer.append("- ").append(label(attribute)).append(": ").append(value).append('\n');
+                    }
+                });
+                return Optional.of(answer.toString());
+            }
+        }
+        return Optional.empty();
+    }
+
+    public boolean isEmpty() {
+        return facts.isEmpty();
+    }
+
+    /**
+     * Get the number of facts (table rows, key-value bullets and plans).
+     */
+    public int size() {
+        return facts.values().stream().mapToInt(Map::size).sum();
+    }
+
+    private void put(String category, String key, String attribute, String value) {
+        facts.computeIfAbsent(category, c -> new LinkedHashMap<>())
+                .computeIfAbsent(normalizeKey(key), k -> new LinkedHashMap<>())
+                .put(attribute, value);
+    }
+
+    private void append(String category, String key, String attribute, String value) {
+        Map<String, String> attributes = facts.computeIfAbsent(category, c -> new LinkedHashMap<>())
+                .computeIfAbsent(normalizeKey(key), k -> new LinkedHashMap<>());
+        attributes.merge(attribute, value, (previous, next) -> previous + "; " + next);
+    }
+
+    private void addSection(String title, StringBuilder text) {
+        String body = text.toString().strip();
+        sections.putIfAbsent(normalizeKey(title), body);
+        // "Basic Plan - $9.99/month" is also found as "basic plan" and "basic"
+        Matcher planHeader = PLAN_HEADER.matcher(title);
+        if (planHeader.matches()) {
+            sections.putIfAbsent(normalizeKey(planHeader.group(1) + " plan"), body);
+            sections.putIfAbsent(normalizeKey(planHeader.group(1)), body);
+        }
+    }
+
+    private static List<String> splitRow(String row) {
+        String inner = row.substring(1, row.endsWith("|") && row.length() > 1 ? row.length() - 1 : row.length());
+        List<String> cells = new ArrayList<>();
+        for (String cell : inner.split("\\|")) {
+            cells.add(cell.strip());
+        }
+        return cells;
+    }
+
+    /**
+     * Lower case, no parenthetical notes, punctuation turned into spaces.
+     */
+    static String normalizeKey(String key) {
+        String text = PARENTHETICAL.matcher(key.toLowerCase(Locale.ROOT)).replaceAll(" ");
+        return NON_WORD.matcher(text).replaceAll(" ").strip();
+    }
+
+    private static String slug(String text) {
+        return text.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", "_").replaceAll("^_|_$", "");
+    }
+
+    private static String label(String attribute) {
+        String label = attribute.replace('_', ' ');
+        return Character.toUpperCase(label.charAt(0)) + label.substring(1);
+    }
+}
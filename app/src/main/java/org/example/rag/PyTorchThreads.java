@@ -0,0 +1,34 @@
+package org.example.rag;
+
+/**
+ * Thread settings of the PyTorch engine shared by the embedding service and
+ * the rerankers. They keep a pool of up to one predictor per core, so each
+ * forward pass runs on a single native thread: PyTorch's default intra-op pool
+ * of one thread per core would give cores x cores threads under load.
+ *
+ * The engine reads these once, when it starts; explicit values of the
+ * ai.djl.pytorch.num_threads / num_interop_threads properties or environment
+ * variables are kept.
+ */
+final class PyTorchThreads {
+
+    private static final String NUM_THREADS = "ai.djl.pytorch.num_threads";
+    private static final String NUM_INTEROP_THREADS = "ai.djl.pytorch.num_interop_threads";
+
+    private PyTorchThreads() {
+    }
+
+    /**
+     * Call before loading a PyTorch model.
+     */
+    static synchronized void configure() {
+        setIfAbsent(NUM_THREADS, "1");
+        setIfAbsent(NUM_INTEROP_THREADS, "1");
+    }
+
+    private static void setIfAbsent(String key, String value) {
+        if (System.getProperty(key) == null && System.getenv(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+}
@@ -71,7 +71,90 @@ public class RRFMerger {
     }
 
     /**
-     * Merge multiple ranked lists using RRF.
+     * Merge two ranked hit lists using RRF, without allocating per candidate.
+     *
+     * @param list1 First ranked list (e.g., BM25 hits)
+     * @param list2 Second ranked list (e.g., vector search hits)
+     * @param topK  Number of hits to return
+     * @return Merged hits, best first
+     */
+    public ScoredOrdinals merge(ScoredOrdinals list1, ScoredOrdinals list2, int topK) {
+        return merge(List.of(list1, list2), topK);
+    }
+
+    /**
+     * Merge any number of ranked hit lists using RRF in a single pass.
+     *
+     * Lists are read rank by rank, all lists at each rank (threshold
+     * algorithm). A chunk's score is computed in full when it is first seen, by
+     * looking it up in the other lists (a linear scan; hit lists are short), and
+     * kept in a bounded top-K heap. A chunk not seen yet ranks below the
+     * current depth in every list, so once the worst kept score reaches the
+     * best score such a chunk could get, the scan stops.
+     *
+     * @param lists Ranked lists (e.g., BM25, dense, per-field retrievers)
+     * @param topK  Number of hits to return
+     * @return Merged hits, best first
+     */
+    public ScoredOrdinals merge(List<ScoredOrdinals> lists, int topK) {
+        if (topK <= 0)
+            return ScoredOrdinals.EMPTY;
+
+        ScoredOrdinals merged = new ScoredOrdinals(topK);
+        int maxDepth = 0;
+        for (ScoredOrdinals list : lists) {
+            maxDepth = Math.max(maxDepth, list.size());
+        }
+
+        for (int depth = 0; depth < maxDepth; depth++) {
+            for (int i = 0; i < lists.size(); i++) {
+                ScoredOrdinals list = lists.get(i);
+                if (depth >= list.size())
+                    continue;
+
+                int ordinal = list.ordinal(depth);
+                float rrfScore = 0;
+                boolean seen = false;
+                for (int j = 0; j < lists.size() && !seen; j++) {
+                    int rank = j == i ? depth : lists.get(j).indexOf(ordinal);
+                    if (rank < 0)
+                        continue;
+                    // Already scored if it came up earlier in the scan
+                    seen = rank < depth || (rank == depth && j < i);
+                    rrfScore += rrfScore(rank);
+                }
+                if (!seen) {
+                    merged.offer(ordinal, rrfScore);
+                }
+            }
+
+            if (merged.isFull() && merged.worstScore() >= unseenBound(lists, depth + 1))
+                break;
+        }
+
+        return merged.sort();
+    }
+
+    /**
+     * Best RRF score of a chunk ranked at or below the given depth in every list.
+     */
+    private float unseenBound(List<ScoredOrdinals> lists, int depth) {
+        float bound = 0;
+        for (ScoredOrdinals list : lists) {
+            if (depth < list.size()) {
+                bound += rrfScore(depth);
+            }
+        }
+        return bound;
+    }
+
+    private float rrfScore(int rank) {
+        return 1.0f / (k + rank + 1); // rank is 0-indexed, formula uses 1-indexed
+    }
+
+    /**
+     * Merge multiple ranked lists using RRF. Every list contributes to the
+     * scores of the same single fusion (no pairwise re-fusion).
      */
     public List<ScoredChunk> mergeMultiple(List<List<ScoredChunk>> lists, int topK) {
         if (lists.isEmpty())
@@ -79,12 +162,20 @@ public class RRFMerger {
         if (lists.size() == 1)
             return lists.get(0).subList(0, Math.min(topK, lists.get(0).size()));
 
-        List<ScoredChunk> result = lists.get(0);
-        for (int i = 1; i < lists.size(); i++) {
-            result = merge(result, lists.get(i), Math.max(topK, result.size() + lists.get(i).size()));
+        Map<String, RRFScore> rrfScores = new HashMap<>();
+        for (List<ScoredChunk> list : lists) {
+            for (int rank = 0; rank < list.size(); rank++) {
+                ScoredChunk chunk = list.get(rank);
+                rrfScores.computeIfAbsent(chunk.id(), id -> new RRFScore(chunk))
+                        .addScore(1.0 / (k + rank + 1));
+            }
         }
 
-        return result.subList(0, Math.min(topK, result.size()));
+        return rrfScores.values().stream()
+                .sorted((a, b) -> Double.compare(b.totalScore, a.totalScore))
+                .limit(topK)
+                .map(rrf -> rrf.chunk.withScore(rrf.totalScore))
+                .toList();
     }
 
     /**
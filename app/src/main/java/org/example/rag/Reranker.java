@@ -1,37 +1,42 @@
 package org.example.rag;
 
-import java.util.*;
-import java.util.stream.Collectors;
+import java.util.List;
 
 /**
- * Reranker using cross-encoder scoring.
- * 
- * For production, this would use a cross-encoder model like:
- * - ms-marco-MiniLM-L-6-v2
- * - bge-reranker-base
- * 
- * Currently implements a simplified TF-IDF based reranking as fallback.
+ * Final precision stage of the retrieval pipeline: reorders the fused
+ * candidates by relevance to the query.
+ *
+ * Implementations:
+ * - {@link PassThroughReranker}: keeps the fused order
+ * - {@link CrossEncoderReranker}: scores (query, chunk) pairs with a local
+ *   cross-encoder model
+ * - {@link LateInteractionReranker}: MaxSim over token vectors precomputed
+ *   at index time
  */
-public class Reranker {
+public interface Reranker extends AutoCloseable {
 
     /**
      * Rerank candidates based on relevance to query.
-     * 
+     *
      * @param query      The search query
-     * @param candidates List of candidate chunks to rerank
+     * @param candidates List of candidate chunks to rerank, best fused first
      * @param topK       Number of results to return
-     * @return Reranked list with updated scores
+     * @return Reranked list
      */
-    public List<ScoredChunk> rerank(String query, List<ScoredChunk> candidates, int topK) {
-        if (candidates.isEmpty())
-            return candidates;
+    List<ScoredChunk> rerank(String query, List<ScoredChunk> candidates, int topK);
 
-        // Simplified reranker: Just return top K from previous stage (RRF/Vector)
-        // since the lexical reranking fails for multilingual queries (term mismatch).
-        // In a real production system, use a Cross-Encoder here.
-        return candidates.stream()
-                .limit(topK)
-                .collect(Collectors.toList());
+    /**
+     * Precompute per-chunk data for the chunks of a newly built index; data
+     * of chunks no longer listed may be dropped. Called when an index
+     * generation is swapped in.
+     */
+    default void index(List<ScoredChunk> chunks) {
     }
 
+    /**
+     * Release the model, if any.
+     */
+    @Override
+    default void close() {
+    }
 }
@@ -0,0 +1,146 @@
+package org.example.rag;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of final retrieval results.
+ *
+ * - Size- and TTL-bounded (LRU eviction), so it cannot grow without limit.
+ * - Keys are normalized (Unicode NFKC, case, whitespace), so trivially
+ *   different spellings of a query share an entry.
+ * - Concurrent misses on the same key are coalesced: one caller runs the
+ *   pipeline, the others wait for its result (single-flight).
+ * - Keys carry an index version. An index update bumps the version of the
+ *   unfiltered queries and of the touched sources, so stale entries are never
+ *   hit again and age out on their own.
+ */
+public class RetrievalCache {
+
+    private static final long DEFAULT_MAX_ENTRIES = 1000;
+    private static final Duration DEFAULT_TTL = Duration.ofMinutes(10);
+
+    private final Cache<Key, List<ScoredChunk>> cache;
+
+    // Version of unfiltered queries, and of queries filtered on each source
+    private final AtomicLong unfilteredVersion = new AtomicLong();
+    private final Map<String, AtomicLong> sourceVersions = new ConcurrentHashMap<>();
+
+    public RetrievalCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL);
+    }
+
+    /**
+     * @param maxEntries Maximum number of cached results
+     * @param ttl        How long a result stays valid after being computed
+     */
+    public RetrievalCache(long maxEntries, Duration ttl) {
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Build the cache key of a query against the current index version.
+     */
+    public Key key(String query, int topK, String sourceFilter) {
+        long version = sourceFilter == null
+                ? unfilteredVersion.get()
+                : sourceVersions.computeIfAbsent(sourceFilter, s -> new AtomicLong()).get();
+        return new Key(normalize(query), topK, sourceFilter, version);
+    }
+
+    /**
+     * Get a cached result, computing it if absent. Concurrent calls with the
+     * same key wait for a single computation.
+     *
+     * @param loader Runs the retrieval pipeline
+     */
+    public List<ScoredChunk> get(Key key, Callable<List<ScoredChunk>> loader) {
+        try {
+            return cache.get(key, loader);
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException runtimeException)
+                throw runtimeException;
+            throw new RuntimeException("Retrieval failed", cause);
+        }
+    }
+
+    /**
+     * Get a cached result without computing it.
+     *
+     * @return The cached results, or null
+     */
+    public List<ScoredChunk> getIfPresent(Key key) {
+        return cache.getIfPresent(key);
+    }
+
+    /**
+     * Cache a result computed outside {@link #get}.
+     */
+    public void put(Key key, List<ScoredChunk> results) {
+        cache.put(key, results);
+    }
+
+    /**
+     * Drop a result that must not be served again (e.g., a partial one).
+     * Callers already waiting on it still receive it.
+     */
+    public void discard(Key key, List<ScoredChunk> results) {
+        cache.asMap().remove(key, results);
+    }
+
+    /**
+     * Make cached results that an update of the given sources may affect
+     * unreachable: unfiltered queries and queries filtered on one of them.
+     */
+    public void invalidate(Set<String> sources) {
+        unfilteredVersion.incrementAndGet();
+        for (String source : sources) {
+            sourceVersions.computeIfAbsent(source, s -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    public void clear() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    /**
+     * Normalize a query for use as a cache key: NFKC (full-width forms,
+     * ligatures...), lower case, trimmed, single spaces.
+     */
+    static String normalize(String query) {
+        String normalized = Normalizer.normalize(query, Normalizer.Form.NFKC);
+        return normalized.toLowerCase(Locale.ROOT).strip().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Cache key: normalized query, result count, filter and index version.
+     */
+    public record Key(String query, int topK, String sourceFilter, long version) {
+    }
+}
@@ -0,0 +1,15 @@
+package org.example.rag;
+
+/**
+ * One query of a batch retrieval (see {@link HybridRetriever#retrieveAll}).
+ *
+ * @param query        The search query
+ * @param topK         Number of results to return
+ * @param sourceFilter Optional source file filter, or null
+ */
+public record RetrievalRequest(String query, int topK, String sourceFilter) {
+
+    public RetrievalRequest(String query, int topK) {
+        this(query, topK, null);
+    }
+}
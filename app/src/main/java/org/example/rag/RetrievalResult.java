@@ -0,0 +1,37 @@
+package org.example.rag;
+
+import java.util.List;
+
+/**
+ * Retrieved chunks together with the pipeline level that produced them.
+ *
+ * @param cached True if the chunks were served from the result cache
+ */
+public record RetrievalResult(List<ScoredChunk> chunks, DegradationLevel level, boolean cached) {
+
+    /**
+     * Results computed by the pipeline at the given level.
+     */
+    public RetrievalResult(List<ScoredChunk> chunks, DegradationLevel level) {
+        this(chunks, level, false);
+    }
+
+    /**
+     * Check whether the results come from a reduced pipeline (e.g., under load).
+     */
+    public boolean isDegraded() {
+        return level != DegradationLevel.FULL;
+    }
+
+    /**
+     * Note telling the reader (e.g., the agent) that results may be incomplete.
+     *
+     * @return The note, or an empty string for full results
+     */
+    public String degradationNote() {
+        if (!isDegraded())
+            return "";
+        return "Note: search ran in reduced mode (" + level.getDescription()
+                + ") because of high load; results may be incomplete.\n";
+    }
+}
@@ -0,0 +1,101 @@
+package org.example.rag;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Shares one {@link HybridRetriever} (indexes, embedding model and caches)
+ * per corpus among all the tools and agents that search it.
+ *
+ * Users take a {@link Lease} and close it when done; the retriever of a corpus
+ * is created by the first lease and closed when the last lease is released.
+ */
+public class RetrieverRegistry {
+
+    /** Key of the bundled documentation corpus. */
+    public static final String DEFAULT_CORPUS = "classpath:/docs";
+
+    private static final RetrieverRegistry SHARED = new RetrieverRegistry();
+
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * Get the process-wide registry.
+     */
+    public static RetrieverRegistry shared() {
+        return SHARED;
+    }
+
+    /**
+     * Lease the retriever over the bundled documentation.
+     */
+    public Lease acquireDefault() {
+        return acquire(DEFAULT_CORPUS, HybridRetriever::new);
+    }
+
+    /**
+     * Lease the retriever of a corpus, creating it on first use.
+     *
+     * @param corpusKey Identifies the corpus (e.g., a directory path)
+     * @param factory   Creates the retriever if none is registered for the key
+     */
+    public synchronized Lease acquire(String corpusKey, Supplier<HybridRetriever> factory) {
+        Entry entry = entries.computeIfAbsent(corpusKey, k -> new Entry(factory.get()));
+        entry.leases++;
+        return new Lease(corpusKey, entry.retriever);
+    }
+
+    private synchronized void release(String corpusKey, HybridRetriever retriever) {
+        Entry entry = entries.get(corpusKey);
+        // Each lease is released once, so its retriever is still registered; checked defensively
+        if (entry == null || entry.retriever != retriever)
+            return;
+        if (--entry.leases == 0) {
+            entries.remove(corpusKey);
+            entry.retriever.close();
+        }
+    }
+
+    /**
+     * Get the number of retrievers currently alive.
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * A reference to a shared retriever; closing it releases the reference.
+     */
+    public final class Lease implements AutoCloseable {
+        private final String corpusKey;
+        private final HybridRetriever retriever;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Lease(String corpusKey, HybridRetriever retriever) {
+            this.corpusKey = corpusKey;
+            this.retriever = retriever;
+        }
+
+        public HybridRetriever retriever() {
+            return retriever;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release(corpusKey, retriever);
+            }
+        }
+    }
+
+    private static class Entry {
+        final HybridRetriever retriever;
+        int leases = 0;
+
+        Entry(HybridRetriever retriever) {
+            this.retriever = retriever;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.example.rag;
+
+/**
+ * Ranked search hits as chunk ordinals (see {@link ChunkTable}) and scores in
+ * primitive arrays, so the retrieval stages neither allocate per candidate
+ * nor touch chunk text.
+ *
+ * Filled either best first with {@link #add}, or as a bounded top-K selection
+ * with {@link #offer} followed by {@link #sort}.
+ */
+public final class ScoredOrdinals {
+
+    public static final ScoredOrdinals EMPTY = new ScoredOrdinals(0);
+
+    private final int[] ordinals;
+    private final float[] scores;
+    private int size = 0;
+
+    /**
+     * @param capacity Maximum number of hits
+     */
+    public ScoredOrdinals(int capacity) {
+        this.ordinals = new int[capacity];
+        this.scores = new float[capacity];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int ordinal(int rank) {
+        return ordinals[rank];
+    }
+
+    public float score(int rank) {
+        return scores[rank];
+    }
+
+    public boolean isFull() {
+        return size == ordinals.length;
+    }
+
+    /**
+     * Get the lowest score kept by a top-K selection (before {@link #sort()}).
+     */
+    public float worstScore() {
+        return scores[0];
+    }
+
+    /**
+     * Find the rank of an ordinal (linear scan; hit lists are short).
+     *
+     * @return The rank, or -1 if absent
+     */
+    public int indexOf(int ordinal) {
+        for (int i = 0; i < size; i++) {
+            if (ordinals[i] == ordinal)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Append a hit. Hits must be added best first.
+     */
+    public void add(int ordinal, float score) {
+        if (size == ordinals.length)
+            throw new IllegalStateException("Capacity " + ordinals.length + " exceeded");
+        ordinals[size] = ordinal;
+        scores[size] = score;
+        size++;
+    }
+
+    /**
+     * Offer a candidate to a top-K selection: it is kept if there is room or
+     * it beats the worst kept one. Hits are a min-heap until {@link #sort()}.
+     */
+    public void offer(int ordinal, float score) {
+        if (size < ordinals.length) {
+            ordinals[size] = ordinal;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (size > 0 && score > scores[0]) {
+            ordinals[0] = ordinal;
+            scores[0] = score;
+            siftDown(0, size);
+        }
+    }
+
+    /**
+     * Rank the offered hits best first (in-place heap sort).
+     */
+    public ScoredOrdinals sort() {
+        for (int end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+        return this;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (scores[parent] <= scores[i])
+                return;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i, int end) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < end && scores[left] < scores[smallest])
+                smallest = left;
+            if (right < end && scores[right] < scores[smallest])
+                smallest = right;
+            if (smallest == i)
+                return;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int ordinal = ordinals[a];
+        ordinals[a] = ordinals[b];
+        ordinals[b] = ordinal;
+        float score = scores[a];
+        scores[a] = scores[b];
+        scores[b] = score;
+    }
+}
@@ -0,0 +1,257 @@
+package org.example.rag;
+
+import java.util.*;
+
+/**
+ * Cache of retrieval results keyed by query embedding rather than query text,
+ * so paraphrases and translations of a cached question hit it too.
+ *
+ * Lookups use random-hyperplane LSH: each table hashes an embedding to the
+ * signs of its projections on a few random hyperplanes, so similar vectors
+ * land in the same or a neighbouring bucket. A lookup probes the query's
+ * bucket and all buckets one bit away in every table, then checks the exact
+ * cosine similarity of the candidates against the threshold.
+ *
+ * The cache is bounded and evicts the least recently used entry. An entry
+ * only matches queries with the same source filter and result count.
+ */
+public class SemanticQueryCache {
+
+    private static final int TABLES = 4;
+    private static final int BITS_PER_TABLE = 10;
+
+    private final int maxEntries;
+    private volatile double threshold;
+
+    private float[][][] hyperplanes; // [table][bit][dimension], created on first use
+    private final Map<Long, List<Entry>> buckets = new HashMap<>();
+    private final LinkedHashMap<Entry, Boolean> lru = new LinkedHashMap<>(16, 0.75f, true);
+    private long version = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param threshold  Minimum cosine similarity between two queries to reuse a result
+     * @param maxEntries Maximum number of cached queries
+     */
+    public SemanticQueryCache(double threshold, int maxEntries) {
+        this.threshold = threshold;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Change the similarity threshold; a value above 1 disables the cache.
+     */
+    public void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Check whether lookups can hit; when not, callers need not compute
+     * embeddings for the cache or store results in it.
+     */
+    public boolean isEnabled() {
+        return threshold <= 1;
+    }
+
+    /**
+     * Find the cached result of the most similar earlier query.
+     *
+     * @param embedding Query embedding
+     * @return The cached results, or null if no cached query is similar enough
+     */
+    public synchronized List<ScoredChunk> lookup(float[] embedding, int topK, String sourceFilter) {
+        if (hyperplanes == null || !isEnabled()) {
+            misses++;
+            return null;
+        }
+
+        float[] normalized = normalize(embedding);
+        Entry best = null;
+        double bestSimilarity = threshold;
+        Set<Entry> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        for (int table = 0; table < TABLES; table++) {
+            int key = bucketKey(normalized, table);
+            // The query's own bucket, then every bucket one bit away
+            for (int flip = -1; flip < BITS_PER_TABLE; flip++) {
+                int probe = flip < 0 ? key : key ^ (1 << flip);
+                List<Entry> bucket = buckets.get(bucketId(table, probe));
+                if (bucket == null)
+                    continue;
+                for (Entry entry : bucket) {
+                    if (!seen.add(entry) || entry.topK != topK || !Objects.equals(entry.sourceFilter, sourceFilter))
+                        continue;
+                    double similarity = dot(normalized, entry.embedding);
+                    if (similarity >= bestSimilarity) {
+                        best = entry;
+                        bestSimilarity = similarity;
+                    }
+                }
+            }
+        }
+
+        if (best == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        lru.get(best); // Mark as recently used
+        return best.results;
+    }
+
+    /**
+     * Get the current version; pass it to {@link #put} to skip results computed
+     * before an invalidation.
+     */
+    public synchronized long version() {
+        return version;
+    }
+
+    /**
+     * Cache the results of a query.
+     *
+     * @param versionAtStart Value of {@link #version()} when the query started
+     */
+    public synchronized void put(float[] embedding, int topK, String sourceFilter, List<ScoredChunk> results,
+            long versionAtStart) {
+        if (versionAtStart != version || !isEnabled())
+            return;
+        if (hyperplanes == null) {
+            hyperplanes = createHyperplanes(embedding.length);
+        }
+
+        float[] normalized = normalize(embedding);
+        long[] bucketIds = new long[TABLES];
+        for (int table = 0; table < TABLES; table++) {
+            bucketIds[table] = bucketId(table, bucketKey(normalized, table));
+        }
+
+        Entry entry = new Entry(normalized, topK, sourceFilter, List.copyOf(results), bucketIds);
+        for (long id : bucketIds) {
+            buckets.computeIfAbsent(id, k -> new ArrayList<>()).add(entry);
+        }
+        lru.put(entry, Boolean.TRUE);
+
+        while (lru.size() > maxEntries) {
+            remove(lru.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * Drop cached results that an update of the given sources may affect:
+     * unfiltered queries and queries filtered on one of them.
+     */
+    public synchronized void invalidate(Set<String> sources) {
+        version++;
+        List<Entry> stale = new ArrayList<>();
+        for (Entry entry : lru.keySet()) {
+            if (entry.sourceFilter == null || sources.contains(entry.sourceFilter)) {
+                stale.add(entry);
+            }
+        }
+        stale.forEach(this::remove);
+    }
+
+    public synchronized void clear() {
+        version++;
+        buckets.clear();
+        lru.clear();
+    }
+
+    public synchronized int size() {
+        return lru.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    private void remove(Entry entry) {
+        lru.remove(entry);
+        for (long id : entry.bucketIds) {
+            List<Entry> bucket = buckets.get(id);
+            if (bucket != null) {
+                bucket.remove(entry);
+                if (bucket.isEmpty())
+                    buckets.remove(id);
+            }
+        }
+    }
+
+    private int bucketKey(float[] vector, int table) {
+        int key = 0;
+        for (int bit = 0; bit < BITS_PER_TABLE; bit++) {
+            if (dot(vector, hyperplanes[table][bit]) >= 0) {
+                key |= 1 << bit;
+            }
+        }
+        return key;
+    }
+
+    private static long bucketId(int table, int key) {
+        return ((long) table << 32) | (key & 0xFFFFFFFFL);
+    }
+
+    private static float[][][] createHyperplanes(int dimension) {
+        Random random = new Random(42);
+        float[][][] planes = new float[TABLES][BITS_PER_TABLE][dimension];
+        for (float[][] table : planes) {
+            for (float[] plane : table) {
+                for (int i = 0; i < dimension; i++) {
+                    plane[i] = (float) random.nextGaussian();
+                }
+            }
+        }
+        return planes;
+    }
+
+    private static float[] normalize(float[] vec) {
+        double norm = 0;
+        for (float v : vec) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        if (norm == 0)
+            return vec.clone();
+
+        float[] normalized = new float[vec.length];
+        for (int i = 0; i < vec.length; i++) {
+            normalized[i] = (float) (vec[i] / norm);
+        }
+        return normalized;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        int len = Math.min(a.length, b.length);
+        for (int i = 0; i < len; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * A cached query. Compared by identity (embeddings are arrays).
+     */
+    private static final class Entry {
+        final float[] embedding;
+        final int topK;
+        final String sourceFilter;
+        final List<ScoredChunk> results;
+        final long[] bucketIds;
+
+        Entry(float[] embedding, int topK, String sourceFilter, List<ScoredChunk> results, long[] bucketIds) {
+            this.embedding = embedding;
+            this.topK = topK;
+            this.sourceFilter = sourceFilter;
+            this.results = results;
+            this.bucketIds = bucketIds;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package org.example.rag;
+
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mirrors a sample of live queries to a candidate retriever (e.g., another
+ * embedding model or chunking mode) and compares its results with those the
+ * user got, without affecting them.
+ *
+ * Only queries the primary retriever ran its full pipeline for are mirrored,
+ * not cache hits, so that both latencies measure retrieval.
+ *
+ * For each mirrored query it records the latency of both retrievers, the
+ * overlap of their results (chunks, and source documents, which stay
+ * comparable when the chunking changes) and the Kendall rank correlation of
+ * the chunks both returned.
+ *
+ * Shadow queries run on a single low-priority thread with a small queue; when
+ * the queue is full, new samples are dropped instead of waiting, so the shadow
+ * can never hold up production queries.
+ */
+public class ShadowEvaluator implements AutoCloseable {
+
+    private static final int QUEUE_CAPACITY = 32;
+
+    private final HybridRetriever candidate;
+    private final double sampleRate;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicLong sampled = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    // Guarded by this
+    private long completed = 0;
+    private double primaryNanosSum = 0;
+    private double candidateNanosSum = 0;
+    private long overlapSamples = 0;
+    private double overlapSum = 0;
+    private double sourceOverlapSum = 0;
+    private long correlationSamples = 0;
+    private double correlationSum = 0;
+
+    /**
+     * @param candidate  Retriever under evaluation; closed with this evaluator
+     * @param sampleRate Fraction of queries to mirror (0-1)
+     */
+    public ShadowEvaluator(HybridRetriever candidate, double sampleRate) {
+        this.candidate = candidate;
+        this.sampleRate = sampleRate;
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), r -> {
+                    Thread thread = new Thread(r, "shadow-retrieval");
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }, (task, pool) -> dropped.incrementAndGet());
+    }
+
+    /**
+     * Possibly mirror a query answered by the primary retriever's full
+     * pipeline. Returns immediately.
+     *
+     * @param primaryResults What the primary retriever returned
+     * @param primaryNanos   How long the primary retriever took
+     */
+    public void mirror(String query, int topK, String sourceFilter, List<ScoredChunk> primaryResults,
+            long primaryNanos) {
+        if (ThreadLocalRandom.current().nextDouble() >= sampleRate)
+            return;
+        sampled.incrementAndGet();
+        executor.execute(() -> evaluate(query, topK, sourceFilter, primaryResults, primaryNanos));
+    }
+
+    private void evaluate(String query, int topK, String sourceFilter, List<ScoredChunk> primaryResults,
+            long primaryNanos) {
+        List<ScoredChunk> candidateResults;
+        long start = System.nanoTime();
+        try {
+            candidateResults = candidate.retrieve(query, topK, sourceFilter);
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            System.err.println("[ShadowEvaluator] Candidate query failed: " + e.getMessage());
+            return;
+        }
+        long candidateNanos = System.nanoTime() - start;
+
+        // Chunks are compared by content: ids are positions, which differ between chunkings
+        List<String> primaryChunks = primaryResults.stream().map(ScoredChunk::content).toList();
+        List<String> candidateChunks = candidateResults.stream().map(ScoredChunk::content).toList();
+
+        synchronized (this) {
+            completed++;
+            primaryNanosSum += primaryNanos;
+            candidateNanosSum += candidateNanos;
+            if (!primaryChunks.isEmpty()) {
+                overlapSamples++;
+                overlapSum += overlap(primaryChunks, candidateChunks);
+                sourceOverlapSum += overlap(primaryResults.stream().map(ScoredChunk::source).distinct().toList(),
+                        candidateResults.stream().map(ScoredChunk::source).distinct().toList());
+            }
+            double correlation = kendallTau(primaryChunks, candidateChunks);
+            if (!Double.isNaN(correlation)) {
+                correlationSamples++;
+                correlationSum += correlation;
+            }
+        }
+    }
+
+    /**
+     * Fraction of the primary results also returned by the candidate.
+     */
+    static <T> double overlap(List<T> primary, List<T> candidate) {
+        Set<T> candidateSet = new HashSet<>(candidate);
+        long shared = primary.stream().filter(candidateSet::contains).count();
+        return (double) shared / primary.size();
+    }
+
+    /**
+     * Kendall rank correlation of the items both lists contain (1 = same
+     * order, -1 = reversed).
+     *
+     * @return The correlation, or NaN if fewer than two items are shared
+     */
+    static <T> double kendallTau(List<T> primary, List<T> candidate) {
+        Map<T, Integer> candidateRanks = new HashMap<>();
+        for (int i = 0; i < candidate.size(); i++) {
+            candidateRanks.putIfAbsent(candidate.get(i), i);
+        }
+        List<Integer> ranks = new ArrayList<>();
+        for (T item : primary) {
+            Integer rank = candidateRanks.get(item);
+            if (rank != null) {
+                ranks.add(rank);
+            }
+        }
+
+        int n = ranks.size();
+        if (n < 2)
+            return Double.NaN;
+        long concordant = 0;
+        long discordant = 0;
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                if (ranks.get(i) < ranks.get(j)) {
+                    concordant++;
+                } else if (ranks.get(i) > ranks.get(j)) {
+                    discordant++;
+                }
+            }
+        }
+        return (double) (concordant - discordant) / (n * (n - 1) / 2.0);
+    }
+
+    /**
+     * Get the comparison so far.
+     */
+    public synchronized Report report() {
+        return new Report(sampled.get(), completed, dropped.get(), failed.get(),
+                completed > 0 ? primaryNanosSum / completed / 1e6 : 0,
+                completed > 0 ? candidateNanosSum / completed / 1e6 : 0,
+                overlapSamples > 0 ? overlapSum / overlapSamples : 0,
+                overlapSamples > 0 ? sourceOverlapSum / overlapSamples : 0,
+                correlationSamples > 0 ? correlationSum / correlationSamples : 0);
+    }
+
+    /**
+     * Stop mirroring, drop pending shadow queries and close the candidate.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        candidate.close();
+    }
+
+    /**
+     * Comparison of the candidate with the primary retriever.
+     *
+     * @param sampled             Queries selected for mirroring
+     * @param completed           Mirrored queries the candidate answered
+     * @param dropped             Samples dropped because the shadow was busy
+     * @param failed              Mirrored queries the candidate failed
+     * @param meanPrimaryMillis   Mean latency of the primary retriever on the mirrored queries
+     * @param meanCandidateMillis Mean latency of the candidate on the same queries
+     * @param meanOverlap         Mean fraction of primary chunks the candidate also returned
+     * @param meanSourceOverlap   Same, for source documents
+     * @param meanRankCorrelation Mean Kendall correlation of the shared chunks' ranks
+     */
+    public record Report(long sampled, long completed, long dropped, long failed, double meanPrimaryMillis,
+            double meanCandidateMillis, double meanOverlap, double meanSourceOverlap, double meanRankCorrelation) {
+        @Override
+        public String toString() {
+            return String.format("%d/%d mirrored (%d dropped, %d failed), latency candidate %.1fms vs primary "
+                    + "%.1fms, overlap %.3f (sources %.3f), rank correlation %.3f", completed, sampled, dropped,
+                    failed, meanCandidateMillis, meanPrimaryMillis, meanOverlap, meanSourceOverlap,
+                    meanRankCorrelation);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package org.example.rag;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reference-counted holder of the retriever's reranker, like
+ * {@link IndexGeneration}: the retriever holds one reference while the
+ * reranker is in use, and every query reranking holds one while it runs.
+ * A replaced reranker is closed once the last of those queries is done.
+ */
+class SharedReranker {
+
+    private final Reranker reranker;
+    // Starts at 1: the reference held by the retriever while this reranker is in use
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    SharedReranker(Reranker reranker) {
+        this.reranker = reranker;
+    }
+
+    Reranker reranker() {
+        return reranker;
+    }
+
+    /**
+     * Take a reference for the duration of a query.
+     *
+     * @return false if the reranker was already released
+     */
+    boolean tryAcquire() {
+        while (true) {
+            int count = references.get();
+            if (count == 0)
+                return false;
+            if (references.compareAndSet(count, count + 1))
+                return true;
+        }
+    }
+
+    /**
+     * Drop a reference; the last one closes the reranker.
+     */
+    void release() {
+        if (references.decrementAndGet() == 0) {
+            reranker.close();
+        }
+    }
+}
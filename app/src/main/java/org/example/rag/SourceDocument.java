@@ -0,0 +1,9 @@
+package org.example.rag;
+
+/**
+ * Represents a raw document read from a corpus source, before chunking.
+ */
+public record SourceDocument(
+        String source,
+        String content) {
+}
@@ -0,0 +1,14 @@
+package org.example.rag;
+
+/**
+ * Measures text length in model tokens.
+ */
+@FunctionalInterface
+public interface TokenCounter {
+
+    /**
+     * Count the tokens of a text, excluding special tokens added by the model
+     * (e.g., sequence start/end markers).
+     */
+    int countTokens(String text);
+}
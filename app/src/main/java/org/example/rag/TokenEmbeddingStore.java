@@ -0,0 +1,315 @@
+package org.example.rag;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Per-token chunk embeddings for late-interaction scoring, quantized to int8
+ * and kept off-heap in direct buffers, so a large corpus neither weighs on
+ * the garbage collector nor takes 4 bytes per dimension.
+ *
+ * Each token vector is stored as its scale (float) followed by one signed
+ * byte per dimension (value / scale, scale = max |value| / 127). An updated
+ * chunk is appended again; the space of its old entry is reclaimed by
+ * compacting once it makes up half of the store.
+ *
+ * A direct buffer holds at most 2 GiB, so the vectors are spread over
+ * segments of 1 GiB, addressed by long offsets; a chunk never straddles two
+ * segments. The store fails rather than grow past its memory limit.
+ */
+public class TokenEmbeddingStore {
+
+    /** Default limit of the off-heap memory of a store. */
+    public static final long DEFAULT_MAX_BYTES = 8L << 30;
+
+    private static final int INITIAL_CAPACITY = 1 << 20;
+    private static final int SEGMENT_BYTES = 1 << 30;
+
+    private final int dimension;
+    private final int tokenBytes;
+    private final int segmentBytes;
+    private final long maxBytes;
+    // Guarded by lock; the last segment grows until it reaches segmentBytes
+    private List<ByteBuffer> segments = new ArrayList<>();
+    // End of the stored data: segment * segmentBytes + position in the segment
+    private long used = 0;
+    private long garbage = 0;
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * @param dimension Size of the token vectors
+     */
+    public TokenEmbeddingStore(int dimension) {
+        this(dimension, SEGMENT_BYTES, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param dimension    Size of the token vectors
+     * @param segmentBytes Size of each off-heap segment (smaller in tests)
+     * @param maxBytes     Off-heap memory beyond which {@link #put} fails
+     */
+    public TokenEmbeddingStore(int dimension, int segmentBytes, long maxBytes) {
+        this.dimension = dimension;
+        this.tokenBytes = Float.BYTES + dimension;
+        this.segmentBytes = segmentBytes;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Store the token vectors of a chunk, replacing any previous ones.
+     *
+     * @param contentHash Hash of the chunk text the vectors were computed from
+     * @throws IllegalStateException if the store would exceed its memory limit
+     */
+    public void put(String id, int contentHash, float[][] tokens) {
+        int size = tokens.length * tokenBytes;
+        if (size > segmentBytes)
+            throw new IllegalArgumentException("Chunk " + id + " has too many tokens (" + tokens.length + ")");
+
+        lock.writeLock().lock();
+        try {
+            Entry previous = entries.remove(id);
+            if (previous != null) {
+                garbage += (long) previous.tokens() * tokenBytes;
+            }
+            if (!fits(size) && garbage > 0 && garbage >= used / 2) {
+                compact();
+            }
+
+            long offset = allocate(size);
+            ByteBuffer segment = segments.get(segment(offset));
+            int position = position(offset);
+            for (float[] token : tokens) {
+                quantize(token, segment, position);
+                position += tokenBytes;
+            }
+            entries.put(id, new Entry(offset, tokens.length, contentHash));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Check whether the vectors of a chunk are stored and match its text.
+     */
+    public boolean contains(String id, int contentHash) {
+        lock.readLock().lock();
+        try {
+            Entry entry = entries.get(id);
+            return entry != null && entry.contentHash() == contentHash;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Late-interaction (MaxSim) score of a chunk: for each query token, the
+     * best dot product with a chunk token, summed over the query tokens.
+     *
+     * @param query Query token vectors, of the store's dimension
+     * @return The score, or NaN if the chunk is not stored or is stale
+     */
+    public float maxSim(String id, int contentHash, float[][] query) {
+        lock.readLock().lock();
+        try {
+            Entry entry = entries.get(id);
+            if (entry == null || entry.contentHash() != contentHash)
+                return Float.NaN;
+
+            ByteBuffer segment = segments.get(segment(entry.offset()));
+            float score = 0;
+            for (float[] queryToken : query) {
+                float best = Float.NEGATIVE_INFINITY;
+                int position = position(entry.offset());
+                for (int t = 0; t < entry.tokens(); t++) {
+                    best = Math.max(best, dot(queryToken, segment, position));
+                    position += tokenBytes;
+                }
+                score += best;
+            }
+            return score;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Drop the vectors of a chunk.
+     */
+    public void remove(String id) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.remove(id);
+            if (entry != null) {
+                garbage += (long) entry.tokens() * tokenBytes;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    /**
+     * Get the number of chunks stored.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Get the off-heap bytes in use (live entries and not yet reclaimed ones).
+     */
+    public long getBytesUsed() {
+        lock.readLock().lock();
+        try {
+            return used;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Dot product of a query token with a stored token. Four independent
+     * accumulators keep the loop free of a serial dependency, so the JIT can
+     * unroll and pipeline it.
+     */
+    private float dot(float[] query, ByteBuffer segment, int position) {
+        float scale = segment.getFloat(position);
+        int codes = position + Float.BYTES;
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int k = 0;
+        for (; k + 3 < dimension; k += 4) {
+            s0 += query[k] * segment.get(codes + k);
+            s1 += query[k + 1] * segment.get(codes + k + 1);
+            s2 += query[k + 2] * segment.get(codes + k + 2);
+            s3 += query[k + 3] * segment.get(codes + k + 3);
+        }
+        for (; k < dimension; k++) {
+            s0 += query[k] * segment.get(codes + k);
+        }
+        return (s0 + s1 + s2 + s3) * scale;
+    }
+
+    private void quantize(float[] token, ByteBuffer segment, int position) {
+        float max = 0;
+        for (float value : token) {
+            max = Math.max(max, Math.abs(value));
+        }
+        float scale = max > 0 ? max / 127f : 1f;
+        segment.putFloat(position, scale);
+        int codes = position + Float.BYTES;
+        for (int k = 0; k < dimension; k++) {
+            float value = k < token.length ? token[k] : 0;
+            segment.put(codes + k, (byte) Math.max(-127, Math.min(127, Math.round(value / scale))));
+        }
+    }
+
+    private int segment(long offset) {
+        return (int) (offset / segmentBytes);
+    }
+
+    private int position(long offset) {
+        return (int) (offset % segmentBytes);
+    }
+
+    /**
+     * Offset at which an entry of the given size goes: the end of the data,
+     * or the start of the next segment if the current one has no room left.
+     */
+    private long nextOffset(int size) {
+        long offset = used;
+        if (position(offset) + (long) size > segmentBytes) {
+            offset = (long) (segment(offset) + 1) * segmentBytes;
+        }
+        return offset;
+    }
+
+    /**
+     * Check whether an entry fits in the memory already allocated.
+     */
+    private boolean fits(int size) {
+        long offset = nextOffset(size);
+        int segment = segment(offset);
+        return segment < segments.size() && position(offset) + size <= segments.get(segment).capacity();
+    }
+
+    /**
+     * Reserve space for an entry at the end of the data, growing the last
+     * segment or starting a new one as needed.
+     */
+    private long allocate(int size) {
+        long offset = nextOffset(size);
+        if (offset + size > maxBytes) {
+            throw new IllegalStateException("Token embedding store full: " + (offset + size)
+                    + " bytes would exceed the limit of " + maxBytes + " bytes (" + entries.size() + " chunks)");
+        }
+        // The unused end of a segment skipped over is never reclaimed before compaction
+        garbage += offset - used;
+
+        int segment = segment(offset);
+        int end = position(offset) + size;
+        if (segment == segments.size()) {
+            segments.add(ByteBuffer.allocateDirect(capacityFor(INITIAL_CAPACITY, end)).order(ByteOrder.nativeOrder()));
+        } else if (end > segments.get(segment).capacity()) {
+            ByteBuffer current = segments.get(segment);
+            ByteBuffer larger = ByteBuffer.allocateDirect(capacityFor(current.capacity(), end))
+                    .order(ByteOrder.nativeOrder());
+            larger.put(0, current, 0, position(offset));
+            segments.set(segment, larger);
+        }
+        used = offset + size;
+        return offset;
+    }
+
+    /**
+     * Double a capacity until it holds minCapacity, up to the segment size.
+     */
+    private int capacityFor(int capacity, int minCapacity) {
+        long grown = Math.min(capacity, segmentBytes);
+        while (grown < minCapacity) {
+            grown = Math.min(segmentBytes, grown * 2);
+        }
+        return (int) grown;
+    }
+
+    /**
+     * Move the live entries to the start of the store, dropping replaced
+     * and removed ones.
+     */
+    private void compact() {
+        List<ByteBuffer> previous = segments;
+        segments = new ArrayList<>();
+        used = 0;
+        garbage = 0;
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            Entry entry = e.getValue();
+            int size = entry.tokens() * tokenBytes;
+            long offset = allocate(size);
+            segments.get(segment(offset)).put(position(offset), previous.get(segment(entry.offset())),
+                    position(entry.offset()), size);
+            e.setValue(new Entry(offset, entry.tokens(), entry.contentHash()));
+        }
+    }
+
+    /**
+     * Location of a chunk's token vectors in the buffer.
+     */
+    private record Entry(long offset, int tokens, int contentHash) {
+    }
+}
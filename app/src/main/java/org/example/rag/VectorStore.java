@@ -1,14 +1,30 @@
 package org.example.rag;
 
 import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 /**
  * In-memory vector storage with cosine similarity search.
  * Simple brute-force approach suitable for small document sets (<100 chunks).
+ * Thread-safe: concurrent searches share a read lock, writes are exclusive.
  */
 public class VectorStore {
 
     private final List<VectorEntry> entries = new ArrayList<>();
+    private final ChunkTable chunkTable;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public VectorStore() {
+        this(new ChunkTable());
+    }
+
+    /**
+     * @param chunkTable Table holding the chunk text, shared with the BM25 index
+     */
+    public VectorStore(ChunkTable chunkTable) {
+        this.chunkTable = chunkTable;
+    }
 
     /**
      * Add a vector to the store.
@@ -16,7 +32,13 @@ public class VectorStore {
     public void add(String id, float[] embedding, String content, String source) {
         // Normalize the embedding for cosine similarity via dot product
         float[] normalized = normalize(embedding);
-        entries.add(new VectorEntry(id, normalized, content, source));
+        int ordinal = chunkTable.register(id, content, source);
+        lock.writeLock().lock();
+        try {
+            entries.add(new VectorEntry(id, ordinal, normalized, source));
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     /**
@@ -26,6 +48,23 @@ public class VectorStore {
         add(chunk.id(), embedding, chunk.content(), chunk.source());
     }
 
+    /**
+     * Remove the vectors with the given chunk ids.
+     */
+    public void removeAll(Collection<String> ids) {
+        if (ids.isEmpty())
+            return;
+        Set<String> toRemove = new HashSet<>(ids);
+        List<String> removed = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            entries.removeIf(entry -> toRemove.contains(entry.id) && removed.add(entry.id));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        removed.forEach(chunkTable::release);
+    }
+
     /**
      * Search for similar vectors using cosine similarity.
      * 
@@ -34,51 +73,123 @@ public class VectorStore {
      * @return List of scored chunks, sorted by similarity descending
      */
     public List<ScoredChunk> search(float[] queryEmbedding, int topK) {
-        float[] normalizedQuery = normalize(queryEmbedding);
-
-        // Calculate similarity with all entries
-        List<ScoredChunk> results = new ArrayList<>();
-        for (VectorEntry entry : entries) {
-            double similarity = dotProduct(normalizedQuery, entry.embedding);
-            results.add(new ScoredChunk(entry.id, entry.content, entry.source, similarity));
-        }
-
-        // Sort by score descending and take top K
-        results.sort((a, b) -> Double.compare(b.score(), a.score()));
-        return results.subList(0, Math.min(topK, results.size()));
+        return chunkTable.resolve(searchOrdinals(queryEmbedding, topK, null, Set.of()));
     }
 
     /**
      * Search with source filter.
      */
     public List<ScoredChunk> search(float[] queryEmbedding, int topK, String sourceFilter) {
+        return search(queryEmbedding, topK, sourceFilter, Set.of());
+    }
+
+    /**
+     * Search with source filter, also accepting the given chunk ids
+     * (canonical chunks that stand for duplicates from the filtered source).
+     */
+    public List<ScoredChunk> search(float[] queryEmbedding, int topK, String sourceFilter, Set<String> alsoIds) {
+        return chunkTable.resolve(searchOrdinals(queryEmbedding, topK, sourceFilter, alsoIds));
+    }
+
+    /**
+     * Search for similar vectors, returning chunk ordinals: only a bounded
+     * top-K heap is kept, nothing is allocated per stored vector.
+     *
+     * @param sourceFilter Source to restrict to, or null
+     * @param alsoIds      Ids accepted despite the filter
+     * @return Hits sorted by similarity descending
+     */
+    public ScoredOrdinals searchOrdinals(float[] queryEmbedding, int topK, String sourceFilter, Set<String> alsoIds) {
         float[] normalizedQuery = normalize(queryEmbedding);
+        ScoredOrdinals hits = new ScoredOrdinals(topK);
+
+        lock.readLock().lock();
+        try {
+            for (VectorEntry entry : entries) {
+                if (sourceFilter != null && !entry.source.equals(sourceFilter) && !alsoIds.contains(entry.id)) {
+                    continue;
+                }
+                hits.offer(entry.ordinal, (float) dotProduct(normalizedQuery, entry.embedding));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return hits.sort();
+    }
+
+    /**
+     * Search for several queries in a single pass over the stored vectors:
+     * each entry is loaded once and scored against every query, keeping a
+     * bounded top-K heap per query.
+     *
+     * @param queryEmbeddings One embedding per query
+     * @param topK            Number of results per query
+     * @param sourceFilters   Source filter per query (null entries for no filter)
+     * @param alsoIds         Ids accepted despite the filter, per query
+     * @return Hits per query, sorted by similarity descending
+     */
+    public List<ScoredOrdinals> searchBatch(List<float[]> queryEmbeddings, int topK, List<String> sourceFilters,
+            List<Set<String>> alsoIds) {
+        int queries = queryEmbeddings.size();
+        float[][] normalizedQueries = new float[queries][];
+        List<ScoredOrdinals> results = new ArrayList<>(queries);
+        for (int q = 0; q < queries; q++) {
+            normalizedQueries[q] = normalize(queryEmbeddings.get(q));
+            results.add(new ScoredOrdinals(topK));
+        }
 
-        List<ScoredChunk> results = new ArrayList<>();
-        for (VectorEntry entry : entries) {
-            if (sourceFilter != null && !entry.source.equals(sourceFilter)) {
-                continue;
+        lock.readLock().lock();
+        try {
+            for (VectorEntry entry : entries) {
+                for (int q = 0; q < queries; q++) {
+                    String sourceFilter = sourceFilters.get(q);
+                    if (sourceFilter != null && !entry.source.equals(sourceFilter)
+                            && !alsoIds.get(q).contains(entry.id)) {
+                        continue;
+                    }
+                    results.get(q).offer(entry.ordinal, (float) dotProduct(normalizedQueries[q], entry.embedding));
+                }
             }
-            double similarity = dotProduct(normalizedQuery, entry.embedding);
-            results.add(new ScoredChunk(entry.id, entry.content, entry.source, similarity));
+        } finally {
+            lock.readLock().unlock();
         }
 
-        results.sort((a, b) -> Double.compare(b.score(), a.score()));
-        return results.subList(0, Math.min(topK, results.size()));
+        results.forEach(ScoredOrdinals::sort);
+        return results;
+    }
+
+    /**
+     * Get the table resolving the ordinals returned by searches.
+     */
+    public ChunkTable getChunkTable() {
+        return chunkTable;
     }
 
     /**
      * Get the number of stored vectors.
      */
     public int size() {
-        return entries.size();
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     /**
      * Clear all stored vectors.
      */
     public void clear() {
-        entries.clear();
+        List<String> removed = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            entries.forEach(entry -> removed.add(entry.id));
+            entries.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        removed.forEach(chunkTable::release);
     }
 
     /**
@@ -117,6 +228,6 @@ public class VectorStore {
     /**
      * Internal storage class.
      */
-    private record VectorEntry(String id, float[] embedding, String content, String source) {
+    private record VectorEntry(String id, int ordinal, float[] embedding, String source) {
     }
 }
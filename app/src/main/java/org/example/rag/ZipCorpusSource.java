@@ -0,0 +1,74 @@
+package org.example.rag;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Corpus source reading documents from a zip bundle.
+ *
+ * Entries matching the glob pattern are read as one document each, with the
+ * entry path as source name. Entries ending in ".jsonl" are expanded line by
+ * line using the {@link JsonlCorpusSource} format.
+ */
+public class ZipCorpusSource implements CorpusSource {
+
+    private static final String DEFAULT_PATTERN = "**.{md,jsonl}";
+
+    private final Path zipFile;
+    private final String pattern;
+    private final PathMatcher matcher;
+
+    public ZipCorpusSource(Path zipFile) {
+        this(zipFile, DEFAULT_PATTERN);
+    }
+
+    /**
+     * @param zipFile The zip bundle
+     * @param pattern Glob matched against entry paths (e.g., "docs/**.md")
+     */
+    public ZipCorpusSource(Path zipFile, String pattern) {
+        this.zipFile = zipFile;
+        this.pattern = pattern;
+        this.matcher = FileSystems.getDefault().getPathMatcher("glob:" + pattern);
+    }
+
+    @Override
+    public void read(DocumentSink sink) throws IOException, InterruptedException {
+        try (ZipFile zip = new ZipFile(zipFile.toFile(), StandardCharsets.UTF_8)) {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (entry.isDirectory() || !matcher.matches(Paths.get(entry.getName()))) {
+                    continue;
+                }
+
+                try (InputStream is = zip.getInputStream(entry)) {
+                    if (entry.getName().endsWith(".jsonl")) {
+                        BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+                        JsonlCorpusSource.readLines(reader, entry.getName(), sink);
+                    } else {
+                        String content = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+                        sink.accept(new SourceDocument(entry.getName(), content));
+                    }
+                } catch (IOException e) {
+                    System.err.println("Warning: Could not load " + entry.getName() + " from " + zipFile);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "zip:" + zipFile + " (" + pattern + ")";
+    }
+}
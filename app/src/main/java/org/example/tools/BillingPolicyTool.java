@@ -1,21 +1,52 @@
 package org.example.tools;
 
+import org.example.rag.DegradationLevel;
 import org.example.rag.HybridRetriever;
+import org.example.rag.PolicyFactStore;
+import org.example.rag.RetrievalResult;
+import org.example.rag.RetrieverRegistry;
 import org.example.rag.ScoredChunk;
 
 import java.util.*;
 
 /**
  * Tool for retrieving billing policy information.
- * Uses hybrid RAG pipeline with source filtering for billing_policy.md.
+ * Queries naming a policy section, plan or table entry are answered from the
+ * facts parsed from billing_policy.md; other queries use the hybrid RAG
+ * pipeline with source filtering for billing_policy.md.
  */
 public class BillingPolicyTool implements Tool {
 
-    private static final HybridRetriever retriever = new HybridRetriever();
     private static final String SOURCE_FILTER = "billing_policy.md";
 
+    private final RetrieverRegistry.Lease lease;
+    private final HybridRetriever retriever;
+    private final PolicyFactStore policy;
+
     public BillingPolicyTool() {
         // Lazy initialization - retriever initializes on first use
+        this(RetrieverRegistry.shared().acquireDefault());
+    }
+
+    /**
+     * Create the tool over a shared retriever; the tool releases the lease on {@link #close()}.
+     */
+    public BillingPolicyTool(RetrieverRegistry.Lease lease) {
+        this(lease, PolicyFactStore.billingPolicy());
+    }
+
+    /**
+     * Create the tool over a shared retriever and a policy fact store.
+     */
+    public BillingPolicyTool(RetrieverRegistry.Lease lease, PolicyFactStore policy) {
+        this.lease = lease;
+        this.retriever = lease.retriever();
+        this.policy = policy;
+    }
+
+    @Override
+    public void close() {
+        lease.close();
     }
 
     @Override
@@ -66,8 +97,20 @@ public class BillingPolicyTool implements Tool {
             return "Error: No search query provided";
         }
 
+        // Exact lookups (e.g., "cancellation", "enterprise plan") need no retrieval
+        Optional<String> fact = policy.answer(query);
+        if (fact.isPresent()) {
+            return "📋 **Billing Policy Information**\n\n" + fact.get() + "\n";
+        }
+
         // Use hybrid retriever with source filter
-        List<ScoredChunk> results = retriever.retrieve(query, 5, SOURCE_FILTER); // Retrieve more to allow filtering
+        RetrievalResult retrieval = retriever.retrieveWithStatus(query, 5, SOURCE_FILTER); // Retrieve more to allow filtering
+        List<ScoredChunk> results = retrieval.chunks();
+
+        if (results.isEmpty() && retrieval.level() == DegradationLevel.CACHE_ONLY) {
+            return "Billing policy search is temporarily unavailable because of high load. "
+                    + "Please try again shortly.";
+        }
 
         if (results.isEmpty()) {
             return getNoResultsMessage(query);
@@ -86,6 +129,7 @@ public class BillingPolicyTool implements Tool {
 
         // Format results
         StringBuilder output = new StringBuilder();
+        output.append(retrieval.degradationNote());
         output.append("📋 **Billing Policy Information**\n\n");
 
         for (ScoredChunk chunk : highConfidenceResults) {
@@ -1,9 +1,13 @@
 package org.example.tools;
 
+import org.example.rag.DegradationLevel;
 import org.example.rag.HybridRetriever;
+import org.example.rag.RetrievalResult;
+import org.example.rag.RetrieverRegistry;
 import org.example.rag.ScoredChunk;
 
 import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * Tool for retrieving relevant documentation sections.
@@ -14,7 +18,8 @@ import java.util.*;
  */
 public class DocumentRetrievalTool implements Tool {
 
-    private static final HybridRetriever retriever = new HybridRetriever();
+    private final RetrieverRegistry.Lease lease;
+    private final HybridRetriever retriever;
 
     /**
      * Minimum confidence score for a result to be considered reliable.
@@ -24,13 +29,15 @@ public class DocumentRetrievalTool implements Tool {
     private static final double CONFIDENCE_THRESHOLD = 0.015;
 
     /**
-     * Shutdown the static retriever instance.
-     * Should be called when application/tests are shutting down.
+     * Formerly closed the static retriever. Does nothing now: a shared
+     * retriever may still be leased by other tools, and closing it under them
+     * would fail their queries.
+     *
+     * @deprecated Close the agents (or tools) instead; retrievers are shared
+     *             through {@link RetrieverRegistry} and closed with their last user.
      */
+    @Deprecated
     public static void shutdown() {
-        if (retriever != null) {
-            retriever.close();
-        }
     }
 
     // Document-friendly names for better output
@@ -44,6 +51,20 @@ public class DocumentRetrievalTool implements Tool {
 
     public DocumentRetrievalTool() {
         // Lazy initialization - retriever initializes on first use
+        this(RetrieverRegistry.shared().acquireDefault());
+    }
+
+    /**
+     * Create the tool over a shared retriever; the tool releases the lease on {@link #close()}.
+     */
+    public DocumentRetrievalTool(RetrieverRegistry.Lease lease) {
+        this.lease = lease;
+        this.retriever = lease.retriever();
+    }
+
+    @Override
+    public void close() {
+        lease.close();
     }
 
     @Override
@@ -84,7 +105,13 @@ public class DocumentRetrievalTool implements Tool {
         }
 
         // Use hybrid retriever
-        List<ScoredChunk> results = retriever.retrieve(query, 5); // Retrieve more to allow filtering
+        RetrievalResult retrieval = retriever.retrieveWithStatus(query, 5); // Retrieve more to allow filtering
+        List<ScoredChunk> results = retrieval.chunks();
+
+        if (results.isEmpty() && retrieval.level() == DegradationLevel.CACHE_ONLY) {
+            return "Documentation search is temporarily unavailable because of high load. "
+                    + "Please try again shortly.";
+        }
 
         if (results.isEmpty()) {
             return "No relevant documentation found for query: \"" + query + "\"\n\n" +
@@ -124,6 +151,7 @@ public class DocumentRetrievalTool implements Tool {
 
         // Add low-confidence warning if applicable
 
+        output.append(retrieval.degradationNote());
         output.append("Documentation Search Results (showing top ").append(finalResults.size())
                 .append(" matches)\n\n");
 
@@ -132,6 +160,12 @@ public class DocumentRetrievalTool implements Tool {
             String confidenceLevel = chunk.score() >= CONFIDENCE_THRESHOLD ? "HIGH" : "LOW";
             output.append("----------------------------------------\n");
             output.append("Source: ").append(docName).append("\n");
+            List<String> alternates = retriever.getAlternateSources(chunk.id());
+            if (!alternates.isEmpty()) {
+                output.append("Also in: ").append(alternates.stream()
+                        .map(name -> DOC_NAMES.getOrDefault(name, name))
+                        .collect(Collectors.joining(", "))).append("\n");
+            }
             output.append("Confidence: ").append(confidenceLevel);
             output.append(" (").append(String.format("%.3f", chunk.score())).append(")\n\n");
             output.append(chunk.content());
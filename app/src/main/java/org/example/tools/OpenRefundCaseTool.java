@@ -44,6 +44,14 @@ public class OpenRefundCaseTool implements Tool {
         return schema;
     }
 
+    /**
+     * Each call opens a new case.
+     */
+    @Override
+    public boolean isIdempotent() {
+        return false;
+    }
+
     @Override
     public String execute(Map<String, String> parameters) {
         String customerId = parameters.get("customer_id");
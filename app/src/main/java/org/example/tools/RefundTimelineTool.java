@@ -1,12 +1,29 @@
 package org.example.tools;
 
+import org.example.rag.PolicyFactStore;
+
 import java.util.*;
 
 /**
  * Tool for providing refund timeline information based on billing policy.
+ * Answers from the facts parsed from billing_policy.md, without retrieval.
  */
 public class RefundTimelineTool implements Tool {
 
+    // Categories of the billing policy tables (named after their first column)
+    private static final String REFUND_TYPES = "refund_type";
+    private static final String PAYMENT_METHODS = "method";
+
+    private final PolicyFactStore policy;
+
+    public RefundTimelineTool() {
+        this(PolicyFactStore.billingPolicy());
+    }
+
+    public RefundTimelineTool(PolicyFactStore policy) {
+        this.policy = policy;
+    }
+
     @Override
     public String getName() {
         return "get_refund_timeline";
@@ -50,70 +67,60 @@ public class RefundTimelineTool implements Tool {
 
     @Override
     public String execute(Map<String, String> parameters) {
+        if (policy.isEmpty()) {
+            return "Error: Billing policy information is unavailable";
+        }
+
         String refundType = parameters.get("refund_type");
         String planType = parameters.getOrDefault("plan_type", "basic").toLowerCase();
+        boolean enterprise = planType.contains("enterprise");
+        String expedited = policy.value("by_plan_type", "enterprise", "value");
 
         // If only plan_type is specified (especially Enterprise), give general timeline
         if (refundType == null || refundType.isEmpty()) {
-            if (planType.contains("enterprise")) {
-                return String.format(
-                        "⏱️ **Enterprise Refund Timeline**\n\n" +
-                                "**Processing Time:** 2-3 business days (expedited processing)\n\n" +
-                                "**Enterprise Benefits:**\n" +
-                                "- Expedited processing for all refund types\n" +
-                                "- Dedicated support line for urgent matters\n" +
-                                "- Priority handling by your account manager\n\n" +
-                                "**Refund Types Available:**\n" +
-                                "- Full refund: Within 30 days of purchase\n" +
-                                "- Partial refund: For unused service when downgrading\n" +
-                                "- Prorated credit: When switching plans mid-cycle\n\n" +
-                                "**Payment Method Processing:**\n" +
-                                "- Credit/Debit Card: 5-10 business days after processing\n" +
-                                "- PayPal: 3-5 business days\n" +
-                                "- Bank Transfer: 7-14 business days");
+            if (enterprise) {
+                StringBuilder output = new StringBuilder("⏱️ **Enterprise Refund Timeline**\n\n");
+                output.append("**Processing Time:** ").append(expedited).append("\n\n");
+                output.append("**Enterprise Benefits:**\n");
+                String features = policy.value(PolicyFactStore.PLANS, "enterprise", "features");
+                if (features != null) {
+                    for (String feature : features.split("; ")) {
+                        output.append("- ").append(feature).append("\n");
+                    }
+                }
+                output.append("\n**Refund Types Available:**\n");
+                for (Map<String, String> type : policy.category(REFUND_TYPES)) {
+                    output.append("- ").append(type.get("name")).append(": ").append(type.get("eligibility"))
+                            .append("\n");
+                }
+                output.append("\n**Payment Method Processing:**\n").append(paymentMethodTimes());
+                return output.toString();
             } else {
                 // Default to general info for non-enterprise
                 refundType = "full";
             }
         }
 
-        refundType = refundType.toLowerCase();
-
+        Map<String, String> type = policy.fact(REFUND_TYPES, refundType);
+        String name;
         String timeline;
         String eligibility;
         String notes;
-
-        switch (refundType) {
-            case "full" -> {
-                timeline = "5-7 business days";
-                eligibility = "Available within 14 days of purchase for monthly plans, 30 days for annual plans";
-                notes = "Full refunds are processed to the original payment method.";
-            }
-            case "partial" -> {
-                timeline = "Applied as account credit by default (immediate); standard processing if refunded to payment method";
-                eligibility = "Available for unused service periods when downgrading plans";
-                notes = "Partial refund amount is calculated based on remaining days in the billing cycle.";
-            }
-            case "prorated" -> {
-                timeline = "Applied as account credit by default";
-                eligibility = "Automatically applied when switching between plans mid-cycle";
-                notes = "Prorated amounts are typically applied as account credit rather than direct refund.";
-            }
-            case "cancellation" -> {
-                timeline = "10-14 business days";
-                eligibility = "Service continues until end of current billing period";
-                notes = "Cancellation refunds only apply if within the refund eligibility window.";
-            }
-            default -> {
-                timeline = "5-10 business days (varies)";
-                eligibility = "Please specify refund type for accurate information";
-                notes = "Contact support for specific eligibility determination.";
-            }
+        if (!type.isEmpty()) {
+            name = type.get("name");
+            timeline = type.get("processing_time");
+            eligibility = type.get("eligibility");
+            notes = type.get("notes");
+        } else {
+            name = refundType.substring(0, 1).toUpperCase() + refundType.substring(1).toLowerCase();
+            timeline = "Varies by refund type and payment method";
+            eligibility = "Please specify refund type for accurate information";
+            notes = "Contact support for specific eligibility determination.";
         }
 
         // Enterprise plans have expedited processing
-        if (planType.contains("enterprise")) {
-            timeline = "2-3 business days (expedited for Enterprise)";
+        if (enterprise && expedited != null) {
+            timeline = expedited + " for Enterprise";
         }
 
         return String.format(
@@ -122,14 +129,21 @@ public class RefundTimelineTool implements Tool {
                         "**Processing Time:** %s\n\n" +
                         "**Eligibility:**\n%s\n\n" +
                         "**Important Notes:**\n%s\n\n" +
-                        "**Payment Method Processing Times:**\n" +
-                        "- Credit/Debit Card: Appears within 5-10 business days\n" +
-                        "- PayPal: 3-5 business days\n" +
-                        "- Bank Transfer: 7-14 business days\n\n" +
+                        "**Payment Method Processing Times:**\n%s\n" +
                         "For urgent matters, Enterprise customers can contact their dedicated support line.",
-                refundType.substring(0, 1).toUpperCase() + refundType.substring(1),
+                name,
                 timeline,
                 eligibility,
-                notes);
+                notes,
+                paymentMethodTimes());
+    }
+
+    private String paymentMethodTimes() {
+        StringBuilder times = new StringBuilder();
+        for (Map<String, String> method : policy.category(PAYMENT_METHODS)) {
+            times.append("- ").append(method.get("name")).append(": ")
+                    .append(method.get("processing_time_refunds")).append("\n");
+        }
+        return times.toString();
     }
 }
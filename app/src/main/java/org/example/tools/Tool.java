@@ -5,7 +5,7 @@ import java.util.Map;
 /**
  * Interface for agent tools that can be called via LLM function calling.
  */
-public interface Tool {
+public interface Tool extends AutoCloseable {
     /**
      * Get the tool name for LLM function calling.
      */
@@ -28,4 +28,20 @@ public interface Tool {
      * @return The result of tool execution
      */
     String execute(Map<String, String> parameters);
+
+    /**
+     * Check whether executing the tool has no side effects, so that a model
+     * response calling it may be cached and replayed. Tools that act (e.g.,
+     * open a case) return false.
+     */
+    default boolean isIdempotent() {
+        return true;
+    }
+
+    /**
+     * Release shared resources held by the tool (e.g., a retriever lease).
+     */
+    @Override
+    default void close() {
+    }
 }
@@ -0,0 +1,128 @@
+package org.example;
+
+import org.example.rag.CrossEncoderReranker;
+import org.example.rag.HybridRetriever;
+import org.example.rag.ScoredChunk;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Offline check that adaptive retrieval keeps the quality of the full pipeline.
+ *
+ * Every user input of the test sets is retrieved in full mode and in adaptive
+ * mode, with a cross-encoder reranker; the adaptive top results must mostly
+ * match the full ones, and the shortcuts must actually be taken.
+ *
+ * Usage:
+ * ./gradlew :app:test --tests "org.example.AdaptiveRetrievalQualityTest" -Dtest.benchmark=true
+ */
+@Tag("benchmark")
+public class AdaptiveRetrievalQualityTest {
+
+    private static final List<String> TEST_SETS = List.of("../TEST_SET_EN.md", "../TEST_SET_IT.md",
+            "../TEST_SET_PL.md");
+    private static final int TOP_K = 3;
+    private static final double MIN_MEAN_OVERLAP = 0.8;
+    private static final double MIN_TOP1_AGREEMENT = 0.9;
+
+    @Test
+    public void adaptiveModeKeepsQuality() throws IOException {
+        String benchmarkFilter = System.getProperty("test.benchmark");
+        Assumptions.assumeTrue(benchmarkFilter != null && !benchmarkFilter.equals("null") && !benchmarkFilter.isEmpty(),
+                "Skipping AdaptiveRetrievalQualityTest (run with -Dtest.benchmark=true)");
+
+        List<String> queries = new ArrayList<>();
+        for (String testSet : TEST_SETS) {
+            Path path = Paths.get(testSet);
+            if (Files.exists(path)) {
+                queries.addAll(parseInputs(path));
+            }
+        }
+        Assumptions.assumeFalse(queries.isEmpty(), "No test set found");
+
+        HybridRetriever retriever = new HybridRetriever();
+        try {
+            retriever.setReranker(new CrossEncoderReranker());
+            List<List<ScoredChunk>> full = new ArrayList<>();
+            for (String query : queries) {
+                full.add(retriever.retrieve(query, TOP_K));
+            }
+
+            retriever.setAdaptive(true);
+            double overlapSum = 0;
+            int top1Agreements = 0;
+            int compared = 0;
+            for (int i = 0; i < queries.size(); i++) {
+                List<ScoredChunk> expected = full.get(i);
+                if (expected.isEmpty())
+                    continue;
+                List<ScoredChunk> actual = retriever.retrieve(queries.get(i), TOP_K);
+
+                Set<String> expectedIds = new HashSet<>();
+                expected.forEach(chunk -> expectedIds.add(chunk.id()));
+                long overlap = actual.stream().filter(chunk -> expectedIds.contains(chunk.id())).count();
+                overlapSum += (double) overlap / expected.size();
+                if (!actual.isEmpty() && actual.get(0).id().equals(expected.get(0).id())) {
+                    top1Agreements++;
+                }
+                compared++;
+            }
+
+            double meanOverlap = overlapSum / Math.max(1, compared);
+            double top1Agreement = (double) top1Agreements / Math.max(1, compared);
+            System.out.printf(">>> %d queries: mean overlap@%d %.3f, top-1 agreement %.3f%n",
+                    compared, TOP_K, meanOverlap, top1Agreement);
+            Map<String, Object> stats = retriever.getStats();
+            System.out.println(">>> Stats: " + stats);
+
+            assertTrue(meanOverlap >= MIN_MEAN_OVERLAP, "Mean overlap@" + TOP_K + " too low: " + meanOverlap);
+            assertTrue(top1Agreement >= MIN_TOP1_AGREEMENT, "Top-1 agreement too low: " + top1Agreement);
+            // Otherwise adaptive mode costs as much as the full pipeline
+            assertTrue((long) stats.get("adaptive_vector_skipped") > 0, "Vector search never skipped");
+            assertTrue((long) stats.get("adaptive_rerank_skipped") > 0, "Reranking never skipped");
+        } finally {
+            retriever.close();
+        }
+    }
+
+    /**
+     * Extract the user inputs (code blocks following an "Input:" line) of a test set.
+     */
+    private List<String> parseInputs(Path path) throws IOException {
+        List<String> inputs = new ArrayList<>();
+        boolean expectingInput = false;
+        StringBuilder block = null;
+
+        for (String line : Files.readAllLines(path)) {
+            if (block != null) {
+                if (line.startsWith("```")) {
+                    if (!block.toString().isBlank()) {
+                        inputs.add(block.toString().trim());
+                    }
+                    block = null;
+                } else {
+                    block.append(line).append('\n');
+                }
+            } else if (line.contains("Input:**")) {
+                expectingInput = true;
+            } else if (expectingInput && line.startsWith("```")) {
+                block = new StringBuilder();
+                expectingInput = false;
+            }
+        }
+        return inputs;
+    }
+}
@@ -0,0 +1,169 @@
+package org.example;
+
+import org.example.agent.CoordinatorAgent;
+import org.example.llm.LLMClient;
+import org.example.llm.ResiliencePolicy;
+import org.example.llm.ResilientLLMClient;
+import org.example.llm.StubLLMClient;
+import org.example.model.ConversationContext;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Offline load test of the whole agent stack (routing, specialists, tools
+ * and retrieval) with the model replaced by {@link StubLLMClient}: no API
+ * key or network needed.
+ *
+ * - Local cost: turns answered one at a time by an instant stub, i.e., the
+ * time spent in our own code.
+ * - Load: concurrent conversations against a stub with hosted-model
+ * latencies and token rate.
+ * - Faults: the same load with injected 503s, behind ResilientLLMClient.
+ *
+ * Usage:
+ * ./gradlew :app:test --tests "org.example.AgentLoadBenchmark" -Dtest.benchmark=true
+ */
+@Tag("benchmark")
+public class AgentLoadBenchmark {
+
+    private static final List<String> TEST_SETS = List.of("../TEST_SET_EN.md", "../TEST_SET_IT.md",
+            "../TEST_SET_PL.md");
+    private static final int SESSIONS = 32;
+    private static final int TURNS_PER_SESSION = 10;
+    private static final double ERROR_RATE = 0.05;
+    private static final double MAX_FAILED_TURNS = 0.01;
+
+    @Test
+    public void agentStackUnderLoad() throws Exception {
+        String benchmarkFilter = System.getProperty("test.benchmark");
+        Assumptions.assumeTrue(benchmarkFilter != null && !benchmarkFilter.equals("null") && !benchmarkFilter.isEmpty(),
+                "Skipping AgentLoadBenchmark (run with -Dtest.benchmark=true)");
+
+        List<String> inputs = new ArrayList<>();
+        for (String testSet : TEST_SETS) {
+            Path path = Paths.get(testSet);
+            if (Files.exists(path)) {
+                inputs.addAll(parseInputs(path));
+            }
+        }
+        Assumptions.assumeFalse(inputs.isEmpty(), "No test set found");
+
+        // Local cost: one conversation per input, so each turn sees the same context
+        try (CoordinatorAgent agent = new CoordinatorAgent(new StubLLMClient())) {
+            agent.process(inputs.get(0), new ConversationContext()); // Load the models, warm up the JIT
+            long[] nanos = new long[inputs.size()];
+            for (int i = 0; i < inputs.size(); i++) {
+                long start = System.nanoTime();
+                agent.process(inputs.get(i), new ConversationContext());
+                nanos[i] = System.nanoTime() - start;
+            }
+            System.out.println(">>> Local cost per turn over " + inputs.size() + " inputs: " + percentiles(nanos));
+        }
+
+        StubLLMClient.Profile hosted = StubLLMClient.Profile.hosted();
+        LoadResult load = runLoad(new StubLLMClient(hosted, 42), inputs);
+        System.out.println(">>> Load, " + SESSIONS + " sessions x " + TURNS_PER_SESSION + " turns: " + load);
+        assertEquals(0, load.failed(), "Turns failed without injected errors");
+
+        StubLLMClient faulty = new StubLLMClient(hosted.withErrors(ERROR_RATE, 503), 42);
+        ResilientLLMClient resilient = new ResilientLLMClient(faulty,
+                ResiliencePolicy.defaults().withRetries(4, Duration.ofMillis(50), Duration.ofSeconds(1)));
+        LoadResult faults = runLoad(resilient, inputs);
+        System.out.println(">>> Load with " + (int) (ERROR_RATE * 100) + "% injected 503s: " + faults + ", "
+                + faulty.getStats().get("injected_errors") + " errors injected, " + resilient.getStats().get("retries")
+                + " retries, " + resilient.getStats().get("hedges") + " hedges");
+        assertTrue(faults.failed() <= MAX_FAILED_TURNS * SESSIONS * TURNS_PER_SESSION,
+                faults.failed() + " turns failed despite retries");
+    }
+
+    private record LoadResult(long[] nanos, long wallNanos, int failed) {
+        @Override
+        public String toString() {
+            return String.format("%.1f turns/s, %s, %d failed", nanos.length / (wallNanos / 1e9),
+                    percentiles(nanos), failed);
+        }
+    }
+
+    /**
+     * Run SESSIONS conversations at once, each on a virtual thread.
+     */
+    private LoadResult runLoad(LLMClient llmClient, List<String> inputs) throws InterruptedException {
+        long[] nanos = new long[SESSIONS * TURNS_PER_SESSION];
+        AtomicInteger failed = new AtomicInteger();
+        try (CoordinatorAgent agent = new CoordinatorAgent(llmClient)) {
+            agent.process(inputs.get(0), new ConversationContext());
+
+            long start = System.nanoTime();
+            List<Thread> sessions = new ArrayList<>();
+            for (int s = 0; s < SESSIONS; s++) {
+                int session = s;
+                sessions.add(Thread.ofVirtual().name("session-" + s).start(() -> {
+                    ConversationContext context = new ConversationContext();
+                    for (int t = 0; t < TURNS_PER_SESSION; t++) {
+                        String input = inputs.get((session * TURNS_PER_SESSION + t) % inputs.size());
+                        long turnStart = System.nanoTime();
+                        try {
+                            agent.process(input, context);
+                        } catch (RuntimeException e) {
+                            failed.incrementAndGet();
+                        }
+                        nanos[session * TURNS_PER_SESSION + t] = System.nanoTime() - turnStart;
+                    }
+                }));
+            }
+            for (Thread session : sessions) {
+                session.join();
+            }
+            return new LoadResult(nanos, System.nanoTime() - start, failed.get());
+        }
+    }
+
+    private static String percentiles(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return String.format("p50 %.2fms, p99 %.2fms", sorted[(sorted.length - 1) / 2] / 1e6,
+                sorted[(int) Math.ceil(0.99 * sorted.length) - 1] / 1e6);
+    }
+
+    /**
+     * Extract the user inputs (code blocks following an "Input:" line) of a test set.
+     */
+    private List<String> parseInputs(Path path) throws IOException {
+        List<String> inputs = new ArrayList<>();
+        boolean expectingInput = false;
+        StringBuilder block = null;
+
+        for (String line : Files.readAllLines(path)) {
+            if (block != null) {
+                if (line.startsWith("```")) {
+                    if (!block.toString().isBlank()) {
+                        inputs.add(block.toString().trim());
+                    }
+                    block = null;
+                } else {
+                    block.append(line).append('\n');
+                }
+            } else if (line.contains("Input:**")) {
+                expectingInput = true;
+            } else if (expectingInput && line.startsWith("```")) {
+                block = new StringBuilder();
+                expectingInput = false;
+            }
+        }
+        return inputs;
+    }
+}
@@ -0,0 +1,100 @@
+package org.example;
+
+import org.example.rag.Chunk;
+import org.example.rag.ChunkManifest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the per-source chunk manifest driving incremental re-indexing.
+ */
+public class ChunkManifestTest {
+
+    private static final String SOURCE = "faq.md";
+
+    @Test
+    public void keepsIdsOfUnchangedChunks() {
+        ChunkManifest manifest = new ChunkManifest();
+        chunks("alpha", "beta", "gamma").forEach(manifest::record);
+
+        ChunkManifest.Diff diff = manifest.update(SOURCE, chunks("alpha", "delta", "gamma"));
+
+        assertEquals(2, diff.unchanged());
+        assertEquals(List.of("faq.md:1"), diff.removedIds());
+        assertEquals(1, diff.added().size());
+        assertEquals("delta", diff.added().get(0).content());
+        assertEquals("faq.md:3", diff.added().get(0).id());
+    }
+
+    @Test
+    public void neverReusesIds() {
+        ChunkManifest manifest = new ChunkManifest();
+        chunks("alpha", "beta", "gamma").forEach(manifest::record);
+        manifest.update(SOURCE, chunks("alpha", "delta", "gamma"));
+
+        // "beta" comes back, but its old id may still be cached somewhere: it gets a new one
+        ChunkManifest.Diff diff = manifest.update(SOURCE, chunks("alpha", "beta"));
+
+        assertEquals(1, diff.unchanged());
+        assertEquals(Set.of("faq.md:2", "faq.md:3"), Set.copyOf(diff.removedIds()));
+        assertEquals("faq.md:4", diff.added().get(0).id());
+        assertTrue(diff.added().stream().noneMatch(c -> c.id().equals("faq.md:1")));
+    }
+
+    @Test
+    public void matchesRepeatedContentOneByOne() {
+        ChunkManifest manifest = new ChunkManifest();
+        chunks("same", "same", "other").forEach(manifest::record);
+
+        ChunkManifest.Diff diff = manifest.update(SOURCE, chunks("same", "other"));
+
+        assertEquals(2, diff.unchanged());
+        assertEquals(1, diff.removedIds().size());
+        assertTrue(diff.added().isEmpty());
+        assertEquals(2, manifest.size());
+    }
+
+    @Test
+    public void unchangedDocumentGivesEmptyDiff() {
+        ChunkManifest manifest = new ChunkManifest();
+        chunks("alpha", "beta").forEach(manifest::record);
+
+        ChunkManifest.Diff diff = manifest.update(SOURCE, chunks("alpha", "beta"));
+
+        assertTrue(diff.isEmpty());
+        assertEquals(2, diff.unchanged());
+    }
+
+    @Test
+    public void removesSources() {
+        ChunkManifest manifest = new ChunkManifest();
+        chunks("alpha", "beta").forEach(manifest::record);
+        manifest.record(new Chunk("billing_policy.md:0", "refunds", "billing_policy.md", ""));
+
+        assertEquals(Set.of("faq.md:0", "faq.md:1"), Set.copyOf(manifest.remove(SOURCE)));
+        assertEquals(Set.of("billing_policy.md"), manifest.sources());
+        assertEquals(1, manifest.size());
+        assertTrue(manifest.remove(SOURCE).isEmpty());
+
+        // An update emptying a source forgets it as well
+        manifest.update("billing_policy.md", List.of());
+        assertTrue(manifest.sources().isEmpty());
+    }
+
+    /**
+     * Chunks of the given contents with the ids the chunker gives them.
+     */
+    private static List<Chunk> chunks(String... contents) {
+        List<Chunk> chunks = new ArrayList<>();
+        for (int i = 0; i < contents.length; i++) {
+            chunks.add(new Chunk(SOURCE + ":" + i, contents[i], SOURCE, ""));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,144 @@
+package org.example;
+
+import org.example.rag.DirectoryCorpusSource;
+import org.example.rag.DocsDirectoryWatcher;
+import org.example.rag.HybridRetriever;
+import org.example.rag.IncrementalIndexer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the documentation watcher against a retriever stub that records
+ * the updates it receives instead of indexing.
+ */
+public class DocsDirectoryWatcherTest {
+
+    private static final long WAIT_MS = 5000;
+    // Longer than the watcher's debounce delay
+    private static final long SETTLE_MS = 1000;
+
+    @TempDir
+    Path docs;
+
+    @Test
+    public void debouncesBurstsOfWrites() throws Exception {
+        RecordingRetriever retriever = new RecordingRetriever(docs);
+        try (DocsDirectoryWatcher watcher = new DocsDirectoryWatcher(retriever, new DirectoryCorpusSource(docs))) {
+            watcher.start();
+
+            // Editors often save in several steps
+            Path file = docs.resolve("faq.md");
+            Files.writeString(file, "## Draft\n");
+            Files.writeString(file, "## Draft\nMore\n");
+            Files.writeString(file, "## Final\nDone\n");
+
+            awaitUpdates(retriever, 1);
+            Thread.sleep(SETTLE_MS);
+            assertEquals(List.of("reindex faq.md"), retriever.updates());
+            assertEquals("## Final\nDone\n", retriever.indexed.get("faq.md"));
+        }
+    }
+
+    @Test
+    public void removesDeletedDocuments() throws Exception {
+        Files.createDirectories(docs.resolve("guides"));
+        Files.writeString(docs.resolve("guides/install.md"), "## Install\n");
+        RecordingRetriever retriever = new RecordingRetriever(docs);
+        retriever.indexed.put("guides/install.md", "## Install\n");
+        retriever.indexed.put("guides/upgrade.md", "## Upgrade\n");
+
+        try (DocsDirectoryWatcher watcher = new DocsDirectoryWatcher(retriever, new DirectoryCorpusSource(docs))) {
+            watcher.start();
+            Files.delete(docs.resolve("guides/install.md"));
+
+            awaitUpdates(retriever, 1);
+            Thread.sleep(SETTLE_MS);
+            assertEquals(List.of("remove guides/install.md"), retriever.updates());
+        }
+    }
+
+    @Test
+    public void picksUpDirectoriesMovedIn() throws Exception {
+        RecordingRetriever retriever = new RecordingRetriever(docs);
+        Path staging = Files.createTempDirectory("staging");
+        Files.writeString(staging.resolve("billing.md"), "## Refunds\n");
+
+        try (DocsDirectoryWatcher watcher = new DocsDirectoryWatcher(retriever, new DirectoryCorpusSource(docs))) {
+            watcher.start();
+            Files.move(staging, docs.resolve("policies"));
+
+            awaitUpdates(retriever, 1);
+            assertEquals("## Refunds\n", retriever.indexed.get("policies/billing.md"));
+        }
+    }
+
+    @Test
+    public void resyncAlignsIndexWithDirectory() throws Exception {
+        Files.writeString(docs.resolve("faq.md"), "## New answer\n");
+        Files.writeString(docs.resolve("notes.txt"), "Not documentation\n");
+        RecordingRetriever retriever = new RecordingRetriever(docs);
+        retriever.indexed.put("faq.md", "## Old answer\n");
+        retriever.indexed.put("gone.md", "## Removed while not watching\n");
+
+        try (DocsDirectoryWatcher watcher = new DocsDirectoryWatcher(retriever, new DirectoryCorpusSource(docs))) {
+            watcher.resync();
+        }
+
+        assertEquals(Set.of("reindex faq.md", "remove gone.md"), Set.copyOf(retriever.updates()));
+        assertEquals(Map.of("faq.md", "## New answer\n"), retriever.indexed);
+    }
+
+    private static void awaitUpdates(RecordingRetriever retriever, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_MS;
+        while (retriever.updates().size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(retriever.updates().size() >= count, "No update within " + WAIT_MS + "ms");
+    }
+
+    /**
+     * Retriever that keeps the indexed documents in a map and logs updates.
+     */
+    private static class RecordingRetriever extends HybridRetriever {
+        final Map<String, String> indexed = new ConcurrentHashMap<>();
+        private final List<String> updates = new ArrayList<>();
+
+        RecordingRetriever(Path root) {
+            super(new DirectoryCorpusSource(root));
+        }
+
+        synchronized List<String> updates() {
+            return List.copyOf(updates);
+        }
+
+        @Override
+        public synchronized IncrementalIndexer.Result reindexDocument(String source, String content) {
+            updates.add("reindex " + source);
+            boolean changed = !content.equals(indexed.put(source, content));
+            return new IncrementalIndexer.Result(source, changed ? 1 : 0, 0, 0, Set.of(source), 0);
+        }
+
+        @Override
+        public synchronized IncrementalIndexer.Result removeDocument(String source) {
+            updates.add("remove " + source);
+            indexed.remove(source);
+            return new IncrementalIndexer.Result(source, 0, 1, 0, Set.of(source), 0);
+        }
+
+        @Override
+        public Set<String> getIndexedSources() {
+            return Set.copyOf(indexed.keySet());
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.example;
+
+import org.example.rag.Chunk;
+import org.example.rag.DocumentChunker;
+import org.example.rag.TokenCounter;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of token-based chunking with a synthetic tokenizer.
+ */
+public class DocumentChunkerTest {
+
+    private static final int MAX_TOKENS = 30;
+    private static final int OVERLAP_TOKENS = 6;
+
+    /**
+     * One token per 4 characters of a word, and one per line break: units
+     * counted apart add up to less than their joined text.
+     */
+    private static final TokenCounter COUNTER = text -> {
+        int tokens = (int) text.chars().filter(c -> c == '\n').count();
+        for (String word : text.strip().split("\\s+")) {
+            tokens += (word.length() + 3) / 4;
+        }
+        return tokens;
+    };
+
+    @Test
+    public void chunksNeverExceedTheTokenBudget() {
+        Random random = new Random(11);
+        for (int trial = 0; trial < 50; trial++) {
+            String document = randomDocument(random);
+            List<Chunk> chunks = chunker().chunkDocument(document, "doc.md");
+
+            for (Chunk chunk : chunks) {
+                assertEquals(COUNTER.countTokens(chunk.content()), chunk.tokenCount());
+                assertTrue(chunk.tokenCount() <= MAX_TOKENS,
+                        chunk.tokenCount() + " tokens in chunk:\n" + chunk.content());
+            }
+            assertCoversWords(document, chunks);
+        }
+    }
+
+    @Test
+    public void cutsWordsLongerThanTheBudget() {
+        String url = "https://example.com/" + "a".repeat(200);
+        String document = "## Links\n\nSee " + url + " for details.";
+        List<Chunk> chunks = chunker().chunkDocument(document, "doc.md");
+
+        assertTrue(chunks.size() > 1);
+        for (Chunk chunk : chunks) {
+            assertTrue(chunk.tokenCount() <= MAX_TOKENS, chunk.tokenCount() + " tokens");
+        }
+        assertTrue(chunks.get(0).content().startsWith("## Links"));
+        assertTrue(chunks.get(chunks.size() - 1).content().endsWith("for details."));
+    }
+
+    @Test
+    public void keepsSmallSectionsWhole() {
+        String document = "## Billing\nPlans renew monthly.\n\n## Refunds\nFull refunds within 14 days.";
+        List<Chunk> chunks = chunker().chunkDocument(document, "doc.md");
+
+        assertEquals(2, chunks.size());
+        assertEquals("## Billing\nPlans renew monthly.", chunks.get(0).content());
+        assertEquals("Refunds", chunks.get(1).header());
+        assertEquals("doc.md:1", chunks.get(1).id());
+    }
+
+    private static DocumentChunker chunker() {
+        return new DocumentChunker(DocumentChunker.Mode.TOKENS, COUNTER, MAX_TOKENS, OVERLAP_TOKENS);
+    }
+
+    /**
+     * Sections of short lines, one-line paragraphs and long sentences.
+     */
+    private static String randomDocument(Random random) {
+        StringBuilder document = new StringBuilder();
+        for (int section = 0; section < 3; section++) {
+            document.append("## Section ").append(section).append('\n');
+            for (int paragraph = 0; paragraph < 1 + random.nextInt(4); paragraph++) {
+                int lines = 1 + random.nextInt(6);
+                for (int line = 0; line < lines; line++) {
+                    int words = 1 + random.nextInt(line == 0 ? 40 : 8);
+                    for (int word = 0; word < words; word++) {
+                        // Numbered so that every word is distinct
+                        document.append(word == 0 ? "" : " ").append("w".repeat(1 + random.nextInt(8)))
+                                .append(document.length());
+                    }
+                    document.append(random.nextInt(3) == 0 ? ". " : "").append('\n');
+                }
+                document.append('\n');
+            }
+        }
+        return document.toString();
+    }
+
+    /**
+     * Every word of the document appears in the chunks, in order.
+     */
+    private static void assertCoversWords(String document, List<Chunk> chunks) {
+        StringBuilder all = new StringBuilder();
+        for (Chunk chunk : chunks) {
+            all.append(chunk.content()).append(' ');
+        }
+        List<String> chunked = List.of(all.toString().strip().split("\\s+"));
+        int next = 0;
+        for (String word : document.strip().split("\\s+")) {
+            while (next < chunked.size() && !chunked.get(next).equals(word)) {
+                next++;
+            }
+            assertTrue(next < chunked.size(), "Missing word " + word);
+            next++;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package org.example;
+
+import org.example.rag.BM25Index;
+import org.example.rag.ChunkManifest;
+import org.example.rag.DocumentChunker;
+import org.example.rag.EmbeddingService;
+import org.example.rag.IncrementalIndexer;
+import org.example.rag.MinHashDeduplicator;
+import org.example.rag.ScoredChunk;
+import org.example.rag.VectorStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of incremental index updates, with a stub embedding model so that
+ * only the indexing logic is exercised.
+ */
+public class IncrementalIndexerTest {
+
+    private static final String SHARED_SECTION = """
+            ## Password reset
+            Open the account settings page, choose security, then click reset password and follow the link \
+            sent to your registered email address within fifteen minutes.
+            """;
+
+    private CountingEmbeddingService embeddingService;
+    private BM25Index bm25Index;
+    private VectorStore vectorStore;
+    private ChunkManifest manifest;
+    private IncrementalIndexer indexer;
+
+    @BeforeEach
+    public void setUp() {
+        embeddingService = new CountingEmbeddingService();
+        bm25Index = new BM25Index();
+        vectorStore = new VectorStore();
+        manifest = new ChunkManifest();
+        indexer = new IncrementalIndexer(new DocumentChunker(), embeddingService, bm25Index, vectorStore, manifest,
+                new MinHashDeduplicator());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        bm25Index.close();
+    }
+
+    @Test
+    public void embedsOnlyChangedChunksAndKeepsIds() {
+        indexer.reindexDocument("faq.md", document("Billing cycles", "Refund requests", "Invoices"));
+        List<String> idsBefore = bm25Ids("refund");
+        embeddingService.embedded.clear();
+
+        IncrementalIndexer.Result result = indexer.reindexDocument("faq.md",
+                document("Billing cycles", "Refund requests", "Receipts"));
+
+        assertEquals(1, result.added());
+        assertEquals(1, result.removed());
+        assertEquals(2, result.unchanged());
+        assertEquals(1, embeddingService.embedded.size());
+        assertTrue(embeddingService.embedded.get(0).contains("Receipts"));
+        assertEquals(idsBefore, bm25Ids("refund"));
+        assertTrue(bm25Ids("invoices").isEmpty());
+        assertEquals(3, vectorStore.size());
+    }
+
+    @Test
+    public void unchangedDocumentIsNotReembedded() {
+        String content = document("Billing cycles", "Refund requests");
+        indexer.reindexDocument("faq.md", content);
+        embeddingService.embedded.clear();
+
+        IncrementalIndexer.Result result = indexer.reindexDocument("faq.md", content);
+
+        assertFalse(result.changed());
+        assertTrue(embeddingService.embedded.isEmpty());
+    }
+
+    @Test
+    public void removingCanonicalPromotesDuplicate() {
+        indexer.reindexDocument("faq.md", SHARED_SECTION);
+        IncrementalIndexer.Result copy = indexer.reindexDocument("troubleshooting.md", SHARED_SECTION);
+        // The copy is tracked but collapsed into the first one
+        assertEquals(1, copy.added());
+        assertEquals(1, vectorStore.size());
+        embeddingService.embedded.clear();
+
+        IncrementalIndexer.Result removal = indexer.removeDocument("faq.md");
+
+        assertEquals(Set.of("faq.md", "troubleshooting.md"), removal.affectedSources());
+        assertEquals(1, vectorStore.size());
+        assertEquals(1, embeddingService.embedded.size());
+        List<ScoredChunk> hits = bm25Index.search("password reset", 5);
+        assertEquals(1, hits.size());
+        assertEquals("troubleshooting.md", hits.get(0).source());
+        assertEquals(Set.of("troubleshooting.md"), manifest.sources());
+    }
+
+    @Test
+    public void removingDuplicateKeepsCanonical() {
+        indexer.reindexDocument("faq.md", SHARED_SECTION);
+        indexer.reindexDocument("troubleshooting.md", SHARED_SECTION);
+        embeddingService.embedded.clear();
+
+        IncrementalIndexer.Result removal = indexer.removeDocument("troubleshooting.md");
+
+        assertEquals(1, removal.removed());
+        assertTrue(embeddingService.embedded.isEmpty());
+        assertEquals("faq.md", bm25Index.search("password reset", 5).get(0).source());
+    }
+
+    private List<String> bm25Ids(String query) {
+        return bm25Index.search(query, 10).stream().map(ScoredChunk::id).toList();
+    }
+
+    private static String document(String... headers) {
+        StringBuilder content = new StringBuilder();
+        for (String header : headers) {
+            content.append("## ").append(header).append('\n')
+                    .append("Details about ").append(header.toLowerCase()).append(" for customers.\n\n");
+        }
+        return content.toString();
+    }
+
+    /**
+     * Embedding service returning a hash-derived vector and recording what it embedded.
+     */
+    private static class CountingEmbeddingService extends EmbeddingService {
+        final List<String> embedded = new ArrayList<>();
+
+        @Override
+        public List<float[]> embedBatch(List<String> texts, boolean isQuery) {
+            List<float[]> embeddings = new ArrayList<>();
+            for (String text : texts) {
+                embedded.add(text);
+                float[] embedding = new float[8];
+                embedding[Math.floorMod(text.hashCode(), 8)] = 1;
+                embeddings.add(embedding);
+            }
+            return embeddings;
+        }
+    }
+}
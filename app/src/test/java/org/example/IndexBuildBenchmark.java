@@ -0,0 +1,95 @@
+package org.example;
+
+import org.example.rag.BM25Index;
+import org.example.rag.ClasspathCorpusSource;
+import org.example.rag.CorpusSource;
+import org.example.rag.DocumentChunker;
+import org.example.rag.EmbeddingService;
+import org.example.rag.IngestionPipeline;
+import org.example.rag.SourceDocument;
+import org.example.rag.VectorStore;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Benchmark comparing a sequential index build with the parallel pipeline.
+ *
+ * Usage:
+ * ./gradlew :app:test --tests "org.example.IndexBuildBenchmark" -Dtest.benchmark=true
+ */
+@Tag("benchmark")
+public class IndexBuildBenchmark {
+
+    // Number of times the bundled docs are replicated to get a measurable corpus
+    private static final int COPIES = 40;
+
+    @Test
+    public void parallelBuildSpeedup() throws Exception {
+        String benchmarkFilter = System.getProperty("test.benchmark");
+        Assumptions.assumeTrue(benchmarkFilter != null && !benchmarkFilter.equals("null") && !benchmarkFilter.isEmpty(),
+                "Skipping IndexBuildBenchmark (run with -Dtest.benchmark=true)");
+
+        List<SourceDocument> baseDocs = new ArrayList<>();
+        ClasspathCorpusSource.defaultDocs().read(baseDocs::add);
+        CorpusSource corpus = replicatedCorpus(baseDocs, COPIES);
+
+        try (EmbeddingService embeddingService = new EmbeddingService()) {
+            embeddingService.initialize();
+
+            // Warm up the model and JIT before measuring
+            build(embeddingService, replicatedCorpus(baseDocs, 1), 1);
+
+            int cores = Runtime.getRuntime().availableProcessors();
+            IngestionPipeline.Stats sequential = build(embeddingService, corpus, 1);
+            IngestionPipeline.Stats parallel = build(embeddingService, corpus, cores);
+
+            System.out.println(">>> PyTorch intra-op threads: " + System.getProperty("ai.djl.pytorch.num_threads"));
+            System.out.println(">>> Sequential (1 worker): " + sequential);
+            System.out.println(">>> Parallel (" + cores + " workers): " + parallel);
+            System.out.printf(">>> Speedup: %.2fx%n",
+                    (double) sequential.elapsedMillis() / Math.max(1, parallel.elapsedMillis()));
+
+            assertEquals(sequential.chunks(), parallel.chunks());
+        }
+    }
+
+    private IngestionPipeline.Stats build(EmbeddingService embeddingService, CorpusSource corpus, int parallelism) {
+        BM25Index bm25Index = new BM25Index();
+        try {
+            IngestionPipeline pipeline = new IngestionPipeline(new DocumentChunker(), embeddingService,
+                    bm25Index, new VectorStore(), parallelism);
+            return pipeline.run(corpus);
+        } finally {
+            bm25Index.close();
+        }
+    }
+
+    /**
+     * Corpus repeating the given documents under distinct source names. A copy
+     * marker is appended so every copy is embedded rather than served from cache.
+     */
+    private CorpusSource replicatedCorpus(List<SourceDocument> docs, int copies) {
+        return new CorpusSource() {
+            @Override
+            public void read(DocumentSink sink) throws InterruptedException {
+                for (int copy = 0; copy < copies; copy++) {
+                    for (SourceDocument doc : docs) {
+                        sink.accept(new SourceDocument("copy" + copy + "/" + doc.source(),
+                                doc.content() + "\n\n(copy " + copy + ")"));
+                    }
+                }
+            }
+
+            @Override
+            public String getName() {
+                return "benchmark:" + copies + "x" + docs.size();
+            }
+        };
+    }
+}
@@ -2,8 +2,10 @@ package org.example;
 
 import io.github.cdimascio.dotenv.Dotenv;
 import org.example.agent.CoordinatorAgent;
+import org.example.llm.CachingLLMClient;
 import org.example.llm.GeminiClient;
 import org.example.llm.LLMClient;
+import org.example.llm.StubLLMClient;
 import org.example.model.ConversationContext;
 import org.example.model.ConversationMessage;
 import org.junit.jupiter.api.BeforeAll;
@@ -62,6 +64,11 @@ import static org.junit.jupiter.api.DynamicTest.dynamicTest;
  * Single test by ID and language:
  * ./gradlew :app:test --tests "org.example.MultiAgentSystemTest" -Dtest.lang=en
  * -Dtest.id=1.1
+ * 
+ * Offline, replaying the responses recorded by an earlier run with
+ * -Dtest.llm.cache (the judge's included):
+ * ./gradlew :app:test --tests "org.example.MultiAgentSystemTest" -Dtest.llm=stub
+ * -Dtest.llm.cache=build/llm-cache
  */
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
 @Tag("agent")
@@ -90,11 +97,29 @@ public class MultiAgentSystemTest {
             apiKey = System.getenv("GEMINI_API_KEY");
         }
 
-        if (apiKey == null) {
-            throw new IllegalStateException("GEMINI_API_KEY not found. Tests cannot run.");
-        }
+        String cacheDir = System.getProperty("test.llm.cache");
+        if ("stub".equals(System.getProperty("test.llm"))) {
+            // Offline: replay the responses recorded in the cache, no key needed
+            // Usage: ./gradlew :app:test -Dtest.llm=stub -Dtest.llm.cache=build/llm-cache
+            StubLLMClient stub = new StubLLMClient();
+            if (isFilterSet(cacheDir)) {
+                String model = dotenv.get("GEMINI_MODEL");
+                stub.replaying(Paths.get(cacheDir), isFilterSet(model) ? model : GeminiClient.DEFAULT_MODEL,
+                        GeminiClient.TEMPERATURE);
+            }
+            llmClient = stub;
+        } else {
+            if (apiKey == null) {
+                throw new IllegalStateException("GEMINI_API_KEY not found. Tests cannot run.");
+            }
 
-        llmClient = new GeminiClient(apiKey);
+            llmClient = new GeminiClient(apiKey);
+            // Reuse the responses of earlier runs for identical requests
+            // Usage: ./gradlew :app:test -Dtest.llm.cache=build/llm-cache
+            if (cacheDir != null && !cacheDir.isEmpty()) {
+                llmClient = new CachingLLMClient(llmClient, 1000, Paths.get(cacheDir));
+            }
+        }
         agent = new CoordinatorAgent(llmClient);
 
         // Load all test sets
@@ -114,7 +139,7 @@ public class MultiAgentSystemTest {
 
     @org.junit.jupiter.api.AfterAll
     public void teardown() {
-        org.example.tools.DocumentRetrievalTool.shutdown();
+        agent.close();
     }
 
     /**
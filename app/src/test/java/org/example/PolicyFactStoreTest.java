@@ -0,0 +1,115 @@
+package org.example;
+
+import org.example.rag.PolicyFactStore;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the policy markdown parser: tables, key-value bullets, plan
+ * headers and sections.
+ */
+public class PolicyFactStoreTest {
+
+    private static final String MARKDOWN = """
+            # Policy
+
+            ## Plans
+
+            ### Starter Plan - $5/month
+            - 1 project
+            - Email support
+
+            ## Shipping
+
+            | Carrier | Delivery Time | Tracking |
+            |---------|---------------|----------|
+            | Post (Standard) | 5-7 days | No |
+            | Courier | 1-2 days | Yes |
+
+            ### By Region
+            - **Europe**: 3 days
+            - Rest of world: 10 days
+            - Items are shipped from the nearest warehouse
+            """;
+
+    @Test
+    public void parsesTables() {
+        PolicyFactStore store = PolicyFactStore.parse(MARKDOWN);
+
+        assertEquals(Map.of("name", "Post (Standard)", "delivery_time", "5-7 days", "tracking", "No"),
+                store.fact("carrier", "post"));
+        assertEquals("1-2 days", store.value("carrier", "Courier", "delivery_time"));
+        // The separator row is not a fact
+        assertEquals(2, store.category("carrier").size());
+    }
+
+    @Test
+    public void parsesKeyValueBullets() {
+        PolicyFactStore store = PolicyFactStore.parse(MARKDOWN);
+
+        assertEquals("3 days", store.value("by_region", "europe", "value"));
+        assertEquals("Rest of world", store.value("by_region", "rest of world", "name"));
+        // Plain bullets carry no key
+        assertEquals(2, store.category("by_region").size());
+    }
+
+    @Test
+    public void parsesPlanHeadersAndSections() {
+        PolicyFactStore store = PolicyFactStore.parse(MARKDOWN);
+
+        assertEquals(Map.of("name", "Starter", "price", "$5/month", "features", "1 project; Email support"),
+                store.fact(PolicyFactStore.PLANS, "starter"));
+
+        String plan = store.section("Starter Plan - $5/month").orElseThrow();
+        assertTrue(plan.startsWith("### Starter Plan - $5/month"));
+        assertEquals(plan, store.section("starter plan").orElseThrow());
+        assertEquals(plan, store.section("starter").orElseThrow());
+
+        // A section runs until the next header of the same or a higher level
+        String shipping = store.section("shipping").orElseThrow();
+        assertTrue(shipping.contains("| Courier |"));
+        assertTrue(shipping.contains("- Rest of world: 10 days"));
+        assertFalse(shipping.contains("Starter"));
+        assertFalse(store.section("returns").isPresent());
+    }
+
+    @Test
+    public void parsesBillingPolicyRefundProcessingTimes() {
+        PolicyFactStore store = PolicyFactStore.billingPolicy();
+        assertFalse(store.isEmpty(), "billing_policy.md not loaded");
+
+        List<String> refundTypes = store.category("refund_type").stream()
+                .map(fact -> fact.get("name"))
+                .toList();
+        assertEquals(List.of("Full", "Partial", "Prorated", "Cancellation"), refundTypes);
+
+        Map<String, String> full = store.fact("refund_type", "full");
+        assertEquals("5-7 business days", full.get("processing_time"));
+        assertEquals("Within 14 days of purchase for monthly plans, 30 days for annual plans",
+                full.get("eligibility"));
+        assertEquals("Processed to the original payment method", full.get("notes"));
+        assertEquals("10-14 business days", store.value("refund_type", "Cancellation", "processing_time"));
+
+        assertTrue(store.section("Refund Processing Times").orElseThrow().contains("| Prorated |"));
+        assertTrue(store.answer("prorated").orElseThrow().contains("- Processing time: Account credit by default"));
+    }
+
+    @Test
+    public void parsesBillingPolicyPaymentMethods() {
+        PolicyFactStore store = PolicyFactStore.billingPolicy();
+
+        assertEquals("7-14 business days", store.value("method", "bank transfer", "processing_time_refunds"));
+        assertEquals("3-5 business days", store.value("method", "PayPal", "processing_time_refunds"));
+        assertEquals("Expedited processing (2-3 business days)",
+                store.value("by_plan_type", "enterprise", "value"));
+        assertEquals("$29.99/month", store.value(PolicyFactStore.PLANS, "professional", "price"));
+        assertNull(store.value("method", "cheque", "processing_time_refunds"));
+    }
+}
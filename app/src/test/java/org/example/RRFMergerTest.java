@@ -0,0 +1,119 @@
+package org.example;
+
+import org.example.rag.RRFMerger;
+import org.example.rag.ScoredOrdinals;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the N-way RRF merge, whose early termination must never change
+ * the result compared with scoring every chunk and sorting.
+ */
+public class RRFMergerTest {
+
+    private static final int K = 60;
+
+    @Test
+    public void matchesFullSortOnRandomLists() {
+        Random random = new Random(42);
+        RRFMerger merger = new RRFMerger(K);
+        for (int trial = 0; trial < 2000; trial++) {
+            // A small universe makes chunks recur across lists, and tied scores common
+            int universe = 5 + random.nextInt(60);
+            List<ScoredOrdinals> lists = new ArrayList<>();
+            int listCount = 2 + random.nextInt(5);
+            for (int i = 0; i < listCount; i++) {
+                lists.add(randomList(random, universe, random.nextInt(Math.min(universe, 50) + 1)));
+            }
+            int topK = 1 + random.nextInt(20);
+
+            assertMatchesFullSort(lists, topK, merger.merge(lists, topK), "trial " + trial);
+        }
+    }
+
+    @Test
+    public void handlesEmptyAndDisjointLists() {
+        RRFMerger merger = new RRFMerger(K);
+        ScoredOrdinals first = list(1, 2, 3);
+        ScoredOrdinals second = list(4, 5);
+        List<ScoredOrdinals> lists = List.of(first, ScoredOrdinals.EMPTY, second);
+
+        ScoredOrdinals merged = merger.merge(lists, 10);
+
+        assertMatchesFullSort(lists, 10, merged, "disjoint");
+        assertEquals(5, merged.size());
+        assertEquals(0, merger.merge(List.of(ScoredOrdinals.EMPTY, ScoredOrdinals.EMPTY), 5).size());
+        assertEquals(0, merger.merge(lists, 0).size());
+    }
+
+    @Test
+    public void ranksChunksFoundByAllListsFirst() {
+        RRFMerger merger = new RRFMerger(K);
+        ScoredOrdinals merged = merger.merge(List.of(list(7, 1, 2), list(3, 4, 7), list(5, 7, 6)), 3);
+
+        assertEquals(7, merged.ordinal(0));
+    }
+
+    private static void assertMatchesFullSort(List<ScoredOrdinals> lists, int topK, ScoredOrdinals merged,
+            String label) {
+        Map<Integer, Float> expected = fullScores(lists);
+        List<Float> expectedTop = new ArrayList<>(expected.values());
+        expectedTop.sort(Collections.reverseOrder());
+        expectedTop = expectedTop.subList(0, Math.min(topK, expectedTop.size()));
+
+        assertEquals(expectedTop.size(), merged.size(), label + ": result size");
+        Set<Integer> returned = new HashSet<>();
+        for (int rank = 0; rank < merged.size(); rank++) {
+            int ordinal = merged.ordinal(rank);
+            assertTrue(returned.add(ordinal), label + ": ordinal " + ordinal + " returned twice");
+            // Among tied chunks any may be kept, so compare scores rather than ordinals
+            assertEquals(expected.get(ordinal), merged.score(rank), label + ": score of " + ordinal);
+            assertEquals(expectedTop.get(rank), merged.score(rank), label + ": score at rank " + rank);
+        }
+    }
+
+    /**
+     * RRF score of every chunk, summed in list order like the merger does.
+     */
+    private static Map<Integer, Float> fullScores(List<ScoredOrdinals> lists) {
+        Map<Integer, Float> scores = new HashMap<>();
+        for (ScoredOrdinals list : lists) {
+            for (int rank = 0; rank < list.size(); rank++) {
+                scores.merge(list.ordinal(rank), 1.0f / (K + rank + 1), Float::sum);
+            }
+        }
+        return scores;
+    }
+
+    private static ScoredOrdinals randomList(Random random, int universe, int length) {
+        List<Integer> ordinals = new ArrayList<>();
+        for (int i = 0; i < universe; i++) {
+            ordinals.add(i);
+        }
+        Collections.shuffle(ordinals, random);
+        int[] picked = new int[length];
+        for (int i = 0; i < length; i++) {
+            picked[i] = ordinals.get(i);
+        }
+        return list(picked);
+    }
+
+    private static ScoredOrdinals list(int... ordinals) {
+        ScoredOrdinals list = new ScoredOrdinals(ordinals.length);
+        for (int i = 0; i < ordinals.length; i++) {
+            list.add(ordinals[i], ordinals.length - i);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,182 @@
+package org.example;
+
+import org.example.llm.LLMCallException;
+import org.example.llm.LLMClient;
+import org.example.llm.LLMResponse;
+import org.example.llm.RateLimitedLLMClient;
+import org.example.llm.RateLimits;
+import org.example.llm.ResiliencePolicy;
+import org.example.llm.ResilientLLMClient;
+import org.example.model.ConversationMessage;
+import org.example.tools.Tool;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the rate limiter against a local fake backend.
+ */
+public class RateLimitedLLMClientTest {
+
+    private static final List<ConversationMessage> MESSAGES = List.of(ConversationMessage.user("Hi"));
+
+    // No quota: only the concurrency limit applies unless a test sets one
+    private static final RateLimits LIMITS = new RateLimits(0, 0, 1, Duration.ofSeconds(5), 100);
+
+    @Test
+    public void limitsConcurrency() throws InterruptedException {
+        FakeBackend backend = new FakeBackend(Duration.ofMillis(20));
+        RateLimitedLLMClient client = new RateLimitedLLMClient(backend,
+                LIMITS.withConcurrency(2, Duration.ofSeconds(5)));
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            threads.add(Thread.ofVirtual().start(() -> client.chat("call", MESSAGES)));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(8, backend.served.size());
+        assertEquals(2, backend.maxConcurrent.get());
+        assertEquals(8L, client.getStats().get("admitted"));
+    }
+
+    @Test
+    public void failsFastAfterMaxWait() throws InterruptedException {
+        FakeBackend backend = new FakeBackend(Duration.ofMillis(500));
+        RateLimitedLLMClient client = new RateLimitedLLMClient(backend,
+                LIMITS.withConcurrency(1, Duration.ofMillis(50)));
+
+        Thread busy = Thread.ofVirtual().start(() -> client.chat("first", MESSAGES));
+        waitUntil(() -> backend.served.size() == 1);
+
+        long start = System.nanoTime();
+        LLMCallException e = assertThrows(LLMCallException.class, () -> client.chat("second", MESSAGES));
+        assertEquals(429, e.getStatusCode());
+        assertTrue(System.nanoTime() - start < Duration.ofMillis(300).toNanos(), "Did not fail fast");
+        assertEquals(1L, client.getStats().get("rejected"));
+        busy.join();
+    }
+
+    @Test
+    public void enforcesRequestsPerMinute() {
+        FakeBackend backend = new FakeBackend(Duration.ZERO);
+        RateLimitedLLMClient client = new RateLimitedLLMClient(backend,
+                LIMITS.withQuota(2, 0).withConcurrency(4, Duration.ofMillis(50)));
+
+        client.chat("first", MESSAGES);
+        client.chat("second", MESSAGES);
+        // The next request is 30s away
+        assertThrows(LLMCallException.class, () -> client.chat("third", MESSAGES));
+        assertEquals(2, backend.served.size());
+    }
+
+    @Test
+    public void servesSessionsRoundRobin() throws InterruptedException {
+        FakeBackend backend = new FakeBackend(Duration.ofMillis(30));
+        RateLimitedLLMClient client = new RateLimitedLLMClient(backend, LIMITS);
+        LLMClient busySession = client.forSession("busy");
+        LLMClient otherSession = client.forSession("other");
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            String name = "busy-" + i;
+            threads.add(Thread.ofVirtual().start(() -> busySession.chat(name, MESSAGES)));
+        }
+        waitUntil(() -> (int) client.getStats().get("queue_depth") == 4);
+        threads.add(Thread.ofVirtual().start(() -> otherSession.chat("other", MESSAGES)));
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Behind the busy call in flight and the next one queued, not all five
+        int position = backend.served.indexOf("other");
+        assertTrue(position <= 2, "Other session served at position " + position + ": " + backend.served);
+    }
+
+    @Test
+    public void chargesRetriesToTheQuota() {
+        FakeBackend backend = new FakeBackend(Duration.ZERO);
+        backend.failuresLeft.set(1);
+        ResilientLLMClient resilient = new ResilientLLMClient(backend,
+                ResiliencePolicy.defaults().withRetries(4, Duration.ofMillis(5), Duration.ofMillis(50))
+                        .withHedging(0, Duration.ZERO));
+        RateLimitedLLMClient client = new RateLimitedLLMClient(resilient,
+                LIMITS.withQuota(2, 0).withConcurrency(4, Duration.ofMillis(50)));
+        resilient.setAttemptQuota(client);
+
+        // Admitted once, sent twice: the retry takes the second request of the minute
+        client.chat("first", MESSAGES);
+        assertEquals(1L, client.getStats().get("extra_attempts"));
+        assertThrows(LLMCallException.class, () -> client.chat("second", MESSAGES));
+        assertEquals(2, backend.served.size());
+    }
+
+    @Test
+    public void hedgesOnlyWithSpareQuota() {
+        FakeBackend backend = new FakeBackend(Duration.ofMillis(200));
+        ResilientLLMClient resilient = new ResilientLLMClient(backend,
+                ResiliencePolicy.defaults().withHedging(0.95, Duration.ofMillis(20)));
+        RateLimitedLLMClient client = new RateLimitedLLMClient(resilient,
+                LIMITS.withQuota(1, 0).withConcurrency(4, Duration.ofMillis(50)));
+        resilient.setAttemptQuota(client);
+
+        client.chat("slow", MESSAGES);
+        assertEquals(1, backend.served.size());
+        assertEquals(1L, resilient.getStats().get("hedges_skipped"));
+        assertEquals(1L, client.getStats().get("hedges_denied"));
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Backend answering after a fixed latency, recording the order of calls
+     * (by system prompt) and how many ran at once.
+     */
+    private static class FakeBackend implements LLMClient {
+        private final Duration latency;
+        private final List<String> served = new CopyOnWriteArrayList<>();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxConcurrent = new AtomicInteger();
+        private final AtomicInteger failuresLeft = new AtomicInteger();
+
+        FakeBackend(Duration latency) {
+            this.latency = latency;
+        }
+
+        @Override
+        public String chat(String systemPrompt, List<ConversationMessage> messages) {
+            return chatWithTools(systemPrompt, messages, List.of()).text();
+        }
+
+        @Override
+        public LLMResponse chatWithTools(String systemPrompt, List<ConversationMessage> messages, List<Tool> tools) {
+            served.add(systemPrompt);
+            if (failuresLeft.getAndDecrement() > 0)
+                throw new LLMCallException("Injected 503", 503, null, null);
+            maxConcurrent.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(latency);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+            return LLMResponse.textOnly("answer");
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package org.example;
+
+import org.example.rag.BM25Index;
+import org.example.rag.Chunk;
+import org.example.rag.ChunkTable;
+import org.example.rag.CrossEncoderReranker;
+import org.example.rag.DocumentChunker;
+import org.example.rag.EmbeddingService;
+import org.example.rag.LateInteractionReranker;
+import org.example.rag.PassThroughReranker;
+import org.example.rag.RRFMerger;
+import org.example.rag.Reranker;
+import org.example.rag.ScoredChunk;
+import org.example.rag.VectorStore;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Benchmark of the cross-encoder and late-interaction rerankers against the
+ * pass-through one.
+ *
+ * Quality: hit@1 and MRR@5 on questions labeled with the section that
+ * answers them. Latency: rerank time of the fused candidates of every user
+ * input of the test sets: cross-encoder cold, with cached scores, and with a
+ * latency budget; late interaction with the chunks indexed beforehand.
+ *
+ * Usage:
+ * ./gradlew :app:test --tests "org.example.RerankerBenchmark" -Dtest.benchmark=true
+ */
+@Tag("benchmark")
+public class RerankerBenchmark {
+
+    private static final List<String> TEST_SETS = List.of("../TEST_SET_EN.md", "../TEST_SET_IT.md",
+            "../TEST_SET_PL.md");
+    private static final int CANDIDATES = 20;
+    private static final int TOP_K = 5;
+    private static final Duration BUDGET = Duration.ofMillis(10);
+
+    // Question -> text of the section header that answers it
+    private static final Map<String, String> LABELED = new LinkedHashMap<>();
+    static {
+        LABELED.put("How do I verify the signature of a webhook?", "Verifying Webhook Signatures");
+        LABELED.put("How do I reset my password?", "How do I reset my password?");
+        LABELED.put("How do I install the Python SDK?", "### Python");
+        LABELED.put("Which browsers are supported?", "Browser Compatibility");
+        LABELED.put("What happens to my data after I cancel?", "Data Retention");
+        LABELED.put("How much does the Professional plan cost?", "Professional Plan");
+        LABELED.put("Can I get a partial refund?", "Partial Refunds");
+        LABELED.put("What happens if my payment fails?", "Payment Failures");
+        LABELED.put("How do I set up OAuth?", "OAuth 2.0 Integration");
+        LABELED.put("Which firewall rules do I need?", "Firewall Rules");
+        LABELED.put("Can I export my data?", "Can I export my data?");
+        LABELED.put("How long does a refund take to process?", "Refund Processing Times");
+    }
+
+    @Test
+    public void rerankerQualityAndLatency() throws IOException {
+        String benchmarkFilter = System.getProperty("test.benchmark");
+        Assumptions.assumeTrue(benchmarkFilter != null && !benchmarkFilter.equals("null") && !benchmarkFilter.isEmpty(),
+                "Skipping RerankerBenchmark (run with -Dtest.benchmark=true)");
+
+        List<String> inputs = new ArrayList<>();
+        for (String testSet : TEST_SETS) {
+            Path path = Paths.get(testSet);
+            if (Files.exists(path)) {
+                inputs.addAll(parseInputs(path));
+            }
+        }
+        inputs.addAll(LABELED.keySet());
+
+        ChunkTable chunkTable = new ChunkTable();
+        BM25Index bm25Index = new BM25Index(chunkTable);
+        VectorStore vectorStore = new VectorStore(chunkTable);
+        try (EmbeddingService embeddingService = new EmbeddingService();
+                CrossEncoderReranker crossEncoder = new CrossEncoderReranker();
+                LateInteractionReranker lateInteraction = new LateInteractionReranker()) {
+            Assumptions.assumeFalse(crossEncoder.isFallback(), "Cross-encoder model not available");
+
+            List<Chunk> chunks = new DocumentChunker().loadAllChunks();
+            List<float[]> embeddings = embeddingService.embedBatch(chunks.stream().map(Chunk::content).toList(),
+                    false);
+            for (int i = 0; i < chunks.size(); i++) {
+                Chunk chunk = chunks.get(i);
+                bm25Index.addDocument(chunk.id(), chunk.content(), chunk.source());
+                vectorStore.addChunk(chunk, embeddings.get(i));
+            }
+            bm25Index.commit();
+
+            // Fused candidates of each query, as the pipeline hands them to the reranker
+            RRFMerger merger = new RRFMerger();
+            Map<String, List<ScoredChunk>> candidates = new LinkedHashMap<>();
+            for (String query : inputs) {
+                float[] embedding = embeddingService.embed(query, true);
+                candidates.put(query, chunkTable.resolve(merger.merge(bm25Index.searchOrdinals(query, 50),
+                        vectorStore.searchOrdinals(embedding, 50, null, Set.of()), CANDIDATES)));
+            }
+
+            Reranker passThrough = new PassThroughReranker();
+            double[] passThroughQuality = quality(passThrough, candidates);
+            double[] crossEncoderQuality = quality(crossEncoder, candidates);
+            lateInteraction.index(chunkTable.chunks());
+            double[] lateInteractionQuality = quality(lateInteraction, candidates);
+
+            try (CrossEncoderReranker cold = new CrossEncoderReranker();
+                    CrossEncoderReranker budgeted = new CrossEncoderReranker(CrossEncoderReranker.DEFAULT_MODEL_URL,
+                            BUDGET)) {
+                // Load the models and warm up the JIT on a query outside the measured set
+                List<ScoredChunk> warmup = candidates.values().iterator().next();
+                cold.rerank("warm up", warmup, TOP_K);
+                budgeted.rerank("warm up", warmup, TOP_K);
+
+                long[] passThroughNanos = latencies(passThrough, candidates);
+                long[] coldNanos = latencies(cold, candidates);
+                long scoredBefore = cold.getScoredPairs();
+                long[] cachedNanos = latencies(cold, candidates);
+                long[] budgetedNanos = latencies(budgeted, candidates);
+                long[] lateInteractionNanos = latencies(lateInteraction, candidates);
+
+                System.out.printf(">>> Quality on %d labeled questions: pass-through hit@1 %.3f MRR@%d %.3f, "
+                        + "cross-encoder hit@1 %.3f MRR@%d %.3f%n", LABELED.size(), passThroughQuality[0], TOP_K,
+                        passThroughQuality[1], crossEncoderQuality[0], TOP_K, crossEncoderQuality[1]);
+                System.out.printf(">>> Late interaction: hit@1 %.3f MRR@%d %.3f (%d chunks, %d KB off-heap)%n",
+                        lateInteractionQuality[0], TOP_K, lateInteractionQuality[1],
+                        lateInteraction.getIndexedChunks(), lateInteraction.getBytesUsed() / 1024);
+                System.out.println(">>> Rerank latency over " + candidates.size() + " queries of " + CANDIDATES
+                        + " candidates:");
+                System.out.println(">>>   pass-through:          " + percentiles(passThroughNanos));
+                System.out.println(">>>   cross-encoder (cold):  " + percentiles(coldNanos));
+                System.out.println(">>>   cross-encoder (cached): " + percentiles(cachedNanos));
+                System.out.println(">>>   cross-encoder (" + BUDGET.toMillis() + "ms budget): "
+                        + percentiles(budgetedNanos) + ", " + budgeted.getUnscoredPairs() + " pairs left unscored");
+                System.out.printf(">>>   model time per pair: %.2fms%n", cold.getMillisPerPair());
+                System.out.println(">>>   late interaction:      " + percentiles(lateInteractionNanos) + ", "
+                        + lateInteraction.getLateEncodedChunks() + " chunks encoded at query time");
+
+                assertEquals(scoredBefore, cold.getScoredPairs(), "Cached pass scored pairs again");
+            }
+
+            assertTrue(crossEncoderQuality[1] >= passThroughQuality[1],
+                    "Cross-encoder MRR " + crossEncoderQuality[1] + " below pass-through " + passThroughQuality[1]);
+        } finally {
+            bm25Index.close();
+        }
+    }
+
+    /**
+     * @return { hit@1, MRR@TOP_K } on the labeled questions
+     */
+    private double[] quality(Reranker reranker, Map<String, List<ScoredChunk>> candidates) {
+        double hits = 0;
+        double reciprocalRanks = 0;
+        for (Map.Entry<String, String> labeled : LABELED.entrySet()) {
+            List<ScoredChunk> results = reranker.rerank(labeled.getKey(), candidates.get(labeled.getKey()), TOP_K);
+            String answer = labeled.getValue().toLowerCase(Locale.ROOT);
+            for (int rank = 0; rank < results.size(); rank++) {
+                if (results.get(rank).content().toLowerCase(Locale.ROOT).contains(answer)) {
+                    hits += rank == 0 ? 1 : 0;
+                    reciprocalRanks += 1.0 / (rank + 1);
+                    break;
+                }
+            }
+        }
+        return new double[] { hits / LABELED.size(), reciprocalRanks / LABELED.size() };
+    }
+
+    private long[] latencies(Reranker reranker, Map<String, List<ScoredChunk>> candidates) {
+        long[] nanos = new long[candidates.size()];
+        int i = 0;
+        for (Map.Entry<String, List<ScoredChunk>> query : candidates.entrySet()) {
+            long start = System.nanoTime();
+            reranker.rerank(query.getKey(), query.getValue(), TOP_K);
+            nanos[i++] = System.nanoTime() - start;
+        }
+        return nanos;
+    }
+
+    private String percentiles(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return String.format("p50 %.2fms, p99 %.2fms", sorted[(sorted.length - 1) / 2] / 1e6,
+                sorted[(int) Math.ceil(0.99 * sorted.length) - 1] / 1e6);
+    }
+
+    /**
+     * Extract the user inputs (code blocks following an "Input:" line) of a test set.
+     */
+    private List<String> parseInputs(Path path) throws IOException {
+        List<String> inputs = new ArrayList<>();
+        boolean expectingInput = false;
+        StringBuilder block = null;
+
+        for (String line : Files.readAllLines(path)) {
+            if (block != null) {
+                if (line.startsWith("```")) {
+                    if (!block.toString().isBlank()) {
+                        inputs.add(block.toString().trim());
+                    }
+                    block = null;
+                } else {
+                    block.append(line).append('\n');
+                }
+            } else if (line.contains("Input:**")) {
+                expectingInput = true;
+            } else if (expectingInput && line.startsWith("```")) {
+                block = new StringBuilder();
+                expectingInput = false;
+            }
+        }
+        return inputs;
+    }
+}
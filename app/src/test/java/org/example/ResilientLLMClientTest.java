@@ -0,0 +1,228 @@
+package org.example;
+
+import org.example.llm.LLMCallException;
+import org.example.llm.LLMClient;
+import org.example.llm.LLMResponse;
+import org.example.llm.ResiliencePolicy;
+import org.example.llm.ResilientLLMClient;
+import org.example.model.ConversationMessage;
+import org.example.tools.Tool;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the resilience decorator against a local fake backend that
+ * injects latency and errors.
+ */
+public class ResilientLLMClientTest {
+
+    private static final List<ConversationMessage> MESSAGES = List.of(ConversationMessage.user("Hi"));
+
+    // Fast backoff and no hedging unless a test enables it
+    private static final ResiliencePolicy POLICY = ResiliencePolicy.defaults()
+            .withRetries(4, Duration.ofMillis(5), Duration.ofMillis(50))
+            .withHedging(0, Duration.ZERO)
+            .withCircuitBreaker(3, Duration.ofMillis(200));
+
+    @Test
+    public void retriesTransientErrors() {
+        FakeBackend backend = new FakeBackend();
+        backend.fail(503).fail(429).answer(Duration.ZERO);
+        ResilientLLMClient client = new ResilientLLMClient(backend, POLICY);
+
+        assertEquals("answer 3", client.chat("system", MESSAGES));
+        assertEquals(3, backend.calls.get());
+        assertEquals(2L, client.getStats().get("retries"));
+    }
+
+    @Test
+    public void doesNotRetryClientErrors() {
+        FakeBackend backend = new FakeBackend();
+        backend.fail(400).answer(Duration.ZERO);
+        ResilientLLMClient client = new ResilientLLMClient(backend, POLICY);
+
+        LLMCallException e = assertThrows(LLMCallException.class, () -> client.chat("system", MESSAGES));
+        assertEquals(400, e.getStatusCode());
+        assertEquals(1, backend.calls.get());
+    }
+
+    @Test
+    public void honoursRetryAfter() {
+        FakeBackend backend = new FakeBackend();
+        backend.failWithRetryAfter(429, Duration.ofMillis(40)).answer(Duration.ZERO);
+        ResilientLLMClient client = new ResilientLLMClient(backend, POLICY);
+
+        long start = System.nanoTime();
+        client.chat("system", MESSAGES);
+        assertTrue(System.nanoTime() - start >= Duration.ofMillis(40).toNanos(), "Retried before the hint");
+
+        // Longer than the maximum backoff: fail rather than block
+        backend.failWithRetryAfter(429, Duration.ofSeconds(60)).answer(Duration.ZERO);
+        assertThrows(LLMCallException.class, () -> client.chat("system", MESSAGES));
+    }
+
+    @Test
+    public void hedgesSlowOutliers() {
+        FakeBackend backend = new FakeBackend();
+        backend.answer(Duration.ofSeconds(5)).answer(Duration.ofMillis(10));
+        ResilientLLMClient client = new ResilientLLMClient(backend,
+                POLICY.withHedging(0.95, Duration.ofMillis(50)));
+
+        long start = System.nanoTime();
+        assertEquals("answer 2", client.chat("system", MESSAGES));
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(1).toNanos(), "Slow call was not hedged");
+        assertEquals(1L, client.getStats().get("hedge_wins"));
+    }
+
+    @Test
+    public void hedgeDelayTracksRequestLatency() {
+        FakeBackend backend = new FakeBackend();
+        for (int i = 0; i < 20; i++) {
+            backend.answer(Duration.ofSeconds(5)).answer(Duration.ZERO);
+        }
+        ResilientLLMClient client = new ResilientLLMClient(backend,
+                POLICY.withHedging(0.95, Duration.ofMillis(50)));
+
+        for (int i = 0; i < 20; i++) {
+            client.chat("system", MESSAGES);
+        }
+        // The hedges answered at once; the delay before sending them is not latency
+        assertTrue((long) client.getStats().get("hedge_delay_ms") < 50, "Hedge delay crept up");
+    }
+
+    @Test
+    public void streamedCallsDoNotDelayHedges() {
+        FakeBackend backend = new FakeBackend();
+        ResilientLLMClient client = new ResilientLLMClient(backend,
+                POLICY.withHedging(0.95, Duration.ofMillis(50)));
+
+        for (int i = 0; i < 20; i++) {
+            client.chat("system", MESSAGES);
+        }
+        // Long streamed answers are not hedged, so their latency must not raise the hedge delay
+        for (int i = 0; i < 20; i++) {
+            backend.answer(Duration.ofMillis(60));
+            client.chatStream("system", MESSAGES, delta -> {
+            });
+        }
+        assertTrue((long) client.getStats().get("hedge_delay_ms") < 50, "Streamed latency leaked into hedging");
+    }
+
+    @Test
+    public void doesNotHedgeNonIdempotentCalls() {
+        FakeBackend backend = new FakeBackend();
+        backend.answer(Duration.ofMillis(200)).answer(Duration.ZERO);
+        ResilientLLMClient client = new ResilientLLMClient(backend,
+                POLICY.withHedging(0.95, Duration.ofMillis(20)));
+
+        LLMResponse response = client.chatWithTools("system", MESSAGES, List.of(new ActionTool()));
+        assertEquals("answer 1", response.text());
+        assertEquals(1, backend.calls.get());
+    }
+
+    @Test
+    public void circuitOpensAndRecovers() throws InterruptedException {
+        FakeBackend backend = new FakeBackend();
+        backend.fail(500).fail(500).fail(500).answer(Duration.ZERO);
+        ResilientLLMClient client = new ResilientLLMClient(backend,
+                POLICY.withRetries(1, Duration.ofMillis(5), Duration.ofMillis(50)));
+
+        for (int i = 0; i < 3; i++) {
+            assertThrows(LLMCallException.class, () -> client.chat("system", MESSAGES));
+        }
+        assertEquals(ResilientLLMClient.CircuitState.OPEN, client.getCircuitState());
+
+        // Fails fast without reaching the backend
+        LLMCallException e = assertThrows(LLMCallException.class, () -> client.chat("system", MESSAGES));
+        assertFalse(e.isRetryable());
+        assertEquals(3, backend.calls.get());
+
+        Thread.sleep(250);
+        assertEquals("answer 4", client.chat("system", MESSAGES));
+        assertEquals(ResilientLLMClient.CircuitState.CLOSED, client.getCircuitState());
+    }
+
+    /**
+     * Backend playing scripted outcomes, then answering at once.
+     */
+    private static class FakeBackend implements LLMClient {
+        private final ConcurrentLinkedQueue<Outcome> script = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private record Outcome(Duration latency, int status, Duration retryAfter) {
+        }
+
+        FakeBackend answer(Duration latency) {
+            script.add(new Outcome(latency, 200, null));
+            return this;
+        }
+
+        FakeBackend fail(int status) {
+            return failWithRetryAfter(status, null);
+        }
+
+        FakeBackend failWithRetryAfter(int status, Duration retryAfter) {
+            script.add(new Outcome(Duration.ZERO, status, retryAfter));
+            return this;
+        }
+
+        @Override
+        public String chat(String systemPrompt, List<ConversationMessage> messages) {
+            return chatWithTools(systemPrompt, messages, List.of()).text();
+        }
+
+        @Override
+        public LLMResponse chatWithTools(String systemPrompt, List<ConversationMessage> messages, List<Tool> tools) {
+            int call = calls.incrementAndGet();
+            Outcome outcome = script.poll();
+            if (outcome == null)
+                return LLMResponse.textOnly("answer " + call);
+            try {
+                Thread.sleep(outcome.latency());
+            } catch (InterruptedException e) {
+                throw new LLMCallException("Cancelled", LLMCallException.UNKNOWN_STATUS, false, null, e);
+            }
+            if (outcome.status() != 200)
+                throw new LLMCallException("Injected " + outcome.status(), outcome.status(), outcome.retryAfter(),
+                        null);
+            return LLMResponse.textOnly("answer " + call);
+        }
+    }
+
+    private static class ActionTool implements Tool {
+        @Override
+        public String getName() {
+            return "open_case";
+        }
+
+        @Override
+        public String getDescription() {
+            return "Opens a case";
+        }
+
+        @Override
+        public Map<String, Object> getParametersSchema() {
+            return Map.of();
+        }
+
+        @Override
+        public String execute(Map<String, String> parameters) {
+            return "opened";
+        }
+
+        @Override
+        public boolean isIdempotent() {
+            return false;
+        }
+    }
+}
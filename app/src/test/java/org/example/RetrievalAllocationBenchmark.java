@@ -0,0 +1,121 @@
+package org.example;
+
+import org.example.rag.BM25Index;
+import org.example.rag.Chunk;
+import org.example.rag.ChunkTable;
+import org.example.rag.DocumentChunker;
+import org.example.rag.RRFMerger;
+import org.example.rag.ScoredChunk;
+import org.example.rag.ScoredOrdinals;
+import org.example.rag.VectorStore;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Benchmark of the heap allocated per query by the retrieval stages (BM25,
+ * vector search, RRF fusion), comparing the chunk-based search methods with
+ * the ordinal-based ones the pipeline uses.
+ *
+ * Embeddings are random: allocation does not depend on the model, and the
+ * model's own inference allocations would hide those of the stages.
+ *
+ * Usage:
+ * ./gradlew :app:test --tests "org.example.RetrievalAllocationBenchmark" -Dtest.benchmark=true
+ */
+@Tag("benchmark")
+public class RetrievalAllocationBenchmark {
+
+    private static final int DIMENSION = 384;
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int MEASURED_ROUNDS = 2000;
+    private static final List<String> QUERIES = List.of(
+            "How long does a refund take?",
+            "Why was I charged twice this month?",
+            "How do I reset my API key?",
+            "What happens when my subscription is cancelled?");
+
+    @Test
+    public void ordinalPipelineAllocatesLess() {
+        String benchmarkFilter = System.getProperty("test.benchmark");
+        Assumptions.assumeTrue(benchmarkFilter != null && !benchmarkFilter.equals("null") && !benchmarkFilter.isEmpty(),
+                "Skipping RetrievalAllocationBenchmark (run with -Dtest.benchmark=true)");
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported(), "Allocation tracking not supported");
+
+        Random random = new Random(42);
+        ChunkTable chunkTable = new ChunkTable();
+        BM25Index bm25Index = new BM25Index(chunkTable);
+        VectorStore vectorStore = new VectorStore(chunkTable);
+        try {
+            for (Chunk chunk : new DocumentChunker().loadAllChunks()) {
+                bm25Index.addDocument(chunk.id(), chunk.content(), chunk.source());
+                vectorStore.addChunk(chunk, randomVector(random));
+            }
+            bm25Index.commit();
+
+            List<float[]> embeddings = new ArrayList<>();
+            for (int i = 0; i < QUERIES.size(); i++) {
+                embeddings.add(randomVector(random));
+            }
+            RRFMerger merger = new RRFMerger();
+
+            Runnable chunkBased = () -> {
+                for (int i = 0; i < QUERIES.size(); i++) {
+                    List<ScoredChunk> bm25 = bm25Index.search(QUERIES.get(i), 50);
+                    List<ScoredChunk> vector = vectorStore.search(embeddings.get(i), 50);
+                    merger.merge(bm25, vector, 20);
+                }
+            };
+            Runnable ordinalBased = () -> {
+                for (int i = 0; i < QUERIES.size(); i++) {
+                    ScoredOrdinals bm25 = bm25Index.searchOrdinals(QUERIES.get(i), 50);
+                    ScoredOrdinals vector = vectorStore.searchOrdinals(embeddings.get(i), 50, null, Set.of());
+                    chunkTable.resolve(merger.merge(bm25, vector, 20), 5);
+                }
+            };
+
+            long chunkBytes = bytesPerQuery(threads, chunkBased);
+            long ordinalBytes = bytesPerQuery(threads, ordinalBased);
+
+            System.out.println(">>> " + vectorStore.size() + " chunks indexed");
+            System.out.println(">>> Chunk-based stages: " + chunkBytes + " bytes/query");
+            System.out.println(">>> Ordinal-based stages: " + ordinalBytes + " bytes/query");
+
+            assertTrue(ordinalBytes < chunkBytes,
+                    "Ordinal pipeline allocates " + ordinalBytes + " bytes/query vs " + chunkBytes);
+        } finally {
+            bm25Index.close();
+        }
+    }
+
+    private long bytesPerQuery(com.sun.management.ThreadMXBean threads, Runnable round) {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) {
+            round.run();
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < MEASURED_ROUNDS; i++) {
+            round.run();
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        return allocated / ((long) MEASURED_ROUNDS * QUERIES.size());
+    }
+
+    private float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,126 @@
+package org.example;
+
+import org.example.rag.RetrievalCache;
+import org.example.rag.ScoredChunk;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Tests of the final-results cache: key normalization, versioned
+ * invalidation and single-flight loading.
+ */
+public class RetrievalCacheTest {
+
+    private static final List<ScoredChunk> RESULTS = List.of(
+            new ScoredChunk("faq.md:0", "Reset your password from the settings page", "faq.md", 0.03));
+
+    @Test
+    public void normalizesQueryKeys() {
+        RetrievalCache cache = new RetrievalCache();
+        RetrievalCache.Key key = cache.key("How do I reset my password?", 5, null);
+
+        assertEquals(key, cache.key("  how do I   RESET my\tpassword?\n", 5, null));
+        // Full-width letters and the "fi" ligature fold to their plain forms (NFKC)
+        assertEquals(cache.key("wifi setup", 5, null), cache.key("ＷＩﬁ setup", 5, null));
+        assertNotEquals(key, cache.key("How do I reset my password?", 3, null));
+        assertNotEquals(key, cache.key("How do I reset my password?", 5, "faq.md"));
+    }
+
+    @Test
+    public void invalidatesOnlyAffectedKeys() {
+        RetrievalCache cache = new RetrievalCache();
+        RetrievalCache.Key unfiltered = cache.key("refund", 5, null);
+        RetrievalCache.Key onFaq = cache.key("refund", 5, "faq.md");
+        RetrievalCache.Key onBilling = cache.key("refund", 5, "billing_policy.md");
+        cache.put(unfiltered, RESULTS);
+        cache.put(onFaq, RESULTS);
+        cache.put(onBilling, RESULTS);
+
+        cache.invalidate(Set.of("faq.md"));
+
+        // Unfiltered queries may include the updated source, so they move to a new version too
+        assertNull(cache.getIfPresent(cache.key("refund", 5, null)));
+        assertNull(cache.getIfPresent(cache.key("refund", 5, "faq.md")));
+        assertSame(RESULTS, cache.getIfPresent(cache.key("refund", 5, "billing_policy.md")));
+        assertEquals(onBilling, cache.key("refund", 5, "billing_policy.md"));
+    }
+
+    @Test
+    public void sharesConcurrentMisses() throws Exception {
+        RetrievalCache cache = new RetrievalCache();
+        RetrievalCache.Key key = cache.key("refund", 5, null);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<List<ScoredChunk>>> callers = new ArrayList<>();
+            callers.add(executor.submit(() -> cache.get(key, () -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                release.await();
+                return RESULTS;
+            })));
+            loading.await();
+            for (int i = 0; i < 3; i++) {
+                callers.add(executor.submit(() -> cache.get(key, () -> {
+                    loads.incrementAndGet();
+                    return List.of();
+                })));
+            }
+            // Let the waiting callers block on the running load before it finishes
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<List<ScoredChunk>> caller : callers) {
+                assertSame(RESULTS, caller.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void discardsPartialResults() {
+        RetrievalCache cache = new RetrievalCache();
+        RetrievalCache.Key key = cache.key("refund", 5, null);
+        List<ScoredChunk> partial = List.of();
+
+        assertSame(partial, cache.get(key, () -> partial));
+        cache.discard(key, partial);
+        assertNull(cache.getIfPresent(key));
+
+        // Discarding only removes the given result, not one cached since
+        cache.put(key, RESULTS);
+        cache.discard(key, partial);
+        assertSame(RESULTS, cache.getIfPresent(key));
+    }
+
+    @Test
+    public void doesNotCacheFailures() {
+        RetrievalCache cache = new RetrievalCache();
+        RetrievalCache.Key key = cache.key("refund", 5, null);
+
+        assertThrows(IllegalStateException.class, () -> cache.get(key, () -> {
+            throw new IllegalStateException("Index closed");
+        }));
+        assertSame(RESULTS, cache.get(key, () -> RESULTS));
+    }
+}
@@ -0,0 +1,147 @@
+package org.example;
+
+import org.example.rag.ScoredChunk;
+import org.example.rag.SemanticQueryCache;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the embedding-keyed result cache on synthetic vectors.
+ */
+public class SemanticQueryCacheTest {
+
+    private static final int DIMENSION = 64;
+    private static final double THRESHOLD = 0.9;
+
+    @Test
+    public void findsNearbyQueriesThroughNeighbouringBuckets() {
+        Random random = new Random(7);
+        SemanticQueryCache cache = new SemanticQueryCache(THRESHOLD, 1000);
+        int trials = 50;
+        int hits = 0;
+        for (int i = 0; i < trials; i++) {
+            float[] query = randomVector(random);
+            List<ScoredChunk> results = results("chunk-" + i);
+            cache.put(query, 5, null, results, cache.version());
+
+            // Cosine ~0.97: some hyperplane signs differ, so the lookup must probe nearby buckets
+            if (results.equals(cache.lookup(perturb(query, 0.25, random), 5, null)))
+                hits++;
+            assertNull(cache.lookup(randomVector(random), 5, null), "Unrelated query hit");
+        }
+        assertEquals(trials, hits);
+        assertEquals(trials, cache.getHits());
+    }
+
+    @Test
+    public void matchesOnlySameTopKAndFilter() {
+        SemanticQueryCache cache = new SemanticQueryCache(THRESHOLD, 10);
+        float[] query = randomVector(new Random(1));
+        cache.put(query, 5, "faq.md", results("a"), cache.version());
+
+        assertNotNull(cache.lookup(query, 5, "faq.md"));
+        assertNull(cache.lookup(query, 3, "faq.md"));
+        assertNull(cache.lookup(query, 5, null));
+        assertNull(cache.lookup(query, 5, "billing_policy.md"));
+    }
+
+    @Test
+    public void invalidatesAffectedEntries() {
+        SemanticQueryCache cache = new SemanticQueryCache(THRESHOLD, 10);
+        Random random = new Random(2);
+        float[] unfiltered = randomVector(random);
+        float[] onFaq = randomVector(random);
+        float[] onBilling = randomVector(random);
+        cache.put(unfiltered, 5, null, results("a"), cache.version());
+        cache.put(onFaq, 5, "faq.md", results("b"), cache.version());
+        cache.put(onBilling, 5, "billing_policy.md", results("c"), cache.version());
+
+        long versionBefore = cache.version();
+        cache.invalidate(Set.of("faq.md"));
+
+        assertNull(cache.lookup(unfiltered, 5, null));
+        assertNull(cache.lookup(onFaq, 5, "faq.md"));
+        assertNotNull(cache.lookup(onBilling, 5, "billing_policy.md"));
+        assertEquals(1, cache.size());
+
+        // Results computed before the invalidation are not stored
+        cache.put(unfiltered, 5, null, results("stale"), versionBefore);
+        assertNull(cache.lookup(unfiltered, 5, null));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        SemanticQueryCache cache = new SemanticQueryCache(THRESHOLD, 2);
+        Random random = new Random(3);
+        float[] first = randomVector(random);
+        float[] second = randomVector(random);
+        float[] third = randomVector(random);
+        cache.put(first, 5, null, results("a"), cache.version());
+        cache.put(second, 5, null, results("b"), cache.version());
+
+        assertNotNull(cache.lookup(first, 5, null));
+        cache.put(third, 5, null, results("c"), cache.version());
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.lookup(first, 5, null));
+        assertNull(cache.lookup(second, 5, null));
+        assertNotNull(cache.lookup(third, 5, null));
+    }
+
+    @Test
+    public void thresholdAboveOneDisablesTheCache() {
+        SemanticQueryCache cache = new SemanticQueryCache(2.0, 10);
+        float[] query = randomVector(new Random(4));
+        assertFalse(cache.isEnabled());
+
+        cache.put(query, 5, null, results("a"), cache.version());
+        assertEquals(0, cache.size());
+        assertNull(cache.lookup(query, 5, null));
+
+        cache.setThreshold(THRESHOLD);
+        assertTrue(cache.isEnabled());
+        cache.put(query, 5, null, results("a"), cache.version());
+        assertNotNull(cache.lookup(query, 5, null));
+    }
+
+    private static float[] randomVector(Random random) {
+        float[] vector = new float[DIMENSION];
+        for (int i = 0; i < DIMENSION; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    /**
+     * Add Gaussian noise of the given norm relative to the vector's (about 1 - noise^2 / 2 cosine).
+     */
+    private static float[] perturb(float[] vector, double noise, Random random) {
+        float[] perturbed = vector.clone();
+        double scale = noise / Math.sqrt(DIMENSION) * norm(vector);
+        for (int i = 0; i < DIMENSION; i++) {
+            perturbed[i] += (float) (random.nextGaussian() * scale);
+        }
+        return perturbed;
+    }
+
+    private static double norm(float[] vector) {
+        double sum = 0;
+        for (float v : vector) {
+            sum += v * v;
+        }
+        return Math.sqrt(sum);
+    }
+
+    private static List<ScoredChunk> results(String id) {
+        return List.of(new ScoredChunk(id, "content of " + id, "faq.md", 1.0));
+    }
+}
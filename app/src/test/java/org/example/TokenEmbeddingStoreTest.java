@@ -0,0 +1,82 @@
+package org.example;
+
+import org.example.rag.TokenEmbeddingStore;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests of the off-heap token vector store, with tiny segments so that
+ * spanning several of them is cheap.
+ */
+public class TokenEmbeddingStoreTest {
+
+    private static final int DIMENSION = 4;
+    // Scale + 4 codes: 8 bytes per token, so two 3-token chunks per 64-byte segment
+    private static final int SEGMENT_BYTES = 64;
+
+    @Test
+    public void spansSegments() {
+        TokenEmbeddingStore store = new TokenEmbeddingStore(DIMENSION, SEGMENT_BYTES, 1 << 20);
+        for (int i = 0; i < 20; i++) {
+            store.put("chunk-" + i, i, tokens(i));
+        }
+
+        assertEquals(20, store.size());
+        float[][] query = { { 1, 0, 0, 0 } };
+        for (int i = 0; i < 20; i++) {
+            assertTrue(store.contains("chunk-" + i, i));
+            // Best first component of the chunk's tokens
+            assertEquals(expectedMaxSim(i), store.maxSim("chunk-" + i, i, query), 0.01);
+        }
+        assertFalse(store.contains("chunk-3", 4));
+        assertTrue(Float.isNaN(store.maxSim("chunk-3", 4, query)));
+    }
+
+    @Test
+    public void failsPastItsLimit() {
+        TokenEmbeddingStore store = new TokenEmbeddingStore(DIMENSION, SEGMENT_BYTES, 2 * SEGMENT_BYTES);
+        for (int i = 0; i < 4; i++) {
+            store.put("chunk-" + i, i, tokens(i));
+        }
+
+        assertThrows(IllegalStateException.class, () -> store.put("chunk-4", 4, tokens(4)));
+        assertThrows(IllegalArgumentException.class,
+                () -> store.put("huge", 0, new float[SEGMENT_BYTES][DIMENSION]));
+        // Earlier chunks stay readable
+        assertEquals(expectedMaxSim(2), store.maxSim("chunk-2", 2, new float[][] { { 1, 0, 0, 0 } }), 0.01);
+    }
+
+    @Test
+    public void reclaimsReplacedEntries() {
+        TokenEmbeddingStore store = new TokenEmbeddingStore(DIMENSION, SEGMENT_BYTES, 4 * SEGMENT_BYTES);
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < 3; i++) {
+                store.put("chunk-" + i, round, tokens(i + round));
+            }
+        }
+
+        assertEquals(3, store.size());
+        assertTrue(store.getBytesUsed() <= 4 * SEGMENT_BYTES);
+        assertEquals(expectedMaxSim(101), store.maxSim("chunk-2", 99, new float[][] { { 1, 0, 0, 0 } }), 0.01);
+    }
+
+    /**
+     * Three tokens whose first components are 0.1, 0.2 and 0.3 times (i % 3 + 1).
+     */
+    private static float[][] tokens(int i) {
+        float[][] tokens = new float[3][DIMENSION];
+        for (int t = 0; t < 3; t++) {
+            tokens[t][0] = 0.1f * (t + 1) * (i % 3 + 1);
+            tokens[t][1] = -0.5f;
+        }
+        return tokens;
+    }
+
+    private static float expectedMaxSim(int i) {
+        return 0.3f * (i % 3 + 1);
+    }
+}